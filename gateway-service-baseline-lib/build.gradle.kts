@@ -14,7 +14,6 @@ dependencies {
 
   // Common utilities
   implementation("org.apache.commons:commons-lang3:3.12.0")
-  implementation("org.apache.commons:commons-math3:3.6.1")
   implementation("com.google.protobuf:protobuf-java-util:3.19.4")
   constraints {
     implementation("com.google.code.gson:gson:2.8.9") {
@@ -22,4 +21,6 @@ dependencies {
     }
   }
   testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
+  // Reference implementation the baselines are checked against
+  testImplementation("org.apache.commons:commons-math3:3.6.1")
 }
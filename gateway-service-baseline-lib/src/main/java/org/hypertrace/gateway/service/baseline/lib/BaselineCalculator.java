@@ -1,13 +1,19 @@
 package org.hypertrace.gateway.service.baseline.lib;
 
-import com.google.common.annotations.VisibleForTesting;
+import java.nio.DoubleBuffer;
 import java.util.List;
-import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
-import org.apache.commons.math3.stat.descriptive.rank.Median;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import org.hypertrace.gateway.service.v1.baseline.Baseline;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 
+/**
+ * Baseline of a metric series: its median, bounded by two standard deviations on each side. The
+ * median is selected in linear time rather than by sorting, and the standard deviation takes two
+ * passes over the values, both on primitive doubles.
+ */
 public class BaselineCalculator {
 
   public static Baseline getBaseline(List<Value> metricValues) {
@@ -15,32 +21,161 @@ public class BaselineCalculator {
       return Baseline.getDefaultInstance();
     }
     double[] values = getValuesInDouble(metricValues);
-    return getBaseline(values);
+    return getBaseline(values, 0, values.length);
   }
 
-  private static Baseline getBaseline(double[] metricValueArray) {
-    Median median = new Median();
-    StandardDeviation standardDeviation = new StandardDeviation();
-    double medianValue = median.evaluate(metricValueArray);
-    double sd = standardDeviation.evaluate(metricValueArray);
+  /** Baseline of the length values of the array starting at offset, which are left unchanged. */
+  public static Baseline getBaseline(double[] values, int offset, int length) {
+    if (length == 0) {
+      return Baseline.getDefaultInstance();
+    }
+    double[] scratch = new double[length];
+    System.arraycopy(values, offset, scratch, 0, length);
+    return computeBaseline(scratch);
+  }
+
+  /** Baseline of the remaining values of the buffer, whose position is left unchanged. */
+  public static Baseline getBaseline(DoubleBuffer values) {
+    if (!values.hasRemaining()) {
+      return Baseline.getDefaultInstance();
+    }
+    double[] scratch = new double[values.remaining()];
+    values.duplicate().get(scratch);
+    return computeBaseline(scratch);
+  }
+
+  /**
+   * Baselines of many series, in the order of the series. The series are independent, so each of
+   * them is computed in a task of the executor, which runs them concurrently when it has threads to
+   * spare.
+   */
+  public static CompletableFuture<List<Baseline>> getBaselines(
+      List<DoubleBuffer> series, Executor executor) {
+    List<CompletableFuture<Baseline>> baselineFutures =
+        series.stream()
+            .map(values -> CompletableFuture.supplyAsync(() -> getBaseline(values), executor))
+            .collect(Collectors.toUnmodifiableList());
+    return CompletableFuture.allOf(baselineFutures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored ->
+                baselineFutures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  /** Value of a metric as a double, for the metric types a baseline can be computed for. */
+  public static double getDoubleValue(Value value) {
+    switch (value.getValueType()) {
+      case LONG:
+        return value.getLong();
+      case DOUBLE:
+        return value.getDouble();
+      default:
+        throw new IllegalArgumentException("Unsupported valueType " + value.getValueType());
+    }
+  }
+
+  // The values are reordered in place
+  private static Baseline computeBaseline(double[] values) {
+    double medianValue = median(values);
+    double sd = standardDeviation(values);
     double lowerBound = medianValue - (2 * sd);
     if (lowerBound < 0) {
       lowerBound = 0;
     }
     double upperBound = medianValue + (2 * sd);
-    Baseline baseline =
-        Baseline.newBuilder()
-            .setLowerBound(
-                Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(lowerBound).build())
-            .setUpperBound(
-                Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(upperBound).build())
-            .setValue(
-                Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(medianValue).build())
-            .build();
-    return baseline;
-  }
-
-  @VisibleForTesting
+    return Baseline.newBuilder()
+        .setLowerBound(
+            Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(lowerBound).build())
+        .setUpperBound(
+            Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(upperBound).build())
+        .setValue(Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(medianValue).build())
+        .build();
+  }
+
+  /** Median of the values, the mean of the two middle ones for an even count. */
+  static double median(double[] values) {
+    int upperMiddle = values.length / 2;
+    select(values, upperMiddle);
+    double upper = values[upperMiddle];
+    if (values.length % 2 == 1) {
+      return upper;
+    }
+    // Selection leaves the lower middle value as the largest of the values before the upper one
+    double lower = values[0];
+    for (int i = 1; i < upperMiddle; i++) {
+      lower = Math.max(lower, values[i]);
+    }
+    return lower + 0.5 * (upper - lower);
+  }
+
+  /**
+   * Bias corrected standard deviation of the values, zero for a single value. The sum of the
+   * deviations corrects the rounding error of the mean, as in the two pass algorithm.
+   */
+  static double standardDeviation(double[] values) {
+    int n = values.length;
+    if (n == 1) {
+      return 0;
+    }
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    double mean = sum / n;
+    double squaredDeviations = 0;
+    double deviations = 0;
+    for (double value : values) {
+      double deviation = value - mean;
+      squaredDeviations += deviation * deviation;
+      deviations += deviation;
+    }
+    return Math.sqrt((squaredDeviations - (deviations * deviations / n)) / (n - 1));
+  }
+
+  /**
+   * Quickselect: reorders the values so that the k-th smallest is at index k, with no greater value
+   * before it and no smaller value after it. Values equal to the pivot stop both scans and are
+   * swapped, so series with many repeated values, e.g. zeros, are still split evenly.
+   */
+  private static void select(double[] values, int k) {
+    int left = 0;
+    int right = values.length - 1;
+    while (right > left) {
+      double pivot = medianOfThree(values[left], values[(left + right) >>> 1], values[right]);
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(values, i++, j--);
+        }
+      }
+      // [left, j] is at most the pivot, [i, right] at least the pivot, and values between are equal
+      // to it
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private static double medianOfThree(double a, double b, double c) {
+    return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+  }
+
+  private static void swap(double[] values, int i, int j) {
+    double value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
   private static double[] getValuesInDouble(List<Value> metricValues) {
     ValueType valueType = metricValues.get(0).getValueType();
     switch (valueType) {
@@ -1,7 +1,15 @@
 package org.hypertrace.gateway.service.baseline.lib;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
+import org.apache.commons.math3.stat.descriptive.rank.Median;
 import org.hypertrace.gateway.service.v1.baseline.Baseline;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
@@ -44,4 +52,60 @@ public class BaselineCalculatorTest {
         () -> BaselineCalculator.getBaseline(values),
         "Baseline cannot be calculated for String values");
   }
+
+  @Test
+  public void testMedianAndStandardDeviationMatchCommonsMath() {
+    Random random = new Random(42);
+    for (int length : new int[] {1, 2, 3, 4, 10, 101, 1000, 1001}) {
+      double[] values = random.doubles(length, 0, 100).toArray();
+      // Repeated values
+      double[] roundedValues = Arrays.stream(values).map(value -> Math.floor(value / 10)).toArray();
+      for (double[] series : List.of(values, roundedValues, new double[length])) {
+        Assertions.assertEquals(
+            new Median().evaluate(series), BaselineCalculator.median(series.clone()));
+        Assertions.assertEquals(
+            new StandardDeviation().evaluate(series),
+            BaselineCalculator.standardDeviation(series),
+            1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testBaselineOfSlices() {
+    double[] values = {100, 8, 10, 12, 100};
+    Baseline baseline = BaselineCalculator.getBaseline(values, 1, 3);
+    Assertions.assertEquals(10.0, baseline.getValue().getDouble());
+    Assertions.assertEquals(6.0, baseline.getLowerBound().getDouble());
+    Assertions.assertEquals(14.0, baseline.getUpperBound().getDouble());
+    // The values are left as they were
+    Assertions.assertArrayEquals(new double[] {100, 8, 10, 12, 100}, values);
+
+    DoubleBuffer buffer = DoubleBuffer.wrap(values, 1, 3).slice();
+    Assertions.assertEquals(baseline, BaselineCalculator.getBaseline(buffer));
+    Assertions.assertEquals(0, buffer.position());
+    Assertions.assertEquals(
+        Baseline.getDefaultInstance(), BaselineCalculator.getBaseline(values, 2, 0));
+  }
+
+  @Test
+  public void testBaselinesOfManySeries() {
+    List<DoubleBuffer> series =
+        List.of(
+            DoubleBuffer.wrap(new double[] {2, 10, 100}),
+            DoubleBuffer.wrap(new double[] {8, 10, 12}),
+            DoubleBuffer.allocate(0));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      for (Executor seriesExecutor : new Executor[] {Runnable::run, executor}) {
+        List<Baseline> baselines = BaselineCalculator.getBaselines(series, seriesExecutor).join();
+        Assertions.assertEquals(3, baselines.size());
+        Assertions.assertEquals(10.0, baselines.get(0).getValue().getDouble());
+        Assertions.assertEquals(6.0, baselines.get(1).getLowerBound().getDouble());
+        Assertions.assertEquals(Baseline.getDefaultInstance(), baselines.get(2));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -0,0 +1,24 @@
+plugins {
+  java
+  id("me.champeau.jmh") version "0.6.6"
+}
+
+jmh {
+  jmhVersion.set("1.34")
+  fork.set(1)
+  warmupIterations.set(3)
+  iterations.set(5)
+  // e.g. ./gradlew :gateway-service-benchmarks:jmh -PjmhIncludes=BaselineCalculator
+  if (project.hasProperty("jmhIncludes")) {
+    includes.add(project.property("jmhIncludes") as String)
+  }
+}
+
+dependencies {
+  jmh(project(":gateway-service-impl"))
+  jmh(project(":gateway-service-baseline-lib"))
+
+  jmh("org.hypertrace.core.query.service:query-service-client:0.7.1")
+  jmh("org.hypertrace.core.attribute.service:attribute-service-client:0.13.13")
+  jmh("com.google.guava:guava:30.1.1-jre")
+}
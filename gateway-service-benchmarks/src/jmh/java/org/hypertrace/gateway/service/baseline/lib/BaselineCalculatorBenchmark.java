@@ -0,0 +1,90 @@
+package org.hypertrace.gateway.service.baseline.lib;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.hypertrace.gateway.service.v1.baseline.Baseline;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Baseline of the values of a metric series, e.g. the buckets of the baseline time range. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BaselineCalculatorBenchmark {
+  private static final int SERIES_LENGTH = 1440;
+
+  @Param({"1000", "10000", "100000"})
+  public int valueCount;
+
+  private List<Value> metricValues;
+  private double[] doubleValues;
+  // The values as many series of one day of minutes, as for the entities of a baseline request
+  private List<DoubleBuffer> series;
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    metricValues =
+        IntStream.range(0, valueCount)
+            .mapToObj(
+                i ->
+                    Value.newBuilder()
+                        .setValueType(ValueType.DOUBLE)
+                        .setDouble(100 + random.nextGaussian() * 15)
+                        .build())
+            .collect(Collectors.toUnmodifiableList());
+    doubleValues = metricValues.stream().mapToDouble(Value::getDouble).toArray();
+    series =
+        IntStream.range(0, (valueCount + SERIES_LENGTH - 1) / SERIES_LENGTH)
+            .mapToObj(
+                i ->
+                    DoubleBuffer.wrap(
+                            doubleValues,
+                            i * SERIES_LENGTH,
+                            Math.min(SERIES_LENGTH, valueCount - i * SERIES_LENGTH))
+                        .slice())
+            .collect(Collectors.toUnmodifiableList());
+    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Benchmark
+  public Baseline getBaseline() {
+    return BaselineCalculator.getBaseline(metricValues);
+  }
+
+  @Benchmark
+  public Baseline getBaselineOfDoubles() {
+    return BaselineCalculator.getBaseline(doubleValues, 0, doubleValues.length);
+  }
+
+  @Benchmark
+  public List<Baseline> getBaselines() {
+    return BaselineCalculator.getBaselines(series, Runnable::run).join();
+  }
+
+  @Benchmark
+  public List<Baseline> getBaselinesInParallel() {
+    return BaselineCalculator.getBaselines(series, executor).join();
+  }
+}
@@ -0,0 +1,156 @@
+package org.hypertrace.gateway.service.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+
+/** Attributes and entities of the API scope used by the benchmarks. */
+public class Fixtures {
+  public static final String TENANT_ID = "benchmark-tenant";
+  public static final long END_TIME_MILLIS = 1_600_000_000_000L;
+  public static final long START_TIME_MILLIS = END_TIME_MILLIS - 3_600_000;
+
+  public static final String API_ID_ATTR = "API.id";
+  public static final String API_NAME_ATTR = "API.name";
+  public static final String API_TYPE_ATTR = "API.apiType";
+  public static final String API_DISCOVERY_STATE_ATTR = "API.apiDiscoveryState";
+  public static final String API_START_TIME_ATTR = "API.startTime";
+  public static final String API_DURATION_ATTR = "API.duration";
+  public static final String API_NUM_CALLS_ATTR = "API.numCalls";
+  public static final String EVENT_SPACE_IDS_ATTR = "EVENT.spaceIds";
+  public static final String NUM_CALLS_ALIAS = "numCalls";
+  public static final String DURATION_AVG_ALIAS = "duration_avg";
+
+  public static final List<AttributeMetadata> ATTRIBUTES =
+      List.of(
+          attribute(
+              API_ID_ATTR,
+              AttributeScope.API,
+              "id",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_STRING,
+              AttributeSource.EDS,
+              AttributeSource.QS),
+          attribute(
+              API_NAME_ATTR,
+              AttributeScope.API,
+              "name",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_STRING,
+              AttributeSource.EDS),
+          attribute(
+              API_TYPE_ATTR,
+              AttributeScope.API,
+              "apiType",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_STRING,
+              AttributeSource.EDS),
+          attribute(
+              API_DISCOVERY_STATE_ATTR,
+              AttributeScope.API,
+              "apiDiscoveryState",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_STRING,
+              AttributeSource.EDS,
+              AttributeSource.QS),
+          attribute(
+              API_START_TIME_ATTR,
+              AttributeScope.API,
+              "startTime",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_TIMESTAMP,
+              AttributeSource.QS),
+          attribute(
+              API_DURATION_ATTR,
+              AttributeScope.API,
+              "duration",
+              AttributeType.METRIC,
+              AttributeKind.TYPE_INT64,
+              AttributeSource.QS),
+          attribute(
+              API_NUM_CALLS_ATTR,
+              AttributeScope.API,
+              "numCalls",
+              AttributeType.METRIC,
+              AttributeKind.TYPE_INT64,
+              AttributeSource.QS),
+          attribute(
+              EVENT_SPACE_IDS_ATTR,
+              AttributeScope.EVENT,
+              "spaceIds",
+              AttributeType.ATTRIBUTE,
+              AttributeKind.TYPE_STRING_ARRAY,
+              AttributeSource.QS));
+
+  public static InMemoryAttributeMetadataProvider attributeMetadataProvider() {
+    return new InMemoryAttributeMetadataProvider(ATTRIBUTES);
+  }
+
+  /**
+   * API entities with ids firstId to firstId + count - 1, holding their name and type attributes
+   * and a few metrics, keyed by their entity key.
+   */
+  public static Map<EntityKey, Entity.Builder> apiEntities(int firstId, int count) {
+    Map<EntityKey, Entity.Builder> entities = new LinkedHashMap<>();
+    for (int i = firstId; i < firstId + count; i++) {
+      String id = "api-" + i;
+      entities.put(
+          EntityKey.of(id),
+          Entity.newBuilder()
+              .setId(id)
+              .setEntityType(AttributeScope.API.name())
+              .putAttribute(API_ID_ATTR, stringValue(id))
+              .putAttribute(API_NAME_ATTR, stringValue("GET /api/v1/resource/" + (i % 5000)))
+              .putAttribute(API_TYPE_ATTR, stringValue(i % 2 == 0 ? "HTTP" : "GRPC"))
+              .putMetric(
+                  NUM_CALLS_ALIAS,
+                  AggregatedMetricValue.newBuilder()
+                      .setFunction(FunctionType.SUM)
+                      .setValue(
+                          Value.newBuilder().setValueType(ValueType.LONG).setLong(i * 7L % 1000))
+                      .build())
+              .putMetric(
+                  DURATION_AVG_ALIAS,
+                  AggregatedMetricValue.newBuilder()
+                      .setFunction(FunctionType.AVG)
+                      .setValue(
+                          Value.newBuilder()
+                              .setValueType(ValueType.DOUBLE)
+                              .setDouble(i * 13 % 2000 / 3.0))
+                      .build()));
+    }
+    return entities;
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+
+  private static AttributeMetadata attribute(
+      String id,
+      AttributeScope scope,
+      String key,
+      AttributeType type,
+      AttributeKind valueKind,
+      AttributeSource... sources) {
+    return AttributeMetadata.newBuilder()
+        .setId(id)
+        .setScopeString(scope.name())
+        .setKey(key)
+        .setType(type)
+        .setValueKind(valueKind)
+        .addAllSources(List.of(sources))
+        .build();
+  }
+}
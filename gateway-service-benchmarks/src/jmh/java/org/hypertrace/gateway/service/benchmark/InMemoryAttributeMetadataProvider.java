@@ -0,0 +1,39 @@
+package org.hypertrace.gateway.service.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.RequestContext;
+
+/** Serves a fixed set of attributes, so that benchmarks don't depend on attribute service. */
+public class InMemoryAttributeMetadataProvider extends AttributeMetadataProvider {
+  private final Map<String, Map<String, AttributeMetadata>> attributesByIdByScope;
+
+  public InMemoryAttributeMetadataProvider(List<AttributeMetadata> attributes) {
+    super(null);
+    this.attributesByIdByScope =
+        attributes.stream()
+            .collect(
+                Collectors.groupingBy(
+                    AttributeMetadata::getScopeString,
+                    Collectors.toUnmodifiableMap(AttributeMetadata::getId, Function.identity())));
+  }
+
+  @Override
+  public Map<String, AttributeMetadata> getAttributesMetadata(
+      RequestContext requestContext, String attributeScope) {
+    return attributesByIdByScope.getOrDefault(attributeScope, Map.of());
+  }
+
+  @Override
+  public Optional<AttributeMetadata> getAttributeMetadata(
+      RequestContext requestContext, String scope, String key) {
+    return getAttributesMetadata(requestContext, scope).values().stream()
+        .filter(attributeMetadata -> attributeMetadata.getKey().equals(key))
+        .findFirst();
+  }
+}
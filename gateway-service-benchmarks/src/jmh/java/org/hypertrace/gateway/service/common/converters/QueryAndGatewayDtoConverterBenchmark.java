@@ -0,0 +1,81 @@
+package org.hypertrace.gateway.service.common.converters;
+
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.core.query.service.api.ValueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Conversion of the cells of a query service result to gateway values. Pinot returns most values as
+ * strings, which are converted to the value kind of their attribute.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryAndGatewayDtoConverterBenchmark {
+  private static final AttributeMetadata[] COLUMN_ATTRIBUTES = {
+    AttributeMetadata.newBuilder()
+        .setId("API.name")
+        .setValueKind(AttributeKind.TYPE_STRING)
+        .build(),
+    AttributeMetadata.newBuilder()
+        .setId("API.startTime")
+        .setValueKind(AttributeKind.TYPE_TIMESTAMP)
+        .build(),
+    AttributeMetadata.newBuilder()
+        .setId("API.numCalls")
+        .setValueKind(AttributeKind.TYPE_INT64)
+        .build(),
+    AttributeMetadata.newBuilder()
+        .setId("API.duration")
+        .setValueKind(AttributeKind.TYPE_DOUBLE)
+        .build()
+  };
+
+  @Param({"1000", "10000", "100000"})
+  public int rowCount;
+
+  private Value[] values;
+
+  @Setup
+  public void setup() {
+    values = new Value[rowCount * COLUMN_ATTRIBUTES.length];
+    for (int row = 0; row < rowCount; row++) {
+      int cell = row * COLUMN_ATTRIBUTES.length;
+      values[cell] = stringValue("api-" + row);
+      values[cell + 1] = stringValue(String.valueOf(1_600_000_000_000L + row * 60_000L));
+      values[cell + 2] = stringValue(String.valueOf(row % 1000));
+      values[cell + 3] = stringValue(String.valueOf(row * 0.25));
+    }
+  }
+
+  @Benchmark
+  public void convertWithAttributeMetadata(Blackhole blackhole) {
+    for (int i = 0; i < values.length; i++) {
+      blackhole.consume(
+          QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+              values[i], COLUMN_ATTRIBUTES[i % COLUMN_ATTRIBUTES.length]));
+    }
+  }
+
+  @Benchmark
+  public void convertWithoutAttributeMetadata(Blackhole blackhole) {
+    for (Value value : values) {
+      blackhole.consume(QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(value));
+    }
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+}
@@ -0,0 +1,104 @@
+package org.hypertrace.gateway.service.entity.query;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.gateway.service.benchmark.Fixtures;
+import org.hypertrace.gateway.service.benchmark.InMemoryAttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
+import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.v1.common.Filter;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Operator;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.SortOrder;
+import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building of the execution tree of an entities request selecting attributes and metrics from both
+ * entity data service and query service. The size of the tree depends on the filter rather than on
+ * the number of rows, so the request is sized by its number of filter clauses, which alternate
+ * between the two sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecutionTreeBuilderBenchmark {
+  @Param({"1", "10", "100"})
+  public int filterCount;
+
+  private InMemoryAttributeMetadataProvider attributeMetadataProvider;
+  private EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private EntitiesRequestContext entitiesRequestContext;
+  private EntitiesRequest entitiesRequest;
+
+  @Setup
+  public void setup() {
+    attributeMetadataProvider = Fixtures.attributeMetadataProvider();
+    entityIdColumnsConfigs = new EntityIdColumnsConfigs(Map.of(AttributeScope.API.name(), "id"));
+    entitiesRequestContext =
+        new EntitiesRequestContext(
+            Fixtures.TENANT_ID,
+            Fixtures.START_TIME_MILLIS,
+            Fixtures.END_TIME_MILLIS,
+            AttributeScope.API.name(),
+            Fixtures.API_START_TIME_ATTR,
+            Map.of());
+
+    Filter.Builder filter = Filter.newBuilder().setOperator(Operator.AND);
+    for (int i = 0; i < filterCount; i++) {
+      filter.addChildFilter(
+          i % 2 == 0
+              ? Filter.newBuilder()
+                  .setLhs(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_TYPE_ATTR))
+                  .setOperator(Operator.NEQ)
+                  .setRhs(QueryExpressionUtil.getLiteralExpression("type-" + i))
+              : Filter.newBuilder()
+                  .setLhs(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_NUM_CALLS_ATTR))
+                  .setOperator(Operator.GT)
+                  .setRhs(QueryExpressionUtil.getLiteralExpression((long) i)));
+    }
+    entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType(AttributeScope.API.name())
+            .setStartTimeMillis(Fixtures.START_TIME_MILLIS)
+            .setEndTimeMillis(Fixtures.END_TIME_MILLIS)
+            .addSelection(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_ID_ATTR))
+            .addSelection(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_NAME_ATTR))
+            .addSelection(
+                QueryExpressionUtil.getAggregateFunctionExpression(
+                    Fixtures.API_NUM_CALLS_ATTR, FunctionType.SUM, Fixtures.NUM_CALLS_ALIAS))
+            .setFilter(filter)
+            .addOrderBy(
+                OrderByExpression.newBuilder()
+                    .setOrder(SortOrder.DESC)
+                    .setExpression(
+                        QueryExpressionUtil.getAggregateFunctionExpression(
+                            Fixtures.API_NUM_CALLS_ATTR,
+                            FunctionType.SUM,
+                            Fixtures.NUM_CALLS_ALIAS)))
+            .setLimit(50)
+            .build();
+  }
+
+  // The execution context is updated while building the tree, so it is built for every tree
+  @Benchmark
+  public QueryNode build() {
+    return new ExecutionTreeBuilder(
+            new EntityExecutionContext(
+                attributeMetadataProvider,
+                entityIdColumnsConfigs,
+                entitiesRequestContext,
+                entitiesRequest))
+        .build();
+  }
+}
@@ -0,0 +1,56 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.gateway.service.benchmark.Fixtures;
+import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
+import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Merge of the responses of the children of the AND and OR nodes of an entities execution tree. The
+ * two responses hold rowCount entities each, half of which are in both.
+ *
+ * <p>Merging updates the entity builders of the first response, but as the entities only hold map
+ * fields merging the same entities again leaves them unchanged, so the fixtures are reused across
+ * invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecutionVisitorBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int rowCount;
+
+  private List<EntityResponse> entityResponses;
+
+  @Setup
+  public void setup() {
+    entityResponses =
+        List.of(
+            entityResponse(new EntityFetcherResponse(Fixtures.apiEntities(0, rowCount))),
+            entityResponse(
+                new EntityFetcherResponse(Fixtures.apiEntities(rowCount / 2, rowCount))));
+  }
+
+  @Benchmark
+  public EntityResponse union() {
+    return ExecutionVisitor.union(entityResponses);
+  }
+
+  @Benchmark
+  public EntityResponse intersect() {
+    return ExecutionVisitor.intersect(entityResponses);
+  }
+
+  private static EntityResponse entityResponse(EntityFetcherResponse entityFetcherResponse) {
+    return new EntityResponse(entityFetcherResponse, entityFetcherResponse.size());
+  }
+}
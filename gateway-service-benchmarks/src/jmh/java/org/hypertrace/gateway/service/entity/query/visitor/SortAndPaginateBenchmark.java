@@ -0,0 +1,81 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.gateway.service.benchmark.Fixtures;
+import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
+import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sorting and pagination of the entities fetched for an entities request, ordered by a metric and
+ * then by an attribute like the entities list of the UI, and limited to a page of 50 entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortAndPaginateBenchmark {
+  private static final int LIMIT = 50;
+  private static final int OFFSET = 100;
+
+  @Param({"1000", "10000", "100000"})
+  public int rowCount;
+
+  private ExecutionVisitor executionVisitor;
+  private SortAndPaginateNode sortAndPaginateNode;
+
+  @Setup
+  public void setup() {
+    EntityFetcherResponse entityFetcherResponse =
+        new EntityFetcherResponse(Fixtures.apiEntities(0, rowCount));
+    EntityResponse entityResponse =
+        new EntityResponse(entityFetcherResponse, entityFetcherResponse.size());
+    // The child of the sort node returns the fetched entities
+    executionVisitor =
+        new ExecutionVisitor(null, null, Runnable::run, InListSharder.disabled()) {
+          @Override
+          public CompletableFuture<EntityResponse> visit(NoOpNode noOpNode) {
+            return CompletableFuture.completedFuture(entityResponse);
+          }
+        };
+    sortAndPaginateNode =
+        new SortAndPaginateNode(
+            new NoOpNode(),
+            LIMIT,
+            OFFSET,
+            List.of(
+                OrderByExpression.newBuilder()
+                    .setOrder(SortOrder.DESC)
+                    .setExpression(
+                        QueryExpressionUtil.getAggregateFunctionExpression(
+                            Fixtures.API_NUM_CALLS_ATTR,
+                            FunctionType.SUM,
+                            Fixtures.NUM_CALLS_ALIAS))
+                    .build(),
+                OrderByExpression.newBuilder()
+                    .setOrder(SortOrder.ASC)
+                    .setExpression(
+                        QueryExpressionUtil.buildAttributeExpression(Fixtures.API_NAME_ATTR))
+                    .build()));
+  }
+
+  @Benchmark
+  public EntityResponse sortAndPaginate() {
+    return executionVisitor.visit(sortAndPaginateNode).join();
+  }
+}
@@ -0,0 +1,105 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.core.query.service.api.ValueType;
+import org.hypertrace.gateway.service.benchmark.Fixtures;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Conversion of the rows of a query service result to an explore response, for a grouped
+ * aggregation returning rowCount groups. Query service is replaced by a client returning the result
+ * right away, so only the request building and the response handling are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestHandlerBenchmark {
+  @Param({"1000", "10000", "100000"})
+  public int rowCount;
+
+  private RequestHandler requestHandler;
+  private ExploreRequest exploreRequest;
+
+  @Setup
+  public void setup() {
+    exploreRequest =
+        ExploreRequest.newBuilder()
+            .setContext(AttributeScope.API.name())
+            .setStartTimeMillis(Fixtures.START_TIME_MILLIS)
+            .setEndTimeMillis(Fixtures.END_TIME_MILLIS)
+            .addSelection(
+                QueryExpressionUtil.getAggregateFunctionExpression(
+                    Fixtures.API_DURATION_ATTR, FunctionType.AVG, Fixtures.DURATION_AVG_ALIAS))
+            .addSelection(
+                QueryExpressionUtil.getAggregateFunctionExpression(
+                    Fixtures.API_NUM_CALLS_ATTR, FunctionType.SUM, Fixtures.NUM_CALLS_ALIAS))
+            .addGroupBy(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_NAME_ATTR))
+            .addGroupBy(QueryExpressionUtil.buildAttributeExpression(Fixtures.API_TYPE_ATTR))
+            .setLimit(rowCount)
+            .setGroupLimit(rowCount)
+            .build();
+
+    List<ResultSetChunk> result = List.of(buildResult());
+    requestHandler =
+        new RequestHandler(
+            (request, requestHeaders, timeoutMillis) -> CompletableFuture.completedFuture(result),
+            10_000,
+            Fixtures.attributeMetadataProvider());
+  }
+
+  @Benchmark
+  public ExploreResponse.Builder handleRequest() {
+    return requestHandler.handleRequest(
+        new ExploreRequestContext(Fixtures.TENANT_ID, exploreRequest, Map.of()), exploreRequest);
+  }
+
+  // Pinot returns all the values as strings
+  private ResultSetChunk buildResult() {
+    ResultSetChunk.Builder chunkBuilder =
+        ResultSetChunk.newBuilder()
+            .setIsLastChunk(true)
+            .setResultSetMetadata(
+                ResultSetMetadata.newBuilder()
+                    .addColumnMetadata(column(Fixtures.API_NAME_ATTR))
+                    .addColumnMetadata(column(Fixtures.API_TYPE_ATTR))
+                    .addColumnMetadata(column(Fixtures.DURATION_AVG_ALIAS))
+                    .addColumnMetadata(column(Fixtures.NUM_CALLS_ALIAS)));
+    for (int i = 0; i < rowCount; i++) {
+      chunkBuilder.addRow(
+          Row.newBuilder()
+              .addColumn(stringValue("GET /api/v1/resource/" + i))
+              .addColumn(stringValue(i % 2 == 0 ? "HTTP" : "GRPC"))
+              .addColumn(stringValue(String.valueOf(i * 13 % 2000 / 3.0)))
+              .addColumn(stringValue(String.valueOf(i * 7L % 1000))));
+    }
+    return chunkBuilder.build();
+  }
+
+  private static ColumnMetadata.Builder column(String columnName) {
+    return ColumnMetadata.newBuilder().setColumnName(columnName).setValueType(ValueType.STRING);
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+}
@@ -17,6 +17,7 @@ dependencies {
   implementation("org.hypertrace.entity.service:entity-service-client:0.8.27")
   implementation("org.hypertrace.entity.service:entity-service-api:0.8.27")
   implementation("org.hypertrace.core.grpcutils:grpc-context-utils:0.7.1")
+  implementation("org.hypertrace.core.grpcutils:grpc-client-utils:0.7.1")
   implementation("org.hypertrace.core.serviceframework:platform-metrics:0.1.33")
 
   // Config
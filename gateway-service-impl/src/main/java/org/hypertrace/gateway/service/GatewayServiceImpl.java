@@ -1,33 +1,49 @@
 package org.hypertrace.gateway.service;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ServiceException;
 import com.typesafe.config.Config;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.client.config.AttributeServiceClientConfig;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
-import org.hypertrace.core.query.service.client.QueryServiceConfig;
 import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.entity.service.client.config.EntityServiceClientConfig;
+import org.hypertrace.gateway.service.baseline.BaselineSeriesMaterializer;
 import org.hypertrace.gateway.service.baseline.BaselineService;
 import org.hypertrace.gateway.service.baseline.BaselineServiceImpl;
 import org.hypertrace.gateway.service.baseline.BaselineServiceQueryExecutor;
 import org.hypertrace.gateway.service.baseline.BaselineServiceQueryParser;
+import org.hypertrace.gateway.service.baseline.store.BaselineStore;
+import org.hypertrace.gateway.service.baseline.store.BaselineStoreConfig;
+import org.hypertrace.gateway.service.common.AttributeMetadataConfig;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
+import org.hypertrace.gateway.service.common.client.RequestCoalescingConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownConfig;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
+import org.hypertrace.gateway.service.common.sharding.InListShardingConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
 import org.hypertrace.gateway.service.entity.EntityService;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
 import org.hypertrace.gateway.service.executor.QueryExecutorConfig;
 import org.hypertrace.gateway.service.executor.QueryExecutorServiceFactory;
 import org.hypertrace.gateway.service.explore.ExploreService;
+import org.hypertrace.gateway.service.explore.GroupedTimeAggregationsConfig;
 import org.hypertrace.gateway.service.logevent.LogEventsService;
 import org.hypertrace.gateway.service.span.SpanService;
 import org.hypertrace.gateway.service.trace.TracesService;
@@ -35,7 +51,6 @@ import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesRequest;
 import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.BulkUpdateEntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.BulkUpdateEntitiesResponse;
-import org.hypertrace.gateway.service.v1.entity.EntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.UpdateEntityRequest;
 import org.hypertrace.gateway.service.v1.entity.UpdateEntityResponse;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
@@ -58,7 +73,10 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
   private static final Logger LOG = LoggerFactory.getLogger(GatewayServiceImpl.class);
 
   private static final String QUERY_SERVICE_CONFIG_KEY = "query.service.config";
+  private static final String ENTITY_SERVICE_CONFIG_KEY = "entity.service.config";
   private static final String REQUEST_TIMEOUT_CONFIG_KEY = "request.timeout";
+  private static final String QUERY_SERVICE_HOST_CONFIG_KEY = "host";
+  private static final String QUERY_SERVICE_PORT_CONFIG_KEY = "port";
   private static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
 
   private final TracesService traceService;
@@ -75,13 +93,33 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
             .usePlaintext()
             .build();
     AttributeServiceClient asClient = new AttributeServiceClient(attributeServiceChannel);
-    AttributeMetadataProvider attributeMetadataProvider = new AttributeMetadataProvider(asClient);
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            asClient,
+            AttributeMetadataConfig.from(appConfig),
+            Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("attribute-metadata-refresh-%d")
+                    .build()));
+    attributeMetadataProvider.warmUp();
     EntityIdColumnsConfigs entityIdColumnsConfigs = EntityIdColumnsConfigs.fromConfig(appConfig);
 
     Config qsConfig = appConfig.getConfig(QUERY_SERVICE_CONFIG_KEY);
-    QueryServiceClient queryServiceClient =
-        new QueryServiceClient(new QueryServiceConfig(qsConfig));
     int qsRequestTimeout = getRequestTimeoutMillis(qsConfig);
+    // The streaming and the async clients share a single connection to query service
+    ManagedChannel queryServiceChannel =
+        ManagedChannelBuilder.forAddress(
+                qsConfig.getString(QUERY_SERVICE_HOST_CONFIG_KEY),
+                qsConfig.getInt(QUERY_SERVICE_PORT_CONFIG_KEY))
+            .usePlaintext()
+            .build();
+    QueryServiceStreamingClient queryServiceClient =
+        QueryServiceStreamingClient.fromChannel(queryServiceChannel);
+    RequestCoalescingConfig requestCoalescingConfig = RequestCoalescingConfig.from(appConfig);
+    QueryServiceAsyncClient queryServiceAsyncClient =
+        QueryServiceAsyncClient.coalescing(
+            QueryServiceAsyncClient.fromChannel(queryServiceChannel), requestCoalescingConfig);
     ExecutorService queryExecutor =
         QueryExecutorServiceFactory.buildExecutorService(QueryExecutorConfig.from(appConfig));
 
@@ -91,9 +129,18 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
             .usePlaintext()
             .build();
     EntityQueryServiceClient eqsClient = new EntityQueryServiceClient(entityServiceChannel);
+    EntityQueryServiceAsyncClient eqsAsyncClient =
+        EntityQueryServiceAsyncClient.coalescing(
+            EntityQueryServiceAsyncClient.fromChannel(
+                entityServiceChannel,
+                getRequestTimeoutMillis(appConfig.getConfig(ENTITY_SERVICE_CONFIG_KEY))),
+            requestCoalescingConfig);
 
     ScopeFilterConfigs scopeFilterConfigs = new ScopeFilterConfigs(appConfig);
     LogConfig logConfig = new LogConfig(appConfig);
+    ResultCacheConfig resultCacheConfig = ResultCacheConfig.from(appConfig);
+    InListShardingConfig inListShardingConfig = InListShardingConfig.from(appConfig);
+    TimeRangeShardingConfig timeRangeShardingConfig = TimeRangeShardingConfig.from(appConfig);
     this.traceService =
         new TracesService(
             queryServiceClient,
@@ -106,34 +153,51 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
             queryServiceClient, qsRequestTimeout, attributeMetadataProvider, queryExecutor);
     this.entityService =
         new EntityService(
-            queryServiceClient,
+            queryServiceAsyncClient,
             qsRequestTimeout,
             eqsClient,
+            eqsAsyncClient,
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
             logConfig,
-            queryExecutor);
+            queryExecutor,
+            resultCacheConfig,
+            inListShardingConfig,
+            timeRangeShardingConfig);
     this.exploreService =
         new ExploreService(
-            queryServiceClient,
+            queryServiceAsyncClient,
             qsRequestTimeout,
-            eqsClient,
+            eqsAsyncClient,
             attributeMetadataProvider,
             scopeFilterConfigs,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            resultCacheConfig,
+            GroupedTimeAggregationsConfig.from(appConfig),
+            GroupByPushdownConfig.from(appConfig),
+            timeRangeShardingConfig,
+            queryExecutor);
     BaselineServiceQueryParser baselineServiceQueryParser =
         new BaselineServiceQueryParser(attributeMetadataProvider);
     BaselineServiceQueryExecutor baselineServiceQueryExecutor =
-        new BaselineServiceQueryExecutor(qsRequestTimeout, queryServiceClient);
+        new BaselineServiceQueryExecutor(qsRequestTimeout, queryServiceAsyncClient);
+    BaselineStoreConfig baselineStoreConfig = BaselineStoreConfig.from(appConfig);
     this.baselineService =
         new BaselineServiceImpl(
             attributeMetadataProvider,
             baselineServiceQueryParser,
             baselineServiceQueryExecutor,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            queryExecutor,
+            new BaselineSeriesMaterializer(
+                BaselineStore.create(baselineStoreConfig),
+                baselineStoreConfig.getIngestionDelay(),
+                queryExecutor),
+            new InListSharder("baselines", inListShardingConfig));
     this.logEventsService =
-        new LogEventsService(queryServiceClient, qsRequestTimeout, attributeMetadataProvider);
+        new LogEventsService(
+            queryServiceClient, qsRequestTimeout, attributeMetadataProvider, queryExecutor);
   }
 
   private static int getRequestTimeoutMillis(Config config) {
@@ -201,6 +265,82 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
     }
   }
 
+  @Override
+  public void streamTraces(
+      org.hypertrace.gateway.service.v1.trace.TracesRequest request,
+      io.grpc.stub.StreamObserver<org.hypertrace.gateway.service.v1.trace.TracesResponse>
+          responseObserver) {
+    Optional<String> tenantId =
+        org.hypertrace.core.grpcutils.context.RequestContext.CURRENT.get().getTenantId();
+    if (tenantId.isEmpty()) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
+
+    try {
+      RequestContext requestContext =
+          new RequestContext(
+              tenantId.get(),
+              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                  .get()
+                  .getRequestHeaders());
+
+      traceService
+          .streamTracesByFilter(
+              requestContext,
+              request,
+              (ServerCallStreamObserver<org.hypertrace.gateway.service.v1.trace.TracesResponse>)
+                  responseObserver)
+          .whenComplete(
+              (ignored, throwable) -> {
+                if (throwable != null) {
+                  LOG.error("Error while streaming traces for request: {}", request, throwable);
+                }
+              });
+    } catch (Exception e) {
+      LOG.error("Error while handling traces request: {}", request, e);
+      responseObserver.onError(e);
+    }
+  }
+
+  @Override
+  public void streamSpans(
+      org.hypertrace.gateway.service.v1.span.SpansRequest request,
+      io.grpc.stub.StreamObserver<org.hypertrace.gateway.service.v1.span.SpansResponse>
+          responseObserver) {
+    Optional<String> tenantId =
+        org.hypertrace.core.grpcutils.context.RequestContext.CURRENT.get().getTenantId();
+    if (tenantId.isEmpty()) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
+
+    try {
+      RequestContext context =
+          new RequestContext(
+              tenantId.get(),
+              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                  .get()
+                  .getRequestHeaders());
+
+      spanService
+          .streamSpansByFilter(
+              context,
+              request,
+              (ServerCallStreamObserver<org.hypertrace.gateway.service.v1.span.SpansResponse>)
+                  responseObserver)
+          .whenComplete(
+              (ignored, throwable) -> {
+                if (throwable != null) {
+                  LOG.error("Error while streaming spans for request: {}", request, throwable);
+                }
+              });
+    } catch (Exception e) {
+      LOG.error("Error while handling spans request: {}", request, e);
+      responseObserver.onError(e);
+    }
+  }
+
   @Override
   public void getEntities(
       org.hypertrace.gateway.service.v1.entity.EntitiesRequest request,
@@ -229,18 +369,30 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
               && request.getStartTimeMillis() < request.getEndTimeMillis(),
           "Invalid time range. Both start and end times have to be valid timestamps.");
 
-      EntitiesResponse response =
-          entityService.getEntities(
+      entityService
+          .getEntitiesAsync(
               tenantId.get(),
               request,
               org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
                   .get()
-                  .getRequestHeaders());
-
-      LOG.debug("Received response: {}", response);
-
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
+                  .getRequestHeaders())
+          .whenComplete(
+              (response, throwable) -> {
+                if (throwable != null) {
+                  Throwable cause =
+                      throwable instanceof CompletionException && throwable.getCause() != null
+                          ? throwable.getCause()
+                          : throwable;
+                  LOG.error("Error while handling entities request: {}.", request, cause);
+                  responseObserver.onError(cause);
+                  return;
+                }
+
+                LOG.debug("Received response: {}", response);
+
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+              });
     } catch (Exception e) {
       LOG.error("Error while handling entities request: {}.", request, e);
       responseObserver.onError(e);
@@ -269,6 +421,8 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
               org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
                   .get()
                   .getRequestHeaders());
+      // The explore responses on the entities may include the attributes just updated.
+      exploreService.invalidateCache(tenantId.get());
 
       if (LOG.isDebugEnabled()) {
         LOG.debug("Received response: {}", response);
@@ -301,6 +455,7 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
               org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
                   .get()
                   .getRequestHeaders());
+      exploreService.invalidateCache(tenantId);
 
       LOG.debug("Received response: {}", response);
       responseObserver.onNext(response);
@@ -390,4 +545,37 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       responseObserver.onError(e);
     }
   }
+
+  @Override
+  public void streamLogEvents(
+      LogEventsRequest request, StreamObserver<LogEventsResponse> responseObserver) {
+    Optional<String> tenantId =
+        org.hypertrace.core.grpcutils.context.RequestContext.CURRENT.get().getTenantId();
+    if (tenantId.isEmpty()) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
+
+    try {
+      RequestContext context =
+          new RequestContext(
+              tenantId.get(),
+              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                  .get()
+                  .getRequestHeaders());
+
+      logEventsService
+          .streamLogEventsByFilter(
+              context, request, (ServerCallStreamObserver<LogEventsResponse>) responseObserver)
+          .whenComplete(
+              (ignored, throwable) -> {
+                if (throwable != null) {
+                  LOG.error("Error while streaming logEvents for request: {}", request, throwable);
+                }
+              });
+    } catch (Exception e) {
+      LOG.error("Error while handling logEvents request: {}", request, e);
+      responseObserver.onError(e);
+    }
+  }
 }
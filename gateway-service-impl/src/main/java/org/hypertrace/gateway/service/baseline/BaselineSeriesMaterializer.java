@@ -0,0 +1,383 @@
+package org.hypertrace.gateway.service.baseline;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.hypertrace.gateway.service.baseline.lib.BaselineCalculator;
+import org.hypertrace.gateway.service.baseline.store.BaselineStore;
+import org.hypertrace.gateway.service.baseline.store.BaselineStoreKey;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.v1.baseline.Baseline;
+import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesResponse;
+import org.hypertrace.gateway.service.v1.baseline.BaselineEntity;
+import org.hypertrace.gateway.service.v1.baseline.BaselineInterval;
+import org.hypertrace.gateway.service.v1.baseline.BaselineMetricSeries;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+
+/**
+ * Gets the metric series baselines are computed from, reusing the values of the days which are in
+ * the baseline store, and storing the days which are over.
+ *
+ * <p>A baseline is computed from the values of all the buckets of the series, in no particular
+ * order. A median can't be computed from partial results, so the store keeps the values of the
+ * buckets of each day, per entity and aggregation. Days are only stored when the period divides a
+ * day, so that no bucket spans two days, and once they ended more than the ingestion delay ago. The
+ * part of the series before its first whole day, and the part from the first day that isn't stored,
+ * typically today, are queried and merged with the stored values.
+ *
+ * <p>The store is read and written a day at a time, on the given executor, as it may block.
+ */
+public class BaselineSeriesMaterializer {
+  static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  private final BaselineStore baselineStore;
+  private final Duration ingestionDelay;
+  private final Executor executor;
+  private final Clock clock;
+
+  /** Queries and parses the metric series of the requested entities over a time range. */
+  @FunctionalInterface
+  public interface TimeRangeQuery {
+    CompletableFuture<BaselineEntitiesResponse> execute(long startTimeMillis, long endTimeMillis);
+  }
+
+  public BaselineSeriesMaterializer(
+      BaselineStore baselineStore, Duration ingestionDelay, Executor executor) {
+    this(baselineStore, ingestionDelay, executor, Clock.systemUTC());
+  }
+
+  BaselineSeriesMaterializer(
+      BaselineStore baselineStore, Duration ingestionDelay, Executor executor, Clock clock) {
+    this.baselineStore = baselineStore;
+    this.ingestionDelay = ingestionDelay;
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  /**
+   * Metric series of the entities over [startTimeMillis, endTimeMillis), by alias of their
+   * aggregation function. Entities are only stored when identified by a single attribute, the ids
+   * of the response being the requested ids.
+   *
+   * @param functionsByAlias aggregation functions of the series, by the alias of their values
+   * @param singleIdAttribute whether entities are identified by a single attribute
+   * @param query queries the series over a time range, with the rest of the query unchanged
+   */
+  public CompletableFuture<BaselineEntitiesResponse> getMetricSeries(
+      String tenantId,
+      String entityType,
+      List<String> entityIds,
+      Map<String, FunctionExpression> functionsByAlias,
+      boolean singleIdAttribute,
+      long periodSecs,
+      long startTimeMillis,
+      long endTimeMillis,
+      TimeRangeQuery query) {
+    long periodMillis = TimeUnit.SECONDS.toMillis(periodSecs);
+    if (!baselineStore.isEnabled()
+        || !singleIdAttribute
+        || entityIds.isEmpty()
+        || periodMillis <= 0
+        || DAY_IN_MILLIS % periodMillis != 0) {
+      return query.execute(startTimeMillis, endTimeMillis);
+    }
+
+    long firstDayStartTimeMillis = alignToDay(startTimeMillis, true);
+    long closedDaysEndTimeMillis =
+        Math.min(
+            alignToDay(endTimeMillis, false),
+            alignToDay(clock.millis() - ingestionDelay.toMillis(), false));
+    if (firstDayStartTimeMillis >= closedDaysEndTimeMillis) {
+      return query.execute(startTimeMillis, endTimeMillis);
+    }
+
+    SeriesContext context =
+        new SeriesContext(
+            tenantId, entityType, Set.copyOf(entityIds), functionsByAlias, periodSecs);
+    Map<String, Map<String, List<double[]>>> storedValues = new HashMap<>();
+    return CompletableFuture.supplyAsync(
+            () ->
+                readStoredDays(
+                    context, firstDayStartTimeMillis, closedDaysEndTimeMillis, storedValues),
+            executor)
+        .thenCompose(
+            storedEndTimeMillis ->
+                queryNotStoredDays(
+                    context,
+                    storedValues,
+                    storedEndTimeMillis,
+                    firstDayStartTimeMillis,
+                    closedDaysEndTimeMillis,
+                    startTimeMillis,
+                    endTimeMillis,
+                    query));
+  }
+
+  /** Queries the parts of the series which aren't stored and merges them with the stored days. */
+  private CompletableFuture<BaselineEntitiesResponse> queryNotStoredDays(
+      SeriesContext context,
+      Map<String, Map<String, List<double[]>>> storedValues,
+      long storedEndTimeMillis,
+      long firstDayStartTimeMillis,
+      long closedDaysEndTimeMillis,
+      long startTimeMillis,
+      long endTimeMillis,
+      TimeRangeQuery query) {
+    if (storedEndTimeMillis == firstDayStartTimeMillis) {
+      return query
+          .execute(startTimeMillis, endTimeMillis)
+          .thenApplyAsync(
+              response -> {
+                storeDays(context, response, firstDayStartTimeMillis, closedDaysEndTimeMillis);
+                return response;
+              },
+              executor);
+    }
+
+    // The buckets of the query before the first day are the same as in a query of the whole series,
+    // as no bucket spans two days
+    CompletableFuture<BaselineEntitiesResponse> firstPartialDay =
+        startTimeMillis < firstDayStartTimeMillis
+            ? query.execute(startTimeMillis, firstDayStartTimeMillis)
+            : CompletableFuture.completedFuture(BaselineEntitiesResponse.getDefaultInstance());
+    CompletableFuture<BaselineEntitiesResponse> notStoredDays =
+        storedEndTimeMillis < endTimeMillis
+            ? query.execute(storedEndTimeMillis, endTimeMillis)
+            : CompletableFuture.completedFuture(BaselineEntitiesResponse.getDefaultInstance());
+    return firstPartialDay.thenCombineAsync(
+        notStoredDays,
+        (firstPartialDayResponse, notStoredDaysResponse) -> {
+          storeDays(context, notStoredDaysResponse, storedEndTimeMillis, closedDaysEndTimeMillis);
+          return merge(
+              context.entityType, firstPartialDayResponse, storedValues, notStoredDaysResponse);
+        },
+        executor);
+  }
+
+  /**
+   * Reads the days from the first one, as long as the values of all the entities and functions are
+   * stored, and returns the end of the last day read. Each day is read at once.
+   */
+  private long readStoredDays(
+      SeriesContext context,
+      long firstDayStartTimeMillis,
+      long endTimeMillis,
+      Map<String, Map<String, List<double[]>>> storedValues) {
+    long dayStartTimeMillis = firstDayStartTimeMillis;
+    while (dayStartTimeMillis < endTimeMillis) {
+      List<BaselineStoreKey> keys = new ArrayList<>();
+      for (String entityId : context.entityIds) {
+        for (FunctionExpression function : context.functionsByAlias.values()) {
+          keys.add(context.getKey(entityId, function, dayStartTimeMillis));
+        }
+      }
+      Map<BaselineStoreKey, double[]> dayValues = baselineStore.getAll(keys);
+      if (dayValues.size() < keys.size()) {
+        return dayStartTimeMillis;
+      }
+      for (String entityId : context.entityIds) {
+        for (Map.Entry<String, FunctionExpression> function : context.functionsByAlias.entrySet()) {
+          storedValues
+              .computeIfAbsent(entityId, ignored -> new HashMap<>())
+              .computeIfAbsent(function.getKey(), ignored -> new ArrayList<>())
+              .add(
+                  dayValues.get(context.getKey(entityId, function.getValue(), dayStartTimeMillis)));
+        }
+      }
+      dayStartTimeMillis += DAY_IN_MILLIS;
+    }
+    return dayStartTimeMillis;
+  }
+
+  /** Stores the values of the days in [fromTimeMillis, toTimeMillis) of the response. */
+  private void storeDays(
+      SeriesContext context,
+      BaselineEntitiesResponse response,
+      long fromTimeMillis,
+      long toTimeMillis) {
+    int dayCount = (int) ((toTimeMillis - fromTimeMillis) / DAY_IN_MILLIS);
+    if (dayCount <= 0 || isTruncated(response)) {
+      return;
+    }
+
+    Map<String, BaselineEntity> entitiesById = new HashMap<>();
+    response.getBaselineEntityList().forEach(entity -> entitiesById.put(entity.getId(), entity));
+    List<Map<BaselineStoreKey, double[]>> valuesByDay = new ArrayList<>(dayCount);
+    for (int day = 0; day < dayCount; day++) {
+      valuesByDay.add(new HashMap<>());
+    }
+    for (String entityId : context.entityIds) {
+      BaselineEntity entity = entitiesById.get(entityId);
+      for (Map.Entry<String, FunctionExpression> function : context.functionsByAlias.entrySet()) {
+        BaselineMetricSeries series =
+            entity == null
+                ? BaselineMetricSeries.getDefaultInstance()
+                : entity.getBaselineMetricSeriesOrDefault(
+                    function.getKey(), BaselineMetricSeries.getDefaultInstance());
+        double[][] dayValues = splitByDay(series, fromTimeMillis, dayCount);
+        for (int day = 0; day < dayCount; day++) {
+          valuesByDay
+              .get(day)
+              .put(
+                  context.getKey(
+                      entityId, function.getValue(), fromTimeMillis + day * DAY_IN_MILLIS),
+                  dayValues[day]);
+        }
+      }
+    }
+    valuesByDay.forEach(baselineStore::putAll);
+  }
+
+  private static double[][] splitByDay(
+      BaselineMetricSeries series, long fromTimeMillis, int dayCount) {
+    int[] valueCounts = new int[dayCount];
+    for (BaselineInterval interval : series.getBaselineValueList()) {
+      int day = getDay(interval, fromTimeMillis, dayCount);
+      if (day >= 0) {
+        valueCounts[day]++;
+      }
+    }
+    double[][] dayValues = new double[dayCount][];
+    for (int day = 0; day < dayCount; day++) {
+      dayValues[day] = new double[valueCounts[day]];
+      valueCounts[day] = 0;
+    }
+    for (BaselineInterval interval : series.getBaselineValueList()) {
+      int day = getDay(interval, fromTimeMillis, dayCount);
+      if (day >= 0) {
+        dayValues[day][valueCounts[day]++] =
+            BaselineCalculator.getDoubleValue(interval.getBaseline().getValue());
+      }
+    }
+    return dayValues;
+  }
+
+  private static int getDay(BaselineInterval interval, long fromTimeMillis, int dayCount) {
+    long timeMillis = interval.getStartTimeMillis() - fromTimeMillis;
+    if (timeMillis < 0 || timeMillis >= dayCount * DAY_IN_MILLIS) {
+      return -1;
+    }
+    return (int) (timeMillis / DAY_IN_MILLIS);
+  }
+
+  /**
+   * A response of as many buckets as the query limit may be missing some, which would then be
+   * missing from all the later baselines computed from the stored days. Each row of the result
+   * holds a value of every series of an entity.
+   */
+  private static boolean isTruncated(BaselineEntitiesResponse response) {
+    long rowCount = 0;
+    for (BaselineEntity entity : response.getBaselineEntityList()) {
+      rowCount +=
+          entity.getBaselineMetricSeriesMap().values().stream()
+              .mapToInt(BaselineMetricSeries::getBaselineValueCount)
+              .max()
+              .orElse(0);
+    }
+    return rowCount >= QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT;
+  }
+
+  private static BaselineEntitiesResponse merge(
+      String entityType,
+      BaselineEntitiesResponse firstPartialDayResponse,
+      Map<String, Map<String, List<double[]>>> storedValues,
+      BaselineEntitiesResponse notStoredDaysResponse) {
+    Map<String, Map<String, BaselineMetricSeries.Builder>> seriesByEntityId = new LinkedHashMap<>();
+    addSeries(seriesByEntityId, firstPartialDayResponse);
+    storedValues.forEach(
+        (entityId, valuesByAlias) ->
+            valuesByAlias.forEach(
+                (alias, dayValues) -> {
+                  if (dayValues.stream().allMatch(values -> values.length == 0)) {
+                    return;
+                  }
+                  BaselineMetricSeries.Builder series =
+                      seriesByEntityId
+                          .computeIfAbsent(entityId, ignored -> new LinkedHashMap<>())
+                          .computeIfAbsent(alias, ignored -> BaselineMetricSeries.newBuilder());
+                  for (double[] values : dayValues) {
+                    for (double value : values) {
+                      series.addBaselineValue(toInterval(value));
+                    }
+                  }
+                }));
+    addSeries(seriesByEntityId, notStoredDaysResponse);
+
+    BaselineEntitiesResponse.Builder responseBuilder = BaselineEntitiesResponse.newBuilder();
+    seriesByEntityId.forEach(
+        (entityId, seriesByAlias) -> {
+          BaselineEntity.Builder entityBuilder =
+              BaselineEntity.newBuilder().setEntityType(entityType).setId(entityId);
+          seriesByAlias.forEach(
+              (alias, series) -> entityBuilder.putBaselineMetricSeries(alias, series.build()));
+          responseBuilder.addBaselineEntity(entityBuilder);
+        });
+    return responseBuilder.build();
+  }
+
+  private static void addSeries(
+      Map<String, Map<String, BaselineMetricSeries.Builder>> seriesByEntityId,
+      BaselineEntitiesResponse response) {
+    for (BaselineEntity entity : response.getBaselineEntityList()) {
+      Map<String, BaselineMetricSeries.Builder> seriesByAlias =
+          seriesByEntityId.computeIfAbsent(entity.getId(), ignored -> new LinkedHashMap<>());
+      entity
+          .getBaselineMetricSeriesMap()
+          .forEach(
+              (alias, series) ->
+                  seriesByAlias
+                      .computeIfAbsent(alias, ignored -> BaselineMetricSeries.newBuilder())
+                      .addAllBaselineValue(series.getBaselineValueList()));
+    }
+  }
+
+  private static BaselineInterval toInterval(double value) {
+    return BaselineInterval.newBuilder()
+        .setBaseline(
+            Baseline.newBuilder()
+                .setValue(Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value)))
+        .build();
+  }
+
+  private static long alignToDay(long timeMillis, boolean alignToNext) {
+    return QueryExpressionUtil.alignToPeriodBoundary(
+        timeMillis, TimeUnit.MILLISECONDS.toSeconds(DAY_IN_MILLIS), alignToNext);
+  }
+
+  private static class SeriesContext {
+    private final String tenantId;
+    private final String entityType;
+    private final Set<String> entityIds;
+    private final Map<String, FunctionExpression> functionsByAlias;
+    private final long periodSecs;
+
+    SeriesContext(
+        String tenantId,
+        String entityType,
+        Set<String> entityIds,
+        Map<String, FunctionExpression> functionsByAlias,
+        long periodSecs) {
+      this.tenantId = tenantId;
+      this.entityType = entityType;
+      this.entityIds = entityIds;
+      this.functionsByAlias = functionsByAlias;
+      this.periodSecs = periodSecs;
+    }
+
+    BaselineStoreKey getKey(String entityId, FunctionExpression function, long dayStartTimeMillis) {
+      return new BaselineStoreKey(
+          tenantId, entityType, entityId, function, periodSecs, dayStartTimeMillis);
+    }
+  }
+}
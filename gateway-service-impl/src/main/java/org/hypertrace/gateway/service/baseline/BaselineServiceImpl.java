@@ -1,23 +1,30 @@
 package org.hypertrace.gateway.service.baseline;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import java.nio.DoubleBuffer;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.QueryRequest;
-import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.gateway.service.baseline.lib.BaselineCalculator;
+import org.hypertrace.gateway.service.baseline.store.BaselineStore;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.baseline.Baseline;
 import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesRequest;
 import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesResponse;
@@ -29,7 +36,6 @@ import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.Period;
 import org.hypertrace.gateway.service.v1.common.TimeAggregation;
-import org.hypertrace.gateway.service.v1.common.Value;
 
 /**
  * This service calculates baseline values for an Entity across time range. This converts both
@@ -43,21 +49,48 @@ public class BaselineServiceImpl implements BaselineService {
       new BaselineEntitiesRequestValidator();
 
   protected static final long DAY_IN_MILLIS = 86400000L;
+  // The baselines of the entities of a response are computed in batches of this many entities
+  private static final int BASELINE_ENTITY_BATCH_SIZE = 64;
 
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final BaselineServiceQueryParser baselineServiceQueryParser;
   private final BaselineServiceQueryExecutor baselineServiceQueryExecutor;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final Executor queryExecutor;
+  private final BaselineSeriesMaterializer baselineSeriesMaterializer;
+  private final InListSharder inListSharder;
 
   public BaselineServiceImpl(
       AttributeMetadataProvider attributeMetadataProvider,
       BaselineServiceQueryParser baselineServiceQueryParser,
       BaselineServiceQueryExecutor baselineServiceQueryExecutor,
-      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      Executor queryExecutor) {
+    this(
+        attributeMetadataProvider,
+        baselineServiceQueryParser,
+        baselineServiceQueryExecutor,
+        entityIdColumnsConfigs,
+        queryExecutor,
+        new BaselineSeriesMaterializer(BaselineStore.disabled(), Duration.ZERO, queryExecutor),
+        InListSharder.disabled());
+  }
+
+  public BaselineServiceImpl(
+      AttributeMetadataProvider attributeMetadataProvider,
+      BaselineServiceQueryParser baselineServiceQueryParser,
+      BaselineServiceQueryExecutor baselineServiceQueryExecutor,
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      Executor queryExecutor,
+      BaselineSeriesMaterializer baselineSeriesMaterializer,
+      InListSharder inListSharder) {
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.baselineServiceQueryParser = baselineServiceQueryParser;
     this.baselineServiceQueryExecutor = baselineServiceQueryExecutor;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.queryExecutor = queryExecutor;
+    this.baselineSeriesMaterializer = baselineSeriesMaterializer;
+    this.inListSharder = inListSharder;
   }
 
   public BaselineEntitiesResponse getBaselineForEntities(
@@ -74,9 +107,17 @@ public class BaselineServiceImpl implements BaselineService {
     String timeColumn =
         AttributeMetadataUtil.getTimestampAttributeId(
             attributeMetadataProvider, requestContext, originalRequest.getEntityType());
-    Map<String, BaselineEntity> baselineEntityAggregatedMetricsMap = new HashMap<>();
-    Map<String, BaselineEntity> baselineEntityTimeSeriesMap = new HashMap<>();
+    List<String> entityIdAttributes =
+        AttributeMetadataUtil.getIdAttributeIds(
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            requestContext,
+            originalRequest.getEntityType());
 
+    // The aggregate and time series queries are independent, so they run concurrently. Both are
+    // built here, as building the aggregate query updates the request context both parsers read.
+    CompletableFuture<Map<String, BaselineEntity>> baselineEntityAggregatedMetricsFuture =
+        CompletableFuture.completedFuture(Map.of());
     if (originalRequest.getBaselineAggregateRequestCount() > 0) {
       // Aggregated Functions data
       Period aggTimePeriod =
@@ -91,35 +132,22 @@ public class BaselineServiceImpl implements BaselineService {
       // Take more data to calculate baseline and standard deviation.
       long seriesStartTime = getUpdatedStartTime(aggStartTime, aggEndTime);
       long seriesEndTime = aggStartTime;
-      List<String> entityIdAttributes =
-          AttributeMetadataUtil.getIdAttributeIds(
-              attributeMetadataProvider,
-              entityIdColumnsConfigs,
-              requestContext,
-              originalRequest.getEntityType());
-      QueryRequest aggQueryRequest =
-          baselineServiceQueryParser.getQueryRequest(
-              seriesStartTime,
-              seriesEndTime,
-              originalRequest.getEntityIdsList(),
-              timeColumn,
-              timeAggregations,
-              periodSecs,
-              entityIdAttributes);
-      Iterator<ResultSetChunk> aggResponseChunkIterator =
-          baselineServiceQueryExecutor.executeQuery(requestHeaders, aggQueryRequest);
-      BaselineEntitiesResponse aggEntitiesResponse =
-          baselineServiceQueryParser.parseQueryResponse(
-              aggResponseChunkIterator,
-              requestContext,
-              entityIdAttributes.size(),
-              originalRequest.getEntityType(),
-              aggStartTime,
-              aggEndTime);
-      baselineEntityAggregatedMetricsMap = getEntitiesMapFromAggResponse(aggEntitiesResponse);
+      baselineEntityAggregatedMetricsFuture =
+          getMetricSeries(
+                  requestContext,
+                  originalRequest,
+                  timeColumn,
+                  entityIdAttributes,
+                  timeAggregations,
+                  periodSecs,
+                  seriesStartTime,
+                  seriesEndTime)
+              .thenCompose(this::getEntitiesMapFromAggResponse);
     }
 
     // Time Series data
+    CompletableFuture<Map<String, BaselineEntity>> baselineEntityTimeSeriesFuture =
+        CompletableFuture.completedFuture(Map.of());
     if (originalRequest.getBaselineMetricSeriesRequestCount() > 0) {
       Period timeSeriesPeriod =
           getTimeSeriesPeriod(originalRequest.getBaselineMetricSeriesRequestList());
@@ -134,37 +162,123 @@ public class BaselineServiceImpl implements BaselineService {
           getTimeAggregationsForTimeSeriesExpr(originalRequest);
       long seriesStartTime = getUpdatedStartTime(alignedStartTime, alignedEndTime);
       long seriesEndTime = alignedStartTime;
-      List<String> entityIdAttributes =
-          AttributeMetadataUtil.getIdAttributeIds(
-              attributeMetadataProvider,
-              entityIdColumnsConfigs,
-              requestContext,
-              originalRequest.getEntityType());
-      QueryRequest timeSeriesQueryRequest =
-          baselineServiceQueryParser.getQueryRequest(
-              seriesStartTime,
-              seriesEndTime,
-              originalRequest.getEntityIdsList(),
-              timeColumn,
-              timeAggregations,
-              periodSecs,
-              entityIdAttributes);
-      Iterator<ResultSetChunk> timeSeriesChunkIterator =
-          baselineServiceQueryExecutor.executeQuery(requestHeaders, timeSeriesQueryRequest);
-      BaselineEntitiesResponse timeSeriesEntitiesResponse =
-          baselineServiceQueryParser.parseQueryResponse(
-              timeSeriesChunkIterator,
-              requestContext,
-              entityIdAttributes.size(),
-              originalRequest.getEntityType(),
-              alignedStartTime,
-              alignedEndTime);
-      baselineEntityTimeSeriesMap =
-          getEntitiesMapFromTimeSeriesResponse(
-              timeSeriesEntitiesResponse, alignedStartTime, alignedEndTime, periodSecs);
+      baselineEntityTimeSeriesFuture =
+          getMetricSeries(
+                  requestContext,
+                  originalRequest,
+                  timeColumn,
+                  entityIdAttributes,
+                  timeAggregations,
+                  periodSecs,
+                  seriesStartTime,
+                  seriesEndTime)
+              .thenCompose(
+                  timeSeriesResponse ->
+                      getEntitiesMapFromTimeSeriesResponse(
+                          timeSeriesResponse, alignedStartTime, alignedEndTime, periodSecs));
     }
 
-    return mergeEntities(baselineEntityAggregatedMetricsMap, baselineEntityTimeSeriesMap);
+    return CompletableFutures.join(
+        baselineEntityAggregatedMetricsFuture.thenCombine(
+            baselineEntityTimeSeriesFuture, this::mergeEntities));
+  }
+
+  /**
+   * Metric series of the requested entities, the days already in the baseline store not being
+   * queried again. Each query result is parsed on the query executor.
+   */
+  private CompletableFuture<BaselineEntitiesResponse> getMetricSeries(
+      BaselineRequestContext requestContext,
+      BaselineEntitiesRequest originalRequest,
+      String timeColumn,
+      List<String> entityIdAttributes,
+      List<TimeAggregation> timeAggregations,
+      long periodSecs,
+      long seriesStartTime,
+      long seriesEndTime) {
+    Map<String, FunctionExpression> functionsByAlias = new LinkedHashMap<>();
+    timeAggregations.forEach(
+        timeAggregation -> {
+          FunctionExpression function = timeAggregation.getAggregation().getFunction();
+          functionsByAlias.put(function.getAlias(), function);
+        });
+    return baselineSeriesMaterializer.getMetricSeries(
+        requestContext.getTenantId(),
+        originalRequest.getEntityType(),
+        originalRequest.getEntityIdsList(),
+        functionsByAlias,
+        entityIdAttributes.size() == 1,
+        periodSecs,
+        seriesStartTime,
+        seriesEndTime,
+        (startTime, endTime) -> {
+          // The series are grouped by entity id, so long lists of ids are queried in shards. The
+          // lists of composite ids filter each id attribute and can't be split.
+          List<List<String>> entityIdShards =
+              entityIdAttributes.size() == 1
+                  ? inListSharder.shard(originalRequest.getEntityIdsList())
+                  : List.of(originalRequest.getEntityIdsList());
+          List<CompletableFuture<BaselineEntitiesResponse>> shardResponses =
+              entityIdShards.stream()
+                  .map(
+                      entityIds ->
+                          queryMetricSeries(
+                              requestContext,
+                              originalRequest.getEntityType(),
+                              entityIds,
+                              timeColumn,
+                              entityIdAttributes,
+                              timeAggregations,
+                              periodSecs,
+                              startTime,
+                              endTime))
+                  .collect(Collectors.toList());
+          if (shardResponses.size() == 1) {
+            return shardResponses.get(0);
+          }
+          return CompletableFutures.allAsList(shardResponses)
+              .thenApply(
+                  responses ->
+                      BaselineEntitiesResponse.newBuilder()
+                          .addAllBaselineEntity(
+                              responses.stream()
+                                  .flatMap(response -> response.getBaselineEntityList().stream())
+                                  .collect(Collectors.toList()))
+                          .build());
+        });
+  }
+
+  private CompletableFuture<BaselineEntitiesResponse> queryMetricSeries(
+      BaselineRequestContext requestContext,
+      String entityType,
+      List<String> entityIds,
+      String timeColumn,
+      List<String> entityIdAttributes,
+      List<TimeAggregation> timeAggregations,
+      long periodSecs,
+      long startTime,
+      long endTime) {
+    QueryRequest queryRequest =
+        baselineServiceQueryParser.getQueryRequest(
+            startTime,
+            endTime,
+            entityIds,
+            timeColumn,
+            timeAggregations,
+            periodSecs,
+            entityIdAttributes);
+    return baselineServiceQueryExecutor
+        .executeQueryAsync(requestContext.getHeaders(), queryRequest)
+        .thenApplyAsync(
+            chunkIterator ->
+                baselineServiceQueryParser.parseQueryResponse(
+                    chunkIterator,
+                    requestContext,
+                    entityIdAttributes.size(),
+                    entityType,
+                    startTime,
+                    endTime),
+            queryExecutor);
   }
 
   private void updateAliasMap(
@@ -229,52 +343,65 @@ public class BaselineServiceImpl implements BaselineService {
     return baselineEntitiesResponseBuilder.addAllBaselineEntity(baselineEntityList).build();
   }
 
-  private Map<String, BaselineEntity> getEntitiesMapFromTimeSeriesResponse(
+  private CompletableFuture<Map<String, BaselineEntity>> getEntitiesMapFromTimeSeriesResponse(
       BaselineEntitiesResponse baselineEntitiesResponse,
       long startTimeInMillis,
       long endTimeMillis,
       long periodInSecs) {
-    Map<String, BaselineEntity> baselineEntityMap = new HashMap<>();
-    for (BaselineEntity baselineEntity : baselineEntitiesResponse.getBaselineEntityList()) {
-      Map<String, BaselineMetricSeries> metricSeriesMap =
-          baselineEntity.getBaselineMetricSeriesMap();
-      Map<String, Baseline> baselineMap = new HashMap<>();
-      BaselineEntity.Builder baselineEntityBuilder = getBaselineEntityBuilder(baselineEntity);
-      Map<String, BaselineMetricSeries> revisedMetricSeriesMap = new HashMap<>();
-      // Calculate baseline
-      metricSeriesMap.forEach(
-          (key, value) -> {
-            List<Value> metricValues =
-                value.getBaselineValueList().stream()
-                    .map(x -> x.getBaseline().getValue())
-                    .collect(Collectors.toList());
-            Baseline baseline = BaselineCalculator.getBaseline(metricValues);
-            baselineMap.put(key, baseline);
-          });
-      // Update intervals
-      metricSeriesMap.forEach(
-          (key, value) -> {
-            List<BaselineInterval> baselineIntervalList = new ArrayList<>();
-            long intervalTime = startTimeInMillis;
-            while (intervalTime < endTimeMillis) {
-              long periodInMillis = TimeUnit.SECONDS.toMillis(periodInSecs);
-              BaselineInterval newBaselineInterval =
-                  BaselineInterval.newBuilder()
-                      .setBaseline(baselineMap.get(key))
-                      .setStartTimeMillis(intervalTime)
-                      .setEndTimeMillis(intervalTime + periodInMillis)
-                      .build();
-              baselineIntervalList.add(newBaselineInterval);
-              intervalTime += periodInMillis;
-            }
-            BaselineMetricSeries baselineMetricSeries =
-                BaselineMetricSeries.newBuilder().addAllBaselineValue(baselineIntervalList).build();
-            revisedMetricSeriesMap.put(key, baselineMetricSeries);
-          });
-      baselineEntityBuilder.putAllBaselineMetricSeries(revisedMetricSeriesMap);
-      baselineEntityMap.put(baselineEntity.getId(), baselineEntityBuilder.build());
+    return toBaselineEntityMap(
+        baselineEntitiesResponse,
+        baselineEntity ->
+            getTimeSeriesBaselineEntity(
+                baselineEntity, startTimeInMillis, endTimeMillis, periodInSecs));
+  }
+
+  private BaselineEntity getTimeSeriesBaselineEntity(
+      BaselineEntity baselineEntity,
+      long startTimeInMillis,
+      long endTimeMillis,
+      long periodInSecs) {
+    Map<String, BaselineMetricSeries> metricSeriesMap = baselineEntity.getBaselineMetricSeriesMap();
+    Map<String, Baseline> baselineMap = new HashMap<>();
+    BaselineEntity.Builder baselineEntityBuilder = getBaselineEntityBuilder(baselineEntity);
+    Map<String, BaselineMetricSeries> revisedMetricSeriesMap = new HashMap<>();
+    // Calculate baseline
+    metricSeriesMap.forEach(
+        (key, value) -> {
+          Baseline baseline = BaselineCalculator.getBaseline(getMetricValues(value));
+          baselineMap.put(key, baseline);
+        });
+    // Update intervals
+    metricSeriesMap.forEach(
+        (key, value) -> {
+          List<BaselineInterval> baselineIntervalList = new ArrayList<>();
+          long intervalTime = startTimeInMillis;
+          while (intervalTime < endTimeMillis) {
+            long periodInMillis = TimeUnit.SECONDS.toMillis(periodInSecs);
+            BaselineInterval newBaselineInterval =
+                BaselineInterval.newBuilder()
+                    .setBaseline(baselineMap.get(key))
+                    .setStartTimeMillis(intervalTime)
+                    .setEndTimeMillis(intervalTime + periodInMillis)
+                    .build();
+            baselineIntervalList.add(newBaselineInterval);
+            intervalTime += periodInMillis;
+          }
+          BaselineMetricSeries baselineMetricSeries =
+              BaselineMetricSeries.newBuilder().addAllBaselineValue(baselineIntervalList).build();
+          revisedMetricSeriesMap.put(key, baselineMetricSeries);
+        });
+    baselineEntityBuilder.putAllBaselineMetricSeries(revisedMetricSeriesMap);
+    return baselineEntityBuilder.build();
+  }
+
+  private static DoubleBuffer getMetricValues(BaselineMetricSeries metricSeries) {
+    List<BaselineInterval> baselineIntervals = metricSeries.getBaselineValueList();
+    double[] metricValues = new double[baselineIntervals.size()];
+    for (int i = 0; i < metricValues.length; i++) {
+      metricValues[i] =
+          BaselineCalculator.getDoubleValue(baselineIntervals.get(i).getBaseline().getValue());
     }
-    return baselineEntityMap;
+    return DoubleBuffer.wrap(metricValues);
   }
 
   private BaselineEntity.Builder getBaselineEntityBuilder(BaselineEntity baselineEntity) {
@@ -283,29 +410,55 @@ public class BaselineServiceImpl implements BaselineService {
         .setId(baselineEntity.getId());
   }
 
-  private Map<String, BaselineEntity> getEntitiesMapFromAggResponse(
+  private CompletableFuture<Map<String, BaselineEntity>> getEntitiesMapFromAggResponse(
       BaselineEntitiesResponse baselineEntitiesResponse) {
-    Map<String, BaselineEntity> baselineEntityMap = new HashMap<>();
-    if (baselineEntitiesResponse.getBaselineEntityCount() > 0) {
-      for (BaselineEntity baselineEntity : baselineEntitiesResponse.getBaselineEntityList()) {
-        Map<String, BaselineMetricSeries> metricSeriesMap =
-            baselineEntity.getBaselineMetricSeriesMap();
-        Map<String, Baseline> baselineMap = new HashMap<>();
-        BaselineEntity.Builder baselineEntityBuilder = getBaselineEntityBuilder(baselineEntity);
-        metricSeriesMap.forEach(
-            (key, value) -> {
-              List<Value> metricValues =
-                  value.getBaselineValueList().stream()
-                      .map(x -> x.getBaseline().getValue())
-                      .collect(Collectors.toList());
-              Baseline baseline = BaselineCalculator.getBaseline(metricValues);
-              baselineMap.put(key, baseline);
-            });
-        baselineEntityBuilder.putAllBaselineAggregateMetric(baselineMap);
-        baselineEntityMap.put(baselineEntity.getId(), baselineEntityBuilder.build());
-      }
-    }
-    return baselineEntityMap;
+    return toBaselineEntityMap(baselineEntitiesResponse, this::getAggregateBaselineEntity);
+  }
+
+  private BaselineEntity getAggregateBaselineEntity(BaselineEntity baselineEntity) {
+    Map<String, BaselineMetricSeries> metricSeriesMap = baselineEntity.getBaselineMetricSeriesMap();
+    Map<String, Baseline> baselineMap = new HashMap<>();
+    BaselineEntity.Builder baselineEntityBuilder = getBaselineEntityBuilder(baselineEntity);
+    metricSeriesMap.forEach(
+        (key, value) -> {
+          Baseline baseline = BaselineCalculator.getBaseline(getMetricValues(value));
+          baselineMap.put(key, baseline);
+        });
+    baselineEntityBuilder.putAllBaselineAggregateMetric(baselineMap);
+    return baselineEntityBuilder.build();
+  }
+
+  /**
+   * Computes the baselines of each entity of the response by id. Entities are independent, so the
+   * baselines of many entities are computed in concurrent batches on the query executor.
+   */
+  private CompletableFuture<Map<String, BaselineEntity>> toBaselineEntityMap(
+      BaselineEntitiesResponse baselineEntitiesResponse,
+      Function<BaselineEntity, BaselineEntity> baselineComputation) {
+    List<CompletableFuture<List<BaselineEntity>>> batchFutures =
+        Lists.partition(
+                baselineEntitiesResponse.getBaselineEntityList(), BASELINE_ENTITY_BATCH_SIZE)
+            .stream()
+            .map(
+                batch ->
+                    CompletableFuture.supplyAsync(
+                        () ->
+                            batch.stream()
+                                .map(baselineComputation)
+                                .collect(Collectors.toUnmodifiableList()),
+                        queryExecutor))
+            .collect(Collectors.toUnmodifiableList());
+    return CompletableFutures.allAsList(batchFutures)
+        .thenApply(
+            batches ->
+                batches.stream()
+                    .flatMap(List::stream)
+                    .collect(
+                        Collectors.toMap(
+                            BaselineEntity::getId,
+                            Function.identity(),
+                            (first, last) -> last,
+                            HashMap::new)));
   }
 
   private List<TimeAggregation> getTimeAggregationsForTimeSeriesExpr(
@@ -1,23 +1,28 @@
 package org.hypertrace.gateway.service.baseline;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.ResultSetChunk;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 
 public class BaselineServiceQueryExecutor {
 
   private final int qsRequestTimeout;
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceAsyncClient queryServiceClient;
 
-  public BaselineServiceQueryExecutor(int qsRequestTimeout, QueryServiceClient queryServiceClient) {
+  public BaselineServiceQueryExecutor(
+      int qsRequestTimeout, QueryServiceAsyncClient queryServiceClient) {
     this.qsRequestTimeout = qsRequestTimeout;
     this.queryServiceClient = queryServiceClient;
   }
 
-  public Iterator<ResultSetChunk> executeQuery(
-      Map<String, String> requestHeaders, QueryRequest aggQueryRequest) {
-    return queryServiceClient.executeQuery(aggQueryRequest, requestHeaders, qsRequestTimeout);
+  public CompletableFuture<Iterator<ResultSetChunk>> executeQueryAsync(
+      Map<String, String> requestHeaders, QueryRequest queryRequest) {
+    return queryServiceClient
+        .executeQuery(queryRequest, requestHeaders, qsRequestTimeout)
+        .thenApply(List::iterator);
   }
 }
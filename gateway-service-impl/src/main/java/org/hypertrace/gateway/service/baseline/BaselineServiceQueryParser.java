@@ -155,6 +155,7 @@ public class BaselineServiceQueryParser {
             QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
                 row.getColumn(idColumnsSize));
         if (value.getValueType() == ValueType.STRING) {
+          setStartTime(intervalBuilder, value.getString());
           for (int i = idColumnsSize + 1; i < resultMetadata.getColumnMetadataCount(); i++) {
             ColumnMetadata metadata = resultMetadata.getColumnMetadata(i);
             BaselineTimeAggregation timeAggregation =
@@ -205,6 +206,14 @@ public class BaselineServiceQueryParser {
     return BaselineEntitiesResponse.newBuilder().addAllBaselineEntity(baselineEntities).build();
   }
 
+  private static void setStartTime(BaselineInterval.Builder intervalBuilder, String timeValue) {
+    try {
+      intervalBuilder.setStartTimeMillis(Long.parseLong(timeValue));
+    } catch (NumberFormatException e) {
+      LOG.warn("Was expecting epoch millis for the time bucket but received: {}", timeValue);
+    }
+  }
+
   private BaselineMetricSeries getSortedMetricSeries(BaselineMetricSeries.Builder builder) {
     List<BaselineInterval> sortedIntervals = new ArrayList<>(builder.getBaselineValueList());
     sortedIntervals.sort(Comparator.comparingLong(BaselineInterval::getStartTimeMillis));
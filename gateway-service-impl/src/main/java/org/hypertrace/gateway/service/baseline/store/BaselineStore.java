@@ -0,0 +1,60 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores the metric values of entities over days that are over, from which baselines are computed.
+ * The values of a day don't change once all its data has been ingested, so requests only query the
+ * days which aren't stored yet.
+ *
+ * <p>The values are read and written a day at a time, a request needing those of all its entities
+ * and aggregations at once.
+ */
+public interface BaselineStore {
+
+  /**
+   * Values of the stored keys among the given ones, which are of the same day. No values is a
+   * stored day.
+   */
+  Map<BaselineStoreKey, double[]> getAll(Collection<BaselineStoreKey> keys);
+
+  /**
+   * Stores the values of the keys, which are of the same day. The arrays must not be changed
+   * afterwards.
+   */
+  void putAll(Map<BaselineStoreKey, double[]> values);
+
+  /** Values of the day of the key, empty if the day isn't stored. */
+  default Optional<double[]> get(BaselineStoreKey key) {
+    return Optional.ofNullable(getAll(List.of(key)).get(key));
+  }
+
+  /** Stores the values of the day of the key. The array must not be changed afterwards. */
+  default void put(BaselineStoreKey key, double[] values) {
+    putAll(Map.of(key, values));
+  }
+
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /** Store which never stores anything. */
+  static BaselineStore disabled() {
+    return DisabledBaselineStore.INSTANCE;
+  }
+
+  static BaselineStore create(BaselineStoreConfig config) {
+    switch (config.getType()) {
+      case MEMORY:
+        return new InMemoryBaselineStore(config.getMaxWeightBytes(), config.getIdleTtl());
+      case DISK:
+        return FileBaselineStore.withScheduledPurge(
+            config.getDirectory(), config.getRetention(), config.getPurgeInterval());
+      default:
+        return disabled();
+    }
+  }
+}
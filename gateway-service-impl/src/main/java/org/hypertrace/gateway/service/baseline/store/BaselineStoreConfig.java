@@ -0,0 +1,130 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Configuration of the store of the daily metric values baselines are computed from. The values are
+ * kept in memory unless configured otherwise.
+ *
+ * <pre>
+ * baseline.store.config = {
+ *   // memory, disk or none
+ *   type = memory
+ *   // Days ending within this delay of now are always queried, as data may still arrive for them
+ *   ingestion.delay = 15m
+ *   // Memory store
+ *   max.weight.bytes = 67108864
+ *   // Days not read for this long are dropped from memory
+ *   idle.ttl = 2d
+ *   // Disk store
+ *   directory = /var/lib/gateway-service/baselines
+ *   // Days older than this are deleted from disk
+ *   retention = 30d
+ *   // How often the days past the retention are looked for
+ *   purge.interval = 1h
+ * }
+ * </pre>
+ */
+public class BaselineStoreConfig {
+  private static final String CONFIG_PATH = "baseline.store.config";
+  private static final String TYPE_PATH = "type";
+  private static final String INGESTION_DELAY_PATH = "ingestion.delay";
+  private static final String MAX_WEIGHT_BYTES_PATH = "max.weight.bytes";
+  private static final String IDLE_TTL_PATH = "idle.ttl";
+  private static final String DIRECTORY_PATH = "directory";
+  private static final String RETENTION_PATH = "retention";
+  private static final String PURGE_INTERVAL_PATH = "purge.interval";
+
+  private static final Type DEFAULT_TYPE = Type.MEMORY;
+  private static final Duration DEFAULT_INGESTION_DELAY = Duration.ofMinutes(15);
+  private static final long DEFAULT_MAX_WEIGHT_BYTES = 64 * 1024 * 1024;
+  private static final Duration DEFAULT_IDLE_TTL = Duration.ofDays(2);
+  private static final String DEFAULT_DIRECTORY = "baselines";
+  private static final Duration DEFAULT_RETENTION = Duration.ofDays(30);
+  private static final Duration DEFAULT_PURGE_INTERVAL = Duration.ofHours(1);
+
+  private final Type type;
+  private final Duration ingestionDelay;
+  private final long maxWeightBytes;
+  private final Duration idleTtl;
+  private final Path directory;
+  private final Duration retention;
+  private final Duration purgeInterval;
+
+  public enum Type {
+    NONE,
+    MEMORY,
+    DISK
+  }
+
+  public static BaselineStoreConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new BaselineStoreConfig(
+        config.hasPath(TYPE_PATH)
+            ? Type.valueOf(config.getString(TYPE_PATH).toUpperCase())
+            : DEFAULT_TYPE,
+        getDuration(config, INGESTION_DELAY_PATH, DEFAULT_INGESTION_DELAY),
+        config.hasPath(MAX_WEIGHT_BYTES_PATH)
+            ? config.getBytes(MAX_WEIGHT_BYTES_PATH)
+            : DEFAULT_MAX_WEIGHT_BYTES,
+        getDuration(config, IDLE_TTL_PATH, DEFAULT_IDLE_TTL),
+        Paths.get(
+            config.hasPath(DIRECTORY_PATH) ? config.getString(DIRECTORY_PATH) : DEFAULT_DIRECTORY),
+        getDuration(config, RETENTION_PATH, DEFAULT_RETENTION),
+        getDuration(config, PURGE_INTERVAL_PATH, DEFAULT_PURGE_INTERVAL));
+  }
+
+  private static Duration getDuration(Config config, String path, Duration defaultValue) {
+    return config.hasPath(path) ? config.getDuration(path) : defaultValue;
+  }
+
+  BaselineStoreConfig(
+      Type type,
+      Duration ingestionDelay,
+      long maxWeightBytes,
+      Duration idleTtl,
+      Path directory,
+      Duration retention,
+      Duration purgeInterval) {
+    this.type = type;
+    this.ingestionDelay = ingestionDelay;
+    this.maxWeightBytes = maxWeightBytes;
+    this.idleTtl = idleTtl;
+    this.directory = directory;
+    this.retention = retention;
+    this.purgeInterval = purgeInterval;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public Duration getIngestionDelay() {
+    return ingestionDelay;
+  }
+
+  public long getMaxWeightBytes() {
+    return maxWeightBytes;
+  }
+
+  public Duration getIdleTtl() {
+    return idleTtl;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public Duration getRetention() {
+    return retention;
+  }
+
+  public Duration getPurgeInterval() {
+    return purgeInterval;
+  }
+}
@@ -0,0 +1,102 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import java.util.Objects;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+
+/**
+ * Identifies the metric values of an entity over a day: the values of the buckets of the period
+ * starting in the day, for an aggregation function. The function is kept without its alias, which
+ * only names the values in a request.
+ */
+public class BaselineStoreKey {
+  private final String tenantId;
+  private final String entityType;
+  private final String entityId;
+  private final FunctionExpression function;
+  private final long periodSecs;
+  private final long dayStartTimeMillis;
+  private final int hashCode;
+
+  public BaselineStoreKey(
+      String tenantId,
+      String entityType,
+      String entityId,
+      FunctionExpression function,
+      long periodSecs,
+      long dayStartTimeMillis) {
+    this.tenantId = tenantId;
+    this.entityType = entityType;
+    this.entityId = entityId;
+    this.function =
+        function.getAlias().isEmpty() ? function : function.toBuilder().clearAlias().build();
+    this.periodSecs = periodSecs;
+    this.dayStartTimeMillis = dayStartTimeMillis;
+    this.hashCode =
+        Objects.hash(tenantId, entityType, entityId, this.function, periodSecs, dayStartTimeMillis);
+  }
+
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  public String getEntityType() {
+    return entityType;
+  }
+
+  public String getEntityId() {
+    return entityId;
+  }
+
+  public FunctionExpression getFunction() {
+    return function;
+  }
+
+  public long getPeriodSecs() {
+    return periodSecs;
+  }
+
+  public long getDayStartTimeMillis() {
+    return dayStartTimeMillis;
+  }
+
+  int getWeight() {
+    return 2 * (tenantId.length() + entityType.length() + entityId.length())
+        + function.getSerializedSize()
+        + 2 * Long.BYTES;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    BaselineStoreKey that = (BaselineStoreKey) o;
+    return hashCode == that.hashCode
+        && periodSecs == that.periodSecs
+        && dayStartTimeMillis == that.dayStartTimeMillis
+        && Objects.equals(tenantId, that.tenantId)
+        && Objects.equals(entityType, that.entityType)
+        && Objects.equals(entityId, that.entityId)
+        && Objects.equals(function, that.function);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return "BaselineStoreKey{"
+        + "tenantId='"
+        + tenantId
+        + "', entityType='"
+        + entityType
+        + "', entityId='"
+        + entityId
+        + "', periodSecs="
+        + periodSecs
+        + ", dayStartTimeMillis="
+        + dayStartTimeMillis
+        + '}';
+  }
+}
@@ -0,0 +1,23 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import java.util.Collection;
+import java.util.Map;
+
+class DisabledBaselineStore implements BaselineStore {
+  static final DisabledBaselineStore INSTANCE = new DisabledBaselineStore();
+
+  private DisabledBaselineStore() {}
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public Map<BaselineStoreKey, double[]> getAll(Collection<BaselineStoreKey> keys) {
+    return Map.of();
+  }
+
+  @Override
+  public void putAll(Map<BaselineStoreKey, double[]> values) {}
+}
@@ -0,0 +1,302 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the daily values on disk, so that they outlive the service. The values of a day are in a
+ * file per tenant, entity type and period, in a directory per day, so that the values of a request
+ * are read from a single file per day. The file starts with an index of its entries, so that only
+ * the requested ones are read. Days older than the retention are deleted by {@link
+ * #purgeExpiredDays()}, to be run periodically. Failing to read or write a file is logged and
+ * treated as the day not being stored, the values being queried again. A corrupt file is also
+ * counted, and replaced by the next write of its day.
+ */
+public class FileBaselineStore implements BaselineStore {
+  private static final Logger LOG = LoggerFactory.getLogger(FileBaselineStore.class);
+  private static final int ENTRY_HASH_BYTES = Hashing.sha256().bits() / Byte.SIZE;
+  private static final int INDEX_ENTRY_BYTES = ENTRY_HASH_BYTES + Integer.BYTES;
+  private static final String CORRUPT_FILES_METRIC = "hypertrace.baseline.store.corrupt.files";
+
+  private final Path directory;
+  private final long retentionMillis;
+  private final Clock clock;
+  private final Counter corruptFiles;
+  // Writes of a file merge the new entries into the existing ones
+  private final Striped<Lock> fileLocks = Striped.lock(64);
+
+  public FileBaselineStore(Path directory, Duration retention) {
+    this(directory, retention, Clock.systemUTC());
+  }
+
+  FileBaselineStore(Path directory, Duration retention, Clock clock) {
+    this.directory = directory;
+    this.retentionMillis = retention.toMillis();
+    this.clock = clock;
+    this.corruptFiles = PlatformMetricsRegistry.registerCounter(CORRUPT_FILES_METRIC, Map.of());
+  }
+
+  /** Store whose expired days are purged every purge interval, starting now. */
+  static FileBaselineStore withScheduledPurge(
+      Path directory, Duration retention, Duration purgeInterval) {
+    FileBaselineStore store = new FileBaselineStore(directory, retention);
+    ScheduledExecutorService purgeExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("baseline-store-purge-%d")
+                .build());
+    purgeExecutor.scheduleWithFixedDelay(
+        store::purgeExpiredDays, 0, purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    return store;
+  }
+
+  @Override
+  public Map<BaselineStoreKey, double[]> getAll(Collection<BaselineStoreKey> keys) {
+    Map<BaselineStoreKey, double[]> values = new HashMap<>();
+    groupByPath(keys)
+        .forEach(
+            (path, pathKeys) -> {
+              try {
+                values.putAll(readEntries(path, pathKeys));
+              } catch (NoSuchFileException e) {
+                // the day isn't stored
+              } catch (CorruptFileException e) {
+                corruptFiles.increment();
+                LOG.warn("Ignoring the corrupt baseline values file {}", path, e);
+              } catch (IOException e) {
+                LOG.warn("Failed to read the baseline values of {}", path, e);
+              }
+            });
+    return values;
+  }
+
+  @Override
+  public void putAll(Map<BaselineStoreKey, double[]> values) {
+    groupByPath(values.keySet())
+        .forEach(
+            (path, pathKeys) -> {
+              Lock lock = fileLocks.get(path);
+              lock.lock();
+              try {
+                Map<HashCode, double[]> entries = readAllEntries(path);
+                pathKeys.forEach(key -> entries.put(getEntryHash(key), values.get(key)));
+                writeEntries(path, entries);
+              } catch (IOException e) {
+                LOG.warn("Failed to write the baseline values of {}", path, e);
+              } finally {
+                lock.unlock();
+              }
+            });
+  }
+
+  /** Deletes the days which started more than the retention ago. */
+  public void purgeExpiredDays() {
+    long dayStartTimeMillis = clock.millis() - retentionMillis;
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> days = Files.newDirectoryStream(directory)) {
+      for (Path day : days) {
+        if (isDayBefore(day, dayStartTimeMillis)) {
+          deleteRecursively(day);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Failed to delete the baseline values older than {}", dayStartTimeMillis, e);
+    }
+  }
+
+  private Map<Path, List<BaselineStoreKey>> groupByPath(Collection<BaselineStoreKey> keys) {
+    Map<Path, List<BaselineStoreKey>> keysByPath = new LinkedHashMap<>();
+    keys.forEach(
+        key -> keysByPath.computeIfAbsent(getPath(key), ignored -> new ArrayList<>()).add(key));
+    return keysByPath;
+  }
+
+  private Map<BaselineStoreKey, double[]> readEntries(Path path, List<BaselineStoreKey> keys)
+      throws IOException {
+    Map<BaselineStoreKey, double[]> values = new HashMap<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      Map<HashCode, long[]> offsetsAndCounts = readIndex(channel);
+      for (BaselineStoreKey key : keys) {
+        long[] offsetAndCount = offsetsAndCounts.get(getEntryHash(key));
+        if (offsetAndCount != null) {
+          values.put(key, readValues(channel, offsetAndCount[0], (int) offsetAndCount[1]));
+        }
+      }
+    }
+    return values;
+  }
+
+  private Map<HashCode, double[]> readAllEntries(Path path) throws IOException {
+    Map<HashCode, double[]> entries = new LinkedHashMap<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      for (Map.Entry<HashCode, long[]> entry : readIndex(channel).entrySet()) {
+        long[] offsetAndCount = entry.getValue();
+        entries.put(
+            entry.getKey(), readValues(channel, offsetAndCount[0], (int) offsetAndCount[1]));
+      }
+    } catch (NoSuchFileException e) {
+      // first entries of the file
+    } catch (CorruptFileException e) {
+      corruptFiles.increment();
+      LOG.warn("Replacing the corrupt baseline values file {}", path, e);
+      entries.clear();
+    }
+    return entries;
+  }
+
+  /**
+   * Offset and count of the values of each entry, by the hash of its key. The counts are checked
+   * against the size of the file, so that a corrupt file fails with a {@link CorruptFileException}
+   * instead of allocating whatever it holds.
+   */
+  private static Map<HashCode, long[]> readIndex(FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    int entryCount = read(channel, 0, Integer.BYTES).getInt();
+    long offset = Integer.BYTES + (long) entryCount * INDEX_ENTRY_BYTES;
+    if (entryCount < 0 || offset > fileSize) {
+      throw new CorruptFileException(
+          "Invalid entry count " + entryCount + " for a file of " + fileSize + " bytes");
+    }
+
+    ByteBuffer index = read(channel, Integer.BYTES, entryCount * INDEX_ENTRY_BYTES);
+    Map<HashCode, long[]> offsetsAndCounts = new HashMap<>();
+    for (int i = 0; i < entryCount; i++) {
+      byte[] hash = new byte[ENTRY_HASH_BYTES];
+      index.get(hash);
+      int valueCount = index.getInt();
+      offsetsAndCounts.put(HashCode.fromBytes(hash), new long[] {offset, valueCount});
+      offset += (long) valueCount * Double.BYTES;
+      if (valueCount < 0 || offset > fileSize) {
+        throw new CorruptFileException(
+            "Invalid value count " + valueCount + " for a file of " + fileSize + " bytes");
+      }
+    }
+    return offsetsAndCounts;
+  }
+
+  private static double[] readValues(FileChannel channel, long offset, int valueCount)
+      throws IOException {
+    double[] values = new double[valueCount];
+    read(channel, offset, valueCount * Double.BYTES).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        // the files are written at once, so a file too short is corrupt
+        throw new CorruptFileException("Truncated baseline values file");
+      }
+    }
+    return buffer.flip();
+  }
+
+  private static void writeEntries(Path path, Map<HashCode, double[]> entries) throws IOException {
+    int valueCount = entries.values().stream().mapToInt(values -> values.length).sum();
+    ByteBuffer buffer =
+        ByteBuffer.allocate(
+            Integer.BYTES + entries.size() * INDEX_ENTRY_BYTES + valueCount * Double.BYTES);
+    buffer.putInt(entries.size());
+    entries.forEach((hash, values) -> buffer.put(hash.asBytes()).putInt(values.length));
+    // a double view doesn't move the position of the buffer
+    entries
+        .values()
+        .forEach(
+            values -> {
+              buffer.asDoubleBuffer().put(values);
+              buffer.position(buffer.position() + values.length * Double.BYTES);
+            });
+
+    Files.createDirectories(path.getParent());
+    // Written aside then moved, so that a file is never read partially written
+    Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), null);
+    try {
+      Files.write(tempPath, buffer.array());
+      Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  private Path getPath(BaselineStoreKey key) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, key.getTenantId());
+    putString(hasher, key.getEntityType());
+    hasher.putLong(key.getPeriodSecs());
+    return directory
+        .resolve(Long.toString(key.getDayStartTimeMillis()))
+        .resolve(hasher.hash().toString());
+  }
+
+  private static HashCode getEntryHash(BaselineStoreKey key) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, key.getEntityId());
+    hasher.putBytes(key.getFunction().toByteArray());
+    return hasher.hash();
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    // Prefixed by the length, so that the hashes of different keys don't collide by construction
+    hasher.putInt(value.length()).putString(value, UTF_8);
+  }
+
+  private static boolean isDayBefore(Path day, long dayStartTimeMillis) {
+    try {
+      return Long.parseLong(day.getFileName().toString()) < dayStartTimeMillis;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path child : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.deleteIfExists(child);
+      }
+    }
+  }
+
+  private static class CorruptFileException extends IOException {
+    CorruptFileException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/** Keeps the daily values in memory, dropping the least recently used ones past the max weight. */
+public class InMemoryBaselineStore implements BaselineStore {
+  private final Cache<BaselineStoreKey, double[]> cache;
+
+  public InMemoryBaselineStore(long maxWeightBytes, Duration idleTtl) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .<BaselineStoreKey, double[]>weigher(
+                (key, values) -> key.getWeight() + values.length * Double.BYTES)
+            .expireAfterAccess(idleTtl)
+            .build();
+  }
+
+  @Override
+  public Map<BaselineStoreKey, double[]> getAll(Collection<BaselineStoreKey> keys) {
+    return cache.getAllPresent(keys);
+  }
+
+  @Override
+  public void putAll(Map<BaselineStoreKey, double[]> values) {
+    cache.putAll(values);
+  }
+}
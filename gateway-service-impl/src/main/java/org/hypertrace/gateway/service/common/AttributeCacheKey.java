@@ -16,6 +16,10 @@ public class AttributeCacheKey<K> {
     return this.requestContext.getHeaders();
   }
 
+  String getTenantId() {
+    return this.requestContext.getTenantId();
+  }
+
   K getDataKey() {
     return this.dataKey;
   }
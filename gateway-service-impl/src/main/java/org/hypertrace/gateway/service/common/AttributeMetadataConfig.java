@@ -0,0 +1,78 @@
+package org.hypertrace.gateway.service.common;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuration of the attribute metadata kept by {@link AttributeMetadataProvider}.
+ *
+ * <pre>
+ * attribute.metadata.config = {
+ *   // The metadata of a scope older than this is refreshed in the background on its next use
+ *   refresh.interval = 10m
+ *   // Metadata which couldn't be refreshed for this long isn't served anymore
+ *   max.staleness = 24h
+ *   // Metadata loaded at startup
+ *   warmup.tenants = ["tenant1"]
+ *   warmup.scopes = ["API", "SERVICE"]
+ * }
+ * </pre>
+ */
+public class AttributeMetadataConfig {
+  private static final String CONFIG_PATH = "attribute.metadata.config";
+  private static final String REFRESH_INTERVAL_PATH = "refresh.interval";
+  private static final String MAX_STALENESS_PATH = "max.staleness";
+  private static final String WARMUP_TENANTS_PATH = "warmup.tenants";
+  private static final String WARMUP_SCOPES_PATH = "warmup.scopes";
+
+  private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(10);
+  private static final Duration DEFAULT_MAX_STALENESS = Duration.ofHours(24);
+
+  private final Duration refreshInterval;
+  private final Duration maxStaleness;
+  private final List<String> warmupTenants;
+  private final List<String> warmupScopes;
+
+  public static AttributeMetadataConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new AttributeMetadataConfig(
+        config.hasPath(REFRESH_INTERVAL_PATH)
+            ? config.getDuration(REFRESH_INTERVAL_PATH)
+            : DEFAULT_REFRESH_INTERVAL,
+        config.hasPath(MAX_STALENESS_PATH)
+            ? config.getDuration(MAX_STALENESS_PATH)
+            : DEFAULT_MAX_STALENESS,
+        config.hasPath(WARMUP_TENANTS_PATH) ? config.getStringList(WARMUP_TENANTS_PATH) : List.of(),
+        config.hasPath(WARMUP_SCOPES_PATH) ? config.getStringList(WARMUP_SCOPES_PATH) : List.of());
+  }
+
+  AttributeMetadataConfig(
+      Duration refreshInterval,
+      Duration maxStaleness,
+      List<String> warmupTenants,
+      List<String> warmupScopes) {
+    this.refreshInterval = refreshInterval;
+    this.maxStaleness = maxStaleness;
+    this.warmupTenants = warmupTenants;
+    this.warmupScopes = warmupScopes;
+  }
+
+  public Duration getRefreshInterval() {
+    return refreshInterval;
+  }
+
+  public Duration getMaxStaleness() {
+    return maxStaleness;
+  }
+
+  public List<String> getWarmupTenants() {
+    return warmupTenants;
+  }
+
+  public List<String> getWarmupScopes() {
+    return warmupScopes;
+  }
+}
@@ -1,16 +1,21 @@
 package org.hypertrace.gateway.service.common;
 
+import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import java.util.AbstractMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadataFilter;
@@ -19,90 +24,129 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Caches the attribute metadata locally to avoid fetching it over and over. The cache is keyed on
- * the tenantId in the requestContext and the AttributeMetadata field(s) we are concerned with.
+ * the tenantId in the requestContext and the attribute scope, and holds all the attributes of the
+ * scope indexed both by id and by key.
+ *
+ * <p>The metadata of a scope is refreshed in the background once it is older than the configured
+ * refresh interval, the current metadata being served in the meantime. If the refresh fails the
+ * current metadata keeps being served, up to the configured max staleness.
  */
 public class AttributeMetadataProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(AttributeMetadataProvider.class);
 
+  // Header the tenant id of a request is read from, see the grpc RequestContext
+  private static final String TENANT_ID_HEADER = "x-tenant-id";
   private static final int DEFAULT_CACHE_SIZE = 4096;
-  private static final int DEFAULT_EXPIRE_DURATION_MIN = 60; // 60 min
-  // AttributeScope to Map<id, AttributeMetadata>
-  private final LoadingCache<AttributeCacheKey<String>, Map<String, AttributeMetadata>>
-      scopeToMapOfIdAndAttributeMetadataCache;
-  // Pair<AttributeScope, key> to AttributeMetadata
-  private final LoadingCache<AttributeCacheKey<Map.Entry<String, String>>, AttributeMetadata>
-      scopeAndKeyToAttrMetadataCache;
 
+  private final AttributeMetadataConfig config;
+  private final Executor refreshExecutor;
+  // Headers of the latest request of each tenant, used to refresh its metadata in the background
+  private final Map<String, Map<String, String>> latestRequestHeaders = new ConcurrentHashMap<>();
+  // (tenantId, AttributeScope) to the attributes of the scope
+  private final LoadingCache<AttributeCacheKey<String>, ScopeAttributes> scopeAttributesCache;
+
+  /** Provider with the default configuration, which refreshes the metadata on the caller thread. */
   public AttributeMetadataProvider(AttributeServiceClient attributesServiceClient) {
-    CacheLoader<AttributeCacheKey<String>, Map<String, AttributeMetadata>> cacheLoader =
+    this(
+        attributesServiceClient,
+        AttributeMetadataConfig.from(ConfigFactory.empty()),
+        MoreExecutors.directExecutor());
+  }
+
+  public AttributeMetadataProvider(
+      AttributeServiceClient attributesServiceClient,
+      AttributeMetadataConfig config,
+      Executor refreshExecutor) {
+    this(attributesServiceClient, config, refreshExecutor, Ticker.systemTicker());
+  }
+
+  AttributeMetadataProvider(
+      AttributeServiceClient attributesServiceClient,
+      AttributeMetadataConfig config,
+      Executor refreshExecutor,
+      Ticker ticker) {
+    this.config = config;
+    this.refreshExecutor = refreshExecutor;
+
+    CacheLoader<AttributeCacheKey<String>, ScopeAttributes> cacheLoader =
         new CacheLoader<>() {
           @Override
-          public Map<String, AttributeMetadata> load(AttributeCacheKey<String> scopeBasedCacheKey) {
-            Iterator<AttributeMetadata> attributeMetadataIterator =
-                attributesServiceClient.findAttributes(
-                    scopeBasedCacheKey.getHeaders(),
-                    AttributeMetadataFilter.newBuilder()
-                        .addScopeString(scopeBasedCacheKey.getDataKey())
-                        .build());
-
-            Map<String, AttributeMetadata> attributeMetadataMap = new HashMap<>();
-            attributeMetadataIterator.forEachRemaining(
-                metadata -> attributeMetadataMap.put(metadata.getId(), metadata));
-
-            return Collections.unmodifiableMap(attributeMetadataMap);
+          public ScopeAttributes load(AttributeCacheKey<String> scopeBasedCacheKey) {
+            return findAttributes(
+                attributesServiceClient,
+                scopeBasedCacheKey.getHeaders(),
+                scopeBasedCacheKey.getDataKey());
           }
-        };
 
-    CacheLoader<AttributeCacheKey<Map.Entry<String, String>>, AttributeMetadata>
-        scopeAndAliasToAttrMetadataCacheLoader =
-            new CacheLoader<>() {
-              @Override
-              public AttributeMetadata load(
-                  AttributeCacheKey<Map.Entry<String, String>> scopeAndKeyPairBasedCacheKey) {
-                Iterator<AttributeMetadata> attributeMetadataIterator =
-                    attributesServiceClient.findAttributes(
-                        scopeAndKeyPairBasedCacheKey.getHeaders(),
-                        AttributeMetadataFilter.newBuilder()
-                            .addScopeString(scopeAndKeyPairBasedCacheKey.getDataKey().getKey())
-                            .build());
-
-                AttributeMetadata result = null;
-                while (attributeMetadataIterator.hasNext()) {
-                  AttributeMetadata metadata = attributeMetadataIterator.next();
-                  // metadata already found
-                  if (result != null) {
-                    continue;
-                  }
-                  // DON'T short-circuit the iterator.
-                  // Continue to iterate fully to avoid netty leak
-                  if (metadata
-                      .getKey()
-                      .equals(scopeAndKeyPairBasedCacheKey.getDataKey().getValue())) {
-                    result = metadata;
-                  }
-                }
-                return result;
-              }
-            };
+          @Override
+          public ListenableFuture<ScopeAttributes> reload(
+              AttributeCacheKey<String> scopeBasedCacheKey, ScopeAttributes oldValue) {
+            // The headers of the request which loaded the metadata may not be valid anymore
+            return Futures.immediateFuture(
+                findAttributes(
+                    attributesServiceClient,
+                    latestRequestHeaders.getOrDefault(
+                        scopeBasedCacheKey.getTenantId(), scopeBasedCacheKey.getHeaders()),
+                    scopeBasedCacheKey.getDataKey()));
+          }
+        };
 
-    scopeToMapOfIdAndAttributeMetadataCache =
-        CacheBuilder.newBuilder()
-            .maximumSize(DEFAULT_CACHE_SIZE)
-            .expireAfterWrite(DEFAULT_EXPIRE_DURATION_MIN, TimeUnit.MINUTES)
-            .build(cacheLoader);
-    scopeAndKeyToAttrMetadataCache =
+    scopeAttributesCache =
         CacheBuilder.newBuilder()
             .maximumSize(DEFAULT_CACHE_SIZE)
-            .expireAfterWrite(DEFAULT_EXPIRE_DURATION_MIN, TimeUnit.MINUTES)
-            .build(scopeAndAliasToAttrMetadataCacheLoader);
+            .refreshAfterWrite(config.getRefreshInterval())
+            .expireAfterWrite(config.getMaxStaleness())
+            .ticker(ticker)
+            .build(CacheLoader.asyncReloading(cacheLoader, refreshExecutor));
+  }
+
+  private static ScopeAttributes findAttributes(
+      AttributeServiceClient attributesServiceClient,
+      Map<String, String> headers,
+      String attributeScope) {
+    Iterator<AttributeMetadata> attributeMetadataIterator =
+        attributesServiceClient.findAttributes(
+            headers, AttributeMetadataFilter.newBuilder().addScopeString(attributeScope).build());
+
+    Map<String, AttributeMetadata> attributesById = new HashMap<>();
+    Map<String, AttributeMetadata> attributesByKey = new HashMap<>();
+    attributeMetadataIterator.forEachRemaining(
+        metadata -> {
+          attributesById.put(metadata.getId(), metadata);
+          attributesByKey.putIfAbsent(metadata.getKey(), metadata);
+        });
+
+    return new ScopeAttributes(
+        Collections.unmodifiableMap(attributesById), Collections.unmodifiableMap(attributesByKey));
+  }
+
+  /** Loads the metadata of the tenants and scopes configured for warmup in the background. */
+  public void warmUp() {
+    for (String tenantId : config.getWarmupTenants()) {
+      RequestContext requestContext =
+          new RequestContext(tenantId, Map.of(TENANT_ID_HEADER, tenantId));
+      for (String attributeScope : config.getWarmupScopes()) {
+        refreshExecutor.execute(
+            () -> {
+              try {
+                scopeAttributesCache.get(new AttributeCacheKey<>(requestContext, attributeScope));
+              } catch (ExecutionException | RuntimeException e) {
+                LOG.warn(
+                    "Error warming up attribute metadata for tenant:{}, scope:{}",
+                    tenantId,
+                    attributeScope,
+                    e);
+              }
+            });
+      }
+    }
   }
 
   public Map<String, AttributeMetadata> getAttributesMetadata(
       RequestContext requestContext, String attributeScope) {
     try {
-      AttributeCacheKey<String> cacheKey = new AttributeCacheKey<>(requestContext, attributeScope);
-      return scopeToMapOfIdAndAttributeMetadataCache.get(cacheKey);
+      return getScopeAttributes(requestContext, attributeScope).getAttributesById();
     } catch (ExecutionException e) {
       LOG.error(String.format("Error retrieving attribute metadata for %s", attributeScope), e);
       throw new RuntimeException(e);
@@ -112,13 +156,41 @@ public class AttributeMetadataProvider {
   public Optional<AttributeMetadata> getAttributeMetadata(
       RequestContext requestContext, String scope, String key) {
     try {
-      AttributeCacheKey<Map.Entry<String, String>> cacheKey =
-          new AttributeCacheKey<>(requestContext, new AbstractMap.SimpleEntry<>(scope, key));
-      return Optional.ofNullable(scopeAndKeyToAttrMetadataCache.get(cacheKey));
+      return Optional.ofNullable(
+          getScopeAttributes(requestContext, scope).getAttributesByKey().get(key));
     } catch (ExecutionException e) {
       LOG.error("Error retrieving AttributeMetadata for scope:{}, key:{}", scope, key);
       throw new RuntimeException(
           String.format("Error retrieving AttributeMetadata for scope:%s, key:%s", scope, key));
     }
   }
+
+  private ScopeAttributes getScopeAttributes(RequestContext requestContext, String attributeScope)
+      throws ExecutionException {
+    // Compared by reference, the headers of a request being the same map for all its lookups
+    if (latestRequestHeaders.get(requestContext.getTenantId()) != requestContext.getHeaders()) {
+      latestRequestHeaders.put(requestContext.getTenantId(), requestContext.getHeaders());
+    }
+    return scopeAttributesCache.get(new AttributeCacheKey<>(requestContext, attributeScope));
+  }
+
+  private static class ScopeAttributes {
+    private final Map<String, AttributeMetadata> attributesById;
+    private final Map<String, AttributeMetadata> attributesByKey;
+
+    ScopeAttributes(
+        Map<String, AttributeMetadata> attributesById,
+        Map<String, AttributeMetadata> attributesByKey) {
+      this.attributesById = attributesById;
+      this.attributesByKey = attributesByKey;
+    }
+
+    Map<String, AttributeMetadata> getAttributesById() {
+      return attributesById;
+    }
+
+    Map<String, AttributeMetadata> getAttributesByKey() {
+      return attributesByKey;
+    }
+  }
 }
@@ -0,0 +1,191 @@
+package org.hypertrace.gateway.service.common;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Writes a lazily produced sequence of responses to a server streaming call while honouring the
+ * flow control of the call. The next response is only pulled from the iterator when the transport
+ * is ready to send it, so a slow client holds back the downstream query instead of the responses
+ * piling up in memory.
+ *
+ * <p>Pulling from the iterator may block, so it is done on the given executor and never on the grpc
+ * transport threads.
+ *
+ * <p>The downstream calls producing the responses are to be started in the downstream context,
+ * which is cancelled when the client cancels the call, so that they stop instead of streaming into
+ * a call nobody reads anymore. It is also cancelled once the call is completed, to release it.
+ */
+public class FlowControlledResponseStreamer<T> {
+
+  private final ServerCallStreamObserver<T> responseObserver;
+  private final Iterator<T> responses;
+  private final CompletableFuture<T> lastResponse;
+  private final Executor executor;
+  private final Context.CancellableContext downstreamContext;
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+  private volatile boolean cancelled;
+
+  private FlowControlledResponseStreamer(
+      ServerCallStreamObserver<T> responseObserver,
+      Iterator<T> responses,
+      CompletableFuture<T> lastResponse,
+      Executor executor,
+      Context.CancellableContext downstreamContext) {
+    this.responseObserver = responseObserver;
+    this.responses = responses;
+    this.lastResponse = lastResponse;
+    this.executor = executor;
+    this.downstreamContext = downstreamContext;
+  }
+
+  /**
+   * Starts the downstream call producing the responses of a stream in its downstream context, see
+   * {@link #stream(ServerCallStreamObserver, Iterator, CompletableFuture, Executor,
+   * Context.CancellableContext)}.
+   */
+  public static <R> R startInContext(
+      Context.CancellableContext downstreamContext, Supplier<R> downstreamCall) {
+    Context previous = downstreamContext.attach();
+    try {
+      return downstreamCall.get();
+    } finally {
+      downstreamContext.detach(previous);
+    }
+  }
+
+  /**
+   * Streams all the responses and completes the call. Has to be invoked from the service method
+   * itself, as the flow control handlers can't be registered once the method has returned.
+   *
+   * @return future that completes once the call has been completed, or exceptionally if the call
+   *     failed or got cancelled by the client
+   */
+  public static <T> CompletableFuture<Void> stream(
+      ServerCallStreamObserver<T> responseObserver, Iterator<T> responses, Executor executor) {
+    return stream(responseObserver, responses, null, executor);
+  }
+
+  /**
+   * Same as {@link #stream(ServerCallStreamObserver, Iterator, Executor)}, with a response sent
+   * after all the others once the given future completes. Useful for data computed separately, like
+   * totals. The future may be null, in which case there is no such response.
+   */
+  public static <T> CompletableFuture<Void> stream(
+      ServerCallStreamObserver<T> responseObserver,
+      Iterator<T> responses,
+      CompletableFuture<T> lastResponse,
+      Executor executor) {
+    return stream(responseObserver, responses, lastResponse, executor, null);
+  }
+
+  /**
+   * Same as {@link #stream(ServerCallStreamObserver, Iterator, CompletableFuture, Executor)}, with
+   * the downstream context of the calls producing the responses, see {@link
+   * #startInContext(Context.CancellableContext, Supplier)}. The last response may be null.
+   */
+  public static <T> CompletableFuture<Void> stream(
+      ServerCallStreamObserver<T> responseObserver,
+      Iterator<T> responses,
+      CompletableFuture<T> lastResponse,
+      Executor executor,
+      Context.CancellableContext downstreamContext) {
+    FlowControlledResponseStreamer<T> streamer =
+        new FlowControlledResponseStreamer<>(
+            responseObserver, responses, lastResponse, executor, downstreamContext);
+    responseObserver.setOnCancelHandler(streamer::onCancel);
+    responseObserver.setOnReadyHandler(streamer::onReady);
+    streamer.onReady();
+    return streamer.completion;
+  }
+
+  private void onCancel() {
+    cancelled = true;
+    StatusRuntimeException cancellation =
+        Status.CANCELLED.withDescription("Cancelled by the client").asRuntimeException();
+    completion.completeExceptionally(cancellation);
+    cancelDownstream(cancellation);
+  }
+
+  private void cancelDownstream(Throwable cause) {
+    if (downstreamContext != null) {
+      downstreamContext.cancel(cause);
+    }
+  }
+
+  private void onReady() {
+    if (!completion.isDone() && draining.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      while (!cancelled && responseObserver.isReady()) {
+        if (!responses.hasNext()) {
+          // the draining flag is left set, nothing is pulled from the iterator anymore
+          finish();
+          return;
+        }
+        responseObserver.onNext(responses.next());
+      }
+    } catch (RuntimeException e) {
+      fail(e);
+      return;
+    }
+
+    draining.set(false);
+    // The call may have become ready again after the last check and before the flag got reset, in
+    // which case the notification was skipped.
+    if (!cancelled && responseObserver.isReady()) {
+      onReady();
+    }
+  }
+
+  private void finish() {
+    if (lastResponse == null) {
+      complete();
+      return;
+    }
+
+    lastResponse.whenComplete(
+        (response, throwable) -> {
+          if (throwable != null) {
+            fail(
+                throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable);
+            return;
+          }
+          if (!cancelled) {
+            responseObserver.onNext(response);
+          }
+          complete();
+        });
+  }
+
+  private void complete() {
+    if (!cancelled) {
+      responseObserver.onCompleted();
+    }
+    completion.complete(null);
+    cancelDownstream(null);
+  }
+
+  private void fail(Throwable throwable) {
+    if (!cancelled) {
+      responseObserver.onError(throwable);
+    }
+    completion.completeExceptionally(throwable);
+    cancelDownstream(throwable);
+  }
+}
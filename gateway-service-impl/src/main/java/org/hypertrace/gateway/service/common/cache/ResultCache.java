@@ -0,0 +1,251 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.common.util.RequestHeadersUtil;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+
+/**
+ * Caches query responses per tenant and request, so that identical requests issued again, like
+ * dashboards being refreshed, don't have to go to the downstream services.
+ *
+ * <p>Callers are expected to normalize the request used as the key, typically by aligning its time
+ * range with {@link #alignToPeriodBoundary}, so that requests differing only by a few millis share
+ * the entry. The loader must then compute the response of the normalized request, as it is served
+ * to all the requests sharing the entry. Responses are only shared by the requests forwarding the
+ * same headers, but for the ignored ones, as they are fetched with the credentials of the caller.
+ * The cache is bounded by the serialized size of the entries. Results of time ranges ending close
+ * to now are kept for a short time only, since data for them may still arrive, while results of
+ * historical time ranges are kept longer.
+ */
+public class ResultCache<V extends Message> {
+  private static final String HITS_METRIC = "hypertrace.result.cache.hits";
+  private static final String MISSES_METRIC = "hypertrace.result.cache.misses";
+  private static final String EVICTIONS_METRIC = "hypertrace.result.cache.evictions";
+  private static final String CACHE_NAME_TAG = "cache";
+
+  private final ResultCacheConfig config;
+  private final Clock clock;
+  private final Cache<ResultCacheKey, CachedResult<V>> cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  public ResultCache(String name, ResultCacheConfig config) {
+    this(name, config, Clock.systemUTC());
+  }
+
+  ResultCache(String name, ResultCacheConfig config, Clock clock) {
+    this.config = config;
+    this.clock = clock;
+    Map<String, String> tags = ImmutableMap.of(CACHE_NAME_TAG, name);
+    this.hits = PlatformMetricsRegistry.registerCounter(HITS_METRIC, tags);
+    this.misses = PlatformMetricsRegistry.registerCounter(MISSES_METRIC, tags);
+    this.evictions = PlatformMetricsRegistry.registerCounter(EVICTIONS_METRIC, tags);
+    this.cache =
+        config.isEnabled()
+            ? CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .<ResultCacheKey, CachedResult<V>>weigher(
+                    (key, value) -> key.getWeight() + value.getWeight())
+                // entries are also checked against their own expiry time on read
+                .expireAfterWrite(maxOf(config.getRecentTtl(), config.getHistoricalTtl()))
+                .removalListener(
+                    notification -> {
+                      if (notification.wasEvicted()) {
+                        evictions.increment();
+                      }
+                    })
+                .build()
+            : null;
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Aligns the time to the period of the first time aggregation, or to the configured default
+   * alignment if there is none.
+   */
+  public long alignToPeriodBoundary(
+      long timeMillis, List<TimeAggregation> timeAggregations, boolean alignToNext) {
+    return QueryExpressionUtil.alignToPeriodBoundary(
+        timeMillis, getAlignmentPeriodSecs(timeAggregations), alignToNext);
+  }
+
+  /**
+   * Returns the cached response for the request, or loads and caches it. The request is only
+   * computed when the cache is enabled.
+   *
+   * @param endTimeMillis end of the time range of the request, deciding how long the response is
+   *     kept
+   */
+  public V get(
+      String tenantId,
+      Map<String, String> requestHeaders,
+      Supplier<Message> request,
+      long endTimeMillis,
+      Supplier<V> loader) {
+    if (!isEnabled()) {
+      return loader.get();
+    }
+
+    ResultCacheKey key = createKey(tenantId, requestHeaders, request.get());
+    V cachedResult = getIfPresent(key);
+    if (cachedResult != null) {
+      return cachedResult;
+    }
+
+    V result = loader.get();
+    put(key, endTimeMillis, result);
+    return result;
+  }
+
+  /** Same as {@link #get}, for responses computed asynchronously. */
+  public CompletableFuture<V> getAsync(
+      String tenantId,
+      Map<String, String> requestHeaders,
+      Supplier<Message> request,
+      long endTimeMillis,
+      Supplier<CompletableFuture<V>> loader) {
+    if (!isEnabled()) {
+      return loader.get();
+    }
+
+    ResultCacheKey key = createKey(tenantId, requestHeaders, request.get());
+    V cachedResult = getIfPresent(key);
+    if (cachedResult != null) {
+      return CompletableFuture.completedFuture(cachedResult);
+    }
+
+    return loader
+        .get()
+        .thenApply(
+            result -> {
+              put(key, endTimeMillis, result);
+              return result;
+            });
+  }
+
+  /** Drops all the responses cached for the tenant, e.g. after its data has been updated. */
+  public void invalidate(String tenantId) {
+    if (isEnabled()) {
+      cache.asMap().keySet().removeIf(key -> key.tenantId.equals(tenantId));
+    }
+  }
+
+  private ResultCacheKey createKey(
+      String tenantId, Map<String, String> requestHeaders, Message request) {
+    return new ResultCacheKey(
+        tenantId,
+        RequestHeadersUtil.getKeyHeaders(requestHeaders, config.getIgnoredHeaders()),
+        request);
+  }
+
+  private V getIfPresent(ResultCacheKey key) {
+    CachedResult<V> cachedResult = cache.getIfPresent(key);
+    if (cachedResult != null && cachedResult.expiryTimeMillis <= clock.millis()) {
+      if (cache.asMap().remove(key, cachedResult)) {
+        evictions.increment();
+      }
+      cachedResult = null;
+    }
+
+    if (cachedResult == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return cachedResult.value;
+  }
+
+  private void put(ResultCacheKey key, long endTimeMillis, V result) {
+    long now = clock.millis();
+    Duration ttl =
+        endTimeMillis > now - config.getRecentWindow().toMillis()
+            ? config.getRecentTtl()
+            : config.getHistoricalTtl();
+    if (ttl.isZero() || ttl.isNegative()) {
+      return;
+    }
+    cache.put(key, new CachedResult<>(result, now + ttl.toMillis()));
+  }
+
+  private long getAlignmentPeriodSecs(List<TimeAggregation> timeAggregations) {
+    if (!timeAggregations.isEmpty()) {
+      Period period = timeAggregations.get(0).getPeriod();
+      if (period.getValue() > 0) {
+        return Duration.of(period.getValue(), ChronoUnit.valueOf(period.getUnit())).getSeconds();
+      }
+    }
+    return Math.max(1, config.getDefaultAlignment().getSeconds());
+  }
+
+  private static Duration maxOf(Duration first, Duration second) {
+    return first.compareTo(second) >= 0 ? first : second;
+  }
+
+  private static class ResultCacheKey {
+    private final String tenantId;
+    private final Map<String, String> headers;
+    private final Message request;
+
+    ResultCacheKey(String tenantId, Map<String, String> headers, Message request) {
+      this.tenantId = tenantId;
+      this.headers = headers;
+      this.request = request;
+    }
+
+    int getWeight() {
+      return tenantId.length()
+          + headers.entrySet().stream()
+              .mapToInt(header -> header.getKey().length() + header.getValue().length())
+              .sum()
+          + request.getSerializedSize();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      ResultCacheKey that = (ResultCacheKey) o;
+      return Objects.equals(tenantId, that.tenantId)
+          && Objects.equals(headers, that.headers)
+          && Objects.equals(request, that.request);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenantId, headers, request);
+    }
+  }
+
+  private static class CachedResult<V extends Message> {
+    private final V value;
+    private final long expiryTimeMillis;
+
+    CachedResult(V value, long expiryTimeMillis) {
+      this.value = value;
+      this.expiryTimeMillis = expiryTimeMillis;
+    }
+
+    int getWeight() {
+      return value.getSerializedSize();
+    }
+  }
+}
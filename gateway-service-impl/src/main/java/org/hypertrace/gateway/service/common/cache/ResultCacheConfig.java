@@ -0,0 +1,220 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.Set;
+import org.hypertrace.gateway.service.common.client.RequestCoalescingConfig;
+
+/**
+ * Configuration of the response cache used for explore and entities queries, and of the time series
+ * bucket cache. The caches are disabled unless explicitly enabled. The results are cached per
+ * forwarded headers, but for the ignored headers of the request coalescing config, see {@link
+ * RequestCoalescingConfig}.
+ *
+ * <pre>
+ * result.cache.config = {
+ *   enabled = true
+ *   max.weight.bytes = 67108864
+ *   // Alignment of the time range in the cache key for requests without time aggregations
+ *   default.alignment = 1m
+ *   // Results whose end time falls within this window of now may still change as data arrives
+ *   recent.window = 5m
+ *   recent.ttl = 15s
+ *   historical.ttl = 10m
+ *   time.series = {
+ *     enabled = true
+ *     max.weight.bytes = 67108864
+ *     // Buckets ending within this delay of now are always queried, as data may still arrive
+ *     settle.delay = 1m
+ *     // Series not requested for this long are dropped
+ *     idle.ttl = 1h
+ *   }
+ * }
+ * </pre>
+ */
+public class ResultCacheConfig {
+  private static final String CONFIG_PATH = "result.cache.config";
+  private static final String ENABLED_PATH = "enabled";
+  private static final String MAX_WEIGHT_BYTES_PATH = "max.weight.bytes";
+  private static final String DEFAULT_ALIGNMENT_PATH = "default.alignment";
+  private static final String RECENT_WINDOW_PATH = "recent.window";
+  private static final String RECENT_TTL_PATH = "recent.ttl";
+  private static final String HISTORICAL_TTL_PATH = "historical.ttl";
+  private static final String TIME_SERIES_PATH = "time.series";
+  private static final String SETTLE_DELAY_PATH = "settle.delay";
+  private static final String IDLE_TTL_PATH = "idle.ttl";
+
+  private static final long DEFAULT_MAX_WEIGHT_BYTES = 64 * 1024 * 1024;
+  private static final Duration DEFAULT_ALIGNMENT = Duration.ofMinutes(1);
+  private static final Duration DEFAULT_RECENT_WINDOW = Duration.ofMinutes(5);
+  private static final Duration DEFAULT_RECENT_TTL = Duration.ofSeconds(15);
+  private static final Duration DEFAULT_HISTORICAL_TTL = Duration.ofMinutes(10);
+  private static final Duration DEFAULT_SETTLE_DELAY = Duration.ofMinutes(1);
+  private static final Duration DEFAULT_IDLE_TTL = Duration.ofHours(1);
+
+  private final boolean enabled;
+  private final long maxWeightBytes;
+  private final Duration defaultAlignment;
+  private final Duration recentWindow;
+  private final Duration recentTtl;
+  private final Duration historicalTtl;
+  private final TimeSeriesCacheConfig timeSeriesCacheConfig;
+  private final Set<String> ignoredHeaders;
+
+  public static ResultCacheConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    Config timeSeriesConfig =
+        config.hasPath(TIME_SERIES_PATH)
+            ? config.getConfig(TIME_SERIES_PATH)
+            : ConfigFactory.empty();
+    Set<String> ignoredHeaders = RequestCoalescingConfig.from(appConfig).getIgnoredHeaders();
+    return new ResultCacheConfig(
+        isEnabled(config),
+        getMaxWeightBytes(config),
+        getDuration(config, DEFAULT_ALIGNMENT_PATH, DEFAULT_ALIGNMENT),
+        getDuration(config, RECENT_WINDOW_PATH, DEFAULT_RECENT_WINDOW),
+        getDuration(config, RECENT_TTL_PATH, DEFAULT_RECENT_TTL),
+        getDuration(config, HISTORICAL_TTL_PATH, DEFAULT_HISTORICAL_TTL),
+        new TimeSeriesCacheConfig(
+            isEnabled(timeSeriesConfig),
+            getMaxWeightBytes(timeSeriesConfig),
+            getDuration(timeSeriesConfig, SETTLE_DELAY_PATH, DEFAULT_SETTLE_DELAY),
+            getDuration(timeSeriesConfig, IDLE_TTL_PATH, DEFAULT_IDLE_TTL),
+            ignoredHeaders),
+        ignoredHeaders);
+  }
+
+  private static boolean isEnabled(Config config) {
+    return config.hasPath(ENABLED_PATH) && config.getBoolean(ENABLED_PATH);
+  }
+
+  private static long getMaxWeightBytes(Config config) {
+    return config.hasPath(MAX_WEIGHT_BYTES_PATH)
+        ? config.getBytes(MAX_WEIGHT_BYTES_PATH)
+        : DEFAULT_MAX_WEIGHT_BYTES;
+  }
+
+  private static Duration getDuration(Config config, String path, Duration defaultValue) {
+    return config.hasPath(path) ? config.getDuration(path) : defaultValue;
+  }
+
+  ResultCacheConfig(
+      boolean enabled,
+      long maxWeightBytes,
+      Duration defaultAlignment,
+      Duration recentWindow,
+      Duration recentTtl,
+      Duration historicalTtl,
+      TimeSeriesCacheConfig timeSeriesCacheConfig) {
+    this(
+        enabled,
+        maxWeightBytes,
+        defaultAlignment,
+        recentWindow,
+        recentTtl,
+        historicalTtl,
+        timeSeriesCacheConfig,
+        Set.of());
+  }
+
+  ResultCacheConfig(
+      boolean enabled,
+      long maxWeightBytes,
+      Duration defaultAlignment,
+      Duration recentWindow,
+      Duration recentTtl,
+      Duration historicalTtl,
+      TimeSeriesCacheConfig timeSeriesCacheConfig,
+      Set<String> ignoredHeaders) {
+    this.enabled = enabled;
+    this.maxWeightBytes = maxWeightBytes;
+    this.defaultAlignment = defaultAlignment;
+    this.recentWindow = recentWindow;
+    this.recentTtl = recentTtl;
+    this.historicalTtl = historicalTtl;
+    this.timeSeriesCacheConfig = timeSeriesCacheConfig;
+    this.ignoredHeaders = ignoredHeaders;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getMaxWeightBytes() {
+    return maxWeightBytes;
+  }
+
+  public Duration getDefaultAlignment() {
+    return defaultAlignment;
+  }
+
+  public Duration getRecentWindow() {
+    return recentWindow;
+  }
+
+  public Duration getRecentTtl() {
+    return recentTtl;
+  }
+
+  public Duration getHistoricalTtl() {
+    return historicalTtl;
+  }
+
+  public TimeSeriesCacheConfig getTimeSeriesCacheConfig() {
+    return timeSeriesCacheConfig;
+  }
+
+  /** Lower case names of the forwarded headers which aren't part of the cache keys. */
+  public Set<String> getIgnoredHeaders() {
+    return ignoredHeaders;
+  }
+
+  public static class TimeSeriesCacheConfig {
+    private final boolean enabled;
+    private final long maxWeightBytes;
+    private final Duration settleDelay;
+    private final Duration idleTtl;
+    private final Set<String> ignoredHeaders;
+
+    TimeSeriesCacheConfig(
+        boolean enabled, long maxWeightBytes, Duration settleDelay, Duration idleTtl) {
+      this(enabled, maxWeightBytes, settleDelay, idleTtl, Set.of());
+    }
+
+    TimeSeriesCacheConfig(
+        boolean enabled,
+        long maxWeightBytes,
+        Duration settleDelay,
+        Duration idleTtl,
+        Set<String> ignoredHeaders) {
+      this.enabled = enabled;
+      this.maxWeightBytes = maxWeightBytes;
+      this.settleDelay = settleDelay;
+      this.idleTtl = idleTtl;
+      this.ignoredHeaders = ignoredHeaders;
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public long getMaxWeightBytes() {
+      return maxWeightBytes;
+    }
+
+    public Duration getSettleDelay() {
+      return settleDelay;
+    }
+
+    public Duration getIdleTtl() {
+      return idleTtl;
+    }
+
+    /** Lower case names of the forwarded headers which aren't part of the series keys. */
+    public Set<String> getIgnoredHeaders() {
+      return ignoredHeaders;
+    }
+  }
+}
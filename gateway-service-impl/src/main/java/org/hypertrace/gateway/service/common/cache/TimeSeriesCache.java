@@ -0,0 +1,371 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.common.util.RequestHeadersUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the rows of time series queries per time bucket, so that a query over a window mostly
+ * covered by a previous one, like a live chart being refreshed, only asks query service for the
+ * buckets that aren't cached yet.
+ *
+ * <p>A series is keyed by the tenant, the forwarded headers but for the ignored ones, the query
+ * without its time range and the period. Only the buckets which ended more than the configured
+ * settle delay ago are cached, the more recent ones are queried every time as data may still be
+ * arriving for them. The cached buckets of a series form a contiguous range, which slides forward
+ * with the requested windows.
+ */
+public class TimeSeriesCache {
+  private static final Logger LOG = LoggerFactory.getLogger(TimeSeriesCache.class);
+
+  private static final String HITS_METRIC = "hypertrace.time.series.cache.hits";
+  private static final String MISSES_METRIC = "hypertrace.time.series.cache.misses";
+  private static final String EVICTIONS_METRIC = "hypertrace.time.series.cache.evictions";
+  private static final String CACHE_NAME_TAG = "cache";
+  private static final TimeSeriesCache DISABLED = new TimeSeriesCache();
+
+  private final TimeSeriesCacheConfig config;
+  private final Clock clock;
+  private final Cache<SeriesKey, CachedSeries> cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  /** Builds a query request for the given time range. */
+  @FunctionalInterface
+  public interface TimeRangeQueryBuilder {
+    QueryRequest build(long startTimeMillis, long endTimeMillis);
+  }
+
+  /** Executes the query of a series for the given time range. */
+  @FunctionalInterface
+  public interface TimeRangeQueryExecutor {
+    CompletableFuture<List<ResultSetChunk>> execute(long startTimeMillis, long endTimeMillis);
+  }
+
+  public TimeSeriesCache(String name, TimeSeriesCacheConfig config) {
+    this(name, config, Clock.systemUTC());
+  }
+
+  /** Cache which never caches anything, for the places which don't query time series. */
+  public static TimeSeriesCache disabled() {
+    return DISABLED;
+  }
+
+  private TimeSeriesCache() {
+    this.config = null;
+    this.clock = null;
+    this.cache = null;
+    this.hits = null;
+    this.misses = null;
+    this.evictions = null;
+  }
+
+  TimeSeriesCache(String name, TimeSeriesCacheConfig config, Clock clock) {
+    this.config = config;
+    this.clock = clock;
+    Map<String, String> tags = ImmutableMap.of(CACHE_NAME_TAG, name);
+    this.hits = PlatformMetricsRegistry.registerCounter(HITS_METRIC, tags);
+    this.misses = PlatformMetricsRegistry.registerCounter(MISSES_METRIC, tags);
+    this.evictions = PlatformMetricsRegistry.registerCounter(EVICTIONS_METRIC, tags);
+    this.cache =
+        config.isEnabled()
+            ? CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .<SeriesKey, CachedSeries>weigher(
+                    (key, value) -> key.getWeight() + value.getWeight())
+                .expireAfterAccess(config.getIdleTtl())
+                .removalListener(
+                    notification -> {
+                      if (notification.wasEvicted()) {
+                        evictions.increment();
+                      }
+                    })
+                .build()
+            : null;
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Executes the time series query for the given window, reusing the cached buckets of the series.
+   * The returned result holds the cached rows followed by the queried ones, in a single chunk.
+   *
+   * @param startTimeMillis start of the window, aligned to the period
+   * @param endTimeMillis end of the window, aligned to the period
+   * @param timeColumnIndex index of the column holding the bucket start time in the result rows
+   * @param queryBuilder builds the query for a time range, the rest of the query being the same
+   * @param queryExecutor executes a query
+   */
+  public CompletableFuture<List<ResultSetChunk>> executeQuery(
+      String tenantId,
+      Map<String, String> requestHeaders,
+      long startTimeMillis,
+      long endTimeMillis,
+      long periodSecs,
+      int timeColumnIndex,
+      TimeRangeQueryBuilder queryBuilder,
+      Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor) {
+    return executeQuery(
+        tenantId,
+        requestHeaders,
+        startTimeMillis,
+        endTimeMillis,
+        periodSecs,
+        timeColumnIndex,
+        queryBuilder,
+        (queryStartTimeMillis, queryEndTimeMillis) ->
+            queryExecutor.apply(queryBuilder.build(queryStartTimeMillis, queryEndTimeMillis)));
+  }
+
+  /**
+   * Same as {@link #executeQuery(String, Map, long, long, long, int, TimeRangeQueryBuilder,
+   * Function)}, the queries being executed by time range, e.g. split in sub-queries on parts of the
+   * range.
+   *
+   * @param queryExecutor executes the query built by the query builder for a time range
+   */
+  public CompletableFuture<List<ResultSetChunk>> executeQuery(
+      String tenantId,
+      Map<String, String> requestHeaders,
+      long startTimeMillis,
+      long endTimeMillis,
+      long periodSecs,
+      int timeColumnIndex,
+      TimeRangeQueryBuilder queryBuilder,
+      TimeRangeQueryExecutor queryExecutor) {
+    QueryRequest request = queryBuilder.build(startTimeMillis, endTimeMillis);
+    long periodMillis = TimeUnit.SECONDS.toMillis(periodSecs);
+    if (!isEnabled()
+        || periodMillis <= 0
+        || startTimeMillis >= endTimeMillis
+        || startTimeMillis % periodMillis != 0
+        || endTimeMillis % periodMillis != 0) {
+      return queryExecutor.execute(startTimeMillis, endTimeMillis);
+    }
+
+    QueryRequest queryShape = queryBuilder.build(0, 0);
+    if (queryShape.equals(request)) {
+      // The time range of the query doesn't depend on the window, e.g. it comes from the filter.
+      return queryExecutor.execute(startTimeMillis, endTimeMillis);
+    }
+
+    SeriesKey key =
+        new SeriesKey(
+            tenantId,
+            RequestHeadersUtil.getKeyHeaders(requestHeaders, config.getIgnoredHeaders()),
+            queryShape,
+            periodSecs);
+    long settledEndTimeMillis =
+        Math.min(
+            endTimeMillis,
+            QueryExpressionUtil.alignToPeriodBoundary(
+                clock.millis() - config.getSettleDelay().toMillis(), periodSecs, false));
+    CachedSeries cachedSeries = cache.getIfPresent(key);
+    if (cachedSeries == null
+        || startTimeMillis < cachedSeries.startTimeMillis
+        || startTimeMillis >= cachedSeries.endTimeMillis) {
+      misses.increment();
+      return queryExecutor
+          .execute(startTimeMillis, endTimeMillis)
+          .thenApply(
+              chunks -> {
+                cacheSettledBuckets(
+                    key,
+                    request,
+                    null,
+                    chunks,
+                    startTimeMillis,
+                    settledEndTimeMillis,
+                    timeColumnIndex);
+                return chunks;
+              });
+    }
+
+    hits.increment();
+    long queryStartTimeMillis = Math.min(cachedSeries.endTimeMillis, endTimeMillis);
+    if (queryStartTimeMillis >= endTimeMillis) {
+      return CompletableFuture.completedFuture(
+          cachedSeries.toChunks(startTimeMillis, endTimeMillis, List.of()));
+    }
+
+    QueryRequest missingBucketsRequest = queryBuilder.build(queryStartTimeMillis, endTimeMillis);
+    return queryExecutor
+        .execute(queryStartTimeMillis, endTimeMillis)
+        .thenApply(
+            chunks -> {
+              cacheSettledBuckets(
+                  key,
+                  missingBucketsRequest,
+                  cachedSeries,
+                  chunks,
+                  startTimeMillis,
+                  settledEndTimeMillis,
+                  timeColumnIndex);
+              return cachedSeries.toChunks(startTimeMillis, queryStartTimeMillis, chunks);
+            });
+  }
+
+  private void cacheSettledBuckets(
+      SeriesKey key,
+      QueryRequest request,
+      CachedSeries cachedSeries,
+      List<ResultSetChunk> chunks,
+      long startTimeMillis,
+      long settledEndTimeMillis,
+      int timeColumnIndex) {
+    if (settledEndTimeMillis <= startTimeMillis
+        || (cachedSeries != null && settledEndTimeMillis <= cachedSeries.endTimeMillis)) {
+      return;
+    }
+
+    NavigableMap<Long, List<Row>> buckets =
+        cachedSeries == null
+            ? new TreeMap<>()
+            : new TreeMap<>(cachedSeries.buckets.tailMap(startTimeMillis, true));
+    ResultSetMetadata resultSetMetadata =
+        cachedSeries == null ? null : cachedSeries.resultSetMetadata;
+    int rowCount = 0;
+    for (ResultSetChunk chunk : chunks) {
+      if (chunk.hasResultSetMetadata()) {
+        resultSetMetadata = chunk.getResultSetMetadata();
+      }
+      for (Row row : chunk.getRowList()) {
+        rowCount++;
+        long bucketStartTimeMillis;
+        try {
+          bucketStartTimeMillis = Long.parseLong(row.getColumn(timeColumnIndex).getString());
+        } catch (RuntimeException e) {
+          LOG.debug("Not caching the series, unexpected time column in row: {}", row);
+          return;
+        }
+        if (bucketStartTimeMillis < settledEndTimeMillis) {
+          buckets.computeIfAbsent(bucketStartTimeMillis, ignored -> new ArrayList<>()).add(row);
+        }
+      }
+    }
+
+    // A result holding as many rows as the limit may be missing some, which would then be missing
+    // from all the later responses using the cached buckets.
+    if (request.getLimit() > 0 && rowCount >= request.getLimit()) {
+      return;
+    }
+    cache.put(
+        key, new CachedSeries(resultSetMetadata, buckets, startTimeMillis, settledEndTimeMillis));
+  }
+
+  private static class SeriesKey {
+    private final String tenantId;
+    private final Map<String, String> headers;
+    private final QueryRequest queryShape;
+    private final long periodSecs;
+
+    SeriesKey(
+        String tenantId, Map<String, String> headers, QueryRequest queryShape, long periodSecs) {
+      this.tenantId = tenantId;
+      this.headers = headers;
+      this.queryShape = queryShape;
+      this.periodSecs = periodSecs;
+    }
+
+    int getWeight() {
+      return tenantId.length()
+          + headers.entrySet().stream()
+              .mapToInt(header -> header.getKey().length() + header.getValue().length())
+              .sum()
+          + queryShape.getSerializedSize();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SeriesKey that = (SeriesKey) o;
+      return periodSecs == that.periodSecs
+          && Objects.equals(tenantId, that.tenantId)
+          && Objects.equals(headers, that.headers)
+          && Objects.equals(queryShape, that.queryShape);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenantId, headers, queryShape, periodSecs);
+    }
+  }
+
+  /** Rows of the buckets in [startTimeMillis, endTimeMillis), keyed by bucket start time. */
+  private static class CachedSeries {
+    private final ResultSetMetadata resultSetMetadata;
+    private final NavigableMap<Long, List<Row>> buckets;
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final int weight;
+
+    CachedSeries(
+        ResultSetMetadata resultSetMetadata,
+        NavigableMap<Long, List<Row>> buckets,
+        long startTimeMillis,
+        long endTimeMillis) {
+      this.resultSetMetadata = resultSetMetadata;
+      this.buckets = buckets;
+      this.startTimeMillis = startTimeMillis;
+      this.endTimeMillis = endTimeMillis;
+      this.weight =
+          (resultSetMetadata == null ? 0 : resultSetMetadata.getSerializedSize())
+              + buckets.values().stream()
+                  .flatMap(List::stream)
+                  .mapToInt(Row::getSerializedSize)
+                  .sum();
+    }
+
+    int getWeight() {
+      return weight;
+    }
+
+    /** Cached rows of the buckets in [fromTimeMillis, toTimeMillis) followed by the given rows. */
+    List<ResultSetChunk> toChunks(
+        long fromTimeMillis, long toTimeMillis, List<ResultSetChunk> queriedChunks) {
+      ResultSetChunk.Builder chunkBuilder = ResultSetChunk.newBuilder().setIsLastChunk(true);
+      buckets
+          .subMap(fromTimeMillis, true, toTimeMillis, false)
+          .values()
+          .forEach(chunkBuilder::addAllRow);
+
+      ResultSetMetadata metadata = resultSetMetadata;
+      for (ResultSetChunk chunk : queriedChunks) {
+        if (chunk.hasResultSetMetadata()) {
+          metadata = chunk.getResultSetMetadata();
+        }
+        chunkBuilder.addAllRow(chunk.getRowList());
+      }
+
+      if (metadata == null || chunkBuilder.getRowCount() == 0) {
+        return List.of();
+      }
+      return List.of(chunkBuilder.setResultSetMetadata(metadata).build());
+    }
+  }
+}
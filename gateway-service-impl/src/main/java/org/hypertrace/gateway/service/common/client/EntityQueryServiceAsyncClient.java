@@ -0,0 +1,120 @@
+package org.hypertrace.gateway.service.common.client;
+
+import io.grpc.Channel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
+import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
+import org.hypertrace.entity.query.service.v1.EntityQueryServiceGrpc;
+import org.hypertrace.entity.query.service.v1.ResultSetChunk;
+import org.hypertrace.entity.query.service.v1.TotalEntitiesRequest;
+import org.hypertrace.entity.query.service.v1.TotalEntitiesResponse;
+
+/** Non-blocking counterpart of the query APIs of {@link EntityQueryServiceClient}. */
+public interface EntityQueryServiceAsyncClient {
+
+  CompletableFuture<List<ResultSetChunk>> execute(
+      EntityQueryRequest request, Map<String, String> requestHeaders);
+
+  CompletableFuture<TotalEntitiesResponse> total(
+      TotalEntitiesRequest request, Map<String, String> requestHeaders);
+
+  /**
+   * Client backed by the async grpc stub on the given channel, whose calls time out after the given
+   * duration.
+   */
+  static EntityQueryServiceAsyncClient fromChannel(Channel channel, int timeoutMillis) {
+    EntityQueryServiceGrpc.EntityQueryServiceStub stub =
+        GrpcClientUtil.withCallCredentials(EntityQueryServiceGrpc.newStub(channel));
+    return new EntityQueryServiceAsyncClient() {
+      @Override
+      public CompletableFuture<List<ResultSetChunk>> execute(
+          EntityQueryRequest request, Map<String, String> requestHeaders) {
+        return GrpcClientUtil.callWithHeaders(
+            requestHeaders,
+            () -> {
+              CompletableFuture<List<ResultSetChunk>> future = new CompletableFuture<>();
+              withDeadline().execute(request, GrpcClientUtil.bufferingObserver(future));
+              return future;
+            });
+      }
+
+      @Override
+      public CompletableFuture<TotalEntitiesResponse> total(
+          TotalEntitiesRequest request, Map<String, String> requestHeaders) {
+        return GrpcClientUtil.callWithHeaders(
+            requestHeaders,
+            () -> {
+              CompletableFuture<TotalEntitiesResponse> future = new CompletableFuture<>();
+              withDeadline().total(request, GrpcClientUtil.unaryObserver(future));
+              return future;
+            });
+      }
+
+      private EntityQueryServiceGrpc.EntityQueryServiceStub withDeadline() {
+        return stub.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+    };
+  }
+
+  /**
+   * Shares a single call between the concurrent identical requests of a tenant, see {@link
+   * RequestCoalescer}.
+   */
+  static EntityQueryServiceAsyncClient coalescing(
+      EntityQueryServiceAsyncClient client, RequestCoalescingConfig config) {
+    RequestCoalescer<List<ResultSetChunk>> executeCoalescer =
+        new RequestCoalescer<>("entity-query-service", config);
+    RequestCoalescer<TotalEntitiesResponse> totalCoalescer =
+        new RequestCoalescer<>("entity-query-service-total", config);
+    return new EntityQueryServiceAsyncClient() {
+      @Override
+      public CompletableFuture<List<ResultSetChunk>> execute(
+          EntityQueryRequest request, Map<String, String> requestHeaders) {
+        return executeCoalescer.execute(
+            request,
+            requestHeaders,
+            () ->
+                client
+                    .execute(request, requestHeaders)
+                    // the result may be shared between callers
+                    .thenApply(Collections::unmodifiableList));
+      }
+
+      @Override
+      public CompletableFuture<TotalEntitiesResponse> total(
+          TotalEntitiesRequest request, Map<String, String> requestHeaders) {
+        return totalCoalescer.execute(
+            request, requestHeaders, () -> client.total(request, requestHeaders));
+      }
+    };
+  }
+
+  /**
+   * Adapts a blocking client by running its calls on the given executor. Meant for callers that
+   * only have a blocking client available, e.g. tests.
+   */
+  static EntityQueryServiceAsyncClient fromBlockingClient(
+      EntityQueryServiceClient entityQueryServiceClient, Executor executor) {
+    return new EntityQueryServiceAsyncClient() {
+      @Override
+      public CompletableFuture<List<ResultSetChunk>> execute(
+          EntityQueryRequest request, Map<String, String> requestHeaders) {
+        return CompletableFuture.supplyAsync(
+            () -> GrpcClientUtil.drain(entityQueryServiceClient.execute(request, requestHeaders)),
+            executor);
+      }
+
+      @Override
+      public CompletableFuture<TotalEntitiesResponse> total(
+          TotalEntitiesRequest request, Map<String, String> requestHeaders) {
+        return CompletableFuture.supplyAsync(
+            () -> entityQueryServiceClient.total(request, requestHeaders), executor);
+      }
+    };
+  }
+}
@@ -0,0 +1,87 @@
+package org.hypertrace.gateway.service.common.client;
+
+import io.grpc.CallCredentials;
+import io.grpc.stub.AbstractStub;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.grpcutils.client.GrpcClientRequestContextUtil;
+import org.hypertrace.core.grpcutils.client.RequestContextClientCallCredsProviderFactory;
+
+/** Helpers shared by the downstream clients built on the grpc stubs. */
+class GrpcClientUtil {
+  // Header the tenant id of a request is read from, see the grpc RequestContext
+  private static final String TENANT_ID_HEADER = "x-tenant-id";
+
+  // Same credentials as the blocking clients, forwarding the headers of the current request context
+  private static final CallCredentials CALL_CREDENTIALS =
+      RequestContextClientCallCredsProviderFactory.getClientCallCredsProvider().get();
+
+  private GrpcClientUtil() {}
+
+  static <S extends AbstractStub<S>> S withCallCredentials(S stub) {
+    return stub.withCallCredentials(CALL_CREDENTIALS);
+  }
+
+  /**
+   * Starts a call with the request context of the headers as the current one, the same way the
+   * blocking clients do it, so that the call credentials forward them whichever thread the call is
+   * started on.
+   */
+  static <T> T callWithHeaders(Map<String, String> requestHeaders, Callable<T> call) {
+    return GrpcClientRequestContextUtil.executeWithHeadersContext(requestHeaders, call);
+  }
+
+  static Optional<String> getTenantId(Map<String, String> requestHeaders) {
+    return Optional.ofNullable(requestHeaders.get(TENANT_ID_HEADER));
+  }
+
+  /** Buffers a server streaming response and completes the future once the stream ends. */
+  static <T> StreamObserver<T> bufferingObserver(CompletableFuture<List<T>> future) {
+    List<T> buffer = new ArrayList<>();
+    return new StreamObserver<>() {
+      @Override
+      public void onNext(T value) {
+        buffer.add(value);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        future.completeExceptionally(t);
+      }
+
+      @Override
+      public void onCompleted() {
+        future.complete(buffer);
+      }
+    };
+  }
+
+  static <T> StreamObserver<T> unaryObserver(CompletableFuture<T> future) {
+    return new StreamObserver<>() {
+      @Override
+      public void onNext(T value) {
+        future.complete(value);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        future.completeExceptionally(t);
+      }
+
+      @Override
+      public void onCompleted() {}
+    };
+  }
+
+  static <T> List<T> drain(Iterator<T> iterator) {
+    List<T> result = new ArrayList<>();
+    iterator.forEachRemaining(result::add);
+    return result;
+  }
+}
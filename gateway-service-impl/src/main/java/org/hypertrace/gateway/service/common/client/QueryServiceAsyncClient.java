@@ -0,0 +1,74 @@
+package org.hypertrace.gateway.service.common.client;
+
+import io.grpc.Channel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.QueryServiceGrpc;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+
+/**
+ * Non-blocking counterpart of {@link QueryServiceClient}. The returned future completes with all
+ * the chunks of the response once query service has finished streaming them, so no thread is held
+ * while the query is running.
+ */
+@FunctionalInterface
+public interface QueryServiceAsyncClient {
+
+  CompletableFuture<List<ResultSetChunk>> executeQuery(
+      QueryRequest request, Map<String, String> requestHeaders, int timeoutMillis);
+
+  /** Client backed by the async grpc stub on the given channel. */
+  static QueryServiceAsyncClient fromChannel(Channel channel) {
+    QueryServiceGrpc.QueryServiceStub stub =
+        GrpcClientUtil.withCallCredentials(QueryServiceGrpc.newStub(channel));
+    return (request, requestHeaders, timeoutMillis) ->
+        GrpcClientUtil.callWithHeaders(
+            requestHeaders,
+            () -> {
+              CompletableFuture<List<ResultSetChunk>> future = new CompletableFuture<>();
+              stub.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+                  .execute(request, GrpcClientUtil.bufferingObserver(future));
+              return future;
+            });
+  }
+
+  /**
+   * Shares a single call between the concurrent identical requests of a tenant, see {@link
+   * RequestCoalescer}. The callers are expected to use the same timeout, the shared call being made
+   * with the one of the first.
+   */
+  static QueryServiceAsyncClient coalescing(
+      QueryServiceAsyncClient client, RequestCoalescingConfig config) {
+    RequestCoalescer<List<ResultSetChunk>> coalescer =
+        new RequestCoalescer<>("query-service", config);
+    return (request, requestHeaders, timeoutMillis) ->
+        coalescer.execute(
+            request,
+            requestHeaders,
+            () ->
+                client
+                    .executeQuery(request, requestHeaders, timeoutMillis)
+                    // the result may be shared between callers
+                    .thenApply(Collections::unmodifiableList));
+  }
+
+  /**
+   * Adapts a blocking client by draining its response on the given executor. Meant for callers that
+   * only have a blocking client available, e.g. tests.
+   */
+  static QueryServiceAsyncClient fromBlockingClient(
+      QueryServiceClient queryServiceClient, Executor executor) {
+    return (request, requestHeaders, timeoutMillis) ->
+        CompletableFuture.supplyAsync(
+            () ->
+                GrpcClientUtil.drain(
+                    queryServiceClient.executeQuery(request, requestHeaders, timeoutMillis)),
+            executor);
+  }
+}
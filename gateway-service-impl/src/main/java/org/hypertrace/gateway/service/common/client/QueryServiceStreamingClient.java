@@ -0,0 +1,37 @@
+package org.hypertrace.gateway.service.common.client;
+
+import io.grpc.Channel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.QueryServiceGrpc;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+
+/**
+ * Blocking client returning the chunks of a query as query service streams them, for the callers
+ * which hand them out as they come. Unlike {@link QueryServiceClient}, which opens a connection of
+ * its own, it is built on the channel shared with {@link QueryServiceAsyncClient}.
+ */
+@FunctionalInterface
+public interface QueryServiceStreamingClient {
+
+  Iterator<ResultSetChunk> executeQuery(
+      QueryRequest request, Map<String, String> requestHeaders, int timeoutMillis);
+
+  /** Client backed by the blocking grpc stub on the given channel. */
+  static QueryServiceStreamingClient fromChannel(Channel channel) {
+    QueryServiceGrpc.QueryServiceBlockingStub stub =
+        GrpcClientUtil.withCallCredentials(QueryServiceGrpc.newBlockingStub(channel));
+    return (request, requestHeaders, timeoutMillis) ->
+        GrpcClientUtil.callWithHeaders(
+            requestHeaders,
+            () -> stub.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS).execute(request));
+  }
+
+  /** Adapts the blocking client of the client library. Meant for tests. */
+  static QueryServiceStreamingClient fromClient(QueryServiceClient queryServiceClient) {
+    return queryServiceClient::executeQuery;
+  }
+}
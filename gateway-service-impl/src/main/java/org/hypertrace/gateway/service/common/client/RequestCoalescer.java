@@ -0,0 +1,145 @@
+package org.hypertrace.gateway.service.common.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import io.grpc.Context;
+import io.micrometer.core.instrument.Counter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.util.RequestHeadersUtil;
+
+/**
+ * Shares a single downstream call between the concurrent identical requests of a tenant, like the
+ * same dashboard being opened by many users at once. A request arriving while an identical one is
+ * in flight waits for the result of the latter instead of being sent downstream again. Nothing is
+ * kept once the call completes, so the requests sent after it always make a new call.
+ *
+ * <p>The shared call is made with the headers of the first request, so requests are only identical
+ * if they forward the same headers, but for the ignored ones. Otherwise a caller could get a result
+ * fetched with the credentials of another. Requests without a tenant are never coalesced.
+ *
+ * <p>The shared call is started outside of the grpc context of the first request, so that neither
+ * its deadline nor its cancellation ends the call for the others. It is only bounded by the timeout
+ * of the client, the same for all the requests.
+ */
+class RequestCoalescer<V> {
+  private static final String HITS_METRIC = "hypertrace.request.coalescer.hits";
+  private static final String MISSES_METRIC = "hypertrace.request.coalescer.misses";
+  private static final String BYPASSES_METRIC = "hypertrace.request.coalescer.bypasses";
+  private static final String CLIENT_NAME_TAG = "client";
+
+  private final RequestCoalescingConfig config;
+  private final Map<RequestKey, InFlightRequest<V>> inFlightRequests = new ConcurrentHashMap<>();
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter bypasses;
+
+  RequestCoalescer(String name, RequestCoalescingConfig config) {
+    this.config = config;
+    Map<String, String> tags = ImmutableMap.of(CLIENT_NAME_TAG, name);
+    this.hits = PlatformMetricsRegistry.registerCounter(HITS_METRIC, tags);
+    this.misses = PlatformMetricsRegistry.registerCounter(MISSES_METRIC, tags);
+    this.bypasses = PlatformMetricsRegistry.registerCounter(BYPASSES_METRIC, tags);
+  }
+
+  /**
+   * Returns the result of the in flight call for an identical request if there is one, else makes
+   * the call.
+   */
+  CompletableFuture<V> execute(
+      Message request, Map<String, String> requestHeaders, Supplier<CompletableFuture<V>> call) {
+    if (!config.isEnabled() || GrpcClientUtil.getTenantId(requestHeaders).isEmpty()) {
+      return call.get();
+    }
+
+    RequestKey key =
+        new RequestKey(
+            request, RequestHeadersUtil.getKeyHeaders(requestHeaders, config.getIgnoredHeaders()));
+    InFlightRequest<V> inFlightRequest = inFlightRequests.get(key);
+    if (inFlightRequest == null && inFlightRequests.size() < config.getMaxInFlight()) {
+      InFlightRequest<V> newRequest = new InFlightRequest<>();
+      inFlightRequest = inFlightRequests.putIfAbsent(key, newRequest);
+      if (inFlightRequest == null) {
+        misses.increment();
+        return newRequest.start(call, () -> inFlightRequests.remove(key, newRequest));
+      }
+    }
+
+    if (inFlightRequest != null && inFlightRequest.addWaiter(config.getMaxWaiters())) {
+      hits.increment();
+      return inFlightRequest.newResultFuture();
+    }
+
+    bypasses.increment();
+    return call.get();
+  }
+
+  private static class InFlightRequest<V> {
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    CompletableFuture<V> start(Supplier<CompletableFuture<V>> call, Runnable onCompletion) {
+      CompletableFuture<V> future;
+      // A fork keeps the values of the context, like the tracing ones, but not its cancellation
+      Context sharedContext = Context.current().fork();
+      Context previous = sharedContext.attach();
+      try {
+        future = call.get();
+      } catch (RuntimeException e) {
+        future = CompletableFuture.failedFuture(e);
+      } finally {
+        sharedContext.detach(previous);
+      }
+      future.whenComplete(
+          (value, throwable) -> {
+            // Removed before completing, so that a request made by a waiter makes a new call
+            onCompletion.run();
+            if (throwable == null) {
+              result.complete(value);
+            } else {
+              result.completeExceptionally(throwable);
+            }
+          });
+      return newResultFuture();
+    }
+
+    boolean addWaiter(int maxWaiters) {
+      return waiters.getAndIncrement() < maxWaiters;
+    }
+
+    // Every caller gets its own future, so that one of them cancelling doesn't affect the others
+    CompletableFuture<V> newResultFuture() {
+      return result.thenApply(Function.identity());
+    }
+  }
+
+  private static class RequestKey {
+    private final Message request;
+    // the tenant is one of them
+    private final Map<String, String> headers;
+
+    RequestKey(Message request, Map<String, String> headers) {
+      this.request = request;
+      this.headers = headers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      RequestKey that = (RequestKey) o;
+      return Objects.equals(request, that.request) && Objects.equals(headers, that.headers);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(request, headers);
+    }
+  }
+}
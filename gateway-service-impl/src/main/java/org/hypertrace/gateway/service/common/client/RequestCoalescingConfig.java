@@ -0,0 +1,98 @@
+package org.hypertrace.gateway.service.common.client;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration of the coalescing of concurrent identical downstream queries. Coalescing is
+ * disabled unless explicitly enabled.
+ *
+ * <pre>
+ * request.coalescing.config = {
+ *   enabled = true
+ *   // Distinct requests tracked at once, the requests beyond it are sent downstream on their own
+ *   max.in.flight = 1000
+ *   // Requests sharing a single downstream call, the requests beyond it make their own call
+ *   max.waiters = 100
+ *   // Forwarded headers which don't affect the result, like the tracing ones. Requests only share a
+ *   // call if all their other headers are the same, the shared call forwarding those of the first.
+ *   ignored.headers = ["traceparent", "tracestate"]
+ * }
+ * </pre>
+ */
+public class RequestCoalescingConfig {
+  private static final String CONFIG_PATH = "request.coalescing.config";
+  private static final String ENABLED_PATH = "enabled";
+  private static final String MAX_IN_FLIGHT_PATH = "max.in.flight";
+  private static final String MAX_WAITERS_PATH = "max.waiters";
+  private static final String IGNORED_HEADERS_PATH = "ignored.headers";
+
+  private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+  private static final int DEFAULT_MAX_WAITERS = 100;
+  private static final Set<String> DEFAULT_IGNORED_HEADERS =
+      Set.of(
+          "traceparent",
+          "tracestate",
+          "grpc-trace-bin",
+          "b3",
+          "x-b3-traceid",
+          "x-b3-spanid",
+          "x-b3-parentspanid",
+          "x-b3-sampled",
+          "x-b3-flags",
+          "x-request-id");
+
+  private final boolean enabled;
+  private final int maxInFlight;
+  private final int maxWaiters;
+  private final Set<String> ignoredHeaders;
+
+  public static RequestCoalescingConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new RequestCoalescingConfig(
+        config.hasPath(ENABLED_PATH) && config.getBoolean(ENABLED_PATH),
+        config.hasPath(MAX_IN_FLIGHT_PATH)
+            ? config.getInt(MAX_IN_FLIGHT_PATH)
+            : DEFAULT_MAX_IN_FLIGHT,
+        config.hasPath(MAX_WAITERS_PATH) ? config.getInt(MAX_WAITERS_PATH) : DEFAULT_MAX_WAITERS,
+        config.hasPath(IGNORED_HEADERS_PATH)
+            ? Set.copyOf(config.getStringList(IGNORED_HEADERS_PATH))
+            : DEFAULT_IGNORED_HEADERS);
+  }
+
+  RequestCoalescingConfig(boolean enabled, int maxInFlight, int maxWaiters) {
+    this(enabled, maxInFlight, maxWaiters, DEFAULT_IGNORED_HEADERS);
+  }
+
+  RequestCoalescingConfig(
+      boolean enabled, int maxInFlight, int maxWaiters, Set<String> ignoredHeaders) {
+    this.enabled = enabled;
+    this.maxInFlight = maxInFlight;
+    this.maxWaiters = maxWaiters;
+    // grpc header names are lower case
+    this.ignoredHeaders =
+        ignoredHeaders.stream()
+            .map(header -> header.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public int getMaxWaiters() {
+    return maxWaiters;
+  }
+
+  public Set<String> getIgnoredHeaders() {
+    return ignoredHeaders;
+  }
+}
@@ -0,0 +1,174 @@
+package org.hypertrace.gateway.service.common.comparators;
+
+import java.util.Comparator;
+import java.util.List;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+
+/**
+ * Compares the elements of a list by their indexes, using the sort keys of each order by extracted
+ * once per element. The keys of an order by are stored as a long, double or string column when all
+ * its values have the same primitive type, so that comparing two elements doesn't read their protos
+ * again. Comparisons are the same as with {@link ValueComparator}.
+ */
+class SortKeyComparator implements Comparator<Integer> {
+  private final SortKeyColumn[] columns;
+  private final boolean[] descending;
+
+  SortKeyComparator(List<SortKeyColumn> columns, boolean[] descending) {
+    this.columns = columns.toArray(new SortKeyColumn[0]);
+    this.descending = descending;
+  }
+
+  @Override
+  public int compare(Integer left, Integer right) {
+    int leftIndex = left;
+    int rightIndex = right;
+    for (int i = 0; i < columns.length; i++) {
+      int comparison = columns[i].compare(leftIndex, rightIndex);
+      if (comparison != 0) {
+        return descending[i] ? Math.negateExact(comparison) : comparison;
+      }
+    }
+    return 0;
+  }
+
+  /** Sort keys of the given values, a null value being before all the others. */
+  static SortKeyColumn column(Value[] values) {
+    boolean[] nulls = new boolean[values.length];
+    ValueType valueType = null;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        nulls[i] = true;
+      } else if (valueType == null) {
+        valueType = values[i].getValueType();
+      } else if (valueType != values[i].getValueType()) {
+        // Comparing values of different types fails, as with ValueComparator
+        valueType = null;
+        break;
+      }
+    }
+
+    if (valueType == null) {
+      return new ValueColumn(nulls, values);
+    }
+    switch (valueType) {
+      case BOOL:
+      case LONG:
+      case TIMESTAMP:
+        long[] longKeys = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+          if (!nulls[i]) {
+            longKeys[i] = getLongKey(values[i]);
+          }
+        }
+        return new LongColumn(nulls, longKeys);
+      case DOUBLE:
+        double[] doubleKeys = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+          if (!nulls[i]) {
+            doubleKeys[i] = values[i].getDouble();
+          }
+        }
+        return new DoubleColumn(nulls, doubleKeys);
+      case STRING:
+        String[] stringKeys = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+          if (!nulls[i]) {
+            stringKeys[i] = values[i].getString();
+          }
+        }
+        return new StringColumn(nulls, stringKeys);
+      default:
+        return new ValueColumn(nulls, values);
+    }
+  }
+
+  private static long getLongKey(Value value) {
+    switch (value.getValueType()) {
+      case BOOL:
+        return value.getBoolean() ? 1 : 0;
+      case TIMESTAMP:
+        return value.getTimestamp();
+      default:
+        return value.getLong();
+    }
+  }
+
+  abstract static class SortKeyColumn {
+    private final boolean[] nulls;
+
+    SortKeyColumn(boolean[] nulls) {
+      this.nulls = nulls;
+    }
+
+    int compare(int left, int right) {
+      if (nulls[left]) {
+        return nulls[right] ? 0 : -1;
+      }
+      if (nulls[right]) {
+        return 1;
+      }
+      return compareKeys(left, right);
+    }
+
+    abstract int compareKeys(int left, int right);
+  }
+
+  private static class LongColumn extends SortKeyColumn {
+    private final long[] keys;
+
+    LongColumn(boolean[] nulls, long[] keys) {
+      super(nulls);
+      this.keys = keys;
+    }
+
+    @Override
+    int compareKeys(int left, int right) {
+      return Long.compare(keys[left], keys[right]);
+    }
+  }
+
+  private static class DoubleColumn extends SortKeyColumn {
+    private final double[] keys;
+
+    DoubleColumn(boolean[] nulls, double[] keys) {
+      super(nulls);
+      this.keys = keys;
+    }
+
+    @Override
+    int compareKeys(int left, int right) {
+      return Double.compare(keys[left], keys[right]);
+    }
+  }
+
+  private static class StringColumn extends SortKeyColumn {
+    private final String[] keys;
+
+    StringColumn(boolean[] nulls, String[] keys) {
+      super(nulls);
+      this.keys = keys;
+    }
+
+    @Override
+    int compareKeys(int left, int right) {
+      return CharSequence.compare(keys[left], keys[right]);
+    }
+  }
+
+  /** Array, unset or mixed type values, compared as protos. */
+  private static class ValueColumn extends SortKeyColumn {
+    private final Value[] values;
+
+    ValueColumn(boolean[] nulls, Value[] values) {
+      super(nulls);
+      this.values = values;
+    }
+
+    @Override
+    int compareKeys(int left, int right) {
+      return ValueComparator.compare(values[left], values[right]);
+    }
+  }
+}
@@ -2,27 +2,27 @@ package org.hypertrace.gateway.service.common.datafetcher;
 
 import static org.hypertrace.gateway.service.common.util.ExpressionReader.getExpectedResultNamesForEachAttributeId;
 
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
-import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
 import org.hypertrace.entity.query.service.v1.ResultSetChunk;
 import org.hypertrace.entity.query.service.v1.Row;
 import org.hypertrace.entity.query.service.v1.TotalEntitiesRequest;
-import org.hypertrace.entity.query.service.v1.TotalEntitiesResponse;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.EntityServiceAndGatewayServiceConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
@@ -37,22 +37,31 @@ import org.slf4j.LoggerFactory;
 public class EntityDataServiceEntityFetcher implements IEntityFetcher {
   private static final Logger LOG = LoggerFactory.getLogger(EntityDataServiceEntityFetcher.class);
 
-  private final EntityQueryServiceClient entityQueryServiceClient;
+  private final EntityQueryServiceAsyncClient entityQueryServiceClient;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final ExecutorService queryExecutor;
 
   public EntityDataServiceEntityFetcher(
-      EntityQueryServiceClient entityQueryServiceClient,
+      EntityQueryServiceAsyncClient entityQueryServiceClient,
       AttributeMetadataProvider attributeMetadataProvider,
-      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      ExecutorService queryExecutor) {
     this.entityQueryServiceClient = entityQueryServiceClient;
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.queryExecutor = queryExecutor;
   }
 
   @Override
   public EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFutures.join(getEntitiesAsync(requestContext, entitiesRequest));
+  }
+
+  @Override
+  public CompletableFuture<EntityFetcherResponse> getEntitiesAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     List<String> entityIdAttributeIds =
         AttributeMetadataUtil.getIdAttributeIds(
             attributeMetadataProvider,
@@ -121,16 +130,33 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
 
     EntityQueryRequest entityQueryRequest = builder.build();
     LOG.debug("Sending Query to EDS  ======== \n {}", entityQueryRequest);
-    Iterator<ResultSetChunk> resultSetChunkIterator =
-        entityQueryServiceClient.execute(builder.build(), requestContext.getHeaders());
-
     Map<String, AttributeMetadata> resultMetadataMap =
         this.getAttributeMetadataByAlias(requestContext, entitiesRequest);
+    return entityQueryServiceClient
+        .execute(entityQueryRequest, requestContext.getHeaders())
+        .thenApplyAsync(
+            chunks ->
+                buildEntities(
+                    requestContext,
+                    entitiesRequest,
+                    entityIdAttributeIds,
+                    requestedAliasesByEntityIdAttributeIds,
+                    resultMetadataMap,
+                    chunks),
+            queryExecutor);
+  }
+
+  private EntityFetcherResponse buildEntities(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      List<String> entityIdAttributeIds,
+      Map<String, List<String>> requestedAliasesByEntityIdAttributeIds,
+      Map<String, AttributeMetadata> resultMetadataMap,
+      List<ResultSetChunk> chunks) {
     // We want to retain the order as returned from the respective source. Hence using a
     // LinkedHashMap
     Map<EntityKey, Builder> entityBuilders = new LinkedHashMap<>();
-    while (resultSetChunkIterator.hasNext()) {
-      ResultSetChunk chunk = resultSetChunkIterator.next();
+    for (ResultSetChunk chunk : chunks) {
       LOG.debug("Received chunk: {}", chunk);
 
       if (chunk.getRowCount() < 1) {
@@ -140,10 +166,9 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
       for (Row row : chunk.getRowList()) {
         // Construct the entity id from the entityIdAttributes columns
         EntityKey entityKey =
-            EntityKey.of(
-                IntStream.range(0, entityIdAttributeIds.size())
-                    .mapToObj(value -> row.getColumn(value).getString())
-                    .toArray(String[]::new));
+            requestContext
+                .getEntityKeyInterner()
+                .intern(entityIdAttributeIds.size(), value -> row.getColumn(value).getString());
         Builder entityBuilder = entityBuilders.computeIfAbsent(entityKey, k -> Entity.newBuilder());
         entityBuilder.setEntityType(entitiesRequest.getEntityType());
         entityBuilder.setId(entityKey.toString());
@@ -155,7 +180,7 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
           entityBuilder.putAttribute(
               entityIdAttributeIds.get(i),
               Value.newBuilder()
-                  .setString(entityKey.getAttributes().get(i))
+                  .setString(entityKey.get(i))
                   .setValueType(ValueType.STRING)
                   .build());
         }
@@ -191,6 +216,12 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
 
   @Override
   public long getTotal(EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFutures.join(getTotalAsync(requestContext, entitiesRequest));
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     EntityQueryRequest.Builder builder =
         EntityQueryRequest.newBuilder()
             .setEntityType(entitiesRequest.getEntityType())
@@ -215,9 +246,9 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
             .setFilter(entityQueryRequest.getFilter())
             .build();
 
-    TotalEntitiesResponse response =
-        entityQueryServiceClient.total(totalEntitiesRequest, requestContext.getHeaders());
-    return response.getTotal();
+    return entityQueryServiceClient
+        .total(totalEntitiesRequest, requestContext.getHeaders())
+        .thenApply(response -> response.getTotal());
   }
 
   private Map<String, AttributeMetadata> getAttributeMetadataByAlias(
@@ -14,6 +14,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -35,14 +36,17 @@ import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.config.InteractionConfig;
 import org.hypertrace.gateway.service.entity.config.InteractionConfigs;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
 import org.hypertrace.gateway.service.v1.common.DomainEntityType;
 import org.hypertrace.gateway.service.v1.common.Expression;
@@ -87,20 +91,23 @@ public class EntityInteractionsFetcher {
 
   private static final String COUNT_COLUMN_NAME = "COUNT";
 
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceAsyncClient queryServiceClient;
   private final int queryServiceRequestTimeout;
   private final AttributeMetadataProvider metadataProvider;
   private final ExecutorService queryExecutor;
+  private final InListSharder inListSharder;
 
   public EntityInteractionsFetcher(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
       AttributeMetadataProvider metadataProvider,
-      ExecutorService queryExecutor) {
+      ExecutorService queryExecutor,
+      InListSharder inListSharder) {
     this.queryServiceClient = queryServiceClient;
     this.queryServiceRequestTimeout = qsRequestTimeout;
     this.metadataProvider = metadataProvider;
     this.queryExecutor = queryExecutor;
+    this.inListSharder = inListSharder;
   }
 
   private List<String> getEntityIdColumnsFromInteraction(
@@ -127,6 +134,21 @@ public class EntityInteractionsFetcher {
       RequestContext context,
       EntitiesRequest entitiesRequest,
       Map<EntityKey, Builder> entityBuilders) {
+    CompletableFutures.join(
+        populateEntityInteractionsAsync(context, entitiesRequest, entityBuilders));
+  }
+
+  /**
+   * Issues the interaction queries without waiting on them. Invalid requests are still rejected on
+   * the calling thread. The result of each query is parsed on the query executor as soon as it
+   * arrives, into interactions of its own, so that the queries of several entity types are parsed
+   * in parallel. The interactions are added to the entity builders once all the queries have been
+   * parsed, in the order of the queries.
+   */
+  public CompletableFuture<Void> populateEntityInteractionsAsync(
+      RequestContext context,
+      EntitiesRequest entitiesRequest,
+      Map<EntityKey, Builder> entityBuilders) {
     List<EntityInteractionQueryRequest> allQueryRequests = new ArrayList<>();
     // Process the incoming interactions, and prepare QS queries
     if (!InteractionsRequest.getDefaultInstance()
@@ -154,46 +176,69 @@ public class EntityInteractionsFetcher {
               "toEntityType filter is mandatory for outgoing interactions."));
     }
 
-    // execute all the requests in parallel, and wait for results
-    List<CompletableFuture<EntityInteractionQueryResponse>> queryRequestCompletableFutures =
+    // execute all the requests in parallel, and parse each result as soon as it is received
+    List<CompletableFuture<Map<EntityKey, List<EntityInteraction.Builder>>>> parsedResponseFutures =
         allQueryRequests.stream()
             .map(
-                e ->
-                    CompletableFuture.supplyAsync(
-                        () -> executeQueryRequest(context, e), this.queryExecutor))
+                queryRequest ->
+                    executeQueryRequest(context, queryRequest)
+                        .thenApplyAsync(
+                            qsResponse -> parseResponse(context, entitiesRequest, qsResponse),
+                            this.queryExecutor))
             .collect(Collectors.toList());
 
-    // wait and parse result as an when complete
-    queryRequestCompletableFutures.forEach(
-        queryRequestCompletableFuture -> {
-          EntityInteractionQueryResponse qsResponse = queryRequestCompletableFuture.join();
-          InteractionsRequest interactionsRequest =
-              qsResponse.getRequest().getInteractionsRequest();
-
-          Map<String, FunctionExpression> metricToAggFunction =
-              MetricAggregationFunctionUtil.getAggMetricToFunction(
-                  interactionsRequest.getSelectionList());
-
-          parseResultSet(
-              entitiesRequest.getEntityType(),
-              qsResponse.getRequest().getEntityType(),
-              interactionsRequest.getSelectionList(),
-              metricToAggFunction,
-              qsResponse.getResultSetChunkIterator(),
-              qsResponse.getRequest().isIncoming(),
-              entityBuilders,
-              context);
-        });
+    // the entity builders are not thread safe, so only add the interactions to them at the end
+    return CompletableFutures.allAsList(parsedResponseFutures)
+        .thenAccept(
+            parsedResponses -> {
+              for (int i = 0; i < parsedResponses.size(); i++) {
+                boolean incoming = allQueryRequests.get(i).isIncoming();
+                parsedResponses
+                    .get(i)
+                    .forEach(
+                        (entityId, interactions) -> {
+                          Builder entityBuilder = entityBuilders.get(entityId);
+                          if (incoming) {
+                            interactions.forEach(entityBuilder::addIncomingInteraction);
+                          } else {
+                            interactions.forEach(entityBuilder::addOutgoingInteraction);
+                          }
+                        });
+              }
+            });
+  }
+
+  private Map<EntityKey, List<EntityInteraction.Builder>> parseResponse(
+      RequestContext context,
+      EntitiesRequest entitiesRequest,
+      EntityInteractionQueryResponse qsResponse) {
+    InteractionsRequest interactionsRequest = qsResponse.getRequest().getInteractionsRequest();
+
+    Map<String, FunctionExpression> metricToAggFunction =
+        MetricAggregationFunctionUtil.getAggMetricToFunction(
+            interactionsRequest.getSelectionList());
+
+    return parseResultSet(
+        entitiesRequest.getEntityType(),
+        qsResponse.getRequest().getEntityType(),
+        interactionsRequest.getSelectionList(),
+        metricToAggFunction,
+        qsResponse.getResultSetChunkIterator(),
+        qsResponse.getRequest().isIncoming(),
+        context);
   }
 
-  private EntityInteractionQueryResponse executeQueryRequest(
+  private CompletableFuture<EntityInteractionQueryResponse> executeQueryRequest(
       RequestContext context, EntityInteractionQueryRequest entityInteractionQueryRequest) {
-    Iterator<ResultSetChunk> resultSet =
-        queryServiceClient.executeQuery(
+    return queryServiceClient
+        .executeQuery(
             entityInteractionQueryRequest.getRequest(),
             context.getHeaders(),
-            queryServiceRequestTimeout);
-    return new EntityInteractionQueryResponse(entityInteractionQueryRequest, resultSet);
+            queryServiceRequestTimeout)
+        .thenApply(
+            chunks ->
+                new EntityInteractionQueryResponse(
+                    entityInteractionQueryRequest, chunks.iterator()));
   }
 
   private List<EntityInteractionQueryRequest> prepareQueryRequests(
@@ -211,27 +256,31 @@ public class EntityInteractionsFetcher {
       throw new IllegalArgumentException("Interactions request should have non-empty selections.");
     }
 
-    Map<String, QueryRequest> requests =
-        buildQueryRequests(
-            request.getStartTimeMillis(),
-            request.getEndTimeMillis(),
-            request.getSpaceId(),
-            request.getEntityType(),
-            interactionsRequest,
-            entityIdToBuilders.keySet(),
-            incoming,
-            context);
-
-    if (requests.isEmpty()) {
-      throw new IllegalArgumentException(errorMsg);
-    }
+    // The interactions are grouped by entity id, so long lists of ids are queried in shards
+    List<EntityInteractionQueryRequest> queryRequests = new ArrayList<>();
+    for (List<EntityKey> entityKeys : inListSharder.shard(entityIdToBuilders.keySet())) {
+      Map<String, QueryRequest> requests =
+          buildQueryRequests(
+              request.getStartTimeMillis(),
+              request.getEndTimeMillis(),
+              request.getSpaceId(),
+              request.getEntityType(),
+              interactionsRequest,
+              entityKeys,
+              incoming,
+              context);
 
-    return requests.entrySet().stream()
-        .map(
-            e ->
-                new EntityInteractionQueryRequest(
-                    incoming, e.getKey(), interactionsRequest, e.getValue()))
-        .collect(Collectors.toList());
+      if (requests.isEmpty()) {
+        throw new IllegalArgumentException(errorMsg);
+      }
+
+      requests.forEach(
+          (otherEntityType, queryRequest) ->
+              queryRequests.add(
+                  new EntityInteractionQueryRequest(
+                      incoming, otherEntityType, interactionsRequest, queryRequest)));
+    }
+    return queryRequests;
   }
 
   private Set<String> getOtherEntityTypes(org.hypertrace.gateway.service.v1.common.Filter filter) {
@@ -371,7 +420,7 @@ public class EntityInteractionsFetcher {
       String spaceId,
       String entityType,
       InteractionsRequest interactionsRequest,
-      Set<EntityKey> entityIds,
+      Collection<EntityKey> entityIds,
       boolean incoming,
       RequestContext requestContext) {
 
@@ -475,14 +524,14 @@ public class EntityInteractionsFetcher {
     return queryRequests;
   }
 
-  private void parseResultSet(
+  /** Interactions of each entity in the result set, in the order of the rows. */
+  private Map<EntityKey, List<EntityInteraction.Builder>> parseResultSet(
       String entityType,
       String otherEntityType,
       Collection<Expression> selections,
       Map<String, FunctionExpression> metricToAggFunction,
       Iterator<ResultSetChunk> resultset,
       boolean incoming,
-      Map<EntityKey, Builder> entityIdToBuilders,
       RequestContext requestContext) {
 
     Map<String, AttributeMetadata> attributeMetadataMap =
@@ -492,6 +541,16 @@ public class EntityInteractionsFetcher {
         MetricAggregationFunctionUtil.getValueTypeForFunctionType(
             metricToAggFunction, attributeMetadataMap);
 
+    // Construct the from/to EntityKeys from the columns
+    List<String> idColumns =
+        getEntityIdColumnsFromInteraction(
+            DomainEntityType.valueOf(entityType.toUpperCase()),
+            !incoming); // Note: We add the selections it in this order
+    List<String> otherIdColumns =
+        getEntityIdColumnsFromInteraction(
+            DomainEntityType.valueOf(otherEntityType.toUpperCase()), incoming);
+
+    Map<EntityKey, List<EntityInteraction.Builder>> interactionsByEntityId = new LinkedHashMap<>();
     while (resultset.hasNext()) {
       ResultSetChunk chunk = resultset.next();
       if (LOG.isDebugEnabled()) {
@@ -503,20 +562,11 @@ public class EntityInteractionsFetcher {
       }
 
       for (Row row : chunk.getRowList()) {
-        // Construct the from/to EntityKeys from the columns
-        List<String> idColumns =
-            getEntityIdColumnsFromInteraction(
-                DomainEntityType.valueOf(entityType.toUpperCase()),
-                !incoming); // Note: We add the selections it in this order
         EntityKey entityId =
             EntityKey.of(
                 IntStream.range(0, idColumns.size())
                     .mapToObj(value -> row.getColumn(value).getString())
                     .toArray(String[]::new));
-
-        List<String> otherIdColumns =
-            getEntityIdColumnsFromInteraction(
-                DomainEntityType.valueOf(otherEntityType.toUpperCase()), incoming);
         EntityKey otherEntityId =
             EntityKey.of(
                 IntStream.range(idColumns.size(), idColumns.size() + otherIdColumns.size())
@@ -562,17 +612,14 @@ public class EntityInteractionsFetcher {
           }
         }
 
-        if (incoming) {
-          entityIdToBuilders.get(entityId).addIncomingInteraction(interaction);
-        } else {
-          entityIdToBuilders.get(entityId).addOutgoingInteraction(interaction);
-        }
+        interactionsByEntityId.computeIfAbsent(entityId, k -> new ArrayList<>()).add(interaction);
 
         if (LOG.isDebugEnabled()) {
           LOG.debug(interaction.build().toString());
         }
       }
     }
+    return interactionsByEntityId;
   }
 
   private void addInteractionEdges(
@@ -3,6 +3,7 @@ package org.hypertrace.gateway.service.common.datafetcher;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.v1.common.Interval;
 import org.hypertrace.gateway.service.v1.common.MetricSeries;
@@ -22,6 +23,15 @@ public interface IEntityFetcher {
   EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest);
 
+  /**
+   * Non-blocking variant of {@link #getEntities}. Fetchers backed by an async downstream client
+   * should override this, the default implementation runs the blocking call on the calling thread.
+   */
+  default CompletableFuture<EntityFetcherResponse> getEntitiesAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFuture.completedFuture(getEntities(requestContext, entitiesRequest));
+  }
+
   /**
    * Get time series data
    *
@@ -32,6 +42,13 @@ public interface IEntityFetcher {
   EntityFetcherResponse getTimeAggregatedMetrics(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest);
 
+  /** Non-blocking variant of {@link #getTimeAggregatedMetrics}. */
+  default CompletableFuture<EntityFetcherResponse> getTimeAggregatedMetricsAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFuture.completedFuture(
+        getTimeAggregatedMetrics(requestContext, entitiesRequest));
+  }
+
   default MetricSeries getSortedMetricSeries(MetricSeries.Builder builder) {
     List<Interval> sortedIntervals = new ArrayList<>(builder.getValueList());
     sortedIntervals.sort(Comparator.comparingLong(Interval::getStartTimeMillis));
@@ -43,4 +60,29 @@ public interface IEntityFetcher {
   }
 
   long getTotal(EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest);
+
+  /** Non-blocking variant of {@link #getTotal}. */
+  default CompletableFuture<Long> getTotalAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFuture.completedFuture(getTotal(requestContext, entitiesRequest));
+  }
+
+  /**
+   * Get a page of entities along with the total number of entities matching the total request. The
+   * page and the total don't depend on each other, so by default both are requested concurrently.
+   * Sources that can return the total along with the page in a single request should override this.
+   *
+   * @param requestContext Additional context for the incoming request
+   * @param entitiesRequest encapsulates the paginated entities request
+   * @param totalRequest encapsulates the request to compute the total for
+   * @return the page of entities along with the total
+   */
+  default CompletableFuture<EntityResponse> getEntitiesAndTotalAsync(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      EntitiesRequest totalRequest) {
+    CompletableFuture<Long> totalFuture = getTotalAsync(requestContext, totalRequest);
+    return getEntitiesAsync(requestContext, entitiesRequest)
+        .thenCombine(totalFuture, EntityResponse::new);
+  }
 }
@@ -13,15 +13,16 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Streams;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
@@ -34,8 +35,12 @@ import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.QueryRequestContext;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache.TimeRangeQueryBuilder;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
@@ -44,6 +49,7 @@ import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntitiesRequestValidator;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.FunctionType;
@@ -67,25 +73,57 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
   private static final String COUNT_COLUMN_NAME = "COUNT";
 
   private final EntitiesRequestValidator entitiesRequestValidator = new EntitiesRequestValidator();
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceAsyncClient queryServiceClient;
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final TimeSeriesCache timeSeriesCache;
+  private final ExecutorService queryExecutor;
+  private final TimeRangeSharder timeRangeSharder;
 
   public QueryServiceEntityFetcher(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
       AttributeMetadataProvider attributeMetadataProvider,
-      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      TimeSeriesCache timeSeriesCache,
+      ExecutorService queryExecutor) {
+    this(
+        queryServiceClient,
+        qsRequestTimeout,
+        attributeMetadataProvider,
+        entityIdColumnsConfigs,
+        timeSeriesCache,
+        queryExecutor,
+        TimeRangeSharder.disabled());
+  }
+
+  public QueryServiceEntityFetcher(
+      QueryServiceAsyncClient queryServiceClient,
+      int qsRequestTimeout,
+      AttributeMetadataProvider attributeMetadataProvider,
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      TimeSeriesCache timeSeriesCache,
+      ExecutorService queryExecutor,
+      TimeRangeSharder timeRangeSharder) {
     this.queryServiceClient = queryServiceClient;
     this.requestTimeout = qsRequestTimeout;
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.timeSeriesCache = timeSeriesCache;
+    this.queryExecutor = queryExecutor;
+    this.timeRangeSharder = timeRangeSharder;
   }
 
   @Override
   public EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFutures.join(getEntitiesAsync(requestContext, entitiesRequest));
+  }
+
+  @Override
+  public CompletableFuture<EntityFetcherResponse> getEntitiesAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     Map<String, AttributeMetadata> attributeMetadataMap =
         attributeMetadataProvider.getAttributesMetadata(
             requestContext, entitiesRequest.getEntityType());
@@ -107,25 +145,50 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
         getExpectedResultNamesForEachAttributeId(
             entitiesRequest.getSelectionList(), entityIdAttributeIds);
 
-    QueryRequest.Builder builder =
-        constructSelectionQuery(requestContext, entitiesRequest, entityIdAttributeIds, aggregates);
-
-    adjustLimitAndOffset(builder, entitiesRequest.getLimit(), entitiesRequest.getOffset());
-
-    if (!entitiesRequest.getOrderByList().isEmpty()) {
-      // Order by from the request.
-      builder.addAllOrderBy(
-          QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(
-              entitiesRequest.getOrderByList()));
-    }
-
-    QueryRequest queryRequest = builder.build();
-
-    LOG.debug("Sending Query to Query Service ======== \n {}", queryRequest);
-
-    Iterator<ResultSetChunk> resultSetChunkIterator =
-        queryServiceClient.executeQuery(queryRequest, requestContext.getHeaders(), requestTimeout);
+    // Long windows are queried in concurrent sub-queries on parts of the window when the
+    // aggregations can be merged
+    TimeRangeQueryBuilder queryBuilder =
+        (startTimeMillis, endTimeMillis) ->
+            buildSelectionQueryRequest(
+                requestContext,
+                EntitiesRequest.newBuilder(entitiesRequest)
+                    .setStartTimeMillis(startTimeMillis)
+                    .setEndTimeMillis(endTimeMillis)
+                    .build(),
+                entityIdAttributeIds,
+                aggregates);
+
+    return timeRangeSharder
+        .executeAggregationQuery(
+            entitiesRequest.getStartTimeMillis(),
+            entitiesRequest.getEndTimeMillis(),
+            queryBuilder,
+            queryRequest -> {
+              LOG.debug("Sending Query to Query Service ======== \n {}", queryRequest);
+              return queryServiceClient.executeQuery(
+                  queryRequest, requestContext.getHeaders(), requestTimeout);
+            })
+        .thenApplyAsync(
+            resultSetChunks ->
+                buildEntities(
+                    requestContext,
+                    entitiesRequest,
+                    entityIdAttributeIds,
+                    requestedAliasesByEntityIdAttributeIds,
+                    resultKeyToAttributeMetadataMap,
+                    aggregates,
+                    resultSetChunks.iterator()),
+            queryExecutor);
+  }
 
+  private EntityFetcherResponse buildEntities(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      List<String> entityIdAttributeIds,
+      Map<String, List<String>> requestedAliasesByEntityIdAttributeIds,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      List<org.hypertrace.gateway.service.v1.common.Expression> aggregates,
+      Iterator<ResultSetChunk> resultSetChunkIterator) {
     // We want to retain the order as returned from the respective source. Hence using a
     // LinkedHashMap
     Map<EntityKey, Entity.Builder> entityBuilders = new LinkedHashMap<>();
@@ -140,10 +203,9 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
       for (Row row : chunk.getRowList()) {
         // Construct the entity id from the entityIdAttributeIds columns
         EntityKey entityKey =
-            EntityKey.of(
-                IntStream.range(0, entityIdAttributeIds.size())
-                    .mapToObj(value -> row.getColumn(value).getString())
-                    .toArray(String[]::new));
+            requestContext
+                .getEntityKeyInterner()
+                .intern(entityIdAttributeIds.size(), value -> row.getColumn(value).getString());
         Builder entityBuilder = entityBuilders.computeIfAbsent(entityKey, k -> Entity.newBuilder());
         entityBuilder.setEntityType(entitiesRequest.getEntityType());
         entityBuilder.setId(entityKey.toString());
@@ -154,7 +216,7 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
           entityBuilder.putAttribute(
               entityIdAttributeIds.get(i),
               Value.newBuilder()
-                  .setString(entityKey.getAttributes().get(i))
+                  .setString(entityKey.get(i))
                   .setValueType(ValueType.STRING)
                   .build());
         }
@@ -184,11 +246,13 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     return new EntityFetcherResponse(entityBuilders);
   }
 
-  private void adjustLimitAndOffset(QueryRequest.Builder builder, int limit, int offset) {
-    // If there is more than one groupBy column, we cannot set the same limit that came
-    // in the request since that might return less entities than needed when the same
+  private void adjustLimitAndOffset(
+      QueryRequest.Builder builder, int limit, int offset, int entityIdColumnCount) {
+    // If there are groupBy columns other than the entity id columns, we cannot set the same limit
+    // that came in the request since that might return less entities than needed when the same
     // entity has different values for the other group by columns. Example: A service entity's
-    // name changes and that will now have two different names.
+    // name changes and that will now have two different names. Grouping only by the id columns,
+    // even several of them, gives one row per entity.
     // For now, we pass a high value of limit in this case so that we get all the entities.
     // Limit has to be applied post the query in this case. Setting offset also might be wrong
     // here, hence not setting it.
@@ -197,7 +261,7 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     boolean canApplyOffset = offset > 0;
 
     // If we cannot apply limit, limit the number of results to a default limit
-    if (!canApplyLimit || builder.getGroupByCount() > 1) {
+    if (!canApplyLimit || builder.getGroupByCount() > entityIdColumnCount) {
       builder.setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
     } else {
       builder.setLimit(limit);
@@ -208,6 +272,30 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     }
   }
 
+  private QueryRequest buildSelectionQueryRequest(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      List<String> entityIdAttributeIds,
+      List<org.hypertrace.gateway.service.v1.common.Expression> aggregates) {
+    QueryRequest.Builder builder =
+        constructSelectionQuery(requestContext, entitiesRequest, entityIdAttributeIds, aggregates);
+
+    adjustLimitAndOffset(
+        builder,
+        entitiesRequest.getLimit(),
+        entitiesRequest.getOffset(),
+        entityIdAttributeIds.size());
+
+    if (!entitiesRequest.getOrderByList().isEmpty()) {
+      // Order by from the request.
+      builder.addAllOrderBy(
+          QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(
+              entitiesRequest.getOrderByList()));
+    }
+
+    return builder.build();
+  }
+
   private QueryRequest.Builder constructSelectionQuery(
       EntitiesRequestContext requestContext,
       EntitiesRequest entitiesRequest,
@@ -346,9 +434,15 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
   @Override
   public EntityFetcherResponse getTimeAggregatedMetrics(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFutures.join(getTimeAggregatedMetricsAsync(requestContext, entitiesRequest));
+  }
+
+  @Override
+  public CompletableFuture<EntityFetcherResponse> getTimeAggregatedMetricsAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     // No need to make execute the rest of this if there are no TimeAggregations in the request.
     if (entitiesRequest.getTimeAggregationCount() == 0) {
-      return new EntityFetcherResponse();
+      return CompletableFuture.completedFuture(new EntityFetcherResponse());
     }
     // Only supported filter is entityIds IN ["id1", "id2", "id3"]
     List<String> idColumns =
@@ -382,115 +476,177 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
 
     // First group the Aggregations based on the period so that we can issue separate queries
     // to QueryService for each different Period.
-    Collection<List<TimeAggregation>> result =
+    // The queries for the different periods are independent of each other, so they are all issued
+    // before waiting on any of them.
+    List<Long> periodSecsList = new ArrayList<>();
+    List<CompletableFuture<List<ResultSetChunk>>> resultFutures = new ArrayList<>();
+    for (List<TimeAggregation> batch :
         entitiesRequest.getTimeAggregationList().stream()
             .collect(Collectors.groupingBy(TimeAggregation::getPeriod))
-            .values();
-
-    Map<EntityKey, Map<String, MetricSeries.Builder>> entityMetricSeriesMap = new LinkedHashMap<>();
-    for (List<TimeAggregation> batch : result) {
+            .values()) {
       Period period = batch.get(0).getPeriod();
       ChronoUnit unit = ChronoUnit.valueOf(period.getUnit());
       long periodSecs = Duration.of(period.getValue(), unit).getSeconds();
-      QueryRequest request =
-          buildTimeSeriesQueryRequest(
-              entitiesRequest, requestContext, periodSecs, batch, idColumns, timeColumn);
-
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(
-            "Sending time series queryRequest to query service: ======== \n {}",
-            request.toString());
-      }
 
-      Iterator<ResultSetChunk> resultSetChunkIterator =
-          queryServiceClient.executeQuery(request, requestContext.getHeaders(), requestTimeout);
+      TimeRangeQueryBuilder queryBuilder =
+          (startTimeMillis, endTimeMillis) ->
+              buildTimeSeriesQueryRequest(
+                  EntitiesRequest.newBuilder(entitiesRequest)
+                      .setStartTimeMillis(startTimeMillis)
+                      .setEndTimeMillis(endTimeMillis)
+                      .build(),
+                  requestContext,
+                  periodSecs,
+                  batch,
+                  idColumns,
+                  timeColumn);
+
+      // Only the buckets missing from the time series cache are queried, in concurrent
+      // sub-queries on period aligned parts of the window when it is long
+      periodSecsList.add(periodSecs);
+      resultFutures.add(
+          timeSeriesCache.executeQuery(
+              requestContext.getTenantId(),
+              requestContext.getHeaders(),
+              QueryExpressionUtil.alignToPeriodBoundary(
+                  entitiesRequest.getStartTimeMillis(), periodSecs, true),
+              QueryExpressionUtil.alignToPeriodBoundary(
+                  entitiesRequest.getEndTimeMillis(), periodSecs, false),
+              periodSecs,
+              // the time column comes right after the id columns
+              idColumns.size(),
+              queryBuilder,
+              (startTimeMillis, endTimeMillis) ->
+                  timeRangeSharder.executeTimeSeriesQuery(
+                      startTimeMillis,
+                      endTimeMillis,
+                      periodSecs,
+                      queryBuilder,
+                      request -> {
+                        if (LOG.isDebugEnabled()) {
+                          LOG.debug(
+                              "Sending time series queryRequest to query service: ======== \n {}",
+                              request.toString());
+                        }
+                        return queryServiceClient.executeQuery(
+                            request, requestContext.getHeaders(), requestTimeout);
+                      })));
+    }
 
-      while (resultSetChunkIterator.hasNext()) {
-        ResultSetChunk chunk = resultSetChunkIterator.next();
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Received chunk: " + chunk.toString());
-        }
+    return CompletableFutures.allAsList(resultFutures)
+        .thenApplyAsync(
+            results -> {
+              Map<EntityKey, Map<String, MetricSeries.Builder>> entityMetricSeriesMap =
+                  new LinkedHashMap<>();
+              for (int i = 0; i < results.size(); i++) {
+                addMetricSeries(
+                    requestContext,
+                    idColumns,
+                    resultKeyToAttributeMetadataMap,
+                    periodSecsList.get(i),
+                    results.get(i).iterator(),
+                    entityMetricSeriesMap);
+              }
+              return buildTimeAggregatedEntities(entitiesRequest, idColumns, entityMetricSeriesMap);
+            },
+            queryExecutor);
+  }
 
-        if (chunk.getRowCount() < 1) {
-          break;
-        }
+  private void addMetricSeries(
+      EntitiesRequestContext requestContext,
+      List<String> idColumns,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      long periodSecs,
+      Iterator<ResultSetChunk> resultSetChunkIterator,
+      Map<EntityKey, Map<String, MetricSeries.Builder>> entityMetricSeriesMap) {
+    while (resultSetChunkIterator.hasNext()) {
+      ResultSetChunk chunk = resultSetChunkIterator.next();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Received chunk: " + chunk.toString());
+      }
 
-        if (!chunk.hasResultSetMetadata()) {
-          LOG.warn("Chunk doesn't have result metadata so couldn't process the response.");
-          break;
-        }
+      if (chunk.getRowCount() < 1) {
+        break;
+      }
 
-        for (Row row : chunk.getRowList()) {
-          // Construct the entity id from the entityIdAttributeIds columns
-          EntityKey entityKey =
-              EntityKey.of(
-                  IntStream.range(0, idColumns.size())
-                      .mapToObj(value -> row.getColumn(value).getString())
-                      .toArray(String[]::new));
-
-          Map<String, MetricSeries.Builder> metricSeriesMap =
-              entityMetricSeriesMap.computeIfAbsent(entityKey, k -> new LinkedHashMap<>());
-
-          Interval.Builder intervalBuilder = Interval.newBuilder();
-
-          // Second column is the time column
-          Value value =
-              QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
-                  row.getColumn(idColumns.size()));
-          if (value.getValueType() == ValueType.STRING) {
-            long startTime = Long.parseLong(value.getString());
-            long endTime = startTime + TimeUnit.SECONDS.toMillis(periodSecs);
-            intervalBuilder.setStartTimeMillis(startTime);
-            intervalBuilder.setEndTimeMillis(endTime);
-
-            for (int i = idColumns.size() + 1;
-                i < chunk.getResultSetMetadata().getColumnMetadataCount();
-                i++) {
-              ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
-              TimeAggregation timeAggregation =
-                  requestContext.getTimeAggregationByAlias(metadata.getColumnName());
-              if (timeAggregation == null) {
-                LOG.warn("Couldn't find an aggregate for column: {}", metadata.getColumnName());
-                continue;
-              }
+      if (!chunk.hasResultSetMetadata()) {
+        LOG.warn("Chunk doesn't have result metadata so couldn't process the response.");
+        break;
+      }
 
-              FunctionType functionType =
-                  timeAggregation.getAggregation().getFunction().getFunction();
-              AttributeMetadata functionAttributeMetadata =
-                  resultKeyToAttributeMetadataMap.get(metadata.getColumnName());
-
-              Value convertedValue =
-                  QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue(
-                      MetricAggregationFunctionUtil.getValueTypeForFunctionType(
-                          functionType, functionAttributeMetadata),
-                      resultKeyToAttributeMetadataMap,
-                      metadata,
-                      row.getColumn(i));
-
-              List<org.hypertrace.gateway.service.v1.common.Expression> healthExpressions =
-                  timeAggregation.getAggregation().getFunction().getArgumentsList().stream()
-                      .filter(org.hypertrace.gateway.service.v1.common.Expression::hasHealth)
-                      .collect(Collectors.toList());
-              Preconditions.checkArgument(healthExpressions.size() <= 1);
-              Health health = Health.NOT_COMPUTED;
-
-              MetricSeries.Builder seriesBuilder =
-                  metricSeriesMap.computeIfAbsent(
-                      metadata.getColumnName(), k -> getMetricSeriesBuilder(timeAggregation));
-              seriesBuilder.addValue(
-                  Interval.newBuilder(intervalBuilder.build())
-                      .setValue(convertedValue)
-                      .setHealth(health));
+      for (Row row : chunk.getRowList()) {
+        // Construct the entity id from the entityIdAttributeIds columns
+        EntityKey entityKey =
+            requestContext
+                .getEntityKeyInterner()
+                .intern(idColumns.size(), value -> row.getColumn(value).getString());
+
+        Map<String, MetricSeries.Builder> metricSeriesMap =
+            entityMetricSeriesMap.computeIfAbsent(entityKey, k -> new LinkedHashMap<>());
+
+        Interval.Builder intervalBuilder = Interval.newBuilder();
+
+        // Second column is the time column
+        Value value =
+            QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+                row.getColumn(idColumns.size()));
+        if (value.getValueType() == ValueType.STRING) {
+          long startTime = Long.parseLong(value.getString());
+          long endTime = startTime + TimeUnit.SECONDS.toMillis(periodSecs);
+          intervalBuilder.setStartTimeMillis(startTime);
+          intervalBuilder.setEndTimeMillis(endTime);
+
+          for (int i = idColumns.size() + 1;
+              i < chunk.getResultSetMetadata().getColumnMetadataCount();
+              i++) {
+            ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
+            TimeAggregation timeAggregation =
+                requestContext.getTimeAggregationByAlias(metadata.getColumnName());
+            if (timeAggregation == null) {
+              LOG.warn("Couldn't find an aggregate for column: {}", metadata.getColumnName());
+              continue;
             }
-          } else {
-            LOG.warn(
-                "Was expecting STRING values only but received valueType: {}",
-                value.getValueType());
+
+            FunctionType functionType =
+                timeAggregation.getAggregation().getFunction().getFunction();
+            AttributeMetadata functionAttributeMetadata =
+                resultKeyToAttributeMetadataMap.get(metadata.getColumnName());
+
+            Value convertedValue =
+                QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue(
+                    MetricAggregationFunctionUtil.getValueTypeForFunctionType(
+                        functionType, functionAttributeMetadata),
+                    resultKeyToAttributeMetadataMap,
+                    metadata,
+                    row.getColumn(i));
+
+            List<org.hypertrace.gateway.service.v1.common.Expression> healthExpressions =
+                timeAggregation.getAggregation().getFunction().getArgumentsList().stream()
+                    .filter(org.hypertrace.gateway.service.v1.common.Expression::hasHealth)
+                    .collect(Collectors.toList());
+            Preconditions.checkArgument(healthExpressions.size() <= 1);
+            Health health = Health.NOT_COMPUTED;
+
+            MetricSeries.Builder seriesBuilder =
+                metricSeriesMap.computeIfAbsent(
+                    metadata.getColumnName(), k -> getMetricSeriesBuilder(timeAggregation));
+            seriesBuilder.addValue(
+                Interval.newBuilder(intervalBuilder.build())
+                    .setValue(convertedValue)
+                    .setHealth(health));
           }
+        } else {
+          LOG.warn(
+              "Was expecting STRING values only but received valueType: {}", value.getValueType());
         }
       }
     }
+  }
 
+  private EntityFetcherResponse buildTimeAggregatedEntities(
+      EntitiesRequest entitiesRequest,
+      List<String> idColumns,
+      Map<EntityKey, Map<String, MetricSeries.Builder>> entityMetricSeriesMap) {
     Map<EntityKey, Entity.Builder> resultMap = new LinkedHashMap<>();
     for (Map.Entry<EntityKey, Map<String, MetricSeries.Builder>> entry :
         entityMetricSeriesMap.entrySet()) {
@@ -507,7 +663,7 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
         entityBuilder.putAttribute(
             idColumns.get(i),
             Value.newBuilder()
-                .setString(entry.getKey().getAttributes().get(i))
+                .setString(entry.getKey().get(i))
                 .setValueType(ValueType.STRING)
                 .build());
       }
@@ -518,6 +674,12 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
 
   @Override
   public long getTotal(EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
+    return CompletableFutures.join(getTotalAsync(requestContext, entitiesRequest));
+  }
+
+  @Override
+  public CompletableFuture<Long> getTotalAsync(
+      EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     Map<String, AttributeMetadata> attributeMetadataMap =
         attributeMetadataProvider.getAttributesMetadata(
             requestContext, entitiesRequest.getEntityType());
@@ -547,9 +709,13 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
       LOG.debug("Sending Query to Query Service ======== \n {}", queryRequest);
     }
 
-    Iterator<ResultSetChunk> resultSetChunkIterator =
-        queryServiceClient.executeQuery(queryRequest, requestContext.getHeaders(), requestTimeout);
+    return queryServiceClient
+        .executeQuery(queryRequest, requestContext.getHeaders(), requestTimeout)
+        .thenApply(resultSetChunks -> parseTotal(queryRequest, resultSetChunks.iterator()));
+  }
 
+  private long parseTotal(
+      QueryRequest queryRequest, Iterator<ResultSetChunk> resultSetChunkIterator) {
     while (resultSetChunkIterator.hasNext()) {
       ResultSetChunk chunk = resultSetChunkIterator.next();
       if (LOG.isDebugEnabled()) {
@@ -0,0 +1,54 @@
+package org.hypertrace.gateway.service.common.pushdown;
+
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+
+/**
+ * What a data source can apply itself of the order by, limit and offset of a query grouped by
+ * attributes. Whatever it can't apply is applied by the gateway on the groups returned, the source
+ * then returning up to a default number of groups.
+ */
+public class GroupByPushdownCapabilities {
+  private static final GroupByPushdownCapabilities NONE =
+      new GroupByPushdownCapabilities(false, false);
+
+  private final boolean orderByAndLimit;
+  private final boolean offset;
+
+  /** Capabilities of a source applying none of the order by, limit and offset itself. */
+  public static GroupByPushdownCapabilities none() {
+    return NONE;
+  }
+
+  GroupByPushdownCapabilities(boolean orderByAndLimit, boolean offset) {
+    this.orderByAndLimit = orderByAndLimit;
+    this.offset = offset;
+  }
+
+  /** Whether the source sorts the groups on the order by and limits them. */
+  public boolean canPushDownOrderByAndLimit() {
+    return orderByAndLimit;
+  }
+
+  /** Whether the source also skips the first groups once sorted. */
+  public boolean canPushDownOffset() {
+    return orderByAndLimit && offset;
+  }
+
+  /**
+   * The limit of a grouped query returning at least the groups of the page at the given limit and
+   * offset. Without order by, or if the source can't sort and limit the groups, the default limit
+   * of the query service applies since any group may belong to the page. Otherwise the limit of the
+   * page, increased by its offset unless the source skips the offset itself.
+   */
+  public int getLimit(boolean ordered, int limit, int offset) {
+    if (!ordered || !canPushDownOrderByAndLimit()) {
+      return QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT;
+    }
+    return canPushDownOffset() ? limit : limit + offset;
+  }
+
+  /** The offset of a grouped query, consistent with {@link #getLimit(boolean, int, int)}. */
+  public int getOffset(boolean ordered, int offset) {
+    return ordered && canPushDownOffset() ? offset : 0;
+  }
+}
@@ -0,0 +1,54 @@
+package org.hypertrace.gateway.service.common.pushdown;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the {@link GroupByPushdownCapabilities} of each data source, keyed by the source
+ * name. Sources which aren't configured apply none of the order by, limit and offset of grouped
+ * queries.
+ *
+ * <pre>
+ * group.by.pushdown.config = {
+ *   QS = {
+ *     // The source sorts the groups on the order by and limits them
+ *     order.by.limit = true
+ *     // The source also skips the offset groups, requires order.by.limit
+ *     offset = false
+ *   }
+ * }
+ * </pre>
+ */
+public class GroupByPushdownConfig {
+  private static final String CONFIG_PATH = "group.by.pushdown.config";
+  private static final String ORDER_BY_LIMIT_PATH = "order.by.limit";
+  private static final String OFFSET_PATH = "offset";
+
+  private final Map<String, GroupByPushdownCapabilities> capabilitiesBySource;
+
+  public static GroupByPushdownConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    Map<String, GroupByPushdownCapabilities> capabilitiesBySource = new HashMap<>();
+    for (String source : config.root().keySet()) {
+      Config sourceConfig = config.getConfig(source);
+      capabilitiesBySource.put(
+          source,
+          new GroupByPushdownCapabilities(
+              sourceConfig.hasPath(ORDER_BY_LIMIT_PATH)
+                  && sourceConfig.getBoolean(ORDER_BY_LIMIT_PATH),
+              sourceConfig.hasPath(OFFSET_PATH) && sourceConfig.getBoolean(OFFSET_PATH)));
+    }
+    return new GroupByPushdownConfig(capabilitiesBySource);
+  }
+
+  GroupByPushdownConfig(Map<String, GroupByPushdownCapabilities> capabilitiesBySource) {
+    this.capabilitiesBySource = capabilitiesBySource;
+  }
+
+  public GroupByPushdownCapabilities getCapabilities(String source) {
+    return capabilitiesBySource.getOrDefault(source, GroupByPushdownCapabilities.none());
+  }
+}
@@ -0,0 +1,287 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.Expression;
+import org.hypertrace.core.query.service.api.Function;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.core.query.service.api.ValueType;
+
+/**
+ * Merges the results of the sub-queries of an aggregation query on consecutive parts of its time
+ * range. The rows of the sub-queries are merged on the values of their group by columns.
+ *
+ * <p>Only decomposable aggregations merge: COUNT and SUM add up, MIN and MAX keep the extreme
+ * value, and AVG is queried as a SUM along with a hidden COUNT, the sum being divided by the count
+ * once merged. Queries with order bys or an offset don't merge either, as each sub-query would
+ * order and skip its own rows.
+ */
+class AggregationShardMerger {
+  private static final String COUNT = "COUNT";
+  private static final String SUM = "SUM";
+  private static final String MIN = "MIN";
+  private static final String MAX = "MAX";
+  private static final String AVG = "AVG";
+  private static final String HIDDEN_COUNT_PREFIX = "__shard_count_";
+
+  private final Map<String, String> functionsByColumn;
+  private final Map<String, String> countColumnsByAvgColumn;
+
+  /** Merger of the sub-queries of the query, if its aggregations are all decomposable. */
+  static Optional<AggregationShardMerger> of(QueryRequest request) {
+    if (request.getOrderByCount() > 0
+        || request.getOffset() > 0
+        || request.getAggregationCount() > 0) {
+      return Optional.empty();
+    }
+
+    Map<String, String> functionsByColumn = new HashMap<>();
+    Map<String, String> countColumnsByAvgColumn = new HashMap<>();
+    for (Expression selection : request.getSelectionList()) {
+      if (!selection.hasFunction()) {
+        // Without group by, the selected columns are rows instead of aggregations
+        if (request.getGroupByCount() == 0) {
+          return Optional.empty();
+        }
+        continue;
+      }
+      Function function = selection.getFunction();
+      if (function.getAlias().isEmpty() || !isDecomposable(function.getFunctionName())) {
+        return Optional.empty();
+      }
+      functionsByColumn.put(function.getAlias(), function.getFunctionName());
+      if (AVG.equals(function.getFunctionName())) {
+        String countColumn = HIDDEN_COUNT_PREFIX + function.getAlias();
+        functionsByColumn.put(countColumn, COUNT);
+        countColumnsByAvgColumn.put(function.getAlias(), countColumn);
+      }
+    }
+    if (functionsByColumn.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(new AggregationShardMerger(functionsByColumn, countColumnsByAvgColumn));
+  }
+
+  private static boolean isDecomposable(String functionName) {
+    switch (functionName) {
+      case COUNT:
+      case SUM:
+      case MIN:
+      case MAX:
+      case AVG:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private AggregationShardMerger(
+      Map<String, String> functionsByColumn, Map<String, String> countColumnsByAvgColumn) {
+    this.functionsByColumn = functionsByColumn;
+    this.countColumnsByAvgColumn = countColumnsByAvgColumn;
+  }
+
+  /** The query of a sub-query, its averages being replaced by sums and hidden counts. */
+  QueryRequest toShardRequest(QueryRequest request) {
+    if (countColumnsByAvgColumn.isEmpty()) {
+      return request;
+    }
+
+    QueryRequest.Builder builder = request.toBuilder().clearSelection();
+    for (Expression selection : request.getSelectionList()) {
+      if (!selection.hasFunction() || !AVG.equals(selection.getFunction().getFunctionName())) {
+        builder.addSelection(selection);
+        continue;
+      }
+      Function avg = selection.getFunction();
+      builder.addSelection(
+          Expression.newBuilder().setFunction(avg.toBuilder().setFunctionName(SUM)));
+      builder.addSelection(
+          Expression.newBuilder()
+              .setFunction(
+                  avg.toBuilder()
+                      .setFunctionName(COUNT)
+                      .setAlias(countColumnsByAvgColumn.get(avg.getAlias()))));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Merges the results of the sub-queries into a single chunk holding at most limit rows, or
+   * nothing if a value can't be merged.
+   */
+  Optional<List<ResultSetChunk>> merge(List<List<ResultSetChunk>> shardResults, int limit) {
+    ResultSetMetadata metadata = null;
+    Map<List<Value>, Value[]> mergedRows = new LinkedHashMap<>();
+    List<Integer> keyColumns = new ArrayList<>();
+    for (List<ResultSetChunk> chunks : shardResults) {
+      for (ResultSetChunk chunk : chunks) {
+        if (metadata == null && chunk.hasResultSetMetadata()) {
+          metadata = chunk.getResultSetMetadata();
+          int functionColumnCount = 0;
+          for (int i = 0; i < metadata.getColumnMetadataCount(); i++) {
+            if (functionsByColumn.containsKey(getColumnName(metadata, i))) {
+              functionColumnCount++;
+            } else {
+              keyColumns.add(i);
+            }
+          }
+          // Aggregations not named after their alias would be taken for group bys
+          if (functionColumnCount != functionsByColumn.size()) {
+            return Optional.empty();
+          }
+        }
+        for (Row row : chunk.getRowList()) {
+          if (metadata == null || row.getColumnCount() != metadata.getColumnMetadataCount()) {
+            return Optional.empty();
+          }
+          List<Value> key = new ArrayList<>(keyColumns.size());
+          keyColumns.forEach(i -> key.add(row.getColumn(i)));
+          Value[] mergedRow = mergedRows.get(key);
+          if (mergedRow == null) {
+            mergedRows.put(key, row.getColumnList().toArray(new Value[0]));
+            continue;
+          }
+          for (int i = 0; i < mergedRow.length; i++) {
+            String function = functionsByColumn.get(getColumnName(metadata, i));
+            if (function != null) {
+              mergedRow[i] = combine(function, mergedRow[i], row.getColumn(i));
+              if (mergedRow[i] == null) {
+                return Optional.empty();
+              }
+            }
+          }
+        }
+      }
+    }
+    if (metadata == null) {
+      return Optional.of(List.of());
+    }
+    return toChunks(metadata, mergedRows.values(), limit);
+  }
+
+  /** Single chunk of the merged rows, the averages computed and the hidden counts dropped. */
+  private Optional<List<ResultSetChunk>> toChunks(
+      ResultSetMetadata metadata, Iterable<Value[]> mergedRows, int limit) {
+    Map<String, Integer> columnIndexes = new HashMap<>();
+    ResultSetMetadata.Builder metadataBuilder = ResultSetMetadata.newBuilder();
+    List<Integer> visibleColumns = new ArrayList<>();
+    for (int i = 0; i < metadata.getColumnMetadataCount(); i++) {
+      ColumnMetadata columnMetadata = metadata.getColumnMetadata(i);
+      columnIndexes.put(columnMetadata.getColumnName(), i);
+      if (!columnMetadata.getColumnName().startsWith(HIDDEN_COUNT_PREFIX)) {
+        visibleColumns.add(i);
+        metadataBuilder.addColumnMetadata(columnMetadata);
+      }
+    }
+    metadataBuilder.setColumnCount(visibleColumns.size());
+
+    ResultSetChunk.Builder chunkBuilder =
+        ResultSetChunk.newBuilder().setIsLastChunk(true).setResultSetMetadata(metadataBuilder);
+    for (Value[] mergedRow : mergedRows) {
+      if (limit > 0 && chunkBuilder.getRowCount() >= limit) {
+        break;
+      }
+      for (Map.Entry<String, String> avgColumn : countColumnsByAvgColumn.entrySet()) {
+        Integer avgIndex = columnIndexes.get(avgColumn.getKey());
+        Integer countIndex = columnIndexes.get(avgColumn.getValue());
+        if (avgIndex == null || countIndex == null) {
+          return Optional.empty();
+        }
+        Double sum = toDouble(mergedRow[avgIndex]);
+        Long count = toLong(mergedRow[countIndex]);
+        if (sum == null || count == null) {
+          return Optional.empty();
+        }
+        mergedRow[avgIndex] =
+            doubleValue(mergedRow[avgIndex].getValueType(), count == 0 ? 0 : sum / count);
+      }
+      Row.Builder rowBuilder = Row.newBuilder();
+      visibleColumns.forEach(i -> rowBuilder.addColumn(mergedRow[i]));
+      chunkBuilder.addRow(rowBuilder);
+    }
+    return Optional.of(List.of(chunkBuilder.build()));
+  }
+
+  private static String getColumnName(ResultSetMetadata metadata, int index) {
+    return metadata.getColumnMetadata(index).getColumnName();
+  }
+
+  /** The combination of two values of an aggregation, or null if they can't be read. */
+  private static Value combine(String function, Value value, Value otherValue) {
+    Double number = toDouble(value);
+    Double otherNumber = toDouble(otherValue);
+    if (number == null || otherNumber == null) {
+      return null;
+    }
+    switch (function) {
+      case MIN:
+        return number.isNaN() || otherNumber < number ? otherValue : value;
+      case MAX:
+        return number.isNaN() || otherNumber > number ? otherValue : value;
+      default:
+        Long longNumber = toLong(value);
+        Long otherLongNumber = toLong(otherValue);
+        if (longNumber != null && otherLongNumber != null) {
+          return longValue(value.getValueType(), longNumber + otherLongNumber);
+        }
+        return doubleValue(value.getValueType(), number + otherNumber);
+    }
+  }
+
+  private static Double toDouble(Value value) {
+    switch (value.getValueType()) {
+      case LONG:
+        return (double) value.getLong();
+      case DOUBLE:
+        return value.getDouble();
+      case STRING:
+        try {
+          return Double.parseDouble(value.getString());
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      default:
+        return null;
+    }
+  }
+
+  private static Long toLong(Value value) {
+    switch (value.getValueType()) {
+      case LONG:
+        return value.getLong();
+      case STRING:
+        try {
+          return Long.parseLong(value.getString());
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      default:
+        return null;
+    }
+  }
+
+  private static Value longValue(ValueType valueType, long value) {
+    return valueType == ValueType.STRING
+        ? Value.newBuilder().setValueType(ValueType.STRING).setString(Long.toString(value)).build()
+        : Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private static Value doubleValue(ValueType valueType, double value) {
+    return valueType == ValueType.STRING
+        ? Value.newBuilder()
+            .setValueType(ValueType.STRING)
+            .setString(Double.toString(value))
+            .build()
+        : Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+  }
+}
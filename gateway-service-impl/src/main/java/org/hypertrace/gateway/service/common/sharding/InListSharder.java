@@ -0,0 +1,90 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the values of an IN filter of a query into shards, each of which is the filter of a
+ * sub-query. Long lists of entity ids make large query protos and slow plans downstream, while
+ * sub-queries on fewer ids run concurrently.
+ *
+ * <p>Sharding only applies to queries whose results are per value of the list, e.g. grouped by
+ * entity id, so that the results of the sub-queries are disjoint and merged by concatenation.
+ */
+public class InListSharder {
+  private static final Logger LOG = LoggerFactory.getLogger(InListSharder.class);
+
+  private static final String SHARDED_QUERIES_METRIC = "hypertrace.in.list.sharded.queries";
+  private static final String SUB_QUERIES_METRIC = "hypertrace.in.list.sub.queries";
+  private static final String SUB_QUERY_VALUES_METRIC = "hypertrace.in.list.sub.query.values";
+  private static final String QUERY_NAME_TAG = "query";
+  private static final InListSharder DISABLED = new InListSharder();
+
+  private final InListShardingConfig config;
+  private final Counter shardedQueries;
+  private final Counter subQueries;
+  private final DistributionSummary subQueryValues;
+
+  public InListSharder(String name, InListShardingConfig config) {
+    this.config = config;
+    Map<String, String> tags = ImmutableMap.of(QUERY_NAME_TAG, name);
+    this.shardedQueries = PlatformMetricsRegistry.registerCounter(SHARDED_QUERIES_METRIC, tags);
+    this.subQueries = PlatformMetricsRegistry.registerCounter(SUB_QUERIES_METRIC, tags);
+    this.subQueryValues =
+        DistributionSummary.builder(SUB_QUERY_VALUES_METRIC)
+            .tag(QUERY_NAME_TAG, name)
+            .register(PlatformMetricsRegistry.getMeterRegistry());
+  }
+
+  /** Sharder which never splits anything. */
+  public static InListSharder disabled() {
+    return DISABLED;
+  }
+
+  private InListSharder() {
+    this.config = null;
+    this.shardedQueries = null;
+    this.subQueries = null;
+    this.subQueryValues = null;
+  }
+
+  public boolean isEnabled() {
+    return config != null && config.isEnabled() && config.getMaxValues() > 0;
+  }
+
+  /**
+   * Splits the values in consecutive shards of at most the max values, or in the max shards of
+   * equal sizes if that takes more. The values are returned as a single shard when not over the max
+   * values.
+   */
+  public <T> List<List<T>> shard(Collection<T> values) {
+    List<T> valueList = values instanceof List ? (List<T>) values : new ArrayList<>(values);
+    if (!isEnabled() || valueList.size() <= config.getMaxValues()) {
+      return List.of(valueList);
+    }
+
+    int shardCount =
+        Math.min(
+            (valueList.size() + config.getMaxValues() - 1) / config.getMaxValues(),
+            Math.max(config.getMaxShards(), 1));
+    int shardSize = (valueList.size() + shardCount - 1) / shardCount;
+    List<List<T>> shards = new ArrayList<>(shardCount);
+    for (int from = 0; from < valueList.size(); from += shardSize) {
+      List<T> shard = valueList.subList(from, Math.min(from + shardSize, valueList.size()));
+      shards.add(shard);
+      subQueryValues.record(shard.size());
+    }
+    shardedQueries.increment();
+    subQueries.increment(shards.size());
+    LOG.debug("Split {} values in {} shards of {}", valueList.size(), shards.size(), shardSize);
+    return shards;
+  }
+}
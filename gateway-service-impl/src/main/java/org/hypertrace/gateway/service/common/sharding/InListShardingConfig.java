@@ -0,0 +1,59 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Configuration of the splitting of queries filtering on long lists of entity ids into concurrent
+ * sub-queries. Sharding is disabled unless explicitly enabled.
+ *
+ * <pre>
+ * in.list.sharding.config = {
+ *   enabled = true
+ *   // Lists of more values are split, in sub-queries of at most this many values
+ *   max.values = 5000
+ *   // Sub-queries of a query at most, their lists growing past max.values beyond it
+ *   max.shards = 8
+ * }
+ * </pre>
+ */
+public class InListShardingConfig {
+  private static final String CONFIG_PATH = "in.list.sharding.config";
+  private static final String ENABLED_PATH = "enabled";
+  private static final String MAX_VALUES_PATH = "max.values";
+  private static final String MAX_SHARDS_PATH = "max.shards";
+
+  private static final int DEFAULT_MAX_VALUES = 5000;
+  private static final int DEFAULT_MAX_SHARDS = 8;
+
+  private final boolean enabled;
+  private final int maxValues;
+  private final int maxShards;
+
+  public static InListShardingConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new InListShardingConfig(
+        config.hasPath(ENABLED_PATH) && config.getBoolean(ENABLED_PATH),
+        config.hasPath(MAX_VALUES_PATH) ? config.getInt(MAX_VALUES_PATH) : DEFAULT_MAX_VALUES,
+        config.hasPath(MAX_SHARDS_PATH) ? config.getInt(MAX_SHARDS_PATH) : DEFAULT_MAX_SHARDS);
+  }
+
+  InListShardingConfig(boolean enabled, int maxValues, int maxShards) {
+    this.enabled = enabled;
+    this.maxValues = maxValues;
+    this.maxShards = maxShards;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getMaxValues() {
+    return maxValues;
+  }
+
+  public int getMaxShards() {
+    return maxShards;
+  }
+}
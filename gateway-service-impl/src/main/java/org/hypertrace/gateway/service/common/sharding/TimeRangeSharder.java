@@ -0,0 +1,258 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache.TimeRangeQueryBuilder;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the time range of a query over a long window into consecutive shards, each of which is the
+ * time range of a sub-query. A query over days of data is one long scan bounded by the request
+ * timeout, while sub-queries on parts of the window run concurrently.
+ *
+ * <p>The results of the sub-queries are merged depending on the query: the buckets of time series
+ * are disjoint when the shards are aligned to the period, so they are concatenated, while the
+ * aggregations over the whole window are merged by {@link AggregationShardMerger}. Queries whose
+ * results can't be merged, or whose sub-queries return as many rows as their limit and so may miss
+ * some, are executed as a single query.
+ */
+public class TimeRangeSharder {
+  private static final Logger LOG = LoggerFactory.getLogger(TimeRangeSharder.class);
+
+  private static final String SHARDED_QUERIES_METRIC = "hypertrace.time.range.sharded.queries";
+  private static final String SUB_QUERIES_METRIC = "hypertrace.time.range.sub.queries";
+  private static final String FALLBACKS_METRIC = "hypertrace.time.range.sharding.fallbacks";
+  private static final String QUERY_NAME_TAG = "query";
+  private static final TimeRangeSharder DISABLED = new TimeRangeSharder();
+
+  private final TimeRangeShardingConfig config;
+  private final Counter shardedQueries;
+  private final Counter subQueries;
+  private final Counter fallbacks;
+
+  /** Time range [startTimeMillis, endTimeMillis) of a sub-query. */
+  public static class TimeRange {
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+
+    TimeRange(long startTimeMillis, long endTimeMillis) {
+      this.startTimeMillis = startTimeMillis;
+      this.endTimeMillis = endTimeMillis;
+    }
+
+    public long getStartTimeMillis() {
+      return startTimeMillis;
+    }
+
+    public long getEndTimeMillis() {
+      return endTimeMillis;
+    }
+  }
+
+  public TimeRangeSharder(String name, TimeRangeShardingConfig config) {
+    this.config = config;
+    Map<String, String> tags = ImmutableMap.of(QUERY_NAME_TAG, name);
+    this.shardedQueries = PlatformMetricsRegistry.registerCounter(SHARDED_QUERIES_METRIC, tags);
+    this.subQueries = PlatformMetricsRegistry.registerCounter(SUB_QUERIES_METRIC, tags);
+    this.fallbacks = PlatformMetricsRegistry.registerCounter(FALLBACKS_METRIC, tags);
+  }
+
+  /** Sharder which never splits anything. */
+  public static TimeRangeSharder disabled() {
+    return DISABLED;
+  }
+
+  private TimeRangeSharder() {
+    this.config = null;
+    this.shardedQueries = null;
+    this.subQueries = null;
+    this.fallbacks = null;
+  }
+
+  public boolean isEnabled() {
+    return config != null && config.isEnabled() && config.getShards() > 1;
+  }
+
+  /**
+   * Splits the time range in the configured number of shards of equal lengths, multiples of the
+   * alignment so that the shards of an aligned range are aligned too. The range is returned as a
+   * single shard when shorter than the min window.
+   */
+  public List<TimeRange> shard(long startTimeMillis, long endTimeMillis, long alignmentMillis) {
+    long windowMillis = endTimeMillis - startTimeMillis;
+    if (!isEnabled() || windowMillis <= 0 || windowMillis < config.getMinWindow().toMillis()) {
+      return List.of(new TimeRange(startTimeMillis, endTimeMillis));
+    }
+
+    long alignment = Math.max(alignmentMillis, 1);
+    long alignedWindows = (windowMillis + alignment - 1) / alignment;
+    long shardMillis = ((alignedWindows + config.getShards() - 1) / config.getShards()) * alignment;
+    List<TimeRange> shards = new ArrayList<>(config.getShards());
+    for (long from = startTimeMillis; from < endTimeMillis; from += shardMillis) {
+      shards.add(new TimeRange(from, Math.min(from + shardMillis, endTimeMillis)));
+    }
+    return shards;
+  }
+
+  /**
+   * Executes the time series query over the window in sub-queries on period aligned shards of it,
+   * whose buckets are concatenated in a single chunk. The query is executed as a single query when
+   * the shards return as many rows as its limit in total, as the concatenated rows may then not be
+   * the ones it would return.
+   *
+   * @param startTimeMillis start of the window, aligned to the period
+   * @param endTimeMillis end of the window, aligned to the period
+   * @param queryBuilder builds the query for a time range, the rest of the query being the same
+   * @param queryExecutor executes a query
+   */
+  public CompletableFuture<List<ResultSetChunk>> executeTimeSeriesQuery(
+      long startTimeMillis,
+      long endTimeMillis,
+      long periodSecs,
+      TimeRangeQueryBuilder queryBuilder,
+      Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor) {
+    return execute(
+        startTimeMillis,
+        endTimeMillis,
+        TimeUnit.SECONDS.toMillis(periodSecs),
+        queryBuilder,
+        Function.identity(),
+        TimeRangeSharder::concatenate,
+        queryExecutor);
+  }
+
+  /**
+   * Executes the aggregation query over the window in sub-queries on shards of it, whose
+   * aggregations are merged when they are all decomposable.
+   *
+   * @param queryBuilder builds the query for a time range, the rest of the query being the same
+   * @param queryExecutor executes a query
+   */
+  public CompletableFuture<List<ResultSetChunk>> executeAggregationQuery(
+      long startTimeMillis,
+      long endTimeMillis,
+      TimeRangeQueryBuilder queryBuilder,
+      Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor) {
+    if (!isEnabled()) {
+      return queryExecutor.apply(queryBuilder.build(startTimeMillis, endTimeMillis));
+    }
+
+    Optional<AggregationShardMerger> merger =
+        AggregationShardMerger.of(queryBuilder.build(startTimeMillis, endTimeMillis));
+    if (merger.isEmpty()) {
+      return queryExecutor.apply(queryBuilder.build(startTimeMillis, endTimeMillis));
+    }
+    return execute(
+        startTimeMillis,
+        endTimeMillis,
+        1,
+        queryBuilder,
+        merger.get()::toShardRequest,
+        merger.get()::merge,
+        queryExecutor);
+  }
+
+  private CompletableFuture<List<ResultSetChunk>> execute(
+      long startTimeMillis,
+      long endTimeMillis,
+      long alignmentMillis,
+      TimeRangeQueryBuilder queryBuilder,
+      Function<QueryRequest, QueryRequest> shardRequestBuilder,
+      ShardResultsMerger merger,
+      Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor) {
+    QueryRequest request = queryBuilder.build(startTimeMillis, endTimeMillis);
+    List<TimeRange> shards = shard(startTimeMillis, endTimeMillis, alignmentMillis);
+    if (shards.size() == 1 || queryBuilder.build(0, 0).equals(request)) {
+      // The time range of the query doesn't depend on the window, e.g. it comes from the filter.
+      return queryExecutor.apply(request);
+    }
+
+    List<QueryRequest> shardRequests =
+        shards.stream()
+            .map(
+                shard ->
+                    shardRequestBuilder.apply(
+                        queryBuilder.build(shard.getStartTimeMillis(), shard.getEndTimeMillis())))
+            .collect(Collectors.toUnmodifiableList());
+    shardedQueries.increment();
+    subQueries.increment(shards.size());
+    LOG.debug(
+        "Split the time range [{}, {}) in {} shards",
+        startTimeMillis,
+        endTimeMillis,
+        shards.size());
+
+    // The sub-queries are all issued before waiting on any of them
+    return CompletableFutures.allAsList(
+            shardRequests.stream().map(queryExecutor).collect(Collectors.toUnmodifiableList()))
+        .thenCompose(
+            shardResults -> {
+              Optional<List<ResultSetChunk>> mergedResult =
+                  isAnyTruncated(shardRequests, shardResults)
+                      ? Optional.empty()
+                      : merger.merge(shardResults, request.getLimit());
+              if (mergedResult.isPresent()) {
+                return CompletableFuture.completedFuture(mergedResult.get());
+              }
+              fallbacks.increment();
+              return queryExecutor.apply(request);
+            });
+  }
+
+  /** Whether a sub-query returned as many rows as its limit, and so may be missing some. */
+  private static boolean isAnyTruncated(
+      List<QueryRequest> shardRequests, List<List<ResultSetChunk>> shardResults) {
+    for (int i = 0; i < shardRequests.size(); i++) {
+      int limit = shardRequests.get(i).getLimit();
+      if (limit > 0 && getRowCount(shardResults.get(i)) >= limit) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int getRowCount(List<ResultSetChunk> chunks) {
+    return chunks.stream().mapToInt(ResultSetChunk::getRowCount).sum();
+  }
+
+  private static Optional<List<ResultSetChunk>> concatenate(
+      List<List<ResultSetChunk>> shardResults, int limit) {
+    if (limit > 0 && shardResults.stream().mapToInt(TimeRangeSharder::getRowCount).sum() >= limit) {
+      return Optional.empty();
+    }
+
+    ResultSetChunk.Builder chunkBuilder = ResultSetChunk.newBuilder().setIsLastChunk(true);
+    ResultSetMetadata metadata = null;
+    for (List<ResultSetChunk> chunks : shardResults) {
+      for (ResultSetChunk chunk : chunks) {
+        if (metadata == null && chunk.hasResultSetMetadata()) {
+          metadata = chunk.getResultSetMetadata();
+        }
+        chunkBuilder.addAllRow(chunk.getRowList());
+      }
+    }
+    if (metadata == null) {
+      return Optional.of(List.of());
+    }
+    return Optional.of(List.of(chunkBuilder.setResultSetMetadata(metadata).build()));
+  }
+
+  @FunctionalInterface
+  private interface ShardResultsMerger {
+    Optional<List<ResultSetChunk>> merge(List<List<ResultSetChunk>> shardResults, int limit);
+  }
+}
@@ -0,0 +1,60 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+
+/**
+ * Configuration of the splitting of queries over long time windows into concurrent sub-queries on
+ * consecutive parts of the window. Sharding is disabled unless explicitly enabled.
+ *
+ * <pre>
+ * time.range.sharding.config = {
+ *   enabled = true
+ *   // Windows at least this long are split
+ *   min.window = 1d
+ *   // Sub-queries of a query
+ *   shards = 4
+ * }
+ * </pre>
+ */
+public class TimeRangeShardingConfig {
+  private static final String CONFIG_PATH = "time.range.sharding.config";
+  private static final String ENABLED_PATH = "enabled";
+  private static final String MIN_WINDOW_PATH = "min.window";
+  private static final String SHARDS_PATH = "shards";
+
+  private static final Duration DEFAULT_MIN_WINDOW = Duration.ofDays(1);
+  private static final int DEFAULT_SHARDS = 4;
+
+  private final boolean enabled;
+  private final Duration minWindow;
+  private final int shards;
+
+  public static TimeRangeShardingConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new TimeRangeShardingConfig(
+        config.hasPath(ENABLED_PATH) && config.getBoolean(ENABLED_PATH),
+        config.hasPath(MIN_WINDOW_PATH) ? config.getDuration(MIN_WINDOW_PATH) : DEFAULT_MIN_WINDOW,
+        config.hasPath(SHARDS_PATH) ? config.getInt(SHARDS_PATH) : DEFAULT_SHARDS);
+  }
+
+  TimeRangeShardingConfig(boolean enabled, Duration minWindow, int shards) {
+    this.enabled = enabled;
+    this.minWindow = minWindow;
+    this.shards = shards;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Duration getMinWindow() {
+    return minWindow;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+}
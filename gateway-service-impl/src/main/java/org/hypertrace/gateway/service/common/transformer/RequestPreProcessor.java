@@ -4,6 +4,7 @@ import java.util.stream.Collectors;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.util.TimeAggregationPeriodUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.trace.TraceScope;
 import org.hypertrace.gateway.service.v1.common.Filter;
@@ -32,8 +33,8 @@ public class RequestPreProcessor {
    * This is called once before processing the request.
    *
    * @param originalRequest The original request received
-   * @return The modified request with unique selections and any additional filters depending on the
-   *     scope config
+   * @return The modified request with unique selections, any additional filters depending on the
+   *     scope config and the periods of the time aggregations coarsened to their max points
    */
   public EntitiesRequest process(EntitiesRequest originalRequest, EntitiesRequestContext context) {
     EntitiesRequest.Builder entitiesRequestBuilder = EntitiesRequest.newBuilder(originalRequest);
@@ -50,6 +51,16 @@ public class RequestPreProcessor {
         .clearSelection()
         .addAllSelection(
             originalRequest.getSelectionList().stream().distinct().collect(Collectors.toList()))
+        .clearTimeAggregation()
+        .addAllTimeAggregation(
+            originalRequest.getTimeAggregationList().stream()
+                .map(
+                    timeAggregation ->
+                        TimeAggregationPeriodUtil.coarsenPeriod(
+                            timeAggregation,
+                            originalRequest.getStartTimeMillis(),
+                            originalRequest.getEndTimeMillis()))
+                .collect(Collectors.toList()))
         .build();
   }
 
@@ -1,21 +1,55 @@
 package org.hypertrace.gateway.service.common.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.hypertrace.gateway.service.common.comparators.OrderByComparator;
 
 public class DataCollectionUtil {
-
   public static <E, C extends Comparator<E>> List<E> limitAndSort(
       Stream<E> unsortedStream, int limit, int offset, int orderByCount, C comparator) {
-    // Now apply the sorting and limiting.
-    Stream<E> sorted = unsortedStream;
-    if (orderByCount > 0) {
-      sorted = unsortedStream.sorted(comparator);
+    return limitAndSort(
+        unsortedStream.collect(Collectors.toList()), limit, offset, orderByCount, comparator);
+  }
+
+  /**
+   * Sorts the elements and returns the page of limit elements starting at offset, all the elements
+   * from offset if the limit isn't positive. The sort is stable.
+   *
+   * <p>When the page is smaller than the elements, only the top offset + limit elements are kept
+   * while going through the elements, so a page of k out of n elements is selected in O(n log k)
+   * instead of sorting all of them. The sort keys of order by comparators are read once per element
+   * rather than on every comparison.
+   */
+  public static <E, C extends Comparator<E>> List<E> limitAndSort(
+      Collection<E> unsortedElements, int limit, int offset, int orderByCount, C comparator) {
+    if (orderByCount <= 0) {
+      return paginateAndLimit(unsortedElements, limit, offset);
     }
 
-    return paginateAndLimit(sorted, limit, offset);
+    int from = Math.max(offset, 0);
+    List<E> elements = new ArrayList<>(unsortedElements);
+    if (elements.size() < 2) {
+      return paginateAndLimit(elements, limit, from);
+    }
+
+    Comparator<Integer> order = getIndexOrder(elements, comparator);
+    List<Integer> sortedIndexes;
+    if (limit <= 0 || (long) from + limit >= elements.size()) {
+      Integer[] indexes = IntStream.range(0, elements.size()).boxed().toArray(Integer[]::new);
+      Arrays.sort(indexes, order);
+      sortedIndexes = paginateAndLimit(Arrays.asList(indexes), limit, from);
+    } else {
+      List<Integer> top = selectTop(elements.size(), from + limit, order);
+      sortedIndexes = top.subList(from, top.size());
+    }
+    return sortedIndexes.stream().map(elements::get).collect(Collectors.toList());
   }
 
   public static <E, C extends Comparator<E>> List<E> paginateAndLimit(
@@ -29,4 +63,53 @@ public class DataCollectionUtil {
     }
     return sortedStream.collect(Collectors.toList());
   }
+
+  /** Page of limit elements starting at offset, all the elements from offset if no limit. */
+  public static <E> List<E> paginateAndLimit(Collection<E> sortedElements, int limit, int offset) {
+    int from = Math.max(offset, 0);
+    int size = Math.max(sortedElements.size() - from, 0);
+    List<E> page = new ArrayList<>(limit > 0 ? Math.min(limit, size) : size);
+    int index = 0;
+    for (E element : sortedElements) {
+      if (limit > 0 && page.size() >= limit) {
+        break;
+      }
+      if (index++ >= from) {
+        page.add(element);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Order of the indexes of the elements, ties being ordered by index so that sorting is stable.
+   */
+  private static <E> Comparator<Integer> getIndexOrder(
+      List<E> elements, Comparator<? super E> comparator) {
+    Comparator<Integer> elementOrder =
+        comparator instanceof OrderByComparator
+            ? ((OrderByComparator<? super E>) comparator).compile(elements)
+            : (left, right) -> comparator.compare(elements.get(left), elements.get(right));
+    return (left, right) -> {
+      int comparison = elementOrder.compare(left, right);
+      return comparison != 0 ? comparison : Integer.compare(left, right);
+    };
+  }
+
+  /** The k first of the indexes from 0 to size - 1, in the given order. */
+  private static List<Integer> selectTop(int size, int k, Comparator<Integer> order) {
+    // The head of the queue is the last of the k first indexes seen so far
+    PriorityQueue<Integer> heap = new PriorityQueue<>(k, order.reversed());
+    for (int index = 0; index < size; index++) {
+      if (heap.size() < k) {
+        heap.add(index);
+      } else if (order.compare(index, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(index);
+      }
+    }
+    List<Integer> top = new ArrayList<>(heap);
+    top.sort(order);
+    return top;
+  }
 }
@@ -0,0 +1,23 @@
+package org.hypertrace.gateway.service.common.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class RequestHeadersUtil {
+
+  /**
+   * The forwarded headers which may affect the result of a request, all of them but the ignored
+   * ones, like the tracing headers. The results fetched with a set of headers must only be shared
+   * with the requests having the same key headers, as those hold the credentials of the caller.
+   *
+   * @param ignoredHeaders lower case names of the headers not affecting the result
+   */
+  public static Map<String, String> getKeyHeaders(
+      Map<String, String> requestHeaders, Set<String> ignoredHeaders) {
+    return requestHeaders.entrySet().stream()
+        .filter(header -> !ignoredHeaders.contains(header.getKey().toLowerCase(Locale.ROOT)))
+        .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+  }
+}
@@ -0,0 +1,71 @@
+package org.hypertrace.gateway.service.common.util;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+
+/**
+ * Coarsens the periods of time aggregations to their max points. A series over a long window at a
+ * short period holds a point per period, which all go through the query service group by and the
+ * response conversion, while a chart only shows so many of them.
+ *
+ * <p>The period is coarsened to a multiple of itself, so that the buckets stay aligned to the
+ * original ones. The buckets being aggregated by the query service, this applies to any aggregation
+ * function.
+ */
+public class TimeAggregationPeriodUtil {
+
+  /**
+   * The smallest multiple of the period whose buckets within the window, aligned to it, are at most
+   * the max points. The period itself if its buckets fit or max points isn't positive.
+   */
+  public static Period coarsenPeriod(
+      Period period, long startTimeMillis, long endTimeMillis, int maxPoints) {
+    if (maxPoints <= 0) {
+      return period;
+    }
+    long periodSecs = getPeriodSecs(period);
+    if (periodSecs <= 0 || countPoints(startTimeMillis, endTimeMillis, periodSecs) <= maxPoints) {
+      return period;
+    }
+
+    long multiple =
+        (countPoints(startTimeMillis, endTimeMillis, periodSecs) + maxPoints - 1) / maxPoints;
+    // The buckets of the coarser period may not start at the same time as the window
+    while (countPoints(startTimeMillis, endTimeMillis, periodSecs * multiple) > maxPoints) {
+      multiple++;
+    }
+    return Period.newBuilder(period)
+        .setValue(Math.toIntExact(period.getValue() * multiple))
+        .build();
+  }
+
+  /** The time aggregation with its period coarsened to its max points, see coarsenPeriod. */
+  public static TimeAggregation coarsenPeriod(
+      TimeAggregation timeAggregation, long startTimeMillis, long endTimeMillis) {
+    Period period =
+        coarsenPeriod(
+            timeAggregation.getPeriod(),
+            startTimeMillis,
+            endTimeMillis,
+            timeAggregation.getMaxPoints());
+    return period.equals(timeAggregation.getPeriod())
+        ? timeAggregation
+        : TimeAggregation.newBuilder(timeAggregation).setPeriod(period).build();
+  }
+
+  private static long getPeriodSecs(Period period) {
+    return Duration.of(period.getValue(), ChronoUnit.valueOf(period.getUnit())).getSeconds();
+  }
+
+  /** Number of buckets of the period within the window, aligned as the queries do. */
+  private static long countPoints(long startTimeMillis, long endTimeMillis, long periodSecs) {
+    long alignedStartTimeMillis =
+        QueryExpressionUtil.alignToPeriodBoundary(startTimeMillis, periodSecs, true);
+    long alignedEndTimeMillis =
+        QueryExpressionUtil.alignToPeriodBoundary(endTimeMillis, periodSecs, false);
+    return Math.max(alignedEndTimeMillis - alignedStartTimeMillis, 0)
+        / Duration.ofSeconds(periodSecs).toMillis();
+  }
+}
@@ -41,6 +41,8 @@ public abstract class RequestValidator<REQUEST> extends Validator {
     checkArgument(
         timeAggregation.getAggregation().hasFunction(),
         "Time aggregation expression should be a function");
+    checkArgument(
+        timeAggregation.getMaxPoints() >= 0, "Time aggregation max points should not be negative");
     aggregationValidator.validate(timeAggregation.getAggregation());
   }
 
@@ -7,6 +7,8 @@ import org.hypertrace.gateway.service.common.QueryRequestContext;
 public class EntitiesRequestContext extends QueryRequestContext {
   private final String entityType;
   private final String timestampAttributeId;
+  // Not part of equality, as contexts of the same request may share it
+  private final EntityKeyInterner entityKeyInterner;
 
   public EntitiesRequestContext(
       String tenantId,
@@ -15,9 +17,28 @@ public class EntitiesRequestContext extends QueryRequestContext {
       String entityType,
       String timestampAttributeId,
       Map<String, String> requestHeaders) {
+    this(
+        tenantId,
+        startTimeMillis,
+        endTimeMillis,
+        entityType,
+        timestampAttributeId,
+        requestHeaders,
+        new EntityKeyInterner());
+  }
+
+  public EntitiesRequestContext(
+      String tenantId,
+      long startTimeMillis,
+      long endTimeMillis,
+      String entityType,
+      String timestampAttributeId,
+      Map<String, String> requestHeaders,
+      EntityKeyInterner entityKeyInterner) {
     super(tenantId, startTimeMillis, endTimeMillis, requestHeaders);
     this.entityType = entityType;
     this.timestampAttributeId = timestampAttributeId;
+    this.entityKeyInterner = entityKeyInterner;
   }
 
   public String getEntityType() {
@@ -28,6 +49,10 @@ public class EntitiesRequestContext extends QueryRequestContext {
     return timestampAttributeId;
   }
 
+  public EntityKeyInterner getEntityKeyInterner() {
+    return entityKeyInterner;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -1,57 +1,141 @@
 package org.hypertrace.gateway.service.entity;
 
 import java.util.List;
-import java.util.Objects;
 
-/** Composite Key that acts as an identifier for an Entity */
-public class EntityKey {
+/**
+ * Composite Key that acts as an identifier for an Entity. Keys of a single attribute, which most
+ * entity types have, are kept without a list. The hash code is computed once, as keys are probed
+ * many times while entities are built and merged, and so is the string form.
+ */
+public abstract class EntityKey {
   private static final String DELIMITER = ":::";
 
-  private final List<String> attributes;
+  private final int hashCode;
 
-  private EntityKey(List<String> attributes) {
-    this.attributes = attributes;
+  private EntityKey(int hashCode) {
+    this.hashCode = hashCode;
   }
 
   public static EntityKey of(String... attributes) {
-    return new EntityKey(List.of(attributes));
+    if (attributes.length == 1) {
+      return of(attributes[0]);
+    }
+    return new CompositeEntityKey(List.of(attributes));
   }
 
-  public static EntityKey from(String str) {
-    return of(str.split(DELIMITER));
+  public static EntityKey of(String attribute) {
+    return new SingleAttributeEntityKey(attribute);
   }
 
-  public List<String> getAttributes() {
-    return attributes;
+  public static EntityKey from(String str) {
+    return str.contains(DELIMITER) ? of(str.split(DELIMITER)) : of(str);
   }
 
+  public abstract List<String> getAttributes();
+
+  public abstract int size();
+
+  public abstract String get(int i);
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
       return true;
     }
-    if (o == null || getClass() != o.getClass()) {
+    if (!(o instanceof EntityKey)) {
       return false;
     }
     EntityKey that = (EntityKey) o;
-    return Objects.equals(attributes, that.attributes);
+    if (hashCode != that.hashCode || size() != that.size()) {
+      return false;
+    }
+    for (int i = 0; i < size(); i++) {
+      if (!get(i).equals(that.get(i))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(attributes);
+    return hashCode;
   }
 
-  @Override
-  public String toString() {
-    return String.join(DELIMITER, attributes);
-  }
+  private static final class SingleAttributeEntityKey extends EntityKey {
+    private final String attribute;
+
+    private SingleAttributeEntityKey(String attribute) {
+      // Same as the hash code of a list of the attribute
+      super(31 + attribute.hashCode());
+      this.attribute = attribute;
+    }
+
+    @Override
+    public List<String> getAttributes() {
+      return List.of(attribute);
+    }
+
+    @Override
+    public int size() {
+      return 1;
+    }
+
+    @Override
+    public String get(int i) {
+      if (i != 0) {
+        throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length 1");
+      }
+      return attribute;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof SingleAttributeEntityKey) {
+        return attribute.equals(((SingleAttributeEntityKey) o).attribute);
+      }
+      return super.equals(o);
+    }
 
-  public int size() {
-    return attributes.size();
+    @Override
+    public String toString() {
+      return attribute;
+    }
   }
 
-  public String get(int i) {
-    return attributes.get(i);
+  private static final class CompositeEntityKey extends EntityKey {
+    private final List<String> attributes;
+    private String string;
+
+    private CompositeEntityKey(List<String> attributes) {
+      super(attributes.hashCode());
+      this.attributes = attributes;
+    }
+
+    @Override
+    public List<String> getAttributes() {
+      return attributes;
+    }
+
+    @Override
+    public int size() {
+      return attributes.size();
+    }
+
+    @Override
+    public String get(int i) {
+      return attributes.get(i);
+    }
+
+    @Override
+    public String toString() {
+      // Racy but idempotent, as with String.hashCode()
+      String string = this.string;
+      if (string == null) {
+        string = String.join(DELIMITER, attributes);
+        this.string = string;
+      }
+      return string;
+    }
   }
 }
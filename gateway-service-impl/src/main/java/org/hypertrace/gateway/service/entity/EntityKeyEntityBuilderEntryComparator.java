@@ -6,7 +6,9 @@ import java.util.Map.Entry;
 import org.hypertrace.gateway.service.common.comparators.AggregatedMetricValueComparator;
 import org.hypertrace.gateway.service.common.comparators.OrderByComparator;
 import org.hypertrace.gateway.service.common.comparators.ValueComparator;
+import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.entity.Entity;
 import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 
@@ -35,4 +37,15 @@ public class EntityKeyEntityBuilderEntryComparator
         left.getValue().getAttributeMap().get(columnName),
         right.getValue().getAttributeMap().get(columnName));
   }
+
+  @Override
+  protected Value getFunctionExpressionValue(Entry<EntityKey, Builder> entry, String alias) {
+    AggregatedMetricValue metricValue = entry.getValue().getMetricMap().get(alias);
+    return metricValue == null ? null : metricValue.getValue();
+  }
+
+  @Override
+  protected Value getColumnExpressionValue(Entry<EntityKey, Builder> entry, String columnName) {
+    return entry.getValue().getAttributeMap().get(columnName);
+  }
 }
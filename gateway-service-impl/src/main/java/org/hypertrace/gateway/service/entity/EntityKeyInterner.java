@@ -0,0 +1,33 @@
+package org.hypertrace.gateway.service.entity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Entity keys seen while serving a request, so that all the rows of an entity share one key
+ * instance. A key of a single attribute is looked up by the attribute itself, without creating a
+ * key. Fetches of a request may run concurrently, so the table is thread safe.
+ */
+public class EntityKeyInterner {
+  private final Map<String, EntityKey> singleAttributeKeys = new ConcurrentHashMap<>();
+  private final Map<EntityKey, EntityKey> compositeKeys = new ConcurrentHashMap<>();
+
+  public EntityKey intern(String attribute) {
+    return singleAttributeKeys.computeIfAbsent(attribute, EntityKey::of);
+  }
+
+  /** Key of the given number of attributes, each attribute being read from its index. */
+  public EntityKey intern(int size, IntFunction<String> attributeReader) {
+    if (size == 1) {
+      return intern(attributeReader.apply(0));
+    }
+    String[] attributes = new String[size];
+    for (int i = 0; i < size; i++) {
+      attributes[i] = attributeReader.apply(i);
+    }
+    EntityKey entityKey = EntityKey.of(attributes);
+    EntityKey internedKey = compositeKeys.putIfAbsent(entityKey, entityKey);
+    return internedKey != null ? internedKey : entityKey;
+  }
+}
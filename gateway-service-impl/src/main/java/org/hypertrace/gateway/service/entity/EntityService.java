@@ -9,23 +9,31 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeSource;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.OrderByPercentileSizeSetter;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.ResultCache;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
 import org.hypertrace.gateway.service.common.datafetcher.EntityDataServiceEntityFetcher;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityInteractionsFetcher;
-import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
+import org.hypertrace.gateway.service.common.sharding.InListShardingConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
 import org.hypertrace.gateway.service.common.transformer.RequestPreProcessor;
 import org.hypertrace.gateway.service.common.transformer.ResponsePostProcessor;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
@@ -37,6 +45,7 @@ import org.hypertrace.gateway.service.entity.query.QueryNode;
 import org.hypertrace.gateway.service.entity.query.visitor.ExecutionVisitor;
 import org.hypertrace.gateway.service.entity.update.EdsEntityUpdater;
 import org.hypertrace.gateway.service.entity.update.UpdateExecutionContext;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.entity.BulkUpdateEntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.BulkUpdateEntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
@@ -69,45 +78,73 @@ public class EntityService {
   private final ResponsePostProcessor responsePostProcessor;
   private final EdsEntityUpdater edsEntityUpdater;
   private final LogConfig logConfig;
+  private final ExecutorService queryExecutor;
+  private final ResultCache<EntitiesResponse> resultCache;
+  private final InListSharder inListSharder;
   // Metrics
   private Timer queryBuildTimer;
   private Timer queryExecutionTimer;
 
   public EntityService(
-      QueryServiceClient qsClient,
+      QueryServiceAsyncClient qsClient,
       int qsRequestTimeout,
       EntityQueryServiceClient edsQueryServiceClient,
+      EntityQueryServiceAsyncClient edsQueryServiceAsyncClient,
       AttributeMetadataProvider metadataProvider,
       EntityIdColumnsConfigs entityIdColumnsConfigs,
       ScopeFilterConfigs scopeFilterConfigs,
       LogConfig logConfig,
-      ExecutorService queryExecutor) {
+      ExecutorService queryExecutor,
+      ResultCacheConfig resultCacheConfig,
+      InListShardingConfig inListShardingConfig,
+      TimeRangeShardingConfig timeRangeShardingConfig) {
     this.metadataProvider = metadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
     this.interactionsFetcher =
-        new EntityInteractionsFetcher(qsClient, qsRequestTimeout, metadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            qsClient,
+            qsRequestTimeout,
+            metadataProvider,
+            queryExecutor,
+            new InListSharder("interactions", inListShardingConfig));
     this.requestPreProcessor = new RequestPreProcessor(metadataProvider, scopeFilterConfigs);
     this.responsePostProcessor = new ResponsePostProcessor();
     this.edsEntityUpdater = new EdsEntityUpdater(edsQueryServiceClient);
     this.logConfig = logConfig;
-
-    registerEntityFetchers(qsClient, qsRequestTimeout, edsQueryServiceClient);
+    this.queryExecutor = queryExecutor;
+    this.resultCache = new ResultCache<>("entities", resultCacheConfig);
+    this.inListSharder = new InListSharder("entities", inListShardingConfig);
+
+    registerEntityFetchers(
+        qsClient,
+        qsRequestTimeout,
+        edsQueryServiceAsyncClient,
+        new TimeSeriesCache("entities", resultCacheConfig.getTimeSeriesCacheConfig()),
+        new TimeRangeSharder("entities", timeRangeShardingConfig));
     initMetrics();
   }
 
   private void registerEntityFetchers(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
-      EntityQueryServiceClient edsQueryServiceClient) {
+      EntityQueryServiceAsyncClient edsQueryServiceClient,
+      TimeSeriesCache timeSeriesCache,
+      TimeRangeSharder timeRangeSharder) {
     EntityQueryHandlerRegistry registry = EntityQueryHandlerRegistry.get();
     registry.registerEntityFetcher(
         AttributeSource.QS.name(),
         new QueryServiceEntityFetcher(
-            queryServiceClient, qsRequestTimeout, metadataProvider, entityIdColumnsConfigs));
+            queryServiceClient,
+            qsRequestTimeout,
+            metadataProvider,
+            entityIdColumnsConfigs,
+            timeSeriesCache,
+            queryExecutor,
+            timeRangeSharder));
     registry.registerEntityFetcher(
         AttributeSource.EDS.name(),
         new EntityDataServiceEntityFetcher(
-            edsQueryServiceClient, metadataProvider, entityIdColumnsConfigs));
+            edsQueryServiceClient, metadataProvider, entityIdColumnsConfigs, queryExecutor));
   }
 
   private void initMetrics() {
@@ -132,16 +169,39 @@ public class EntityService {
    */
   public EntitiesResponse getEntities(
       String tenantId, EntitiesRequest originalRequest, Map<String, String> requestHeaders) {
+    return CompletableFutures.join(getEntitiesAsync(tenantId, originalRequest, requestHeaders));
+  }
+
+  /**
+   * Non-blocking variant of {@link #getEntities}. The request is validated and the execution tree
+   * built on the calling thread, the rest of the steps run as the downstream responses arrive.
+   */
+  public CompletableFuture<EntitiesResponse> getEntitiesAsync(
+      String tenantId, EntitiesRequest request, Map<String, String> requestHeaders) {
+    // The cached response is served to all the requests of its time buckets, so it is the response
+    // of the request over the whole buckets
+    EntitiesRequest cachedRequest =
+        resultCache.isEnabled() ? alignToCacheBuckets(request) : request;
+    return resultCache.getAsync(
+        tenantId,
+        requestHeaders,
+        () -> cachedRequest,
+        cachedRequest.getEndTimeMillis(),
+        () -> fetchEntities(tenantId, cachedRequest, requestHeaders));
+  }
+
+  private CompletableFuture<EntitiesResponse> fetchEntities(
+      String tenantId, EntitiesRequest request, Map<String, String> requestHeaders) {
     Instant start = Instant.now();
     String timestampAttributeId =
         AttributeMetadataUtil.getTimestampAttributeId(
             metadataProvider,
             new RequestContext(tenantId, requestHeaders),
-            originalRequest.getEntityType());
+            request.getEntityType());
 
     // Set the size for percentiles in order by if it is not set. This is to give UI the time to fix
     // the bug which does not set the size when they have order by in the request.
-    originalRequest = OrderByPercentileSizeSetter.setPercentileSize(originalRequest);
+    EntitiesRequest originalRequest = OrderByPercentileSizeSetter.setPercentileSize(request);
     EntitiesRequestContext entitiesRequestContext =
         new EntitiesRequestContext(
             tenantId,
@@ -165,28 +225,52 @@ public class EntityService {
      * EntityQueryHandlerRegistry.get() returns Singleton object, so, it's guaranteed that
      * it won't create new object for each request.
      */
-    EntityResponse response =
-        executionTree.acceptVisitor(
-            new ExecutionVisitor(executionContext, EntityQueryHandlerRegistry.get()));
-
-    EntityFetcherResponse entityFetcherResponse = response.getEntityFetcherResponse();
-
-    List<Entity.Builder> results =
-        this.responsePostProcessor.transform(
-            executionContext,
-            new ArrayList<>(entityFetcherResponse.getEntityKeyBuilderMap().values()));
-
-    // Add interactions.
-    if (!results.isEmpty()) {
-      addEntityInteractions(
-          tenantId,
-          preProcessedRequest,
-          entityFetcherResponse.getEntityKeyBuilderMap(),
-          requestHeaders);
-    }
+    return executionTree
+        .acceptVisitor(
+            new ExecutionVisitor(
+                executionContext, EntityQueryHandlerRegistry.get(), queryExecutor, inListSharder))
+        .thenComposeAsync(
+            response -> {
+              EntityFetcherResponse entityFetcherResponse = response.getEntityFetcherResponse();
+
+              List<Entity.Builder> results =
+                  this.responsePostProcessor.transform(
+                      executionContext,
+                      new ArrayList<>(entityFetcherResponse.getEntityKeyBuilderMap().values()));
+
+              // Add interactions.
+              CompletableFuture<Void> interactionsFuture =
+                  results.isEmpty()
+                      ? CompletableFuture.completedFuture(null)
+                      : addEntityInteractions(
+                          tenantId,
+                          preProcessedRequest,
+                          entityFetcherResponse.getEntityKeyBuilderMap(),
+                          requestHeaders);
+
+              return interactionsFuture.thenApplyAsync(
+                  ignored -> buildResponse(start, originalRequest, response.getTotal(), results),
+                  queryExecutor);
+            },
+            queryExecutor);
+  }
+
+  // Requests falling within the same time buckets share the cached response.
+  private EntitiesRequest alignToCacheBuckets(EntitiesRequest request) {
+    return EntitiesRequest.newBuilder(request)
+        .setStartTimeMillis(
+            resultCache.alignToPeriodBoundary(
+                request.getStartTimeMillis(), request.getTimeAggregationList(), false))
+        .setEndTimeMillis(
+            resultCache.alignToPeriodBoundary(
+                request.getEndTimeMillis(), request.getTimeAggregationList(), true))
+        .build();
+  }
 
+  private EntitiesResponse buildResponse(
+      Instant start, EntitiesRequest originalRequest, long total, List<Entity.Builder> results) {
     EntitiesResponse.Builder responseBuilder =
-        EntitiesResponse.newBuilder().setTotal(Long.valueOf(response.getTotal()).intValue());
+        EntitiesResponse.newBuilder().setTotal(Long.valueOf(total).intValue());
 
     results.forEach(e -> responseBuilder.addEntity(e.build()));
 
@@ -223,6 +307,8 @@ public class EntityService {
     // to add the capability similar to what we have for querying.
     UpdateEntityResponse.Builder responseBuilder =
         edsEntityUpdater.update(request, updateExecutionContext);
+    // The cached entities of the tenant may include the attributes just updated.
+    resultCache.invalidate(tenantId);
     return responseBuilder.build();
   }
 
@@ -242,21 +328,24 @@ public class EntityService {
     UpdateExecutionContext updateExecutionContext =
         new UpdateExecutionContext(requestHeaders, attributeMetadataMap);
 
-    return edsEntityUpdater.bulkUpdateEntities(request, updateExecutionContext);
+    BulkUpdateEntitiesResponse response =
+        edsEntityUpdater.bulkUpdateEntities(request, updateExecutionContext);
+    resultCache.invalidate(tenantId);
+    return response;
   }
 
-  private void addEntityInteractions(
+  private CompletableFuture<Void> addEntityInteractions(
       String tenantId,
       EntitiesRequest request,
       Map<EntityKey, Builder> result,
       Map<String, String> requestHeaders) {
     if (InteractionsRequest.getDefaultInstance().equals(request.getIncomingInteractions())
         && InteractionsRequest.getDefaultInstance().equals(request.getOutgoingInteractions())) {
-      return;
+      return CompletableFuture.completedFuture(null);
     }
 
     RequestContext requestContext = new RequestContext(tenantId, requestHeaders);
 
-    interactionsFetcher.populateEntityInteractions(requestContext, request, result);
+    return interactionsFetcher.populateEntityInteractionsAsync(requestContext, request, result);
   }
 }
@@ -19,6 +19,7 @@ import org.hypertrace.gateway.service.common.util.TimeRangeFilterUtil;
 import org.hypertrace.gateway.service.entity.query.visitor.ExecutionContextBuilderVisitor;
 import org.hypertrace.gateway.service.entity.query.visitor.FilterOptimizingVisitor;
 import org.hypertrace.gateway.service.entity.query.visitor.PrintVisitor;
+import org.hypertrace.gateway.service.entity.query.visitor.SelectionMergingVisitor;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.Operator;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -249,7 +250,8 @@ public class ExecutionTreeBuilder {
       rootNode = checkAndAddSortAndPaginationNode(rootNode, executionContext);
     }
 
-    return rootNode;
+    // Fetch the selections of the page of entities from all the sources at once
+    return rootNode.acceptVisitor(new SelectionMergingVisitor());
   }
 
   @VisibleForTesting
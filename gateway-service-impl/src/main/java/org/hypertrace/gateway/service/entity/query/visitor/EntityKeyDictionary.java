@@ -0,0 +1,37 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.gateway.service.entity.EntityKey;
+
+/**
+ * Assigns dense int ids to entity keys, in the order the keys are first seen, so that sets of
+ * entities can be intersected and unioned as bitsets.
+ */
+class EntityKeyDictionary {
+  private final Map<EntityKey, Integer> idsByKey = new HashMap<>();
+  private final List<EntityKey> keysById = new ArrayList<>();
+
+  /** Ids of the given keys, assigning new ids to the keys not seen before. */
+  BitSet encode(Collection<EntityKey> entityKeys) {
+    BitSet ids = new BitSet(keysById.size() + entityKeys.size());
+    for (EntityKey entityKey : entityKeys) {
+      ids.set(
+          idsByKey.computeIfAbsent(
+              entityKey,
+              key -> {
+                keysById.add(key);
+                return keysById.size() - 1;
+              }));
+    }
+    return ids;
+  }
+
+  EntityKey decode(int id) {
+    return keysById.get(id);
+  }
+}
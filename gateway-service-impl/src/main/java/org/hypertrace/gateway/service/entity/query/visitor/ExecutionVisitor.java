@@ -1,26 +1,26 @@
 package org.hypertrace.gateway.service.entity.query.visitor;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.MapDifference;
-import com.google.common.collect.Maps;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.IEntityFetcher;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
 import org.hypertrace.gateway.service.common.util.DataCollectionUtil;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityKeyEntityBuilderEntryComparator;
+import org.hypertrace.gateway.service.entity.EntityKeyInterner;
 import org.hypertrace.gateway.service.entity.EntityQueryHandlerRegistry;
 import org.hypertrace.gateway.service.entity.query.AndNode;
 import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
@@ -30,6 +30,7 @@ import org.hypertrace.gateway.service.entity.query.OrNode;
 import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
 import org.hypertrace.gateway.service.entity.query.SelectionNode;
 import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
@@ -42,42 +43,44 @@ import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Visitor that executes each QueryNode in the execution tree. */
-public class ExecutionVisitor implements Visitor<EntityResponse> {
+/**
+ * Visitor that executes each QueryNode in the execution tree.
+ *
+ * <p>Nodes are executed without blocking: each visit returns a future that is composed with the
+ * futures of its child nodes, so sibling nodes and the per source fetches of a {@link
+ * SelectionNode} are in flight concurrently. Merging of the fetched results runs on the given
+ * executor, which is expected to be the bounded query executor.
+ */
+public class ExecutionVisitor implements Visitor<CompletableFuture<EntityResponse>> {
   private static final Logger LOG = LoggerFactory.getLogger(ExecutionVisitor.class);
 
   private final EntityQueryHandlerRegistry queryHandlerRegistry;
   private final EntityExecutionContext executionContext;
+  private final Executor executor;
+  private final InListSharder inListSharder;
+  // Shared by the fetches of the request, which build entities of the same keys
+  private final EntityKeyInterner entityKeyInterner = new EntityKeyInterner();
 
   public ExecutionVisitor(
-      EntityExecutionContext executionContext, EntityQueryHandlerRegistry queryHandlerRegistry) {
+      EntityExecutionContext executionContext,
+      EntityQueryHandlerRegistry queryHandlerRegistry,
+      Executor executor,
+      InListSharder inListSharder) {
     this.executionContext = executionContext;
     this.queryHandlerRegistry = queryHandlerRegistry;
+    this.executor = executor;
+    this.inListSharder = inListSharder;
   }
 
   private static EntityFetcherResponse intersectEntities(List<EntityFetcherResponse> builders) {
-    return new EntityFetcherResponse(
-        builders.stream()
-            .map(EntityFetcherResponse::getEntityKeyBuilderMap)
-            .reduce(
-                (map1, map2) ->
-                    Maps.difference(map1, map2).entriesDiffering().entrySet().stream()
-                        .collect(
-                            Collectors.toMap(
-                                Map.Entry::getKey,
-                                stringValueDifferenceEntry -> {
-                                  MapDifference.ValueDifference<Entity.Builder> diff =
-                                      stringValueDifferenceEntry.getValue();
-                                  return diff.leftValue().mergeFrom(diff.rightValue().build());
-                                })))
-            .orElse(Collections.emptyMap()));
+    return mergeEntities(builders, BitSet::and);
   }
 
   @VisibleForTesting
   protected static EntityResponse intersect(List<EntityResponse> entityResponses) {
     EntityFetcherResponse entityFetcherResponse =
         intersectEntities(
-            entityResponses.parallelStream()
+            entityResponses.stream()
                 .map(EntityResponse::getEntityFetcherResponse)
                 .collect(Collectors.toList()));
 
@@ -85,25 +88,51 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
   }
 
   private static EntityFetcherResponse unionEntities(List<EntityFetcherResponse> builders) {
-    return new EntityFetcherResponse(
-        builders.stream()
-            .map(EntityFetcherResponse::getEntityKeyBuilderMap)
-            .reduce(
-                new LinkedHashMap<>(),
-                (map1, map2) -> {
-                  Map<EntityKey, Builder> newMap = new LinkedHashMap<>(map1);
-                  map2.forEach(
-                      (key, value) ->
-                          newMap.merge(key, value, (v1, v2) -> v1.mergeFrom(v2.build())));
-                  return newMap;
-                }));
+    return mergeEntities(builders, BitSet::or);
+  }
+
+  /**
+   * Combines the sets of entities of the responses with the given set operation, done on the ids
+   * the entities are given by a dictionary, and then merges the entities left only once. The
+   * entities are ordered as they are first found in the responses.
+   */
+  private static EntityFetcherResponse mergeEntities(
+      List<EntityFetcherResponse> builders, BiConsumer<BitSet, BitSet> setOperation) {
+    EntityKeyDictionary dictionary = new EntityKeyDictionary();
+    BitSet entityIds = null;
+    for (EntityFetcherResponse response : builders) {
+      BitSet responseEntityIds = dictionary.encode(response.getEntityKeyBuilderMap().keySet());
+      if (entityIds == null) {
+        entityIds = responseEntityIds;
+      } else {
+        setOperation.accept(entityIds, responseEntityIds);
+      }
+    }
+
+    Map<EntityKey, Builder> entities = new LinkedHashMap<>();
+    if (entityIds == null) {
+      return new EntityFetcherResponse(entities);
+    }
+    for (int id = entityIds.nextSetBit(0); id >= 0; id = entityIds.nextSetBit(id + 1)) {
+      EntityKey entityKey = dictionary.decode(id);
+      Builder entity = null;
+      for (EntityFetcherResponse response : builders) {
+        Builder responseEntity = response.getEntityKeyBuilderMap().get(entityKey);
+        if (responseEntity == null) {
+          continue;
+        }
+        entity = entity == null ? responseEntity : entity.mergeFrom(responseEntity.build());
+      }
+      entities.put(entityKey, entity);
+    }
+    return new EntityFetcherResponse(entities);
   }
 
   @VisibleForTesting
   protected static EntityResponse union(List<EntityResponse> entityResponses) {
     EntityFetcherResponse entityFetcherResponse =
         unionEntities(
-            entityResponses.parallelStream()
+            entityResponses.stream()
                 .map(EntityResponse::getEntityFetcherResponse)
                 .collect(Collectors.toList()));
 
@@ -111,7 +140,7 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
   }
 
   @Override
-  public EntityResponse visit(DataFetcherNode dataFetcherNode) {
+  public CompletableFuture<EntityResponse> visit(DataFetcherNode dataFetcherNode) {
     String source = dataFetcherNode.getSource();
     EntitiesRequest entitiesRequest = executionContext.getEntitiesRequest();
     EntitiesRequestContext context =
@@ -121,7 +150,8 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
             entitiesRequest.getEndTimeMillis(),
             entitiesRequest.getEntityType(),
             executionContext.getTimestampAttributeId(),
-            executionContext.getRequestHeaders());
+            executionContext.getRequestHeaders(),
+            entityKeyInterner);
 
     EntitiesRequest.Builder requestBuilder =
         EntitiesRequest.newBuilder(entitiesRequest)
@@ -157,38 +187,46 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
     // total, the total number of entities has to be fetched separately
     if (dataFetcherNode.canFetchTotal()) {
       // since, the pagination is pushed down to the data store, total can be requested directly
-      // from the data store
-      return new EntityResponse(
-          entityFetcher.getEntities(context, request),
-          entityFetcher.getTotal(context, entitiesRequest));
+      // from the data store, along with the page itself
+      return entityFetcher.getEntitiesAndTotalAsync(context, request, entitiesRequest);
     } else {
       // if the data fetcher node is not paginating, the total number of entities is equal to number
       // of records fetched
-      EntityFetcherResponse response = entityFetcher.getEntities(context, request);
-      return new EntityResponse(response, response.getEntityKeyBuilderMap().size());
+      return entityFetcher
+          .getEntitiesAsync(context, request)
+          .thenApply(
+              response -> new EntityResponse(response, response.getEntityKeyBuilderMap().size()));
     }
   }
 
   @Override
-  public EntityResponse visit(AndNode andNode) {
-    return intersect(
-        andNode.getChildNodes().parallelStream()
-            .map(n -> n.acceptVisitor(this))
-            .collect(Collectors.toList()));
+  public CompletableFuture<EntityResponse> visit(AndNode andNode) {
+    return CompletableFutures.allAsList(
+            andNode.getChildNodes().stream()
+                .map(n -> n.acceptVisitor(this))
+                .collect(Collectors.toList()))
+        .thenApplyAsync(ExecutionVisitor::intersect, executor);
   }
 
   @Override
-  public EntityResponse visit(OrNode orNode) {
-    return union(
-        orNode.getChildNodes().parallelStream()
-            .map(n -> n.acceptVisitor(this))
-            .collect(Collectors.toList()));
+  public CompletableFuture<EntityResponse> visit(OrNode orNode) {
+    return CompletableFutures.allAsList(
+            orNode.getChildNodes().stream()
+                .map(n -> n.acceptVisitor(this))
+                .collect(Collectors.toList()))
+        .thenApplyAsync(ExecutionVisitor::union, executor);
   }
 
   @Override
-  public EntityResponse visit(SelectionNode selectionNode) {
-    EntityResponse childNodeResponse = selectionNode.getChildNode().acceptVisitor(this);
+  public CompletableFuture<EntityResponse> visit(SelectionNode selectionNode) {
+    return selectionNode
+        .getChildNode()
+        .acceptVisitor(this)
+        .thenCompose(childNodeResponse -> fetchSelections(selectionNode, childNodeResponse));
+  }
 
+  private CompletableFuture<EntityResponse> fetchSelections(
+      SelectionNode selectionNode, EntityResponse childNodeResponse) {
     EntityFetcherResponse childEntityFetcherResponse = childNodeResponse.getEntityFetcherResponse();
 
     // If the result was empty when the filter is non-empty, it means no entities matched the filter
@@ -196,142 +234,153 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
     if (childEntityFetcherResponse.isEmpty()
         && !Filter.getDefaultInstance().equals(executionContext.getEntitiesRequest().getFilter())) {
       LOG.debug("No results matched the filter so not fetching aggregate/timeseries metrics.");
-      return childNodeResponse;
+      return CompletableFuture.completedFuture(childNodeResponse);
+    }
+
+    // Construct the filters from the child nodes result. Long lists of entity ids are split, each
+    // filter being fetched on its own, as the fetched data of an entity only depends on its id.
+    List<Filter> filters = constructFiltersFromChildNodesResult(childEntityFetcherResponse);
+
+    // Select attributes, metric aggregations and time-series data from corresponding sources.
+    // All the fetches only depend on the filter, so they are issued concurrently.
+    List<CompletableFuture<EntityFetcherResponse>> fetchers = new ArrayList<>();
+    for (Filter filter : filters) {
+      addSelectionFetches(selectionNode, filter, fetchers);
     }
 
-    // Construct the filter from the child nodes result
-    final Filter filter = constructFilterFromChildNodesResult(childEntityFetcherResponse);
+    return CompletableFutures.allAsList(fetchers)
+        .thenApplyAsync(
+            resultMapList -> {
+              List<EntityFetcherResponse> responses = new ArrayList<>();
+              responses.add(childEntityFetcherResponse);
+              responses.addAll(resultMapList);
+              EntityFetcherResponse response = unionEntities(responses);
+
+              if (!childEntityFetcherResponse.isEmpty()) {
+                // if the child fetcher response is non empty, the total
+                // has already been fetched by node below it.
+                // Could be DataFetcherNode or a child SelectionNode
+                return new EntityResponse(response, childNodeResponse.getTotal());
+              } else {
+                // if the child fetcher response is empty, the total
+                // is equal to the response fetched by the current SelectionNode
+                return new EntityResponse(response, response.size());
+              }
+            },
+            executor);
+  }
 
-    // Select attributes, metric aggregations and time-series data from corresponding sources
-    List<EntityFetcherResponse> resultMapList = new ArrayList<>();
+  private void addSelectionFetches(
+      SelectionNode selectionNode,
+      Filter filter,
+      List<CompletableFuture<EntityFetcherResponse>> fetchers) {
     // if data are coming from multiple sources, then, get entities and aggregated metrics
     // needs to be separated
-    resultMapList.addAll(
-        selectionNode.getAttrSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          // TODO: Should we push order by, limit and offet down to the data source?
-                          // If we want to push the order by down, we would also have to divide
-                          // order by into sourceToOrderBySelectionExpressionMap,
-                          // sourceToOrderByMetricExpressionMap, sourceToOrderByTimeAggregationMap
-                          .clearOrderBy()
-                          .clearLimit()
-                          .clearOffset()
-                          .addAllSelection(
-                              executionContext
-                                  .getExpressionContext()
-                                  .getSourceToSelectionExpressionMap()
-                                  .get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext context =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getEntities(context, request);
-                })
-            .collect(Collectors.toList()));
-    resultMapList.addAll(
-        selectionNode.getAggMetricSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          .clearOrderBy()
-                          .clearOffset()
-                          .clearLimit()
-                          .addAllSelection(
-                              executionContext
-                                  .getExpressionContext()
-                                  .getSourceToMetricExpressionMap()
-                                  .get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext context =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getEntities(context, request);
-                })
-            .collect(Collectors.toList()));
-    resultMapList.addAll(
-        selectionNode.getTimeSeriesSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          .clearOrderBy()
-                          .clearOffset()
-                          .clearLimit()
-                          .addAllTimeAggregation(
-                              executionContext
-                                  .getExpressionContext()
-                                  .getSourceToTimeAggregationMap()
-                                  .get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext requestContext =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getTimeAggregatedMetrics(requestContext, request);
-                })
-            .collect(Collectors.toList()));
-
-    EntityFetcherResponse response =
-        resultMapList.stream()
-            .reduce(childEntityFetcherResponse, (r1, r2) -> unionEntities(Arrays.asList(r1, r2)));
-
-    if (!childEntityFetcherResponse.isEmpty()) {
-      // if the child fetcher response is non empty, the total
-      // has already been fetched by node below it.
-      // Could be DataFetcherNode or a child SelectionNode
-      return new EntityResponse(response, childNodeResponse.getTotal());
-    } else {
-      // if the child fetcher response is empty, the total
-      // is equal to the response fetched by the current SelectionNode
-      return new EntityResponse(response, response.size());
-    }
+    selectionNode
+        .getAttrSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      // TODO: Should we push order by, limit and offet down to the data source?
+                      // If we want to push the order by down, we would also have to divide
+                      // order by into sourceToOrderBySelectionExpressionMap,
+                      // sourceToOrderByMetricExpressionMap, sourceToOrderByTimeAggregationMap
+                      .clearOrderBy()
+                      .clearLimit()
+                      .clearOffset()
+                      .addAllSelection(
+                          executionContext
+                              .getExpressionContext()
+                              .getSourceToSelectionExpressionMap()
+                              .get(source))
+                      .setFilter(filter)
+                      .build();
+              IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
+              EntitiesRequestContext context = buildRequestContext(request);
+              fetchers.add(entityFetcher.getEntitiesAsync(context, request));
+            });
+    selectionNode
+        .getAggMetricSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      .clearOrderBy()
+                      .clearOffset()
+                      .clearLimit()
+                      .addAllSelection(
+                          executionContext
+                              .getExpressionContext()
+                              .getSourceToMetricExpressionMap()
+                              .get(source))
+                      .setFilter(filter)
+                      .build();
+              IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
+              EntitiesRequestContext context = buildRequestContext(request);
+              fetchers.add(entityFetcher.getEntitiesAsync(context, request));
+            });
+    selectionNode
+        .getTimeSeriesSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      .clearOrderBy()
+                      .clearOffset()
+                      .clearLimit()
+                      .addAllTimeAggregation(
+                          executionContext
+                              .getExpressionContext()
+                              .getSourceToTimeAggregationMap()
+                              .get(source))
+                      .setFilter(filter)
+                      .build();
+              IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
+              EntitiesRequestContext requestContext = buildRequestContext(request);
+              fetchers.add(entityFetcher.getTimeAggregatedMetricsAsync(requestContext, request));
+            });
   }
 
-  Filter constructFilterFromChildNodesResult(EntityFetcherResponse result) {
+  private EntitiesRequestContext buildRequestContext(EntitiesRequest request) {
+    return new EntitiesRequestContext(
+        executionContext.getTenantId(),
+        request.getStartTimeMillis(),
+        request.getEndTimeMillis(),
+        request.getEntityType(),
+        executionContext.getTimestampAttributeId(),
+        executionContext.getRequestHeaders(),
+        entityKeyInterner);
+  }
+
+  /**
+   * Filters on the ids of the entities of the child nodes result, one per shard of the ids, or a
+   * filter on no entities when the result is empty.
+   */
+  List<Filter> constructFiltersFromChildNodesResult(EntityFetcherResponse result) {
     if (result.isEmpty()) {
-      return Filter.getDefaultInstance();
+      return List.of(Filter.getDefaultInstance());
     }
+    return inListSharder.shard(result.getEntityKeyBuilderMap().keySet()).stream()
+        .map(this::constructFilterFromEntityKeys)
+        .collect(Collectors.toList());
+  }
 
+  private Filter constructFilterFromEntityKeys(List<EntityKey> entityKeys) {
     List<Expression> entityIdExpressionList = executionContext.getEntityIdExpressions();
     if (entityIdExpressionList.size() == 1) {
       Expression entityIdExpression = entityIdExpressionList.get(0);
-      Set<String> entityIdValues =
-          result.getEntityKeyBuilderMap().keySet().stream()
-              .map(entityKey -> entityKey.getAttributes().get(0))
-              .collect(Collectors.toSet());
+      List<String> entityIdValues =
+          entityKeys.stream().map(entityKey -> entityKey.get(0)).collect(Collectors.toList());
       return Filter.newBuilder()
           .setLhs(entityIdExpression)
           .setOperator(Operator.IN)
@@ -348,7 +397,7 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
       return Filter.newBuilder()
           .setOperator(Operator.OR)
           .addAllChildFilter(
-              result.getEntityKeyBuilderMap().keySet().stream()
+              entityKeys.stream()
                   .map(
                       entityKey ->
                           Filter.newBuilder()
@@ -362,7 +411,7 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
                                                   .setLhs(entityIdExpressionList.get(value))
                                                   .setRhs(
                                                       QueryExpressionUtil.getLiteralExpression(
-                                                          entityKey.getAttributes().get(value)))
+                                                          entityKey.get(value)))
                                                   .build())
                                       .collect(Collectors.toList()))
                               .build())
@@ -372,18 +421,21 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
   }
 
   @Override
-  public EntityResponse visit(SortAndPaginateNode sortAndPaginateNode) {
-    EntityResponse childNodeResponse = sortAndPaginateNode.getChildNode().acceptVisitor(this);
+  public CompletableFuture<EntityResponse> visit(SortAndPaginateNode sortAndPaginateNode) {
+    return sortAndPaginateNode
+        .getChildNode()
+        .acceptVisitor(this)
+        .thenApplyAsync(
+            childNodeResponse -> sortAndPaginate(sortAndPaginateNode, childNodeResponse), executor);
+  }
 
-    // Create a list from elements of HashMap
-    List<Map.Entry<EntityKey, Builder>> list =
-        new LinkedList<>(
-            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet());
+  private EntityResponse sortAndPaginate(
+      SortAndPaginateNode sortAndPaginateNode, EntityResponse childNodeResponse) {
 
-    // Sort the list
+    // Select the sorted page of entities
     List<Map.Entry<EntityKey, Entity.Builder>> sortedList =
         DataCollectionUtil.limitAndSort(
-            list.stream(),
+            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet(),
             sortAndPaginateNode.getLimit(),
             sortAndPaginateNode.getOffset(),
             sortAndPaginateNode.getOrderByExpressionList().size(),
@@ -398,23 +450,28 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
   }
 
   @Override
-  public EntityResponse visit(NoOpNode noOpNode) {
-    return new EntityResponse();
+  public CompletableFuture<EntityResponse> visit(NoOpNode noOpNode) {
+    return CompletableFuture.completedFuture(new EntityResponse());
   }
 
   @Override
-  public EntityResponse visit(PaginateOnlyNode paginateOnlyNode) {
-    EntityResponse childNodeResponse = paginateOnlyNode.getChildNode().acceptVisitor(this);
+  public CompletableFuture<EntityResponse> visit(PaginateOnlyNode paginateOnlyNode) {
+    return paginateOnlyNode
+        .getChildNode()
+        .acceptVisitor(this)
+        .thenApplyAsync(
+            childNodeResponse -> paginate(paginateOnlyNode, childNodeResponse), executor);
+  }
 
-    // Create a list from elements of HashMap
-    List<Map.Entry<EntityKey, Builder>> list =
-        new LinkedList<>(
-            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet());
+  private EntityResponse paginate(
+      PaginateOnlyNode paginateOnlyNode, EntityResponse childNodeResponse) {
 
-    // Sort the list
+    // Select the page of entities
     List<Map.Entry<EntityKey, Entity.Builder>> sortedList =
         DataCollectionUtil.paginateAndLimit(
-            list.stream(), paginateOnlyNode.getLimit(), paginateOnlyNode.getOffset());
+            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet(),
+            paginateOnlyNode.getLimit(),
+            paginateOnlyNode.getOffset());
 
     // put data from sorted list to a linked hashmap
     Map<EntityKey, Builder> linkedHashMap = new LinkedHashMap<>();
@@ -0,0 +1,112 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.hypertrace.gateway.service.entity.query.AndNode;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
+import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+
+/**
+ * Visitor that merges the chained {@link SelectionNode}s above the pagination of the execution tree
+ * into a single {@link SelectionNode}
+ *
+ * <p>Once the page of entities is fixed, the attributes, aggregated metrics and time series of
+ * every source only depend on the ids of the page, so they are all fetched concurrently instead of
+ * each selection waiting for the one below it. Selections below the pagination are kept apart, as
+ * their results decide the entities of the page.
+ */
+public class SelectionMergingVisitor implements Visitor<QueryNode> {
+
+  @Override
+  public QueryNode visit(DataFetcherNode dataFetcherNode) {
+    return dataFetcherNode;
+  }
+
+  @Override
+  public QueryNode visit(AndNode andNode) {
+    return andNode;
+  }
+
+  @Override
+  public QueryNode visit(OrNode orNode) {
+    return orNode;
+  }
+
+  @Override
+  public QueryNode visit(SelectionNode selectionNode) {
+    QueryNode childNode = selectionNode.getChildNode().acceptVisitor(this);
+    if (!(childNode instanceof SelectionNode)
+        || !isPaginated(((SelectionNode) childNode).getChildNode())) {
+      return new SelectionNode.Builder(childNode)
+          .setAttrSelectionSources(selectionNode.getAttrSelectionSources())
+          .setAggMetricSelectionSources(selectionNode.getAggMetricSelectionSources())
+          .setTimeSeriesSelectionSources(selectionNode.getTimeSeriesSelectionSources())
+          .build();
+    }
+
+    SelectionNode childSelectionNode = (SelectionNode) childNode;
+    return new SelectionNode.Builder(childSelectionNode.getChildNode())
+        .setAttrSelectionSources(
+            union(
+                childSelectionNode.getAttrSelectionSources(),
+                selectionNode.getAttrSelectionSources()))
+        .setAggMetricSelectionSources(
+            union(
+                childSelectionNode.getAggMetricSelectionSources(),
+                selectionNode.getAggMetricSelectionSources()))
+        .setTimeSeriesSelectionSources(
+            union(
+                childSelectionNode.getTimeSeriesSelectionSources(),
+                selectionNode.getTimeSeriesSelectionSources()))
+        .build();
+  }
+
+  @Override
+  public QueryNode visit(SortAndPaginateNode sortAndPaginateNode) {
+    QueryNode childNode = sortAndPaginateNode.getChildNode().acceptVisitor(this);
+    return new SortAndPaginateNode(
+        childNode,
+        sortAndPaginateNode.getLimit(),
+        sortAndPaginateNode.getOffset(),
+        sortAndPaginateNode.getOrderByExpressionList());
+  }
+
+  @Override
+  public QueryNode visit(NoOpNode noOpNode) {
+    return noOpNode;
+  }
+
+  @Override
+  public QueryNode visit(PaginateOnlyNode paginateOnlyNode) {
+    QueryNode childNode = paginateOnlyNode.getChildNode().acceptVisitor(this);
+    return new PaginateOnlyNode(
+        childNode, paginateOnlyNode.getLimit(), paginateOnlyNode.getOffset());
+  }
+
+  private static boolean isPaginated(QueryNode node) {
+    if (node instanceof SortAndPaginateNode || node instanceof PaginateOnlyNode) {
+      return true;
+    }
+    // pagination pushed down to the data source
+    return node instanceof DataFetcherNode
+        && ((DataFetcherNode) node).getLimit() != null
+        && ((DataFetcherNode) node).getOffset() != null;
+  }
+
+  private static Set<String> union(Set<String> sources, Set<String> otherSources) {
+    if (otherSources.isEmpty()) {
+      return sources;
+    }
+    if (sources.isEmpty()) {
+      return otherSources;
+    }
+    Set<String> union = new LinkedHashSet<>(sources);
+    union.addAll(otherSources);
+    return union;
+  }
+}
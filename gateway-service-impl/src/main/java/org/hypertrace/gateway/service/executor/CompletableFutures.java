@@ -0,0 +1,34 @@
+package org.hypertrace.gateway.service.executor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+public class CompletableFutures {
+
+  private CompletableFutures() {}
+
+  /**
+   * Waits for the future and rethrows the original runtime exception it failed with, instead of the
+   * wrapping {@link CompletionException}, so that blocking callers see the same exceptions as
+   * before.
+   */
+  public static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /** Completes with the results of all the futures, in the same order. */
+  public static <T> CompletableFuture<List<T>> allAsList(List<CompletableFuture<T>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+}
@@ -0,0 +1,53 @@
+package org.hypertrace.gateway.service.executor;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Fixed size thread pool that reports the number of tasks waiting for a thread and the time each
+ * task spent waiting in the queue before it started executing.
+ */
+class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+  private static final String QUEUE_SIZE_METRIC = "hypertrace.query.executor.queue.size";
+  private static final String WAIT_TIME_METRIC = "hypertrace.query.executor.task.wait";
+
+  private final AtomicInteger queuedTasks;
+  private final Timer waitTimer;
+
+  InstrumentedThreadPoolExecutor(int threadCount, ThreadFactory threadFactory) {
+    super(
+        threadCount,
+        threadCount,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        threadFactory);
+    this.queuedTasks =
+        PlatformMetricsRegistry.registerGauge(
+            QUEUE_SIZE_METRIC, ImmutableMap.of(), new AtomicInteger(0));
+    this.waitTimer = PlatformMetricsRegistry.registerTimer(WAIT_TIME_METRIC, ImmutableMap.of());
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    long submittedAtNanos = System.nanoTime();
+    queuedTasks.incrementAndGet();
+    try {
+      super.execute(
+          () -> {
+            queuedTasks.decrementAndGet();
+            waitTimer.record(System.nanoTime() - submittedAtNanos, TimeUnit.NANOSECONDS);
+            command.run();
+          });
+    } catch (RuntimeException e) {
+      queuedTasks.decrementAndGet();
+      throw e;
+    }
+  }
+}
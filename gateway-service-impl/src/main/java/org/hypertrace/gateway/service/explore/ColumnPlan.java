@@ -0,0 +1,94 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The attribute metadata to convert each column of a result with, resolved once for the result
+ * metadata instead of for every cell of the result.
+ *
+ * <p>Aggregation columns are converted to the value kind of their function, the other columns to
+ * the value kind of the selected attribute. A column without attribute metadata has none, and is
+ * converted based on the type of its values.
+ */
+public class ColumnPlan {
+  private static final Logger LOG = LoggerFactory.getLogger(ColumnPlan.class);
+
+  private final String[] columnNames;
+  private final AttributeMetadata[] columnAttributeMetadata;
+
+  /**
+   * @param columnNames names of the result columns, in order
+   * @param attributeMetadataMap attribute metadata of the request scope by attribute id
+   * @param resultKeyToAttributeMetadataMap attribute metadata by the result name of the selections
+   * @param columnFunctions function of an aggregation column, null for the other columns
+   */
+  public static ColumnPlan compile(
+      List<String> columnNames,
+      Map<String, AttributeMetadata> attributeMetadataMap,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      Function<String, FunctionExpression> columnFunctions) {
+    return compile(
+        columnNames, 0, attributeMetadataMap, resultKeyToAttributeMetadataMap, columnFunctions);
+  }
+
+  /**
+   * As above, the columns before the first attribute column being converted by the caller, such as
+   * the time column of time aggregations. They have no attribute metadata.
+   */
+  public static ColumnPlan compile(
+      List<String> columnNames,
+      int firstAttributeColumnIndex,
+      Map<String, AttributeMetadata> attributeMetadataMap,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      Function<String, FunctionExpression> columnFunctions) {
+    AttributeMetadata[] columnAttributeMetadata = new AttributeMetadata[columnNames.size()];
+    for (int i = firstAttributeColumnIndex; i < columnNames.size(); i++) {
+      String columnName = columnNames.get(i);
+      FunctionExpression function = columnFunctions.apply(columnName);
+      if (function != null) {
+        AttributeKind attributeKind =
+            MetricAggregationFunctionUtil.getValueTypeForFunctionType(
+                function, attributeMetadataMap);
+        columnAttributeMetadata[i] =
+            AttributeMetadata.newBuilder()
+                .setId(columnName)
+                .setType(AttributeType.METRIC)
+                .setValueKind(attributeKind)
+                .build();
+      } else {
+        columnAttributeMetadata[i] = resultKeyToAttributeMetadataMap.get(columnName);
+        if (columnAttributeMetadata[i] == null) {
+          LOG.warn("No attribute metadata found for {}", columnName);
+        }
+      }
+    }
+    return new ColumnPlan(columnNames.toArray(new String[0]), columnAttributeMetadata);
+  }
+
+  private ColumnPlan(String[] columnNames, AttributeMetadata[] columnAttributeMetadata) {
+    this.columnNames = columnNames;
+    this.columnAttributeMetadata = columnAttributeMetadata;
+  }
+
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  public String getColumnName(int columnIndex) {
+    return columnNames[columnIndex];
+  }
+
+  /** Null if the column has no attribute metadata. */
+  public AttributeMetadata getAttributeMetadata(int columnIndex) {
+    return columnAttributeMetadata[columnIndex];
+  }
+}
@@ -13,6 +13,7 @@ public class ExploreRequestContext extends QueryRequestContext {
 
   private boolean hasGroupBy = false;
   private List<OrderByExpression> orderByExpressions;
+  private int pushedDownOffset = 0;
 
   public ExploreRequestContext(
       String tenantId, ExploreRequest exploreRequest, Map<String, String> requestHeaders) {
@@ -63,6 +64,18 @@ public class ExploreRequestContext extends QueryRequestContext {
     this.orderByExpressions = orderByExpressions;
   }
 
+  public int getPushedDownOffset() {
+    return this.pushedDownOffset;
+  }
+
+  /**
+   * The offset already applied by the data source to the rows of a grouped query, which then only
+   * remain to be sorted and limited. See RequestHandler.buildQueryRequest().
+   */
+  public void setPushedDownOffset(int pushedDownOffset) {
+    this.pushedDownOffset = pushedDownOffset;
+  }
+
   /**
    * Returns the max number of rows to be fetched exclusive of any rest group rows which may be
    * added on top of the group by limit
@@ -25,6 +25,7 @@ public class ExploreRequestValidator extends RequestValidator<ExploreRequest> {
     checkArgument(!request.getContext().isEmpty(), "'context' not specified in the request.");
     // Validate limit > 0. Require clients to set it.
     checkArgument(request.getLimit() > 0, "Limit should be non zero");
+    checkArgument(request.getMaxPoints() >= 0, "Max points should not be negative");
 
     // Check that one of selections or time aggregations is not empty and that both of them do not
     // have a non-zero length
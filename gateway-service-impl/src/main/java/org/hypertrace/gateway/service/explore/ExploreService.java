@@ -1,6 +1,7 @@
 package org.hypertrace.gateway.service.explore;
 
 import static org.hypertrace.core.attribute.service.v1.AttributeSource.EDS;
+import static org.hypertrace.core.attribute.service.v1.AttributeSource.QS;
 
 import com.google.common.collect.ImmutableMap;
 import io.micrometer.core.instrument.Timer;
@@ -9,17 +10,29 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
-import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.entity.v1.entitytype.EntityType;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.ExpressionContext;
+import org.hypertrace.gateway.service.common.cache.ResultCache;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownCapabilities;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
+import org.hypertrace.gateway.service.common.util.TimeAggregationPeriodUtil;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.explore.entity.EntityRequestHandler;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
 
@@ -34,34 +47,63 @@ public class ExploreService {
   private final EntityRequestHandler entityRequestHandler;
   private final ScopeFilterConfigs scopeFilterConfigs;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final ResultCache<ExploreResponse> resultCache;
 
   private Timer queryExecutionTimer;
 
   public ExploreService(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int requestTimeout,
-      EntityQueryServiceClient entityQueryServiceClient,
+      EntityQueryServiceAsyncClient entityQueryServiceClient,
       AttributeMetadataProvider attributeMetadataProvider,
       ScopeFilterConfigs scopeFiltersConfig,
-      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      ResultCacheConfig resultCacheConfig,
+      GroupedTimeAggregationsConfig groupedTimeAggregationsConfig,
+      GroupByPushdownConfig groupByPushdownConfig,
+      TimeRangeShardingConfig timeRangeShardingConfig,
+      ExecutorService queryExecutor) {
     this.attributeMetadataProvider = attributeMetadataProvider;
+    TimeSeriesCache timeSeriesCache =
+        new TimeSeriesCache("explore", resultCacheConfig.getTimeSeriesCacheConfig());
+    GroupByPushdownCapabilities queryServicePushdownCapabilities =
+        groupByPushdownConfig.getCapabilities(QS.name());
+    TimeRangeSharder timeRangeSharder = new TimeRangeSharder("explore", timeRangeShardingConfig);
     this.normalRequestHandler =
-        new RequestHandler(queryServiceClient, requestTimeout, attributeMetadataProvider);
+        new RequestHandler(
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServicePushdownCapabilities,
+            timeRangeSharder);
     this.timeAggregationsRequestHandler =
         new TimeAggregationsRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            timeSeriesCache,
+            timeRangeSharder);
     this.timeAggregationsWithGroupByRequestHandler =
         new TimeAggregationsWithGroupByRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            timeSeriesCache,
+            groupedTimeAggregationsConfig,
+            queryServicePushdownCapabilities,
+            timeRangeSharder,
+            queryExecutor);
     this.entityRequestHandler =
         new EntityRequestHandler(
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             queryServiceClient,
             requestTimeout,
-            entityQueryServiceClient);
+            entityQueryServiceClient,
+            queryExecutor);
     this.scopeFilterConfigs = scopeFiltersConfig;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.resultCache = new ResultCache<>("explore", resultCacheConfig);
     initMetrics();
   }
 
@@ -73,7 +115,27 @@ public class ExploreService {
 
   public ExploreResponse explore(
       String tenantId, ExploreRequest request, Map<String, String> requestHeaders) {
+    // The cached response is served to all the requests of its time buckets, so it is the response
+    // of the request over the whole buckets
+    ExploreRequest cachedRequest = resultCache.isEnabled() ? alignToCacheBuckets(request) : request;
+    return resultCache.get(
+        tenantId,
+        requestHeaders,
+        () -> cachedRequest,
+        cachedRequest.getEndTimeMillis(),
+        () -> doExplore(tenantId, cachedRequest, requestHeaders));
+  }
+
+  /**
+   * Drops the explore responses cached for the tenant. The entity updates must call it, as the
+   * explore requests on the entities are served by the entity data service.
+   */
+  public void invalidateCache(String tenantId) {
+    resultCache.invalidate(tenantId);
+  }
 
+  private ExploreResponse doExplore(
+      String tenantId, ExploreRequest request, Map<String, String> requestHeaders) {
     final Instant start = Instant.now();
     try {
       ExploreRequestContext exploreRequestContext =
@@ -89,6 +151,7 @@ public class ExploreService {
                       attributeMetadataProvider,
                       exploreRequestContext))
               .build();
+      request = coarsenTimeAggregationPeriods(request);
       ExploreRequestContext newExploreRequestContext =
           new ExploreRequestContext(tenantId, request, requestHeaders);
 
@@ -101,6 +164,9 @@ public class ExploreService {
 
       ExploreResponse.Builder responseBuilder =
           requestHandler.handleRequest(newExploreRequestContext, request);
+      if (hasTimeAggregations(request)) {
+        responseBuilder.setPeriod(request.getTimeAggregation(0).getPeriod());
+      }
 
       return responseBuilder.build();
     } finally {
@@ -109,6 +175,54 @@ public class ExploreService {
     }
   }
 
+  /**
+   * Coarsens the period of the time aggregations to the smallest max points of the request and of
+   * the time aggregations. The time aggregations all have the same period, so they are all
+   * coarsened to the same one.
+   */
+  private ExploreRequest coarsenTimeAggregationPeriods(ExploreRequest request) {
+    if (!hasTimeAggregations(request)) {
+      return request;
+    }
+    Period period = request.getTimeAggregation(0).getPeriod();
+    if (!request.getTimeAggregationList().stream()
+        .allMatch(timeAggregation -> period.equals(timeAggregation.getPeriod()))) {
+      // Rejected by the validator
+      return request;
+    }
+
+    int maxPoints =
+        IntStream.concat(
+                IntStream.of(request.getMaxPoints()),
+                request.getTimeAggregationList().stream().mapToInt(TimeAggregation::getMaxPoints))
+            .filter(points -> points > 0)
+            .min()
+            .orElse(0);
+    Period coarsenedPeriod =
+        TimeAggregationPeriodUtil.coarsenPeriod(
+            period, request.getStartTimeMillis(), request.getEndTimeMillis(), maxPoints);
+    if (coarsenedPeriod.equals(period)) {
+      return request;
+    }
+    ExploreRequest.Builder builder = ExploreRequest.newBuilder(request);
+    builder
+        .getTimeAggregationBuilderList()
+        .forEach(timeAggregation -> timeAggregation.setPeriod(coarsenedPeriod));
+    return builder.build();
+  }
+
+  // Requests falling within the same time buckets share the cached response.
+  private ExploreRequest alignToCacheBuckets(ExploreRequest request) {
+    return ExploreRequest.newBuilder(request)
+        .setStartTimeMillis(
+            resultCache.alignToPeriodBoundary(
+                request.getStartTimeMillis(), request.getTimeAggregationList(), false))
+        .setEndTimeMillis(
+            resultCache.alignToPeriodBoundary(
+                request.getEndTimeMillis(), request.getTimeAggregationList(), true))
+        .build();
+  }
+
   private boolean isContextAnEntityType(ExploreRequest request) {
     return Arrays.stream(EntityType.values())
         .anyMatch(entityType -> entityType.name().equalsIgnoreCase(request.getContext()));
@@ -0,0 +1,44 @@
+package org.hypertrace.gateway.service.explore;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Configuration of the explore requests of time aggregations grouped by attributes. The time series
+ * of all the groups are fetched in a single query, the top groups being picked from them, when a
+ * request spans few enough periods. By default, the top groups are always queried first.
+ *
+ * <pre>
+ * grouped.time.aggregations.config = {
+ *   // Requests spanning at most this many periods are executed in a single query, 0 disabling it
+ *   single.query.max.periods = 60
+ * }
+ * </pre>
+ */
+public class GroupedTimeAggregationsConfig {
+  private static final String CONFIG_PATH = "grouped.time.aggregations.config";
+  private static final String SINGLE_QUERY_MAX_PERIODS_PATH = "single.query.max.periods";
+
+  private final int singleQueryMaxPeriods;
+
+  public static GroupedTimeAggregationsConfig from(Config appConfig) {
+    Config config =
+        appConfig.hasPath(CONFIG_PATH) ? appConfig.getConfig(CONFIG_PATH) : ConfigFactory.empty();
+    return new GroupedTimeAggregationsConfig(
+        config.hasPath(SINGLE_QUERY_MAX_PERIODS_PATH)
+            ? config.getInt(SINGLE_QUERY_MAX_PERIODS_PATH)
+            : 0);
+  }
+
+  GroupedTimeAggregationsConfig(int singleQueryMaxPeriods) {
+    this.singleQueryMaxPeriods = singleQueryMaxPeriods;
+  }
+
+  public boolean isSingleQueryEnabled() {
+    return singleQueryMaxPeriods > 0;
+  }
+
+  public int getSingleQueryMaxPeriods() {
+    return singleQueryMaxPeriods;
+  }
+}
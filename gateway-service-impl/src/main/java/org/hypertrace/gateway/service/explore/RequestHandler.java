@@ -6,6 +6,9 @@ import com.google.protobuf.util.JsonFormat;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
@@ -15,14 +18,16 @@ import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.ResultSetMetadata;
 import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.api.Value;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownCapabilities;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.DataCollectionUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
-import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.common.util.OrderByUtil;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -34,31 +39,145 @@ import org.slf4j.LoggerFactory;
 
 public class RequestHandler implements RequestHandlerWithSorting {
   private static final Logger LOG = LoggerFactory.getLogger(RequestHandler.class);
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceAsyncClient queryServiceClient;
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final TheRestGroupRequestHandler theRestGroupRequestHandler;
+  private final GroupByPushdownCapabilities groupByPushdownCapabilities;
+  private final TimeRangeSharder timeRangeSharder;
 
   public RequestHandler(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
       AttributeMetadataProvider attributeMetadataProvider) {
+    this(
+        queryServiceClient,
+        qsRequestTimeout,
+        attributeMetadataProvider,
+        GroupByPushdownCapabilities.none());
+  }
+
+  public RequestHandler(
+      QueryServiceAsyncClient queryServiceClient,
+      int qsRequestTimeout,
+      AttributeMetadataProvider attributeMetadataProvider,
+      GroupByPushdownCapabilities groupByPushdownCapabilities) {
+    this(
+        queryServiceClient,
+        qsRequestTimeout,
+        attributeMetadataProvider,
+        groupByPushdownCapabilities,
+        TimeRangeSharder.disabled());
+  }
+
+  public RequestHandler(
+      QueryServiceAsyncClient queryServiceClient,
+      int qsRequestTimeout,
+      AttributeMetadataProvider attributeMetadataProvider,
+      GroupByPushdownCapabilities groupByPushdownCapabilities,
+      TimeRangeSharder timeRangeSharder) {
     this.queryServiceClient = queryServiceClient;
     this.requestTimeout = qsRequestTimeout;
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.theRestGroupRequestHandler = new TheRestGroupRequestHandler(this);
+    this.groupByPushdownCapabilities = groupByPushdownCapabilities;
+    this.timeRangeSharder = timeRangeSharder;
   }
 
   @Override
   public ExploreResponse.Builder handleRequest(
       ExploreRequestContext requestContext, ExploreRequest request) {
-    QueryRequest queryRequest =
-        buildQueryRequest(requestContext, request, attributeMetadataProvider);
+    Optional<TheRestGroupCalculator> theRestGroupCalculator = TheRestGroupCalculator.of(request);
+    if (theRestGroupCalculator.isPresent()) {
+      return handleRequestWithTheRestGroupTotal(
+          requestContext, request, theRestGroupCalculator.get());
+    }
 
-    Iterator<ResultSetChunk> resultSetChunkIterator = executeQuery(requestContext, queryRequest);
+    Iterator<ResultSetChunk> resultSetChunkIterator = fetchResultSetChunks(requestContext, request);
 
-    return handleQueryServiceResponse(
-        requestContext, resultSetChunkIterator, requestContext, attributeMetadataProvider);
+    ExploreResponse.Builder builder =
+        handleQueryServiceResponse(
+            requestContext, resultSetChunkIterator, requestContext, attributeMetadataProvider);
+    if (requestContext.hasGroupBy() && requestContext.getIncludeRestGroup()) {
+      theRestGroupRequestHandler.getRowsForTheRestGroup(
+          requestContext, requestContext.getExploreRequest(), builder);
+    }
+    return builder;
+  }
+
+  /**
+   * Queries the total over all the groups concurrently with the groups, so that "the rest" group is
+   * computed from it instead of being queried once the groups are known.
+   */
+  private ExploreResponse.Builder handleRequestWithTheRestGroupTotal(
+      ExploreRequestContext requestContext,
+      ExploreRequest request,
+      TheRestGroupCalculator theRestGroupCalculator) {
+    ExploreRequest totalRequest = theRestGroupCalculator.createTotalRequest(request);
+    ExploreRequestContext totalRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), totalRequest, requestContext.getHeaders());
+    CompletableFuture<ExploreResponse.Builder> totalResponse =
+        fetchResultSetChunksAsync(totalRequestContext, totalRequest)
+            .thenApply(
+                resultSetChunks ->
+                    handleQueryServiceResponse(
+                        totalRequestContext,
+                        resultSetChunks.iterator(),
+                        totalRequestContext,
+                        attributeMetadataProvider));
+
+    Iterator<ResultSetChunk> resultSetChunkIterator =
+        fetchResultSetChunks(requestContext, theRestGroupCalculator.addHiddenSelections(request));
+    ExploreResponse.Builder builder =
+        handleQueryServiceResponse(
+            requestContext, resultSetChunkIterator, requestContext, attributeMetadataProvider);
+    theRestGroupRequestHandler.getRowsForTheRestGroup(
+        requestContext, request, builder, theRestGroupCalculator, totalResponse);
+    return builder;
+  }
+
+  /**
+   * Handles the request without blocking, the results being converted on the given executor rather
+   * than on the thread completing the query. Unlike {@link #handleRequest}, "the rest" group of the
+   * request isn't added.
+   */
+  CompletableFuture<ExploreResponse.Builder> handleRequestAsync(
+      ExploreRequestContext requestContext, ExploreRequest request, Executor executor) {
+    return fetchResultSetChunksAsync(requestContext, request)
+        .thenApplyAsync(
+            resultSetChunks ->
+                handleQueryServiceResponse(
+                    requestContext,
+                    resultSetChunks.iterator(),
+                    requestContext,
+                    attributeMetadataProvider),
+            executor);
+  }
+
+  Iterator<ResultSetChunk> fetchResultSetChunks(
+      ExploreRequestContext requestContext, ExploreRequest request) {
+    return CompletableFutures.join(fetchResultSetChunksAsync(requestContext, request)).iterator();
+  }
+
+  /**
+   * Queries long windows in concurrent sub-queries on parts of the window when the aggregations of
+   * the request can be merged, see {@link TimeRangeSharder}.
+   */
+  CompletableFuture<List<ResultSetChunk>> fetchResultSetChunksAsync(
+      ExploreRequestContext requestContext, ExploreRequest request) {
+    return timeRangeSharder.executeAggregationQuery(
+        request.getStartTimeMillis(),
+        request.getEndTimeMillis(),
+        (startTimeMillis, endTimeMillis) ->
+            buildQueryRequest(
+                requestContext,
+                ExploreRequest.newBuilder(request)
+                    .setStartTimeMillis(startTimeMillis)
+                    .setEndTimeMillis(endTimeMillis)
+                    .build(),
+                attributeMetadataProvider),
+        queryRequest -> executeQueryAsync(requestContext, queryRequest));
   }
 
   QueryRequest buildQueryRequest(
@@ -100,14 +219,13 @@ public class RequestHandler implements RequestHandlerWithSorting {
     addGroupByExpressions(builder, request);
 
     // 4. If there's no Group By, Set Limit, Offset and Order By.
-    // Otherwise, specify a large limit and track actual limit, offset and order by expression list
-    // so we can compute
-    // these once the we get the results.
+    // Otherwise, push down what the query service can apply of them and track actual limit, offset
+    // and order by expression list so we can compute these once the we get the results.
     if (requestContext
         .hasGroupBy()) { // Will need to do the Ordering, Limit and Offset ourselves after we get
       // the Group By Results
-      builder.setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
       requestContext.setOrderByExpressions(getRequestOrderByExpressions(request));
+      addGroupBySortLimitAndOffset(request, requestContext, builder);
     } else { // No Group By: Use Pinot's Order By, Limit and Offset
       addSortLimitAndOffset(request, builder);
     }
@@ -115,7 +233,7 @@ public class RequestHandler implements RequestHandlerWithSorting {
     return builder.build();
   }
 
-  private Iterator<ResultSetChunk> executeQuery(
+  CompletableFuture<List<ResultSetChunk>> executeQueryAsync(
       ExploreRequestContext context, QueryRequest queryRequest) {
     if (getLogger().isDebugEnabled()) {
       try {
@@ -166,6 +284,48 @@ public class RequestHandler implements RequestHandlerWithSorting {
     queryBuilder.setOffset(request.getOffset());
   }
 
+  /**
+   * The order by is pushed down along with the number of groups needed for the page when the query
+   * service can sort and limit the groups and the order by is on the selected aggregations or the
+   * group bys. Otherwise any group may belong to the page and the default limit applies.
+   */
+  private void addGroupBySortLimitAndOffset(
+      ExploreRequest request, ExploreRequestContext requestContext, QueryRequest.Builder builder) {
+    List<OrderByExpression> orderByExpressions = requestContext.getOrderByExpressions();
+    boolean ordered =
+        !orderByExpressions.isEmpty()
+            && groupByPushdownCapabilities.canPushDownOrderByAndLimit()
+            && orderByExpressions.stream()
+                .allMatch(orderBy -> isGroupByQueryColumn(request, orderBy.getExpression()));
+    if (ordered) {
+      builder.addAllOrderBy(
+          QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(orderByExpressions));
+    }
+
+    int offset = groupByPushdownCapabilities.getOffset(ordered, requestContext.getOffset());
+    builder.setLimit(
+        groupByPushdownCapabilities.getLimit(
+            ordered, requestContext.getRowLimitBeforeRest(), requestContext.getOffset()));
+    builder.setOffset(offset);
+    requestContext.setPushedDownOffset(offset);
+  }
+
+  private boolean isGroupByQueryColumn(ExploreRequest request, Expression expression) {
+    if (expression.hasFunction()) {
+      return request.getSelectionList().stream()
+          .filter(Expression::hasFunction)
+          .anyMatch(
+              selection ->
+                  selection.getFunction().getAlias().equals(expression.getFunction().getAlias()));
+    }
+    Optional<String> attributeId =
+        ExpressionReader.getAttributeIdFromAttributeSelection(expression);
+    return attributeId.isPresent()
+        && request.getGroupByList().stream()
+            .map(ExpressionReader::getAttributeIdFromAttributeSelection)
+            .anyMatch(attributeId::equals);
+  }
+
   @Override
   public List<OrderByExpression> getRequestOrderByExpressions(ExploreRequest request) {
     return OrderByUtil.matchOrderByExpressionsAliasToSelectionAlias(
@@ -187,6 +347,8 @@ public class RequestHandler implements RequestHandlerWithSorting {
       ExploreRequestContext requestContext,
       AttributeMetadataProvider attributeMetadataProvider) {
     ExploreResponse.Builder builder = ExploreResponse.newBuilder();
+    ResultSetMetadata resultSetMetadata = null;
+    ColumnPlan columnPlan = null;
 
     while (resultSetChunkIterator.hasNext()) {
       ResultSetChunk chunk = resultSetChunkIterator.next();
@@ -200,16 +362,15 @@ public class RequestHandler implements RequestHandlerWithSorting {
         break;
       }
 
-      chunk
-          .getRowList()
-          .forEach(
-              row ->
-                  handleQueryServiceResponseSingleRow(
-                      row,
-                      chunk.getResultSetMetadata(),
-                      builder,
-                      requestContext,
-                      attributeMetadataProvider));
+      // The chunks of a result normally all have the same metadata
+      if (!chunk.getResultSetMetadata().equals(resultSetMetadata)) {
+        resultSetMetadata = chunk.getResultSetMetadata();
+        columnPlan =
+            compileColumnPlan(resultSetMetadata, requestContext, attributeMetadataProvider);
+      }
+      for (Row row : chunk.getRowList()) {
+        handleQueryServiceResponseSingleRow(row, columnPlan, builder);
+      }
     }
 
     // If there's a Group By in the request, we need to do the sorting and pagination ourselves.
@@ -218,89 +379,62 @@ public class RequestHandler implements RequestHandlerWithSorting {
           builder,
           requestContext.getOrderByExpressions(),
           requestContext.getRowLimitBeforeRest(),
-          requestContext.getOffset());
-    }
-
-    if (requestContext.hasGroupBy() && requestContext.getIncludeRestGroup()) {
-      theRestGroupRequestHandler.getRowsForTheRestGroup(
-          context, requestContext.getExploreRequest(), builder);
+          requestContext.getOffset() - requestContext.getPushedDownOffset());
     }
 
     return builder;
   }
 
-  protected void handleQueryServiceResponseSingleRow(
-      Row row,
+  private ColumnPlan compileColumnPlan(
       ResultSetMetadata resultSetMetadata,
-      ExploreResponse.Builder builder,
       ExploreRequestContext requestContext,
       AttributeMetadataProvider attributeMetadataProvider) {
-    var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
-    for (int i = 0; i < resultSetMetadata.getColumnMetadataCount(); i++) {
-      handleQueryServiceResponseSingleColumn(
-          row.getColumn(i),
-          resultSetMetadata.getColumnMetadata(i),
-          rowBuilder,
-          requestContext,
-          attributeMetadataProvider);
-    }
-    builder.addRow(rowBuilder);
-  }
-
-  protected void handleQueryServiceResponseSingleColumn(
-      Value queryServiceValue,
-      ColumnMetadata metadata,
-      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    FunctionExpression function =
-        requestContext.getFunctionExpressionByAlias(metadata.getColumnName());
-    handleQueryServiceResponseSingleColumn(
-        queryServiceValue,
-        metadata,
-        rowBuilder,
-        requestContext,
-        attributeMetadataProvider,
-        function);
-  }
-
-  void handleQueryServiceResponseSingleColumn(
-      Value queryServiceValue,
-      ColumnMetadata metadata,
-      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider,
-      FunctionExpression function) {
     Map<String, AttributeMetadata> attributeMetadataMap =
         attributeMetadataProvider.getAttributesMetadata(
             requestContext, requestContext.getContext());
-    Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+    return ColumnPlan.compile(
+        resultSetMetadata.getColumnMetadataList().stream()
+            .map(ColumnMetadata::getColumnName)
+            .collect(Collectors.toUnmodifiableList()),
+        getFirstAttributeColumnIndex(),
+        attributeMetadataMap,
         this.remapAttributeMetadataByResultName(
-            requestContext.getExploreRequest(), attributeMetadataMap);
-    org.hypertrace.gateway.service.v1.common.Value gwValue;
-    if (function != null) { // Function expression value
-      gwValue =
-          QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue(
-              MetricAggregationFunctionUtil.getValueTypeForFunctionType(
-                  function, attributeMetadataMap),
-              resultKeyToAttributeMetadataMap,
-              metadata,
-              queryServiceValue);
-    } else { // Simple columnId Expression value eg. groupBy columns or column selections
-      gwValue =
-          getValueForColumnIdExpression(
-              queryServiceValue, metadata, resultKeyToAttributeMetadataMap);
-    }
+            requestContext.getExploreRequest(), attributeMetadataMap),
+        columnName -> getColumnFunction(requestContext, columnName));
+  }
+
+  /** Index of the first result column converted with its attribute metadata. */
+  protected int getFirstAttributeColumnIndex() {
+    return 0;
+  }
 
-    rowBuilder.putColumns(metadata.getColumnName(), gwValue);
+  /** Function of the aggregation column with the given name, null for the other columns. */
+  protected FunctionExpression getColumnFunction(
+      ExploreRequestContext requestContext, String columnName) {
+    return requestContext.getFunctionExpressionByAlias(columnName);
   }
 
-  private org.hypertrace.gateway.service.v1.common.Value getValueForColumnIdExpression(
+  protected void handleQueryServiceResponseSingleRow(
+      Row row, ColumnPlan columnPlan, ExploreResponse.Builder builder) {
+    var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
+    for (int i = 0; i < columnPlan.getColumnCount(); i++) {
+      handleQueryServiceResponseSingleColumn(row.getColumn(i), columnPlan, i, rowBuilder);
+    }
+    builder.addRow(rowBuilder);
+  }
+
+  protected void handleQueryServiceResponseSingleColumn(
       Value queryServiceValue,
-      ColumnMetadata metadata,
-      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
-    return QueryAndGatewayDtoConverter.convertToGatewayValue(
-        metadata.getColumnName(), queryServiceValue, resultKeyToAttributeMetadataMap);
+      ColumnPlan columnPlan,
+      int columnIndex,
+      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder) {
+    AttributeMetadata attributeMetadata = columnPlan.getAttributeMetadata(columnIndex);
+    rowBuilder.putColumns(
+        columnPlan.getColumnName(columnIndex),
+        attributeMetadata == null
+            ? QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(queryServiceValue)
+            : QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+                queryServiceValue, attributeMetadata));
   }
 
   @Override
@@ -327,13 +461,17 @@ public class RequestHandler implements RequestHandlerWithSorting {
     RowComparator rowComparator = new RowComparator(orderByExpressions);
 
     return DataCollectionUtil.limitAndSort(
-        rowBuilders.stream(), limit, offset, orderByExpressions.size(), rowComparator);
+        rowBuilders, limit, offset, orderByExpressions.size(), rowComparator);
   }
 
   protected Logger getLogger() {
     return LOG;
   }
 
+  protected AttributeMetadataProvider getAttributeMetadataProvider() {
+    return this.attributeMetadataProvider;
+  }
+
   protected TheRestGroupRequestHandler getTheRestGroupRequestHandler() {
     return this.theRestGroupRequestHandler;
   }
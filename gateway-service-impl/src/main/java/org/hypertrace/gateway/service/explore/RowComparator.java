@@ -5,6 +5,7 @@ import org.hypertrace.gateway.service.common.comparators.OrderByComparator;
 import org.hypertrace.gateway.service.common.comparators.ValueComparator;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
 import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.Value;
 
 public class RowComparator extends OrderByComparator<Row.Builder> {
 
@@ -23,6 +24,16 @@ public class RowComparator extends OrderByComparator<Row.Builder> {
     return compareRowBuilders(left, right, columnName);
   }
 
+  @Override
+  protected Value getFunctionExpressionValue(Row.Builder row, String alias) {
+    return row.getColumnsOrDefault(alias, null);
+  }
+
+  @Override
+  protected Value getColumnExpressionValue(Row.Builder row, String columnName) {
+    return row.getColumnsOrDefault(columnName, null);
+  }
+
   private int compareRowBuilders(Row.Builder left, Row.Builder right, String alias) {
     return ValueComparator.compare(
         left.getColumnsOrDefault(alias, null), right.getColumnsOrDefault(alias, null));
@@ -0,0 +1,265 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+
+/**
+ * Computes the aggregations of "the rest" group from the aggregations over all the groups minus
+ * those of the groups found, instead of querying the rest group with a filter excluding the groups
+ * found. Such negated filters are expensive and scan the whole time range again, while the total
+ * over all the groups is queried along with the groups.
+ *
+ * <p>Only decomposable aggregations are computed this way: COUNT and SUM are the total minus the
+ * sum of the groups, a negative SUM being queried, AVG is computed from the SUM and COUNT of its
+ * argument, which are selected as hidden columns. MIN and MAX are only known when the total is
+ * strictly beyond the values of the groups found, the rest group holding the extreme value then.
+ * The rest group is queried as before when a request has other aggregations or when a value can't
+ * be computed.
+ */
+class TheRestGroupCalculator {
+  private static final String HIDDEN_COLUMN_PREFIX = "__restGroup_";
+  private static final String COUNT_COLUMN_PREFIX = HIDDEN_COLUMN_PREFIX + "count_";
+  private static final String SUM_COLUMN_PREFIX = HIDDEN_COLUMN_PREFIX + "sum_";
+
+  private final List<FunctionExpression> functions;
+  // Hidden COUNT and SUM columns by argument, the first COUNT counting the rows of the rest group
+  private final Map<Expression, String> countColumns;
+  private final Map<Expression, String> sumColumns;
+
+  /**
+   * Calculator of the rest group of the request, if it includes the rest group of grouped
+   * aggregations which are all decomposable.
+   */
+  static Optional<TheRestGroupCalculator> of(ExploreRequest request) {
+    if (!request.getIncludeRestGroup()
+        || request.getGroupByCount() == 0
+        || request.getTimeAggregationCount() > 0
+        || request.getSelectionCount() == 0) {
+      return Optional.empty();
+    }
+
+    List<FunctionExpression> functions = new ArrayList<>();
+    for (Expression selection : request.getSelectionList()) {
+      if (!selection.hasFunction() || !isDecomposable(selection.getFunction())) {
+        return Optional.empty();
+      }
+      functions.add(selection.getFunction());
+    }
+    return Optional.of(new TheRestGroupCalculator(functions));
+  }
+
+  private static boolean isDecomposable(FunctionExpression function) {
+    switch (function.getFunction()) {
+      case COUNT:
+      case SUM:
+      case AVG:
+      case MIN:
+      case MAX:
+        return function.getArgumentsCount() == 1;
+      default:
+        return false;
+    }
+  }
+
+  private TheRestGroupCalculator(List<FunctionExpression> functions) {
+    this.functions = functions;
+    this.countColumns = new LinkedHashMap<>();
+    this.sumColumns = new LinkedHashMap<>();
+    addHiddenColumn(countColumns, COUNT_COLUMN_PREFIX, functions.get(0).getArguments(0));
+    for (FunctionExpression function : functions) {
+      if (function.getFunction() == FunctionType.AVG) {
+        addHiddenColumn(countColumns, COUNT_COLUMN_PREFIX, function.getArguments(0));
+        addHiddenColumn(sumColumns, SUM_COLUMN_PREFIX, function.getArguments(0));
+      }
+    }
+  }
+
+  private static void addHiddenColumn(
+      Map<Expression, String> columns, String prefix, Expression argument) {
+    columns.computeIfAbsent(argument, unused -> prefix + columns.size());
+  }
+
+  /** The request with the hidden columns the rest group is computed from selected. */
+  ExploreRequest addHiddenSelections(ExploreRequest request) {
+    ExploreRequest.Builder requestBuilder = ExploreRequest.newBuilder(request);
+    countColumns.forEach(
+        (argument, column) ->
+            requestBuilder.addSelection(createSelection(FunctionType.COUNT, argument, column)));
+    sumColumns.forEach(
+        (argument, column) ->
+            requestBuilder.addSelection(createSelection(FunctionType.SUM, argument, column)));
+    return requestBuilder.build();
+  }
+
+  /**
+   * Request of the aggregations over all the groups: the original request without any group by and
+   * order by, with the hidden columns selected.
+   */
+  ExploreRequest createTotalRequest(ExploreRequest originalRequest) {
+    return addHiddenSelections(
+        ExploreRequest.newBuilder(originalRequest)
+            .clearGroupBy()
+            .clearOrderBy()
+            .setIncludeRestGroup(false)
+            .setOffset(0)
+            .build());
+  }
+
+  /**
+   * Row of the aggregations of the rest group, computed from the row of the total over all the
+   * groups and the rows of the groups found, or empty if a value can't be computed.
+   */
+  Optional<Row.Builder> calculate(Row total, List<Row.Builder> groupRows) {
+    double restCount = subtractGroups(total, groupRows, countColumns.values().iterator().next());
+    if (Double.isNaN(restCount) || restCount < 0) {
+      return Optional.empty();
+    }
+    Map<String, Double> restValues = new LinkedHashMap<>();
+    for (String column : countColumns.values()) {
+      restValues.put(column, subtractGroups(total, groupRows, column));
+    }
+    for (String column : sumColumns.values()) {
+      restValues.put(column, subtractGroupSums(total, groupRows, column, restCount));
+    }
+
+    Row.Builder restRow = Row.newBuilder();
+    for (FunctionExpression function : functions) {
+      String column = ExpressionReader.getSelectionResultName(toExpression(function)).orElseThrow();
+      Value totalValue = total.getColumnsMap().get(column);
+      if (totalValue == null) {
+        return Optional.empty();
+      }
+      double restValue;
+      switch (function.getFunction()) {
+        case COUNT:
+          restValue = subtractGroups(total, groupRows, column);
+          break;
+        case SUM:
+          restValue = subtractGroupSums(total, groupRows, column, restCount);
+          break;
+        case AVG:
+          Expression argument = function.getArguments(0);
+          double restArgumentCount = restValues.get(countColumns.get(argument));
+          restValue =
+              restArgumentCount > 0
+                  ? restValues.get(sumColumns.get(argument)) / restArgumentCount
+                  : Double.NaN;
+          break;
+        case MIN:
+          restValue =
+              restCount > 0 ? extremeBeyondGroups(total, groupRows, column, -1) : Double.NaN;
+          break;
+        case MAX:
+          restValue = restCount > 0 ? extremeBeyondGroups(total, groupRows, column, 1) : Double.NaN;
+          break;
+        default:
+          restValue = Double.NaN;
+      }
+      if (Double.isNaN(restValue)) {
+        return Optional.empty();
+      }
+      restRow.putColumns(column, toValue(restValue, totalValue.getValueType()));
+    }
+    return Optional.of(restRow);
+  }
+
+  /** Removes the hidden columns from the rows of a response. */
+  void removeHiddenColumns(List<Row.Builder> rows) {
+    for (Row.Builder row : rows) {
+      countColumns.values().forEach(row::removeColumns);
+      sumColumns.values().forEach(row::removeColumns);
+    }
+  }
+
+  private static double subtractGroups(Row total, List<Row.Builder> groupRows, String column) {
+    double value = toDouble(total.getColumnsMap().get(column));
+    for (Row.Builder groupRow : groupRows) {
+      value -= toDouble(groupRow.getColumnsMap().get(column));
+    }
+    return value;
+  }
+
+  /**
+   * The SUM of the rest group, 0 when it has no rows and NaN when negative. Double sums don't
+   * subtract exactly: the remainder of an empty rest group is a residue of either sign rather than
+   * 0, and a negative remainder may be such a residue as well as the actual sum.
+   */
+  private static double subtractGroupSums(
+      Row total, List<Row.Builder> groupRows, String column, double restCount) {
+    if (restCount == 0) {
+      return 0;
+    }
+    double value = subtractGroups(total, groupRows, column);
+    return value < 0 ? Double.NaN : value;
+  }
+
+  /**
+   * The extreme value of the total if strictly beyond those of the groups, in the given direction,
+   * as only the rest group can hold it then.
+   */
+  private static double extremeBeyondGroups(
+      Row total, List<Row.Builder> groupRows, String column, int direction) {
+    double value = toDouble(total.getColumnsMap().get(column));
+    for (Row.Builder groupRow : groupRows) {
+      if (!(direction * (value - toDouble(groupRow.getColumnsMap().get(column))) > 0)) {
+        return Double.NaN;
+      }
+    }
+    return value;
+  }
+
+  private static double toDouble(Value value) {
+    if (value == null) {
+      return Double.NaN;
+    }
+    switch (value.getValueType()) {
+      case LONG:
+        return value.getLong();
+      case DOUBLE:
+        return value.getDouble();
+      case TIMESTAMP:
+        return value.getTimestamp();
+      default:
+        return Double.NaN;
+    }
+  }
+
+  private static Value toValue(double value, ValueType valueType) {
+    switch (valueType) {
+      case LONG:
+        return Value.newBuilder().setValueType(ValueType.LONG).setLong(Math.round(value)).build();
+      case TIMESTAMP:
+        return Value.newBuilder()
+            .setValueType(ValueType.TIMESTAMP)
+            .setTimestamp(Math.round(value))
+            .build();
+      default:
+        return Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+    }
+  }
+
+  private static Expression toExpression(FunctionExpression function) {
+    return Expression.newBuilder().setFunction(function).build();
+  }
+
+  private static Expression createSelection(
+      FunctionType functionType, Expression argument, String alias) {
+    return toExpression(
+        FunctionExpression.newBuilder()
+            .setFunction(functionType)
+            .addArguments(argument)
+            .setAlias(alias)
+            .build());
+  }
+}
@@ -3,10 +3,13 @@ package org.hypertrace.gateway.service.explore;
 import com.google.common.collect.ImmutableSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
@@ -26,6 +29,10 @@ import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
  *
  * <p>It is called from the implementations of IRequestHandler when ExploreRequest.includeRestGroup
  * of the original request is set to true.
+ *
+ * <p>When the aggregations of the request are decomposable, the results of "the rest" group are
+ * rather computed from the results over all the groups by {@link TheRestGroupCalculator}, falling
+ * back to the query excluding the groups found when they can't be.
  */
 public class TheRestGroupRequestHandler {
   private static final String OTHER_COLUMN_VALUE = "__Other";
@@ -44,15 +51,23 @@ public class TheRestGroupRequestHandler {
       return;
     }
 
-    ExploreRequest theRestRequest = createRequest(originalRequest, originalResponse);
+    ExploreRequest theRestRequest = createTheRestGroupRequest(originalRequest, originalResponse);
     ExploreRequestContext theRestRequestContext =
         new ExploreRequestContext(context.getTenantId(), theRestRequest, context.getHeaders());
 
     ExploreResponse.Builder theRestGroupResponse =
         requestHandler.handleRequest(theRestRequestContext, theRestRequest);
+    mergeTheRestGroupResponse(context, originalRequest, originalResponse, theRestGroupResponse);
+  }
 
+  /** Merges the response of "the rest" group into the original response and sorts it. */
+  void mergeTheRestGroupResponse(
+      ExploreRequestContext context,
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder originalResponse,
+      ExploreResponse.Builder theRestGroupResponse) {
     List<OrderByExpression> orderByExpressions =
-        requestHandler.getRequestOrderByExpressions(theRestRequest);
+        requestHandler.getRequestOrderByExpressions(createRequestWithoutGroups(originalRequest));
     mergeAndSort(
         originalResponse,
         theRestGroupResponse,
@@ -63,6 +78,44 @@ public class TheRestGroupRequestHandler {
         originalRequest.getGroupByList());
   }
 
+  /**
+   * Computes the results of "the rest" group from the total response over all the groups, queried
+   * along with the groups, and merges them into the original response. The rest group is queried as
+   * above if its results can't be computed. The hidden columns the results are computed from are
+   * removed from the original response.
+   */
+  void getRowsForTheRestGroup(
+      ExploreRequestContext context,
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder originalResponse,
+      TheRestGroupCalculator calculator,
+      CompletableFuture<ExploreResponse.Builder> totalResponseFuture) {
+    // Return if there was no data in the original request
+    if (originalResponse.getRowBuilderList().isEmpty()) {
+      return;
+    }
+
+    ExploreResponse.Builder totalResponse = CompletableFutures.join(totalResponseFuture);
+    Optional<Row.Builder> theRestRow =
+        totalResponse.getRowCount() == 1
+            ? calculator.calculate(totalResponse.getRow(0), originalResponse.getRowBuilderList())
+            : Optional.empty();
+    if (theRestRow.isEmpty()) {
+      getRowsForTheRestGroup(context, originalRequest, originalResponse);
+    } else {
+      mergeAndSort(
+          originalResponse,
+          ExploreResponse.newBuilder().addRow(theRestRow.get()),
+          // as for the rest group request, which has no order by
+          List.of(),
+          context.getRowLimitAfterRest(),
+          originalRequest.getOffset(),
+          requestHandler,
+          originalRequest.getGroupByList());
+    }
+    calculator.removeHiddenColumns(originalResponse.getRowBuilderList());
+  }
+
   private void mergeAndSort(
       ExploreResponse.Builder originalResponse,
       ExploreResponse.Builder theRestGroupResponse,
@@ -81,18 +134,10 @@ public class TheRestGroupRequestHandler {
    * the original request but no grouping. We will add a filter to remove the groups that were found
    * in the original request.
    */
-  private ExploreRequest createRequest(
+  ExploreRequest createTheRestGroupRequest(
       ExploreRequest originalRequest, ExploreResponse.Builder originalResponse) {
-    // Create a new request copied from the originalRequest but without any group by, order by and
-    // set
-    // includeRestGroup set to
-    // false. This way we create a query with the same conditions as the original request.
     ExploreRequest.Builder requestBuilder =
-        ExploreRequest.newBuilder(originalRequest)
-            .clearGroupBy() // Remove groupBy
-            .clearOrderBy() // Remove orderBy
-            .setIncludeRestGroup(false) // Set includeRestGroup to false.
-            .setOffset(0); // No offset
+        ExploreRequest.newBuilder(createRequestWithoutGroups(originalRequest));
 
     // Create a filter to exclude the values in the the groups found in the original request.
     Filter.Builder excludedGroupsFilter =
@@ -107,6 +152,18 @@ public class TheRestGroupRequestHandler {
     return requestBuilder.build();
   }
 
+  // Create a new request copied from the originalRequest but without any group by, order by and
+  // includeRestGroup set to false. This way we create a query with the same conditions as the
+  // original request.
+  private ExploreRequest createRequestWithoutGroups(ExploreRequest originalRequest) {
+    return ExploreRequest.newBuilder(originalRequest)
+        .clearGroupBy() // Remove groupBy
+        .clearOrderBy() // Remove orderBy
+        .setIncludeRestGroup(false) // Set includeRestGroup to false.
+        .setOffset(0) // No offset
+        .build();
+  }
+
   /**
    * Returns a filter that will exclude all the found group values in the request for the "The
    * Rest". If the request contains only one group, then we will use a "NOT_IN" group values list
@@ -7,17 +7,21 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import org.hypertrace.core.query.service.api.ColumnMetadata;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import org.hypertrace.core.query.service.api.QueryRequest;
-import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.Row;
-import org.hypertrace.core.query.service.api.Value;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache.TimeRangeQueryBuilder;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
 import org.hypertrace.gateway.service.v1.common.Period;
 import org.hypertrace.gateway.service.v1.common.SortOrder;
@@ -31,12 +35,71 @@ import org.slf4j.LoggerFactory;
 
 public class TimeAggregationsRequestHandler extends RequestHandler {
   private static final Logger LOG = LoggerFactory.getLogger(TimeAggregationsRequestHandler.class);
+  // The time column comes first in the rows, see handleQueryServiceResponseSingleRow
+  private static final int TIME_COLUMN_INDEX = 0;
+
+  private final TimeSeriesCache timeSeriesCache;
+  private final TimeRangeSharder timeRangeSharder;
 
   TimeAggregationsRequestHandler(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
+      AttributeMetadataProvider attributeMetadataProvider,
+      TimeSeriesCache timeSeriesCache) {
+    this(
+        queryServiceClient,
+        qsRequestTimeout,
+        attributeMetadataProvider,
+        timeSeriesCache,
+        TimeRangeSharder.disabled());
+  }
+
+  TimeAggregationsRequestHandler(
+      QueryServiceAsyncClient queryServiceClient,
+      int qsRequestTimeout,
+      AttributeMetadataProvider attributeMetadataProvider,
+      TimeSeriesCache timeSeriesCache,
+      TimeRangeSharder timeRangeSharder) {
     super(queryServiceClient, qsRequestTimeout, attributeMetadataProvider);
+    this.timeSeriesCache = timeSeriesCache;
+    this.timeRangeSharder = timeRangeSharder;
+  }
+
+  /**
+   * Only queries the buckets of the request which aren't in the time series cache, in concurrent
+   * sub-queries on period aligned parts of the window when it is long.
+   */
+  @Override
+  CompletableFuture<List<ResultSetChunk>> fetchResultSetChunksAsync(
+      ExploreRequestContext requestContext, ExploreRequest request) {
+    if (!timeSeriesCache.isEnabled() && !timeRangeSharder.isEnabled()) {
+      return super.fetchResultSetChunksAsync(requestContext, request);
+    }
+
+    ExploreRequest alignedRequest = createPeriodBoundaryAlignedExploreRequest(request);
+    long periodSecs = getPeriodSecsFromTimeAggregations(request.getTimeAggregationList());
+    TimeRangeQueryBuilder queryBuilder =
+        (startTimeMillis, endTimeMillis) ->
+            buildQueryRequest(
+                requestContext,
+                ExploreRequest.newBuilder(alignedRequest)
+                    .setStartTimeMillis(startTimeMillis)
+                    .setEndTimeMillis(endTimeMillis)
+                    .build(),
+                getAttributeMetadataProvider());
+    Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor =
+        queryRequest -> executeQueryAsync(requestContext, queryRequest);
+    return timeSeriesCache.executeQuery(
+        requestContext.getTenantId(),
+        requestContext.getHeaders(),
+        alignedRequest.getStartTimeMillis(),
+        alignedRequest.getEndTimeMillis(),
+        periodSecs,
+        TIME_COLUMN_INDEX,
+        queryBuilder,
+        (startTimeMillis, endTimeMillis) ->
+            timeRangeSharder.executeTimeSeriesQuery(
+                startTimeMillis, endTimeMillis, periodSecs, queryBuilder, queryExecutor));
   }
 
   @Override
@@ -148,7 +211,7 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
    * @param exploreRequest
    * @return
    */
-  private ExploreRequest createPeriodBoundaryAlignedExploreRequest(ExploreRequest exploreRequest) {
+  ExploreRequest createPeriodBoundaryAlignedExploreRequest(ExploreRequest exploreRequest) {
     long periodSecs = getPeriodSecsFromTimeAggregations(exploreRequest.getTimeAggregationList());
 
     long alignedStartTime =
@@ -164,7 +227,7 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
         .build();
   }
 
-  private long getPeriodSecsFromTimeAggregations(List<TimeAggregation> timeAggregations) {
+  long getPeriodSecsFromTimeAggregations(List<TimeAggregation> timeAggregations) {
     // Get period - all the time aggregations should have the same period.
     Period period = timeAggregations.stream().findFirst().orElseThrow().getPeriod();
     ChronoUnit unit = ChronoUnit.valueOf(period.getUnit());
@@ -173,11 +236,7 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
 
   @Override
   protected void handleQueryServiceResponseSingleRow(
-      Row row,
-      ResultSetMetadata resultSetMetadata,
-      ExploreResponse.Builder builder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider) {
+      Row row, ColumnPlan columnPlan, ExploreResponse.Builder builder) {
     var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
 
     // First column is the time column. (Also the column name is "dateTimeConvert", Pinot's function
@@ -186,44 +245,31 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
     org.hypertrace.gateway.service.v1.common.Value timeColumnValue =
         org.hypertrace.gateway.service.v1.common.Value.newBuilder()
             .setValueType(ValueType.LONG)
-            .setLong(Long.parseLong(row.getColumn(0).getString()))
+            .setLong(Long.parseLong(row.getColumn(TIME_COLUMN_INDEX).getString()))
             .build();
 
     rowBuilder.putColumns(ColumnName.INTERVAL_START_TIME.name(), timeColumnValue);
 
     // Read the rest of the columns
-    for (int i = 1; i < resultSetMetadata.getColumnMetadataCount(); i++) {
-      handleQueryServiceResponseSingleColumn(
-          row.getColumn(i),
-          resultSetMetadata.getColumnMetadata(i),
-          rowBuilder,
-          requestContext,
-          attributeMetadataProvider);
+    for (int i = getFirstAttributeColumnIndex(); i < columnPlan.getColumnCount(); i++) {
+      handleQueryServiceResponseSingleColumn(row.getColumn(i), columnPlan, i, rowBuilder);
     }
     builder.addRow(rowBuilder);
   }
 
+  /** The time column is converted by handleQueryServiceResponseSingleRow. */
   @Override
-  protected void handleQueryServiceResponseSingleColumn(
-      Value queryServiceValue,
-      ColumnMetadata metadata,
-      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    TimeAggregation timeAggregation =
-        requestContext.getTimeAggregationByAlias(metadata.getColumnName());
-    if (timeAggregation != null) { // Time aggregation with Function expression value
-      handleQueryServiceResponseSingleColumn(
-          queryServiceValue,
-          metadata,
-          rowBuilder,
-          requestContext,
-          attributeMetadataProvider,
-          timeAggregation.getAggregation().getFunction());
-    } else { // Simple columnId Expression value eg. groupBy columns or column selections
-      handleQueryServiceResponseSingleColumn(
-          queryServiceValue, metadata, rowBuilder, requestContext, attributeMetadataProvider, null);
-    }
+  protected int getFirstAttributeColumnIndex() {
+    return TIME_COLUMN_INDEX + 1;
+  }
+
+  @Override
+  protected FunctionExpression getColumnFunction(
+      ExploreRequestContext requestContext, String columnName) {
+    TimeAggregation timeAggregation = requestContext.getTimeAggregationByAlias(columnName);
+    // Time aggregation with Function expression value, else a simple columnId Expression value eg.
+    // groupBy columns or column selections
+    return timeAggregation == null ? null : timeAggregation.getAggregation().getFunction();
   }
 
   protected Logger getLogger() {
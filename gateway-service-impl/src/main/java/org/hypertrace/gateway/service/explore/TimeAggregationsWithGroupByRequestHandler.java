@@ -1,33 +1,73 @@
 package org.hypertrace.gateway.service.explore;
 
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownCapabilities;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
 import org.hypertrace.gateway.service.v1.common.Operator;
+import org.hypertrace.gateway.service.v1.common.Row;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
 
+/**
+ * Handles the requests of time aggregations grouped by attributes. The top groups are queried
+ * first, then the time series of those groups and, when the request includes it, the time series of
+ * "the rest" group concurrently, as both only depend on the top groups.
+ *
+ * <p>When the request spans few periods and its aggregations are decomposable, the time series of
+ * all the groups are rather fetched in a single query, the top groups and the time series of the
+ * rest group being computed from them. See {@link GroupedTimeAggregationsConfig}.
+ */
 public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandler {
 
   private final RequestHandler normalRequestHandler;
   private final TimeAggregationsRequestHandler timeAggregationsRequestHandler;
+  private final GroupedTimeAggregationsConfig groupedTimeAggregationsConfig;
+  private final Executor queryExecutor;
 
   TimeAggregationsWithGroupByRequestHandler(
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int requestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
+      AttributeMetadataProvider attributeMetadataProvider,
+      TimeSeriesCache timeSeriesCache,
+      GroupedTimeAggregationsConfig groupedTimeAggregationsConfig,
+      GroupByPushdownCapabilities groupByPushdownCapabilities,
+      TimeRangeSharder timeRangeSharder,
+      Executor queryExecutor) {
     this.normalRequestHandler =
-        new RequestHandler(queryServiceClient, requestTimeout, attributeMetadataProvider);
+        new RequestHandler(
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            groupByPushdownCapabilities,
+            timeRangeSharder);
     this.timeAggregationsRequestHandler =
         new TimeAggregationsRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            timeSeriesCache,
+            timeRangeSharder);
+    this.groupedTimeAggregationsConfig = groupedTimeAggregationsConfig;
+    this.queryExecutor = queryExecutor;
   }
 
   @Override
@@ -35,17 +75,65 @@ public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandle
       ExploreRequestContext requestContext, ExploreRequest request) {
     // This type of handler is always a group by
     requestContext.setHasGroupBy(true);
-    // 1. Create a GroupBy request and get the response for the GroupBy
     ExploreRequest groupByRequest = buildGroupByRequest(request);
+    Optional<TimeSeriesGroupAggregator> timeSeriesGroupAggregator =
+        isSingleQueryEligible(request) ? TimeSeriesGroupAggregator.of(request) : Optional.empty();
+    if (timeSeriesGroupAggregator.isEmpty()) {
+      return CompletableFutures.join(
+          handleRequestWithGroupByQuery(requestContext, request, groupByRequest));
+    }
+
+    ExploreRequest allGroupsRequest =
+        ExploreRequest.newBuilder(request)
+            .setIncludeRestGroup(false)
+            .setOffset(0)
+            .setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT)
+            .clearGroupLimit()
+            .build();
+    ExploreRequestContext allGroupsRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), allGroupsRequest, requestContext.getHeaders());
+    return CompletableFutures.join(
+        timeAggregationsRequestHandler
+            .handleRequestAsync(allGroupsRequestContext, allGroupsRequest, queryExecutor)
+            .thenCompose(
+                allGroupsResponse ->
+                    handleRequestWithSingleQuery(
+                            requestContext,
+                            request,
+                            groupByRequest,
+                            timeSeriesGroupAggregator.get(),
+                            allGroupsResponse)
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(
+                            () ->
+                                handleRequestWithGroupByQuery(
+                                    requestContext, request, groupByRequest))));
+  }
+
+  /**
+   * Queries the top groups, then the time series of those groups and, when the request includes it,
+   * the time series of the rest group. The queries are composed, so no thread waits on them.
+   */
+  private CompletableFuture<ExploreResponse.Builder> handleRequestWithGroupByQuery(
+      ExploreRequestContext requestContext, ExploreRequest request, ExploreRequest groupByRequest) {
+    // 1. Create a GroupBy request and get the response for the GroupBy
     ExploreRequestContext groupByRequestContext =
         new ExploreRequestContext(
             requestContext.getTenantId(), groupByRequest, requestContext.getHeaders());
-    ExploreResponse.Builder groupByResponse =
-        normalRequestHandler.handleRequest(groupByRequestContext, groupByRequest);
+    return normalRequestHandler
+        .handleRequestAsync(groupByRequestContext, groupByRequest, queryExecutor)
+        .thenCompose(
+            groupByResponse -> handleGroupByResponse(requestContext, request, groupByResponse));
+  }
 
+  private CompletableFuture<ExploreResponse.Builder> handleGroupByResponse(
+      ExploreRequestContext requestContext,
+      ExploreRequest request,
+      ExploreResponse.Builder groupByResponse) {
     // No need for a second query if no results.
     if (groupByResponse.getRowBuilderList().isEmpty()) {
-      return ExploreResponse.newBuilder();
+      return CompletableFuture.completedFuture(ExploreResponse.newBuilder());
     }
 
     // 2. Create a Time Aggregations request for the groups found in the request above. This will be
@@ -54,18 +142,128 @@ public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandle
     ExploreRequestContext timeAggregationsRequestContext =
         new ExploreRequestContext(
             requestContext.getTenantId(), timeAggregationsRequest, requestContext.getHeaders());
-    ExploreResponse.Builder timeAggregationsResponse =
-        timeAggregationsRequestHandler.handleRequest(
-            timeAggregationsRequestContext, timeAggregationsRequest);
+    CompletableFuture<ExploreResponse.Builder> timeAggregationsResponseFuture =
+        timeAggregationsRequestHandler.handleRequestAsync(
+            timeAggregationsRequestContext, timeAggregationsRequest, queryExecutor);
+    if (!request.getIncludeRestGroup()) {
+      return timeAggregationsResponseFuture;
+    }
+
+    // 3. If includeRestGroup is set, query the rest group excluding the groups found concurrently
+    TheRestGroupRequestHandler theRestGroupRequestHandler =
+        timeAggregationsRequestHandler.getTheRestGroupRequestHandler();
+    ExploreRequest theRestRequest =
+        theRestGroupRequestHandler.createTheRestGroupRequest(request, groupByResponse);
+    ExploreRequestContext theRestRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), theRestRequest, requestContext.getHeaders());
+    return timeAggregationsResponseFuture.thenCombine(
+        timeAggregationsRequestHandler.handleRequestAsync(
+            theRestRequestContext, theRestRequest, queryExecutor),
+        (timeAggregationsResponse, theRestGroupResponse) -> {
+          if (!timeAggregationsResponse.getRowBuilderList().isEmpty()) {
+            theRestGroupRequestHandler.mergeTheRestGroupResponse(
+                requestContext, request, timeAggregationsResponse, theRestGroupResponse);
+          }
+          return timeAggregationsResponse;
+        });
+  }
+
+  private boolean isSingleQueryEligible(ExploreRequest request) {
+    if (!groupedTimeAggregationsConfig.isSingleQueryEnabled()) {
+      return false;
+    }
+    ExploreRequest alignedRequest =
+        timeAggregationsRequestHandler.createPeriodBoundaryAlignedExploreRequest(request);
+    long periodMillis =
+        TimeUnit.SECONDS.toMillis(
+            timeAggregationsRequestHandler.getPeriodSecsFromTimeAggregations(
+                request.getTimeAggregationList()));
+    long timeRangeMillis = alignedRequest.getEndTimeMillis() - alignedRequest.getStartTimeMillis();
+    return periodMillis > 0
+        && (timeRangeMillis + periodMillis - 1) / periodMillis
+            <= groupedTimeAggregationsConfig.getSingleQueryMaxPeriods();
+  }
+
+  /**
+   * Picks the top groups from the time series of all the groups, fetched in a single query, ranking
+   * them on their aggregations over the whole time range as the group by query would have. The time
+   * series of the rest group is the aggregation of those of the other groups. Returns empty if the
+   * time series of all the groups may not have been fetched entirely.
+   */
+  private Optional<ExploreResponse.Builder> handleRequestWithSingleQuery(
+      ExploreRequestContext requestContext,
+      ExploreRequest request,
+      ExploreRequest groupByRequest,
+      TimeSeriesGroupAggregator timeSeriesGroupAggregator,
+      ExploreResponse.Builder allGroupsResponse) {
+    if (allGroupsResponse.getRowCount()
+        >= QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT) {
+      return Optional.empty();
+    }
+
+    // 1. Pick the top groups, sorted and limited as the group by query would be
+    ExploreRequestContext groupByRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), groupByRequest, requestContext.getHeaders());
+    groupByRequestContext.setHasGroupBy(true);
+    ExploreResponse.Builder groupByResponse = ExploreResponse.newBuilder();
+    timeSeriesGroupAggregator
+        .aggregateGroups(allGroupsResponse.getRowBuilderList())
+        .forEach(groupByResponse::addRow);
+    normalRequestHandler.sortAndPaginatePostProcess(
+        groupByResponse,
+        normalRequestHandler.getRequestOrderByExpressions(groupByRequest),
+        groupByRequestContext.getRowLimitBeforeRest(),
+        groupByRequestContext.getOffset());
+    if (groupByResponse.getRowBuilderList().isEmpty()) {
+      return Optional.of(ExploreResponse.newBuilder());
+    }
+
+    // 2. Keep the time series of the top groups, sorted and limited as their query would be
+    Set<List<Value>> groups =
+        groupByResponse.getRowBuilderList().stream()
+            .map(timeSeriesGroupAggregator::getGroup)
+            .collect(Collectors.toUnmodifiableSet());
+    ExploreResponse.Builder timeAggregationsResponse = ExploreResponse.newBuilder();
+    List<Row.Builder> theRestGroupRows = new ArrayList<>();
+    for (Row.Builder row : allGroupsResponse.getRowBuilderList()) {
+      if (groups.contains(timeSeriesGroupAggregator.getGroup(row))) {
+        timeAggregationsResponse.addRow(row);
+      } else {
+        theRestGroupRows.add(row);
+      }
+    }
+    ExploreRequest timeAggregationsRequest = buildTimeAggregationsRequest(request, groupByResponse);
+    ExploreRequestContext timeAggregationsRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), timeAggregationsRequest, requestContext.getHeaders());
+    timeAggregationsRequestContext.setHasGroupBy(true);
+    timeAggregationsRequestHandler.sortAndPaginatePostProcess(
+        timeAggregationsResponse,
+        timeAggregationsRequestHandler.getRequestOrderByExpressions(timeAggregationsRequest),
+        // the query of the time series is limited to the request limit
+        Math.min(timeAggregationsRequestContext.getRowLimitBeforeRest(), request.getLimit()),
+        timeAggregationsRequestContext.getOffset());
 
-    // 3. If includeRestGroup is set, invoke TheRestGroupRequestHandler
+    // 3. If includeRestGroup is set, aggregate the time series of the other groups
     if (request.getIncludeRestGroup()) {
+      ExploreResponse.Builder theRestGroupResponse = ExploreResponse.newBuilder();
+      timeSeriesGroupAggregator
+          .aggregateIntervals(theRestGroupRows)
+          .forEach(theRestGroupResponse::addRow);
+      timeAggregationsRequestHandler.sortAndPaginatePostProcess(
+          theRestGroupResponse,
+          timeAggregationsRequestHandler.getRequestOrderByExpressions(
+              ExploreRequest.newBuilder(request).clearOrderBy().build()),
+          request.getLimit(),
+          0);
       timeAggregationsRequestHandler
           .getTheRestGroupRequestHandler()
-          .getRowsForTheRestGroup(requestContext, request, timeAggregationsResponse);
+          .mergeTheRestGroupResponse(
+              requestContext, request, timeAggregationsResponse, theRestGroupResponse);
     }
-
-    return timeAggregationsResponse;
+    return Optional.of(timeAggregationsResponse);
   }
 
   private ExploreRequest buildGroupByRequest(ExploreRequest originalRequest) {
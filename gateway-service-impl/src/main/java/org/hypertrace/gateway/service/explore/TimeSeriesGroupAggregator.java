@@ -0,0 +1,172 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ColumnName;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+
+/**
+ * Aggregates the rows of the time series of a grouped time aggregations request further: over time,
+ * which gives the aggregations of each group the top groups are picked from, and over groups, which
+ * gives the time series of "the rest" group from the time series of the other groups.
+ *
+ * <p>Only decomposable aggregations can be aggregated further: COUNT and SUM add up, MIN and MAX
+ * keep the extreme value. The selections and order bys of the request must also be computable from
+ * the time aggregations, as the top groups are ranked on them.
+ */
+class TimeSeriesGroupAggregator {
+  private final List<String> groupByColumns;
+  private final Map<String, FunctionType> functionsByColumn;
+
+  /** Aggregator of the time series of the request, if its aggregations are all decomposable. */
+  static Optional<TimeSeriesGroupAggregator> of(ExploreRequest request) {
+    if (request.getGroupByCount() == 0 || request.getTimeAggregationCount() == 0) {
+      return Optional.empty();
+    }
+
+    Map<String, FunctionType> functionsByColumn = new LinkedHashMap<>();
+    for (TimeAggregation timeAggregation : request.getTimeAggregationList()) {
+      FunctionExpression function = timeAggregation.getAggregation().getFunction();
+      if (!isDecomposable(function)) {
+        return Optional.empty();
+      }
+      functionsByColumn.put(function.getAlias(), function.getFunction());
+    }
+    Set<Expression> aggregations =
+        request.getTimeAggregationList().stream()
+            .map(TimeAggregation::getAggregation)
+            .collect(Collectors.toUnmodifiableSet());
+    if (!aggregations.containsAll(request.getSelectionList())) {
+      return Optional.empty();
+    }
+
+    List<String> groupByColumns =
+        request.getGroupByList().stream()
+            .map(groupBy -> ExpressionReader.getSelectionResultName(groupBy).orElseThrow())
+            .collect(Collectors.toUnmodifiableList());
+    for (OrderByExpression orderBy : request.getOrderByList()) {
+      Optional<String> column = ExpressionReader.getSelectionResultName(orderBy.getExpression());
+      if (column.isEmpty()
+          || !(functionsByColumn.containsKey(column.get())
+              || groupByColumns.contains(column.get()))) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(new TimeSeriesGroupAggregator(groupByColumns, functionsByColumn));
+  }
+
+  private static boolean isDecomposable(FunctionExpression function) {
+    if (function.getAlias().isEmpty()) {
+      return false;
+    }
+    switch (function.getFunction()) {
+      case COUNT:
+      case SUM:
+      case MIN:
+      case MAX:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private TimeSeriesGroupAggregator(
+      List<String> groupByColumns, Map<String, FunctionType> functionsByColumn) {
+    this.groupByColumns = groupByColumns;
+    this.functionsByColumn = functionsByColumn;
+  }
+
+  /** The values of the group by columns of a row. */
+  List<Value> getGroup(Row.Builder row) {
+    return getValues(row, groupByColumns);
+  }
+
+  /** Rows of the aggregations of each group over the whole time range. */
+  List<Row.Builder> aggregateGroups(List<Row.Builder> timeSeriesRows) {
+    return aggregate(timeSeriesRows, groupByColumns);
+  }
+
+  /** Rows of the aggregations of each interval over all the groups. */
+  List<Row.Builder> aggregateIntervals(List<Row.Builder> timeSeriesRows) {
+    return aggregate(timeSeriesRows, List.of(ColumnName.INTERVAL_START_TIME.name()));
+  }
+
+  private List<Row.Builder> aggregate(List<Row.Builder> rows, List<String> keyColumns) {
+    Map<List<Value>, Row.Builder> aggregatedRows = new LinkedHashMap<>();
+    for (Row.Builder row : rows) {
+      List<Value> key = getValues(row, keyColumns);
+      Row.Builder aggregatedRow = aggregatedRows.get(key);
+      if (aggregatedRow == null) {
+        aggregatedRow = Row.newBuilder();
+        for (int i = 0; i < keyColumns.size(); i++) {
+          aggregatedRow.putColumns(keyColumns.get(i), key.get(i));
+        }
+        aggregatedRows.put(key, aggregatedRow);
+      }
+      for (Map.Entry<String, FunctionType> function : functionsByColumn.entrySet()) {
+        Value value = row.getColumnsMap().get(function.getKey());
+        if (value == null) {
+          continue;
+        }
+        Value aggregatedValue = aggregatedRow.getColumnsMap().get(function.getKey());
+        aggregatedRow.putColumns(
+            function.getKey(),
+            aggregatedValue == null ? value : combine(function.getValue(), aggregatedValue, value));
+      }
+    }
+    return new ArrayList<>(aggregatedRows.values());
+  }
+
+  private static List<Value> getValues(Row.Builder row, List<String> columns) {
+    return columns.stream()
+        .map(column -> row.getColumnsMap().getOrDefault(column, Value.getDefaultInstance()))
+        .collect(Collectors.toUnmodifiableList());
+  }
+
+  private static Value combine(FunctionType function, Value value, Value otherValue) {
+    switch (function) {
+      case MIN:
+        return toDouble(otherValue) < toDouble(value) ? otherValue : value;
+      case MAX:
+        return toDouble(otherValue) > toDouble(value) ? otherValue : value;
+      default:
+        if (value.getValueType() == ValueType.LONG && otherValue.getValueType() == ValueType.LONG) {
+          return Value.newBuilder()
+              .setValueType(ValueType.LONG)
+              .setLong(value.getLong() + otherValue.getLong())
+              .build();
+        }
+        return Value.newBuilder()
+            .setValueType(ValueType.DOUBLE)
+            .setDouble(toDouble(value) + toDouble(otherValue))
+            .build();
+    }
+  }
+
+  private static double toDouble(Value value) {
+    switch (value.getValueType()) {
+      case LONG:
+        return value.getLong();
+      case DOUBLE:
+        return value.getDouble();
+      case TIMESTAMP:
+        return value.getTimestamp();
+      default:
+        return Double.NaN;
+    }
+  }
+}
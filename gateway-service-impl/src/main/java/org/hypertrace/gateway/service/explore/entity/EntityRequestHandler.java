@@ -5,26 +5,27 @@ import com.google.common.collect.Streams;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
-import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.entity.query.service.v1.ColumnMetadata;
 import org.hypertrace.entity.query.service.v1.ResultSetChunk;
 import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
 import org.hypertrace.entity.query.service.v1.Row;
 import org.hypertrace.entity.query.service.v1.Value;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.EntityServiceAndGatewayServiceConverter;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
-import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.explore.ColumnPlan;
 import org.hypertrace.gateway.service.explore.ExploreRequestContext;
 import org.hypertrace.gateway.service.explore.RequestHandler;
-import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
@@ -55,9 +56,10 @@ public class EntityRequestHandler extends RequestHandler {
   public EntityRequestHandler(
       AttributeMetadataProvider attributeMetadataProvider,
       EntityIdColumnsConfigs entityIdColumnsConfigs,
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
-      EntityQueryServiceClient entityQueryServiceClient) {
+      EntityQueryServiceAsyncClient entityQueryServiceClient,
+      ExecutorService queryExecutor) {
     super(queryServiceClient, qsRequestTimeout, attributeMetadataProvider);
 
     this.attributeMetadataProvider = attributeMetadataProvider;
@@ -66,7 +68,10 @@ public class EntityRequestHandler extends RequestHandler {
             queryServiceClient,
             qsRequestTimeout,
             attributeMetadataProvider,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            // only the entity ids are fetched from query service, no time series
+            TimeSeriesCache.disabled(),
+            queryExecutor);
     this.entityServiceEntityFetcher =
         new EntityServiceEntityFetcher(
             attributeMetadataProvider, entityIdColumnsConfigs, entityQueryServiceClient);
@@ -75,7 +80,7 @@ public class EntityRequestHandler extends RequestHandler {
   @VisibleForTesting
   public EntityRequestHandler(
       AttributeMetadataProvider attributeMetadataProvider,
-      QueryServiceClient queryServiceClient,
+      QueryServiceAsyncClient queryServiceClient,
       int qsRequestTimeout,
       QueryServiceEntityFetcher queryServiceEntityFetcher,
       EntityServiceEntityFetcher entityServiceEntityFetcher) {
@@ -105,6 +110,8 @@ public class EntityRequestHandler extends RequestHandler {
     Iterator<ResultSetChunk> resultSetChunkIterator =
         entityServiceEntityFetcher.getResults(requestContext, exploreRequest, entityIds);
 
+    ResultSetMetadata resultSetMetadata = null;
+    ColumnPlan columnPlan = null;
     while (resultSetChunkIterator.hasNext()) {
       org.hypertrace.entity.query.service.v1.ResultSetChunk chunk = resultSetChunkIterator.next();
       getLogger().debug("Received chunk: {}", chunk);
@@ -118,16 +125,13 @@ public class EntityRequestHandler extends RequestHandler {
         break;
       }
 
-      chunk
-          .getRowList()
-          .forEach(
-              row ->
-                  handleRow(
-                      row,
-                      chunk.getResultSetMetadata(),
-                      builder,
-                      requestContext,
-                      attributeMetadataProvider));
+      if (!chunk.getResultSetMetadata().equals(resultSetMetadata)) {
+        resultSetMetadata = chunk.getResultSetMetadata();
+        columnPlan = compileColumnPlan(resultSetMetadata, requestContext);
+      }
+      for (Row row : chunk.getRowList()) {
+        handleRow(row, columnPlan, builder);
+      }
     }
 
     // If there's a Group By in the request, we need to do the sorting and pagination ourselves.
@@ -180,66 +184,34 @@ public class EntityRequestHandler extends RequestHandler {
         requestContext.getHeaders());
   }
 
-  private void handleRow(
-      Row row,
-      ResultSetMetadata resultSetMetadata,
-      ExploreResponse.Builder builder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
-    for (int i = 0; i < resultSetMetadata.getColumnMetadataCount(); i++) {
-      handleColumn(
-          row.getColumn(i),
-          resultSetMetadata.getColumnMetadata(i),
-          rowBuilder,
-          requestContext,
-          attributeMetadataProvider);
-    }
-    builder.addRow(rowBuilder);
-  }
-
-  private void handleColumn(
-      Value value,
-      ColumnMetadata metadata,
-      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    FunctionExpression function =
-        requestContext.getFunctionExpressionByAlias(metadata.getColumnName());
-    handleColumn(value, metadata, rowBuilder, requestContext, attributeMetadataProvider, function);
-  }
-
-  void handleColumn(
-      Value value,
-      ColumnMetadata metadata,
-      org.hypertrace.gateway.service.v1.common.Row.Builder rowBuilder,
-      ExploreRequestContext requestContext,
-      AttributeMetadataProvider attributeMetadataProvider,
-      FunctionExpression function) {
+  private ColumnPlan compileColumnPlan(
+      ResultSetMetadata resultSetMetadata, ExploreRequestContext requestContext) {
     Map<String, AttributeMetadata> attributeMetadataMap =
         attributeMetadataProvider.getAttributesMetadata(
             requestContext, requestContext.getContext());
-    Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+    return ColumnPlan.compile(
+        resultSetMetadata.getColumnMetadataList().stream()
+            .map(ColumnMetadata::getColumnName)
+            .collect(Collectors.toUnmodifiableList()),
+        attributeMetadataMap,
         this.remapAttributeMetadataByResultName(
-            requestContext.getExploreRequest(), attributeMetadataMap);
-    org.hypertrace.gateway.service.v1.common.Value gwValue;
-    if (function != null) {
-      // Function expression value
-      gwValue =
-          EntityServiceAndGatewayServiceConverter.convertToGatewayValueForMetricValue(
-              MetricAggregationFunctionUtil.getValueTypeForFunctionType(
-                  function, attributeMetadataMap),
-              resultKeyToAttributeMetadataMap,
-              metadata,
-              value);
-    } else {
-      // Simple columnId expression value eg. groupBy columns or column selections
-      gwValue =
-          EntityServiceAndGatewayServiceConverter.convertToGatewayValue(
-              metadata.getColumnName(), value, resultKeyToAttributeMetadataMap);
-    }
+            requestContext.getExploreRequest(), attributeMetadataMap),
+        requestContext::getFunctionExpressionByAlias);
+  }
 
-    rowBuilder.putColumns(metadata.getColumnName(), gwValue);
+  private void handleRow(Row row, ColumnPlan columnPlan, ExploreResponse.Builder builder) {
+    var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
+    for (int i = 0; i < columnPlan.getColumnCount(); i++) {
+      Value value = row.getColumn(i);
+      AttributeMetadata attributeMetadata = columnPlan.getAttributeMetadata(i);
+      rowBuilder.putColumns(
+          columnPlan.getColumnName(i),
+          attributeMetadata == null
+              ? EntityServiceAndGatewayServiceConverter.convertQueryValueToGatewayValue(value)
+              : EntityServiceAndGatewayServiceConverter.convertQueryValueToGatewayValue(
+                  value, attributeMetadata));
+    }
+    builder.addRow(rowBuilder);
   }
 
   private Map<String, AttributeMetadata> remapAttributeMetadataByResultName(
@@ -4,7 +4,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
-import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
 import org.hypertrace.entity.query.service.v1.Expression;
 import org.hypertrace.entity.query.service.v1.Filter;
@@ -14,22 +13,24 @@ import org.hypertrace.entity.query.service.v1.ResultSetChunk;
 import org.hypertrace.entity.query.service.v1.Value;
 import org.hypertrace.entity.query.service.v1.ValueType;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.EntityServiceAndGatewayServiceConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.executor.CompletableFutures;
 import org.hypertrace.gateway.service.explore.ExploreRequestContext;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 
 public class EntityServiceEntityFetcher {
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
-  private final EntityQueryServiceClient entityQueryServiceClient;
+  private final EntityQueryServiceAsyncClient entityQueryServiceClient;
 
   public EntityServiceEntityFetcher(
       AttributeMetadataProvider attributeMetadataProvider,
       EntityIdColumnsConfigs entityIdColumnsConfigs,
-      EntityQueryServiceClient entityQueryServiceClient) {
+      EntityQueryServiceAsyncClient entityQueryServiceClient) {
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
     this.entityQueryServiceClient = entityQueryServiceClient;
@@ -38,7 +39,9 @@ public class EntityServiceEntityFetcher {
   public Iterator<ResultSetChunk> getResults(
       ExploreRequestContext requestContext, ExploreRequest exploreRequest, Set<String> entityIds) {
     EntityQueryRequest request = buildRequest(requestContext, exploreRequest, entityIds);
-    return entityQueryServiceClient.execute(request, requestContext.getHeaders());
+    return CompletableFutures.join(
+            entityQueryServiceClient.execute(request, requestContext.getHeaders()))
+        .iterator();
   }
 
   private EntityQueryRequest buildRequest(
@@ -3,6 +3,9 @@ package org.hypertrace.gateway.service.logevent;
 import static org.hypertrace.gateway.service.common.util.AttributeMetadataUtil.getTimestampAttributeMetadata;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
@@ -10,17 +13,21 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
 import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.ResultSetMetadata;
 import org.hypertrace.core.query.service.api.Row;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.FlowControlledResponseStreamer;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -35,19 +42,22 @@ public class LogEventsService {
   private static final Logger LOG = LoggerFactory.getLogger(LogEventsService.class);
 
   private static final String LOG_EVENT_SCOPE = "LOG_EVENT";
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceStreamingClient queryServiceClient;
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
+  private final ExecutorService queryExecutor;
 
   private Timer queryExecutionTimer;
 
   public LogEventsService(
-      QueryServiceClient queryServiceClient,
+      QueryServiceStreamingClient queryServiceClient,
       int requestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
+      AttributeMetadataProvider attributeMetadataProvider,
+      ExecutorService queryExecutor) {
     this.queryServiceClient = queryServiceClient;
     this.requestTimeout = requestTimeout;
     this.attributeMetadataProvider = attributeMetadataProvider;
+    this.queryExecutor = queryExecutor;
     initMetrics();
   }
 
@@ -77,6 +87,54 @@ public class LogEventsService {
     }
   }
 
+  /** Streams the log events matching the request, one response per chunk from query service. */
+  public CompletableFuture<Void> streamLogEventsByFilter(
+      RequestContext context,
+      LogEventsRequest request,
+      ServerCallStreamObserver<LogEventsResponse> responseObserver) {
+    Instant start = Instant.now();
+    Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+        AttributeMetadataUtil.remapAttributeMetadataByResultKey(
+            request.getSelectionList(),
+            attributeMetadataProvider.getAttributesMetadata(context, LOG_EVENT_SCOPE));
+    // The query is cancelled along with the call
+    Context.CancellableContext queryContext = Context.current().withCancellation();
+    Iterator<ResultSetChunk> resultSetChunkIterator =
+        FlowControlledResponseStreamer.startInContext(
+            queryContext,
+            () ->
+                queryServiceClient.executeQuery(
+                    buildLogEventsQuery(context, request), context.getHeaders(), requestTimeout));
+
+    // only the first chunk is guaranteed to carry the result set metadata
+    AtomicReference<ResultSetMetadata> resultSetMetadata = new AtomicReference<>();
+    return FlowControlledResponseStreamer.stream(
+            responseObserver,
+            Iterators.filter(
+                Iterators.transform(
+                    resultSetChunkIterator,
+                    chunk -> {
+                      LOG.debug("Received chunk: {}", chunk);
+                      if (null == resultSetMetadata.get() && chunk.hasResultSetMetadata()) {
+                        resultSetMetadata.set(chunk.getResultSetMetadata());
+                      }
+                      return LogEventsResponse.newBuilder()
+                          .addAllLogEvents(
+                              convertToLogEvents(
+                                  resultSetMetadata.get(), chunk, resultKeyToAttributeMetadataMap))
+                          .build();
+                    }),
+                // empty chunks are skipped, as in fetchLogEvents
+                response -> response.getLogEventsCount() > 0),
+            null,
+            queryExecutor,
+            queryContext)
+        .whenComplete(
+            (ignored, throwable) ->
+                queryExecutionTimer.record(
+                    Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS));
+  }
+
   private List<LogEvent> fetchLogEvents(
       RequestContext context,
       LogEventsRequest request,
@@ -86,6 +144,29 @@ public class LogEventsService {
         AttributeMetadataUtil.remapAttributeMetadataByResultKey(
             request.getSelectionList(), attributeMetadataMap);
 
+    List<LogEvent> logEventResult = new ArrayList<>();
+    QueryRequest queryRequest = buildLogEventsQuery(context, request);
+
+    Iterator<ResultSetChunk> resultSetChunkIterator =
+        queryServiceClient.executeQuery(queryRequest, context.getHeaders(), requestTimeout);
+
+    ResultSetMetadata resultSetMetadata = null;
+    while (resultSetChunkIterator.hasNext()) {
+      ResultSetChunk chunk = resultSetChunkIterator.next();
+
+      LOG.debug("Received chunk: {}", chunk);
+
+      if (null == resultSetMetadata && chunk.hasResultSetMetadata()) {
+        resultSetMetadata = chunk.getResultSetMetadata();
+      }
+
+      logEventResult.addAll(
+          convertToLogEvents(resultSetMetadata, chunk, resultKeyToAttributeMetadataMap));
+    }
+    return logEventResult;
+  }
+
+  private QueryRequest buildLogEventsQuery(RequestContext context, LogEventsRequest request) {
     AttributeMetadata timestampAttributeMetadata =
         getTimestampAttributeMetadata(attributeMetadataProvider, context, LOG_EVENT_SCOPE);
     QueryRequest.Builder queryBuilder =
@@ -111,38 +192,28 @@ public class LogEventsService {
     }
 
     addSortLimitAndOffset(request, queryBuilder);
+    return queryBuilder.build();
+  }
 
-    List<LogEvent> logEventResult = new ArrayList<>();
-    QueryRequest queryRequest = queryBuilder.build();
-
-    Iterator<ResultSetChunk> resultSetChunkIterator =
-        queryServiceClient.executeQuery(queryRequest, context.getHeaders(), requestTimeout);
-
-    ResultSetMetadata resultSetMetadata = null;
-    while (resultSetChunkIterator.hasNext()) {
-      ResultSetChunk chunk = resultSetChunkIterator.next();
-
-      LOG.debug("Received chunk: {}", chunk);
-
-      if (null == resultSetMetadata && chunk.hasResultSetMetadata()) {
-        resultSetMetadata = chunk.getResultSetMetadata();
+  private List<LogEvent> convertToLogEvents(
+      ResultSetMetadata resultSetMetadata,
+      ResultSetChunk chunk,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
+    List<LogEvent> logEvents = new ArrayList<>(chunk.getRowCount());
+    for (Row row : chunk.getRowList()) {
+      LogEvent.Builder logEventBuilder = LogEvent.newBuilder();
+      for (int i = 0; i < resultSetMetadata.getColumnMetadataCount(); i++) {
+        ColumnMetadata metadata = resultSetMetadata.getColumnMetadata(i);
+        String attrName = metadata.getColumnName();
+        logEventBuilder.putAttributes(
+            metadata.getColumnName(),
+            QueryAndGatewayDtoConverter.convertToGatewayValue(
+                attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
       }
 
-      for (Row row : chunk.getRowList()) {
-        LogEvent.Builder logEventBuilder = LogEvent.newBuilder();
-        for (int i = 0; i < resultSetMetadata.getColumnMetadataCount(); i++) {
-          ColumnMetadata metadata = resultSetMetadata.getColumnMetadata(i);
-          String attrName = metadata.getColumnName();
-          logEventBuilder.putAttributes(
-              metadata.getColumnName(),
-              QueryAndGatewayDtoConverter.convertToGatewayValue(
-                  attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
-        }
-
-        logEventResult.add(logEventBuilder.build());
-      }
+      logEvents.add(logEventBuilder.build());
     }
-    return logEventResult;
+    return logEvents;
   }
 
   // Adds the sort, limit and offset information to the QueryService if it is requested
@@ -6,6 +6,10 @@ import static org.hypertrace.gateway.service.common.util.AttributeMetadataUtil.g
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Streams;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
@@ -24,10 +28,11 @@ import org.hypertrace.core.query.service.api.Filter;
 import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.Row;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.FlowControlledResponseStreamer;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -44,7 +49,7 @@ import org.slf4j.LoggerFactory;
 public class SpanService {
 
   private static final Logger LOG = LoggerFactory.getLogger(SpanService.class);
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceStreamingClient queryServiceClient;
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final ExecutorService queryExecutor;
@@ -52,7 +57,7 @@ public class SpanService {
   private Timer queryExecutionTimer;
 
   public SpanService(
-      QueryServiceClient queryServiceClient,
+      QueryServiceStreamingClient queryServiceClient,
       int requestTimeout,
       AttributeMetadataProvider attributeMetadataProvider,
       ExecutorService queryExecutor) {
@@ -91,6 +96,55 @@ public class SpanService {
     }
   }
 
+  /**
+   * Streams the spans matching the request, one response per chunk received from query service. The
+   * total is computed concurrently and sent in the last response of the stream.
+   */
+  public CompletableFuture<Void> streamSpansByFilter(
+      RequestContext context,
+      SpansRequest request,
+      ServerCallStreamObserver<SpansResponse> responseObserver) {
+    Instant start = Instant.now();
+    Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+        AttributeMetadataUtil.remapAttributeMetadataByResultKey(
+            request.getSelectionList(),
+            attributeMetadataProvider.getAttributesMetadata(context, AttributeScope.EVENT.name()));
+    // Both queries are cancelled along with the call
+    Context.CancellableContext queryContext = Context.current().withCancellation();
+    Iterator<ResultSetChunk> resultSetChunkIterator =
+        FlowControlledResponseStreamer.startInContext(
+            queryContext,
+            () ->
+                queryServiceClient.executeQuery(
+                    buildSpansQuery(context, request), context.getHeaders(), requestTimeout));
+    CompletableFuture<SpansResponse> totalResponseFuture =
+        CompletableFuture.supplyAsync(
+            () ->
+                SpansResponse.newBuilder()
+                    .setTotal(getTotalFilteredSpans(context, request))
+                    .build(),
+            queryContext.fixedContextExecutor(queryExecutor));
+
+    return FlowControlledResponseStreamer.stream(
+            responseObserver,
+            Iterators.transform(
+                // the spans end at the first empty chunk, as in filterSpanEvents
+                Streams.stream(resultSetChunkIterator)
+                    .takeWhile(chunk -> chunk.getRowCount() > 0)
+                    .iterator(),
+                chunk ->
+                    SpansResponse.newBuilder()
+                        .addAllSpans(convertToSpanEvents(chunk, resultKeyToAttributeMetadataMap))
+                        .build()),
+            totalResponseFuture,
+            queryExecutor,
+            queryContext)
+        .whenComplete(
+            (ignored, throwable) ->
+                queryExecutionTimer.record(
+                    Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS));
+  }
+
   @VisibleForTesting
   Collection<SpanEvent> filterSpans(
       RequestContext context,
@@ -109,21 +163,8 @@ public class SpanService {
         AttributeMetadataUtil.remapAttributeMetadataByResultKey(
             request.getSelectionList(), attributeMetadataMap);
 
-    QueryRequest.Builder queryBuilder = createQueryWithFilter(request, context);
-
-    if (!request.getSelectionList().isEmpty()) {
-      request
-          .getSelectionList()
-          .forEach(
-              exp ->
-                  queryBuilder.addSelection(
-                      QueryAndGatewayDtoConverter.convertToQueryExpression(exp)));
-    }
-
-    addSortLimitAndOffset(request, queryBuilder);
-
     List<SpanEvent> spanEventsResult = new ArrayList<>();
-    QueryRequest queryRequest = queryBuilder.build();
+    QueryRequest queryRequest = buildSpansQuery(context, request);
 
     Iterator<ResultSetChunk> resultSetChunkIterator =
         queryServiceClient.executeQuery(queryRequest, context.getHeaders(), requestTimeout);
@@ -136,21 +177,44 @@ public class SpanService {
         break;
       }
 
-      for (Row row : chunk.getRowList()) {
-        SpanEvent.Builder spanEventBuilder = SpanEvent.newBuilder();
-        for (int i = 0; i < chunk.getResultSetMetadata().getColumnMetadataCount(); i++) {
-          ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
-          String attrName = metadata.getColumnName();
-          spanEventBuilder.putAttributes(
-              metadata.getColumnName(),
-              QueryAndGatewayDtoConverter.convertToGatewayValue(
-                  attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
-        }
+      spanEventsResult.addAll(convertToSpanEvents(chunk, resultKeyToAttributeMetadataMap));
+    }
+    return spanEventsResult;
+  }
+
+  private QueryRequest buildSpansQuery(RequestContext context, SpansRequest request) {
+    QueryRequest.Builder queryBuilder = createQueryWithFilter(request, context);
+
+    if (!request.getSelectionList().isEmpty()) {
+      request
+          .getSelectionList()
+          .forEach(
+              exp ->
+                  queryBuilder.addSelection(
+                      QueryAndGatewayDtoConverter.convertToQueryExpression(exp)));
+    }
 
-        spanEventsResult.add(spanEventBuilder.build());
+    addSortLimitAndOffset(request, queryBuilder);
+    return queryBuilder.build();
+  }
+
+  private List<SpanEvent> convertToSpanEvents(
+      ResultSetChunk chunk, Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
+    List<SpanEvent> spanEvents = new ArrayList<>(chunk.getRowCount());
+    for (Row row : chunk.getRowList()) {
+      SpanEvent.Builder spanEventBuilder = SpanEvent.newBuilder();
+      for (int i = 0; i < chunk.getResultSetMetadata().getColumnMetadataCount(); i++) {
+        ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
+        String attrName = metadata.getColumnName();
+        spanEventBuilder.putAttributes(
+            metadata.getColumnName(),
+            QueryAndGatewayDtoConverter.convertToGatewayValue(
+                attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
       }
+
+      spanEvents.add(spanEventBuilder.build());
     }
-    return spanEventsResult;
+    return spanEvents;
   }
 
   // Adds the sort, limit and offset information to the QueryService if it is requested
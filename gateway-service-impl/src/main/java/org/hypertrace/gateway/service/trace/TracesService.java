@@ -6,6 +6,10 @@ import static org.hypertrace.gateway.service.common.util.AttributeMetadataUtil.g
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Streams;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
@@ -23,10 +27,11 @@ import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.QueryRequest.Builder;
 import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.Row;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.FlowControlledResponseStreamer;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.transformer.RequestPreProcessor;
@@ -54,7 +59,7 @@ public class TracesService {
 
   private static final Logger LOG = LoggerFactory.getLogger(TracesService.class);
 
-  private final QueryServiceClient queryServiceClient;
+  private final QueryServiceStreamingClient queryServiceClient;
   private final int queryServiceReqTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final ExecutorService queryExecutor;
@@ -64,7 +69,7 @@ public class TracesService {
   private Timer queryExecutionTimer;
 
   public TracesService(
-      QueryServiceClient queryServiceClient,
+      QueryServiceStreamingClient queryServiceClient,
       int qsRequestTimeout,
       AttributeMetadataProvider attributeMetadataProvider,
       ScopeFilterConfigs scopeFilterConfigs,
@@ -118,6 +123,66 @@ public class TracesService {
     }
   }
 
+  /**
+   * Streams the traces matching the request, one response per chunk received from query service.
+   * The total is computed concurrently and sent in the last response of the stream.
+   */
+  public CompletableFuture<Void> streamTracesByFilter(
+      RequestContext context,
+      TracesRequest request,
+      ServerCallStreamObserver<TracesResponse> responseObserver) {
+    Instant start = Instant.now();
+    requestValidator.validateScope(request);
+
+    TracesRequest preProcessedRequest = requestPreProcessor.process(request, context);
+
+    TraceScope scope = TraceScope.valueOf(preProcessedRequest.getScope());
+    Map<String, AttributeMetadata> attributeMap =
+        attributeMetadataProvider.getAttributesMetadata(context, preProcessedRequest.getScope());
+
+    requestValidator.validate(preProcessedRequest, attributeMap);
+
+    Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+        AttributeMetadataUtil.remapAttributeMetadataByResultKey(
+            preProcessedRequest.getSelectionList(), attributeMap);
+    // Both queries are cancelled along with the call
+    Context.CancellableContext queryContext = Context.current().withCancellation();
+    Iterator<ResultSetChunk> resultSetChunkIterator =
+        FlowControlledResponseStreamer.startInContext(
+            queryContext,
+            () ->
+                queryServiceClient.executeQuery(
+                    buildTracesQuery(context, preProcessedRequest, scope),
+                    context.getHeaders(),
+                    queryServiceReqTimeout));
+    CompletableFuture<TracesResponse> totalResponseFuture =
+        CompletableFuture.supplyAsync(
+            () ->
+                TracesResponse.newBuilder()
+                    .setTotal(getTotalFilteredTraces(context, preProcessedRequest, scope))
+                    .build(),
+            queryContext.fixedContextExecutor(queryExecutor));
+
+    return FlowControlledResponseStreamer.stream(
+            responseObserver,
+            Iterators.transform(
+                // the traces end at the first empty chunk, as in filterTraces
+                Streams.stream(resultSetChunkIterator)
+                    .takeWhile(chunk -> chunk.getRowCount() > 0)
+                    .iterator(),
+                chunk ->
+                    TracesResponse.newBuilder()
+                        .addAllTraces(convertToTraces(chunk, resultKeyToAttributeMetadataMap))
+                        .build()),
+            totalResponseFuture,
+            queryExecutor,
+            queryContext)
+        .whenComplete(
+            (ignored, throwable) ->
+                queryExecutionTimer.record(
+                    Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS));
+  }
+
   @VisibleForTesting
   List<Trace> filterTraces(
       RequestContext context,
@@ -129,21 +194,8 @@ public class TracesService {
         AttributeMetadataUtil.remapAttributeMetadataByResultKey(
             request.getSelectionList(), attributeMetadataMap);
 
-    QueryRequest.Builder builder = createQueryWithFilter(request, scope, context);
-
-    if (!request.getSelectionList().isEmpty()) {
-      request
-          .getSelectionList()
-          .forEach(
-              exp ->
-                  builder.addSelection(QueryAndGatewayDtoConverter.convertToQueryExpression(exp)));
-    }
-
-    // Adds the parent span id selection to the query builder for the span event
-    addSortLimitAndOffset(request, builder);
-
     List<Trace> tracesResult = new ArrayList<>();
-    QueryRequest queryRequest = builder.build();
+    QueryRequest queryRequest = buildTracesQuery(context, request, scope);
     Iterator<ResultSetChunk> resultSetChunkIterator =
         queryServiceClient.executeQuery(queryRequest, context.getHeaders(), queryServiceReqTimeout);
 
@@ -158,21 +210,45 @@ public class TracesService {
         break;
       }
 
-      for (Row row : chunk.getRowList()) {
-        Trace.Builder traceBuilder = Trace.newBuilder();
-        for (int i = 0; i < chunk.getResultSetMetadata().getColumnMetadataCount(); i++) {
-          ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
-          String attrName = metadata.getColumnName();
-          traceBuilder.putAttributes(
-              metadata.getColumnName(),
-              QueryAndGatewayDtoConverter.convertToGatewayValue(
-                  attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
-        }
+      tracesResult.addAll(convertToTraces(chunk, resultKeyToAttributeMetadataMap));
+    }
+    return tracesResult;
+  }
+
+  private QueryRequest buildTracesQuery(
+      RequestContext context, TracesRequest request, TraceScope scope) {
+    QueryRequest.Builder builder = createQueryWithFilter(request, scope, context);
+
+    if (!request.getSelectionList().isEmpty()) {
+      request
+          .getSelectionList()
+          .forEach(
+              exp ->
+                  builder.addSelection(QueryAndGatewayDtoConverter.convertToQueryExpression(exp)));
+    }
 
-        tracesResult.add(traceBuilder.build());
+    // Adds the parent span id selection to the query builder for the span event
+    addSortLimitAndOffset(request, builder);
+    return builder.build();
+  }
+
+  private List<Trace> convertToTraces(
+      ResultSetChunk chunk, Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
+    List<Trace> traces = new ArrayList<>(chunk.getRowCount());
+    for (Row row : chunk.getRowList()) {
+      Trace.Builder traceBuilder = Trace.newBuilder();
+      for (int i = 0; i < chunk.getResultSetMetadata().getColumnMetadataCount(); i++) {
+        ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
+        String attrName = metadata.getColumnName();
+        traceBuilder.putAttributes(
+            metadata.getColumnName(),
+            QueryAndGatewayDtoConverter.convertToGatewayValue(
+                attrName, row.getColumn(i), resultKeyToAttributeMetadataMap));
       }
+
+      traces.add(traceBuilder.build());
     }
-    return tracesResult;
+    return traces;
   }
 
   int getTotalFilteredTraces(RequestContext context, TracesRequest request, TraceScope scope) {
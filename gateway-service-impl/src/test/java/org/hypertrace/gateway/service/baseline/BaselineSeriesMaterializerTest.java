@@ -0,0 +1,213 @@
+package org.hypertrace.gateway.service.baseline;
+
+import static org.hypertrace.gateway.service.baseline.BaselineSeriesMaterializer.DAY_IN_MILLIS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.baseline.lib.BaselineCalculator;
+import org.hypertrace.gateway.service.baseline.store.BaselineStore;
+import org.hypertrace.gateway.service.baseline.store.InMemoryBaselineStore;
+import org.hypertrace.gateway.service.v1.baseline.Baseline;
+import org.hypertrace.gateway.service.v1.baseline.BaselineEntitiesResponse;
+import org.hypertrace.gateway.service.v1.baseline.BaselineEntity;
+import org.hypertrace.gateway.service.v1.baseline.BaselineInterval;
+import org.hypertrace.gateway.service.v1.baseline.BaselineMetricSeries;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BaselineSeriesMaterializerTest {
+  private static final long HOUR_MILLIS = 3_600_000;
+  private static final long PERIOD_SECS = 3600;
+  private static final long TODAY = 1_600_000_000_000L - 1_600_000_000_000L % DAY_IN_MILLIS;
+  private static final long NOW = TODAY + 10 * HOUR_MILLIS;
+  private static final String ENTITY_TYPE = "SERVICE";
+  private static final String ALIAS = "duration";
+  private static final Map<String, FunctionExpression> FUNCTIONS =
+      Map.of(
+          ALIAS,
+          FunctionExpression.newBuilder()
+              .setFunction(FunctionType.AVG)
+              .setAlias(ALIAS)
+              .addArguments(
+                  Expression.newBuilder()
+                      .setColumnIdentifier(
+                          ColumnIdentifier.newBuilder().setColumnName("SERVICE.duration")))
+              .build());
+
+  private Clock clock;
+  private BaselineStore store;
+  private BaselineSeriesMaterializer materializer;
+  private List<List<Long>> executedQueries;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW);
+    store = spy(new InMemoryBaselineStore(1024 * 1024, Duration.ofDays(1)));
+    materializer =
+        new BaselineSeriesMaterializer(store, Duration.ofMinutes(15), Runnable::run, clock);
+    executedQueries = new ArrayList<>();
+  }
+
+  @Test
+  public void testOnlyDaysNotStoredAreQueried() {
+    long startTime = NOW - 3 * DAY_IN_MILLIS;
+    BaselineEntitiesResponse firstResponse =
+        getMetricSeries(List.of("entity-1"), PERIOD_SECS, startTime, NOW);
+    assertEquals(List.of(List.of(startTime, NOW)), executedQueries);
+
+    BaselineEntitiesResponse secondResponse =
+        getMetricSeries(List.of("entity-1"), PERIOD_SECS, startTime, NOW);
+    // the partial first day and today are queried, the whole days in between are stored
+    assertEquals(
+        List.of(List.of(startTime, TODAY - 2 * DAY_IN_MILLIS), List.of(TODAY, NOW)),
+        executedQueries.subList(1, 3));
+    assertEquals(valuesOf(firstResponse, "entity-1"), valuesOf(secondResponse, "entity-1"));
+    assertEquals(
+        BaselineCalculator.getBaseline(toValues(valuesOf(firstResponse, "entity-1"))),
+        BaselineCalculator.getBaseline(toValues(valuesOf(secondResponse, "entity-1"))));
+  }
+
+  @Test
+  public void testDaysWithinIngestionDelayAreNotStored() {
+    when(clock.millis()).thenReturn(TODAY + Duration.ofMinutes(5).toMillis());
+    long startTime = TODAY - 2 * DAY_IN_MILLIS;
+    getMetricSeries(List.of("entity-1"), PERIOD_SECS, startTime, TODAY);
+    getMetricSeries(List.of("entity-1"), PERIOD_SECS, startTime, TODAY);
+
+    // yesterday may still be receiving data
+    assertEquals(
+        List.of(List.of(startTime, TODAY), List.of(TODAY - DAY_IN_MILLIS, TODAY)), executedQueries);
+  }
+
+  @Test
+  public void testPeriodsNotDividingADayAreNotStored() {
+    long periodSecs = 7 * 60;
+    long startTime = NOW - 3 * DAY_IN_MILLIS;
+    getMetricSeries(List.of("entity-1"), periodSecs, startTime, NOW);
+    getMetricSeries(List.of("entity-1"), periodSecs, startTime, NOW);
+
+    assertEquals(List.of(List.of(startTime, NOW), List.of(startTime, NOW)), executedQueries);
+  }
+
+  @Test
+  public void testDaysOfEntitiesWithoutValuesAreStored() {
+    long startTime = TODAY - 2 * DAY_IN_MILLIS;
+    getMetricSeries(List.of("entity-1", "no-data"), PERIOD_SECS, startTime, NOW);
+    BaselineEntitiesResponse response =
+        getMetricSeries(List.of("entity-1", "no-data"), PERIOD_SECS, startTime, NOW);
+
+    assertEquals(List.of(List.of(TODAY, NOW)), executedQueries.subList(1, 2));
+    assertEquals(
+        List.of("entity-1"),
+        response.getBaselineEntityList().stream()
+            .map(BaselineEntity::getId)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testEachDayIsReadAndWrittenAtOnce() {
+    long startTime = TODAY - 3 * DAY_IN_MILLIS;
+    getMetricSeries(List.of("entity-1", "entity-2"), PERIOD_SECS, startTime, NOW);
+    verify(store, times(3)).putAll(any());
+
+    getMetricSeries(List.of("entity-1", "entity-2"), PERIOD_SECS, startTime, NOW);
+    // the first call only found the first day missing
+    verify(store, times(1 + 3)).getAll(any());
+    verify(store, times(3)).putAll(any());
+  }
+
+  @Test
+  public void testNewEntitiesAreQueriedOverAllDays() {
+    long startTime = TODAY - 2 * DAY_IN_MILLIS;
+    getMetricSeries(List.of("entity-1"), PERIOD_SECS, startTime, NOW);
+    getMetricSeries(List.of("entity-1", "entity-2"), PERIOD_SECS, startTime, NOW);
+
+    assertEquals(List.of(List.of(startTime, NOW), List.of(startTime, NOW)), executedQueries);
+  }
+
+  private BaselineEntitiesResponse getMetricSeries(
+      List<String> entityIds, long periodSecs, long startTime, long endTime) {
+    return materializer
+        .getMetricSeries(
+            "tenant1",
+            ENTITY_TYPE,
+            entityIds,
+            FUNCTIONS,
+            true,
+            periodSecs,
+            startTime,
+            endTime,
+            (queryStartTime, queryEndTime) ->
+                query(entityIds, periodSecs, queryStartTime, queryEndTime))
+        .join();
+  }
+
+  /** One value per bucket for the entities with data, the hour of the day of the bucket. */
+  private CompletableFuture<BaselineEntitiesResponse> query(
+      List<String> entityIds, long periodSecs, long startTime, long endTime) {
+    executedQueries.add(List.of(startTime, endTime));
+    long periodMillis = periodSecs * 1000;
+    BaselineEntitiesResponse.Builder response = BaselineEntitiesResponse.newBuilder();
+    for (String entityId : entityIds) {
+      if (entityId.equals("no-data")) {
+        continue;
+      }
+      BaselineMetricSeries.Builder series = BaselineMetricSeries.newBuilder();
+      for (long bucket = startTime - startTime % periodMillis;
+          bucket < endTime;
+          bucket += periodMillis) {
+        series.addBaselineValue(
+            BaselineInterval.newBuilder()
+                .setStartTimeMillis(bucket)
+                .setBaseline(
+                    Baseline.newBuilder()
+                        .setValue(
+                            Value.newBuilder()
+                                .setValueType(ValueType.DOUBLE)
+                                .setDouble((bucket % DAY_IN_MILLIS) / HOUR_MILLIS))));
+      }
+      response.addBaselineEntity(
+          BaselineEntity.newBuilder()
+              .setEntityType(ENTITY_TYPE)
+              .setId(entityId)
+              .putBaselineMetricSeries(ALIAS, series.build()));
+    }
+    return CompletableFuture.completedFuture(response.build());
+  }
+
+  private static List<Double> valuesOf(BaselineEntitiesResponse response, String entityId) {
+    return response.getBaselineEntityList().stream()
+        .filter(entity -> entity.getId().equals(entityId))
+        .flatMap(
+            entity ->
+                entity.getBaselineMetricSeriesMap().get(ALIAS).getBaselineValueList().stream())
+        .map(interval -> interval.getBaseline().getValue().getDouble())
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static List<Value> toValues(List<Double> values) {
+    return values.stream()
+        .map(value -> Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build())
+        .collect(Collectors.toList());
+  }
+}
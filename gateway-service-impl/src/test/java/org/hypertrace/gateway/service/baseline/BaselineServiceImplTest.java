@@ -6,10 +6,14 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.QueryRequest;
@@ -69,9 +73,10 @@ public class BaselineServiceImplTest {
                 Mockito.any(RequestContext.class), Mockito.anyString(), Mockito.anyString()))
         .thenReturn(Optional.of(attributeMetadata));
     Mockito.when(
-            baselineServiceQueryExecutor.executeQuery(
+            baselineServiceQueryExecutor.executeQueryAsync(
                 Mockito.anyMap(), Mockito.any(QueryRequest.class)))
-        .thenReturn(getResultSetForAvg("duration_ts").iterator());
+        .thenReturn(
+            CompletableFuture.completedFuture(getResultSetForAvg("duration_ts").iterator()));
     when(entityIdColumnsConfigs.getIdKey("SERVICE")).thenReturn(Optional.of("id"));
 
     Map<String, AttributeMetadata> attributeMap = new HashMap<>();
@@ -91,7 +96,8 @@ public class BaselineServiceImplTest {
             attributeMetadataProvider,
             baselineServiceQueryParser,
             baselineServiceQueryExecutor,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            Runnable::run);
     BaselineEntitiesResponse baselineResponse =
         baselineService.getBaselineForEntities(TENANT_ID, baselineEntitiesRequest, Map.of());
     Assertions.assertTrue(baselineResponse.getBaselineEntityCount() > 0);
@@ -120,9 +126,10 @@ public class BaselineServiceImplTest {
                 Mockito.any(RequestContext.class), Mockito.anyString(), Mockito.anyString()))
         .thenReturn(Optional.of(attributeMetadata));
     Mockito.when(
-            baselineServiceQueryExecutor.executeQuery(
+            baselineServiceQueryExecutor.executeQueryAsync(
                 Mockito.anyMap(), Mockito.any(QueryRequest.class)))
-        .thenReturn(getResultSetForAvgRate("numCalls").iterator());
+        .thenReturn(
+            CompletableFuture.completedFuture(getResultSetForAvgRate("numCalls").iterator()));
     when(entityIdColumnsConfigs.getIdKey("SERVICE")).thenReturn(Optional.of("id"));
     // Attribute Metadata map contains mapping between Attributes and ID to query data.
     Map<String, AttributeMetadata> attributeMap = new HashMap<>();
@@ -139,7 +146,8 @@ public class BaselineServiceImplTest {
             attributeMetadataProvider,
             baselineServiceQueryParser,
             baselineServiceQueryExecutor,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            Runnable::run);
     BaselineEntitiesResponse baselineResponse =
         baselineService.getBaselineForEntities(TENANT_ID, baselineEntitiesRequest, Map.of());
     Assertions.assertTrue(baselineResponse.getBaselineEntityCount() > 0);
@@ -169,9 +177,10 @@ public class BaselineServiceImplTest {
                 Mockito.any(RequestContext.class), Mockito.anyString(), Mockito.anyString()))
         .thenReturn(Optional.of(attributeMetadata));
     Mockito.when(
-            baselineServiceQueryExecutor.executeQuery(
+            baselineServiceQueryExecutor.executeQueryAsync(
                 Mockito.anyMap(), Mockito.any(QueryRequest.class)))
-        .thenReturn(getResultSetForAvg("duration_ts").iterator());
+        .thenReturn(
+            CompletableFuture.completedFuture(getResultSetForAvg("duration_ts").iterator()));
     Map<String, AttributeMetadata> attributeMap = new HashMap<>();
     AttributeMetadata attribute =
         AttributeMetadata.newBuilder().setFqn("Service.Latency").setId("Service.Id").build();
@@ -192,7 +201,8 @@ public class BaselineServiceImplTest {
             attributeMetadataProvider,
             baselineServiceQueryParser,
             baselineServiceQueryExecutor,
-            entityIdColumnsConfigs);
+            entityIdColumnsConfigs,
+            Runnable::run);
     BaselineEntitiesResponse baselineResponse =
         baselineService.getBaselineForEntities(TENANT_ID, baselineEntitiesRequest, Map.of());
     Assertions.assertTrue(baselineResponse.getBaselineEntityCount() > 0);
@@ -200,6 +210,128 @@ public class BaselineServiceImplTest {
         baselineResponse.getBaselineEntityList().get(0).getBaselineMetricSeriesCount() > 0);
   }
 
+  @Test
+  public void testBaselineEntitiesForAggregatesAndMetricSeriesQueriedConcurrently() {
+    BaselineEntitiesRequest baselineEntitiesRequest =
+        BaselineEntitiesRequest.newBuilder()
+            .setEntityType("SERVICE")
+            .setStartTimeMillis(Instant.parse("2020-11-14T17:40:51.902Z").toEpochMilli())
+            .setEndTimeMillis(Instant.parse("2020-11-14T18:40:51.902Z").toEpochMilli())
+            .addEntityIds("entity-1")
+            .addBaselineAggregateRequest(
+                getFunctionExpressionFor(FunctionType.AVG, "SERVICE.duration", "duration_ts"))
+            .addBaselineMetricSeriesRequest(getBaselineTimeSeriesRequest())
+            .build();
+
+    // Mock section
+    AttributeMetadata attribute =
+        AttributeMetadata.newBuilder().setFqn("Service.Latency").setId("Service.Id").build();
+    Mockito.when(
+            attributeMetadataProvider.getAttributeMetadata(
+                Mockito.any(RequestContext.class), Mockito.anyString(), Mockito.anyString()))
+        .thenReturn(Optional.of(attribute));
+    Mockito.when(
+            attributeMetadataProvider.getAttributesMetadata(
+                Mockito.any(RequestContext.class), Mockito.anyString()))
+        .thenReturn(Map.of("duration_ts", attribute, "SERVICE.duration", attribute));
+    when(entityIdColumnsConfigs.getIdKey("SERVICE")).thenReturn(Optional.of("id"));
+    // Neither query completes before both have been issued
+    List<CompletableFuture<Iterator<ResultSetChunk>>> queryFutures = new ArrayList<>();
+    Mockito.when(
+            baselineServiceQueryExecutor.executeQueryAsync(
+                Mockito.anyMap(), Mockito.any(QueryRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Iterator<ResultSetChunk>> queryFuture = new CompletableFuture<>();
+              queryFutures.add(queryFuture);
+              if (queryFutures.size() == 2) {
+                queryFutures.forEach(
+                    future -> future.complete(getResultSetForAvg("duration_ts").iterator()));
+              }
+              return queryFuture;
+            });
+
+    BaselineService baselineService =
+        new BaselineServiceImpl(
+            attributeMetadataProvider,
+            baselineServiceQueryParser,
+            baselineServiceQueryExecutor,
+            entityIdColumnsConfigs,
+            Runnable::run);
+    BaselineEntitiesResponse baselineResponse =
+        baselineService.getBaselineForEntities(TENANT_ID, baselineEntitiesRequest, Map.of());
+    Assertions.assertEquals(1, baselineResponse.getBaselineEntityCount());
+    BaselineEntity baselineEntity = baselineResponse.getBaselineEntity(0);
+    Assertions.assertTrue(
+        baselineEntity.getBaselineAggregateMetricMap().containsKey("duration_ts"));
+    Assertions.assertTrue(baselineEntity.getBaselineMetricSeriesMap().containsKey("duration_ts"));
+  }
+
+  @Test
+  public void testBaselinesOfManyEntitiesAreComputedInBatchesOnTheQueryExecutor() {
+    long time = Instant.parse("2020-11-14T18:40:51.902Z").toEpochMilli();
+    BaselineEntitiesRequest.Builder baselineEntitiesRequest =
+        BaselineEntitiesRequest.newBuilder()
+            .setEntityType("SERVICE")
+            .setStartTimeMillis(Instant.parse("2020-11-14T17:40:51.902Z").toEpochMilli())
+            .setEndTimeMillis(Instant.parse("2020-11-14T18:40:51.902Z").toEpochMilli())
+            .addBaselineAggregateRequest(
+                getFunctionExpressionFor(FunctionType.AVG, "SERVICE.duration", "duration_ts"));
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      baselineEntitiesRequest.addEntityIds("entity-" + i);
+      rows.add(new String[] {"entity-" + i, String.valueOf(time), String.valueOf(i)});
+      rows.add(new String[] {"entity-" + i, String.valueOf(time - 60000), String.valueOf(i)});
+    }
+
+    // Mock section
+    AttributeMetadata attribute =
+        AttributeMetadata.newBuilder().setFqn("Service.Latency").setId("Service.Id").build();
+    Mockito.when(
+            attributeMetadataProvider.getAttributeMetadata(
+                Mockito.any(RequestContext.class), Mockito.anyString(), Mockito.anyString()))
+        .thenReturn(Optional.of(attribute));
+    Mockito.when(
+            attributeMetadataProvider.getAttributesMetadata(
+                Mockito.any(RequestContext.class), Mockito.anyString()))
+        .thenReturn(Map.of("duration_ts", attribute, "SERVICE.duration", attribute));
+    when(entityIdColumnsConfigs.getIdKey("SERVICE")).thenReturn(Optional.of("id"));
+    Mockito.when(
+            baselineServiceQueryExecutor.executeQueryAsync(
+                Mockito.anyMap(), Mockito.any(QueryRequest.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                List.of(
+                        getResultSetChunk(
+                            List.of("SERVICE.id", "dateTimeConvert", "duration_ts"),
+                            rows.toArray(new String[0][])))
+                    .iterator()));
+
+    AtomicInteger executedTasks = new AtomicInteger();
+    BaselineService baselineService =
+        new BaselineServiceImpl(
+            attributeMetadataProvider,
+            baselineServiceQueryParser,
+            baselineServiceQueryExecutor,
+            entityIdColumnsConfigs,
+            task -> {
+              executedTasks.incrementAndGet();
+              task.run();
+            });
+    BaselineEntitiesResponse baselineResponse =
+        baselineService.getBaselineForEntities(
+            TENANT_ID, baselineEntitiesRequest.build(), Map.of());
+
+    Assertions.assertEquals(150, baselineResponse.getBaselineEntityCount());
+    for (BaselineEntity baselineEntity : baselineResponse.getBaselineEntityList()) {
+      Assertions.assertEquals(
+          Double.parseDouble(baselineEntity.getId().substring("entity-".length())),
+          baselineEntity.getBaselineAggregateMetricMap().get("duration_ts").getValue().getDouble());
+    }
+    // the query result parsing, then a task per batch of 64 entities
+    Assertions.assertTrue(executedTasks.get() >= 4);
+  }
+
   private BaselineTimeAggregation getBaselineTimeSeriesRequest() {
     return BaselineTimeAggregation.newBuilder()
         .setAggregation(
@@ -299,8 +431,11 @@ public class BaselineServiceImplTest {
   public void testStartTimeCalcGivenTimeRange() {
     BaselineServiceImpl baselineService =
         new BaselineServiceImpl(
-            attributeMetadataProvider, baselineServiceQueryParser,
-            baselineServiceQueryExecutor, entityIdColumnsConfigs);
+            attributeMetadataProvider,
+            baselineServiceQueryParser,
+            baselineServiceQueryExecutor,
+            entityIdColumnsConfigs,
+            Runnable::run);
     long endTimeInMillis = System.currentTimeMillis();
     long startTimeInMillis = endTimeInMillis - ONE_HOUR_MILLIS;
     long actualStartTime = baselineService.getUpdatedStartTime(startTimeInMillis, endTimeInMillis);
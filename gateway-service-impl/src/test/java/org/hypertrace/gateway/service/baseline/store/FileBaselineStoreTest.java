@@ -0,0 +1,143 @@
+package org.hypertrace.gateway.service.baseline.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileBaselineStoreTest {
+  private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+  private static final long TODAY = 1_600_000_000_000L - 1_600_000_000_000L % DAY_MILLIS;
+
+  @TempDir Path directory;
+  private FileBaselineStore store;
+
+  private Clock clock;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(TODAY);
+    store = new FileBaselineStore(directory, Duration.ofDays(7), clock);
+  }
+
+  @Test
+  public void testValuesAreReadBack() {
+    double[] values = {1.5, 0, -2, Double.MAX_VALUE};
+    store.put(key("tenant1", "entity-1", "duration", TODAY), values);
+    store.put(key("tenant1", "entity-2", "duration", TODAY), new double[0]);
+
+    assertArrayEquals(values, store.get(key("tenant1", "entity-1", "duration", TODAY)).get());
+    assertArrayEquals(
+        new double[0], store.get(key("tenant1", "entity-2", "duration", TODAY)).get());
+    // the alias of the function isn't part of the key
+    assertArrayEquals(values, store.get(key("tenant1", "entity-1", "latency", TODAY)).get());
+  }
+
+  @Test
+  public void testKeysAreStoredApart() {
+    store.put(key("tenant1", "entity-1", "duration", TODAY), new double[] {1});
+
+    assertEquals(Optional.empty(), store.get(key("tenant2", "entity-1", "duration", TODAY)));
+    assertEquals(Optional.empty(), store.get(key("tenant1", "entity-2", "duration", TODAY)));
+    assertEquals(
+        Optional.empty(), store.get(key("tenant1", "entity-1", "duration", TODAY - DAY_MILLIS)));
+  }
+
+  @Test
+  public void testDaysAreReadAndWrittenAtOnce() throws IOException {
+    BaselineStoreKey first = key("tenant1", "entity-1", "duration", TODAY);
+    BaselineStoreKey second = key("tenant1", "entity-2", "duration", TODAY);
+    BaselineStoreKey third = key("tenant1", "entity-3", "duration", TODAY);
+    store.putAll(Map.of(first, new double[] {1, 2}, second, new double[0]));
+    // merged into the values already stored for the day
+    store.putAll(Map.of(third, new double[] {3}));
+
+    Map<BaselineStoreKey, double[]> values =
+        store.getAll(List.of(first, second, third, key("tenant1", "entity-4", "duration", TODAY)));
+    assertEquals(Set.of(first, second, third), values.keySet());
+    assertArrayEquals(new double[] {1, 2}, values.get(first));
+    assertArrayEquals(new double[0], values.get(second));
+    assertArrayEquals(new double[] {3}, values.get(third));
+    // a single file for the day of the tenant
+    try (Stream<Path> files = Files.list(directory.resolve(Long.toString(TODAY)))) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void testDaysPastRetentionAreDeleted() {
+    long oldDay = TODAY - 7 * DAY_MILLIS;
+    store.put(key("tenant1", "entity-1", "duration", oldDay), new double[] {1});
+    store.put(key("tenant1", "entity-1", "duration", TODAY - DAY_MILLIS), new double[] {2});
+    store.purgeExpiredDays();
+    assertTrue(store.get(key("tenant1", "entity-1", "duration", oldDay)).isPresent());
+
+    when(clock.millis()).thenReturn(TODAY + DAY_MILLIS);
+    store.purgeExpiredDays();
+    assertEquals(Optional.empty(), store.get(key("tenant1", "entity-1", "duration", oldDay)));
+    assertTrue(store.get(key("tenant1", "entity-1", "duration", TODAY - DAY_MILLIS)).isPresent());
+  }
+
+  @Test
+  public void testCorruptFilesAreNotStored() throws IOException {
+    BaselineStoreKey first = key("tenant1", "entity-1", "duration", TODAY);
+    BaselineStoreKey second = key("tenant1", "entity-2", "duration", TODAY);
+    store.putAll(Map.of(first, new double[] {1, 2}, second, new double[] {3}));
+    Path file = getDayFile(TODAY);
+    byte[] content = Files.readAllBytes(file);
+
+    for (int entryCount : new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE / 2, -1, 3}) {
+      Files.write(
+          file, ByteBuffer.allocate(content.length).put(content).putInt(0, entryCount).array());
+      assertEquals(Map.of(), store.getAll(List.of(first, second)));
+    }
+    // the value count of the last entry, right before the 3 values, going past the end of the file
+    int lastValueCountPosition = content.length - 3 * Double.BYTES - Integer.BYTES;
+    Files.write(file, ByteBuffer.wrap(content).putInt(lastValueCountPosition, 3).array());
+    assertEquals(Map.of(), store.getAll(List.of(first, second)));
+    Files.write(file, new byte[] {0, 0});
+    assertEquals(Map.of(), store.getAll(List.of(first, second)));
+
+    // replaced by the next values of the day
+    store.put(second, new double[] {4});
+    assertEquals(Optional.empty(), store.get(first));
+    assertArrayEquals(new double[] {4}, store.get(second).get());
+  }
+
+  private Path getDayFile(long dayStartTimeMillis) throws IOException {
+    try (Stream<Path> files = Files.list(directory.resolve(Long.toString(dayStartTimeMillis)))) {
+      return files.collect(Collectors.toList()).get(0);
+    }
+  }
+
+  private static BaselineStoreKey key(
+      String tenantId, String entityId, String alias, long dayStartTimeMillis) {
+    return new BaselineStoreKey(
+        tenantId,
+        "SERVICE",
+        entityId,
+        FunctionExpression.newBuilder().setFunction(FunctionType.AVG).setAlias(alias).build(),
+        3600,
+        dayStartTimeMillis);
+  }
+}
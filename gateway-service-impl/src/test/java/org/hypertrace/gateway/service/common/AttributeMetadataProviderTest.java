@@ -1,14 +1,19 @@
 package org.hypertrace.gateway.service.common;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadataFilter;
@@ -18,6 +23,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.stubbing.Answer;
 
 public class AttributeMetadataProviderTest {
+  private static final AttributeMetadataConfig CONFIG =
+      new AttributeMetadataConfig(
+          Duration.ofMinutes(10), Duration.ofHours(1), List.of(), List.of());
 
   @Test
   public void testGetAttributeMetadata() {
@@ -87,9 +95,9 @@ public class AttributeMetadataProviderTest {
             .build(),
         attributeMetadata);
 
-    // Since the cache keys on (scope, key), we expect 2 calls to attr svc. One for (Api, name) and
-    // the other for (Api, id)
-    verify(attributesServiceClient, times(2))
+    // Since the cache keys on scope, we expect 1 call to attr svc. Both (Api, name) and (Api, id)
+    // are looked up in the attributes of the scope.
+    verify(attributesServiceClient, times(1))
         .findAttributes(
             eq(Map.of("test-header-key", "test-header-value")),
             eq(
@@ -150,8 +158,8 @@ public class AttributeMetadataProviderTest {
             .build(),
         attributeMetadata);
 
-    // 2 for a different tenant on (Api, id) and (Api, name2)
-    verify(attributesServiceClient, times(2))
+    // 1 for a different tenant on (Api, id) and (Api, name2)
+    verify(attributesServiceClient, times(1))
         .findAttributes(
             eq(Map.of("test-header-key", "test-header-value-2")),
             eq(
@@ -275,4 +283,125 @@ public class AttributeMetadataProviderTest {
                     .addScopeString(AttributeScope.API.name())
                     .build()));
   }
+
+  @Test
+  public void testMetadataIsRefreshedWithTheLatestRequestHeaders() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    AttributeMetadata attributeMetadata1 =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    AttributeMetadata attributeMetadata2 =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiId")
+            .setId("API.apiId")
+            .build();
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")), any()))
+        .thenAnswer(invocation -> List.of(attributeMetadata1).iterator());
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value-2")), any()))
+        .thenAnswer(invocation -> List.of(attributeMetadata1, attributeMetadata2).iterator());
+
+    FakeTicker ticker = new FakeTicker();
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(attributesServiceClient, CONFIG, Runnable::run, ticker);
+
+    RequestContext requestContext1 =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+    Assertions.assertEquals(
+        Optional.empty(),
+        attributeMetadataProvider.getAttributeMetadata(
+            requestContext1, AttributeScope.API.name(), "apiId"));
+
+    ticker.advance(Duration.ofMinutes(11));
+    RequestContext requestContext2 =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value-2"));
+    Assertions.assertEquals(
+        Optional.of(attributeMetadata2),
+        attributeMetadataProvider.getAttributeMetadata(
+            requestContext2, AttributeScope.API.name(), "apiId"));
+    verify(attributesServiceClient, times(1))
+        .findAttributes(eq(Map.of("test-header-key", "test-header-value-2")), any());
+  }
+
+  @Test
+  public void testStaleMetadataIsServedWhenTheRefreshFails() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    AttributeMetadata attributeMetadata =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    when(attributesServiceClient.findAttributes(any(), any()))
+        .thenAnswer(invocation -> List.of(attributeMetadata).iterator())
+        .thenThrow(new RuntimeException("attribute service unavailable"));
+
+    FakeTicker ticker = new FakeTicker();
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(attributesServiceClient, CONFIG, Runnable::run, ticker);
+    RequestContext requestContext =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+
+    attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name());
+    ticker.advance(Duration.ofMinutes(11));
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    verify(attributesServiceClient, times(2)).findAttributes(any(), any());
+
+    // Not served anymore past the max staleness
+    ticker.advance(Duration.ofHours(1));
+    Assertions.assertThrows(
+        RuntimeException.class,
+        () ->
+            attributeMetadataProvider.getAttributesMetadata(
+                requestContext, AttributeScope.API.name()));
+  }
+
+  @Test
+  public void testWarmUpLoadsTheConfiguredScopes() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    when(attributesServiceClient.findAttributes(any(), any()))
+        .thenAnswer(invocation -> Collections.emptyIterator());
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            attributesServiceClient,
+            new AttributeMetadataConfig(
+                Duration.ofMinutes(10),
+                Duration.ofHours(1),
+                List.of("test-tenant-id"),
+                List.of(AttributeScope.API.name(), AttributeScope.SERVICE.name())),
+            Runnable::run);
+
+    attributeMetadataProvider.warmUp();
+    attributeMetadataProvider.getAttributesMetadata(
+        new RequestContext("test-tenant-id", Map.of()), AttributeScope.SERVICE.name());
+
+    verify(attributesServiceClient, times(1))
+        .findAttributes(
+            eq(Map.of("x-tenant-id", "test-tenant-id")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.API.name())
+                    .build()));
+    verify(attributesServiceClient, times(2)).findAttributes(any(), any());
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
 }
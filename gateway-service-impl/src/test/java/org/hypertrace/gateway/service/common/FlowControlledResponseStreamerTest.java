@@ -0,0 +1,173 @@
+package org.hypertrace.gateway.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+public class FlowControlledResponseStreamerTest {
+
+  private ServerCallStreamObserver<String> responseObserver;
+  private AtomicBoolean ready;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    responseObserver = mock(ServerCallStreamObserver.class);
+    ready = new AtomicBoolean(true);
+    when(responseObserver.isReady()).thenAnswer(invocation -> ready.get());
+  }
+
+  @Test
+  public void testStreamsAllResponsesFollowedByLastResponse() {
+    CompletableFuture<Void> completion =
+        FlowControlledResponseStreamer.stream(
+            responseObserver,
+            List.of("a", "b").iterator(),
+            CompletableFuture.completedFuture("total"),
+            Runnable::run);
+
+    InOrder inOrder = inOrder(responseObserver);
+    inOrder.verify(responseObserver).onNext("a");
+    inOrder.verify(responseObserver).onNext("b");
+    inOrder.verify(responseObserver).onNext("total");
+    inOrder.verify(responseObserver).onCompleted();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  public void testWaitsForTheCallToBeReady() {
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    doAnswer(
+            invocation -> {
+              ready.set(false);
+              return null;
+            })
+        .when(responseObserver)
+        .onNext(any());
+
+    CompletableFuture<Void> completion =
+        FlowControlledResponseStreamer.stream(
+            responseObserver, List.of("a", "b", "c").iterator(), Runnable::run);
+    verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+
+    verify(responseObserver, times(1)).onNext(any());
+    assertFalse(completion.isDone());
+
+    ready.set(true);
+    onReadyHandler.getValue().run();
+    verify(responseObserver, times(2)).onNext(any());
+    assertFalse(completion.isDone());
+
+    ready.set(true);
+    onReadyHandler.getValue().run();
+    ready.set(true);
+    onReadyHandler.getValue().run();
+    verify(responseObserver, times(3)).onNext(any());
+    verify(responseObserver).onCompleted();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  public void testStopsOnCancel() {
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    ready.set(false);
+
+    CompletableFuture<Void> completion =
+        FlowControlledResponseStreamer.stream(
+            responseObserver, List.of("a").iterator(), Runnable::run);
+    verify(responseObserver).setOnCancelHandler(onCancelHandler.capture());
+    verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+
+    onCancelHandler.getValue().run();
+    ready.set(true);
+    onReadyHandler.getValue().run();
+
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    assertTrue(completion.isCompletedExceptionally());
+  }
+
+  @Test
+  public void testCancelsTheDownstreamContextOnCancel() {
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+    Context.CancellableContext downstreamContext = Context.current().withCancellation();
+    ready.set(false);
+
+    AtomicReference<Context> callContext = new AtomicReference<>();
+    Iterator<String> responses =
+        FlowControlledResponseStreamer.startInContext(
+            downstreamContext,
+            () -> {
+              callContext.set(Context.current());
+              return List.of("a").iterator();
+            });
+    FlowControlledResponseStreamer.stream(
+        responseObserver, responses, null, Runnable::run, downstreamContext);
+    verify(responseObserver).setOnCancelHandler(onCancelHandler.capture());
+    assertFalse(callContext.get().isCancelled());
+
+    onCancelHandler.getValue().run();
+
+    assertTrue(callContext.get().isCancelled());
+    assertEquals(
+        Status.Code.CANCELLED,
+        Status.fromThrowable(downstreamContext.cancellationCause()).getCode());
+  }
+
+  @Test
+  public void testReleasesTheDownstreamContextOnceCompleted() {
+    Context.CancellableContext downstreamContext = Context.current().withCancellation();
+
+    FlowControlledResponseStreamer.stream(
+        responseObserver, List.of("a").iterator(), null, Runnable::run, downstreamContext);
+
+    verify(responseObserver).onCompleted();
+    assertTrue(downstreamContext.isCancelled());
+  }
+
+  @Test
+  public void testFailsTheCallOnError() {
+    RuntimeException exception = new RuntimeException("query failed");
+    Iterator<String> responses =
+        new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            throw exception;
+          }
+
+          @Override
+          public String next() {
+            throw new IllegalStateException();
+          }
+        };
+
+    CompletableFuture<Void> completion =
+        FlowControlledResponseStreamer.stream(responseObserver, responses, Runnable::run);
+
+    verify(responseObserver).onError(exception);
+    verify(responseObserver, never()).onCompleted();
+    assertTrue(completion.isCompletedExceptionally());
+  }
+}
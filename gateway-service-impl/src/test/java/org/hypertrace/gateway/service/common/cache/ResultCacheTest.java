@@ -0,0 +1,206 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.ConfigFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ResultCacheTest {
+  private static final long NOW = 1_600_000_000_000L;
+  private static final ResultCacheConfig CONFIG =
+      new ResultCacheConfig(
+          true,
+          1024 * 1024,
+          Duration.ofMinutes(1),
+          Duration.ofMinutes(5),
+          Duration.ofSeconds(15),
+          Duration.ofMinutes(10),
+          new TimeSeriesCacheConfig(false, 0, Duration.ZERO, Duration.ZERO),
+          Set.of("traceparent"));
+  private static final Map<String, String> HEADERS =
+      Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user1");
+
+  private Clock clock;
+  private ResultCache<ExploreResponse> resultCache;
+  private AtomicInteger loads;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW);
+    resultCache = new ResultCache<>("test", CONFIG, clock);
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    ResultCache<ExploreResponse> disabledCache =
+        new ResultCache<>("test", ResultCacheConfig.from(ConfigFactory.empty()));
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+
+    assertFalse(disabledCache.isEnabled());
+    disabledCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    disabledCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testResponsesAreCachedPerTenant() {
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+
+    ExploreResponse response =
+        resultCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    assertSame(
+        response,
+        resultCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load));
+    assertEquals(1, loads.get());
+
+    resultCache.get("tenant2", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testRecentResponsesExpireBeforeHistoricalOnes() {
+    ExploreRequest recentRequest = buildRequest(NOW - 60_000, NOW);
+    ExploreRequest historicalRequest = buildRequest(NOW - 7_200_000, NOW - 3_600_000);
+    resultCache.get(
+        "tenant1", HEADERS, () -> recentRequest, recentRequest.getEndTimeMillis(), this::load);
+    resultCache.get(
+        "tenant1",
+        HEADERS,
+        () -> historicalRequest,
+        historicalRequest.getEndTimeMillis(),
+        this::load);
+    assertEquals(2, loads.get());
+
+    when(clock.millis()).thenReturn(NOW + 20_000);
+    resultCache.get(
+        "tenant1", HEADERS, () -> recentRequest, recentRequest.getEndTimeMillis(), this::load);
+    resultCache.get(
+        "tenant1",
+        HEADERS,
+        () -> historicalRequest,
+        historicalRequest.getEndTimeMillis(),
+        this::load);
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void testInvalidateDropsOnlyTheTenantResponses() {
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+    resultCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    resultCache.get("tenant2", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+
+    resultCache.invalidate("tenant1");
+    resultCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    resultCache.get("tenant2", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  public void testFailedAsyncResponsesAreNotCached() {
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+    Supplier<CompletableFuture<ExploreResponse>> failingLoader =
+        () -> {
+          loads.incrementAndGet();
+          return CompletableFuture.failedFuture(new RuntimeException("query failed"));
+        };
+
+    CompletableFuture<ExploreResponse> failedResponse =
+        resultCache.getAsync(
+            "tenant1", HEADERS, () -> request, request.getEndTimeMillis(), failingLoader);
+    assertThrows(CompletionException.class, failedResponse::join);
+
+    CompletableFuture<ExploreResponse> response =
+        resultCache.getAsync(
+            "tenant1",
+            HEADERS,
+            () -> request,
+            request.getEndTimeMillis(),
+            () -> CompletableFuture.completedFuture(load()));
+    assertTrue(response.isDone());
+    assertSame(
+        response.join(),
+        resultCache
+            .getAsync("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), failingLoader)
+            .join());
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testResponsesAreCachedPerForwardedHeaders() {
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+    resultCache.get("tenant1", HEADERS, () -> request, request.getEndTimeMillis(), this::load);
+
+    Map<String, String> otherCallerHeaders =
+        Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user2");
+    resultCache.get(
+        "tenant1", otherCallerHeaders, () -> request, request.getEndTimeMillis(), this::load);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testIgnoredHeadersAreNotPartOfTheKey() {
+    ExploreRequest request = buildRequest(NOW - 60_000, NOW);
+    resultCache.get(
+        "tenant1",
+        Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user1", "traceparent", "trace1"),
+        () -> request,
+        request.getEndTimeMillis(),
+        this::load);
+    resultCache.get(
+        "tenant1",
+        Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user1", "TraceParent", "trace2"),
+        () -> request,
+        request.getEndTimeMillis(),
+        this::load);
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testAlignsToTheTimeAggregationPeriod() {
+    List<TimeAggregation> timeAggregations =
+        List.of(
+            TimeAggregation.newBuilder()
+                .setPeriod(Period.newBuilder().setValue(5).setUnit("MINUTES"))
+                .build());
+
+    assertEquals(300_000, resultCache.alignToPeriodBoundary(299_999, timeAggregations, true));
+    assertEquals(0, resultCache.alignToPeriodBoundary(299_999, timeAggregations, false));
+    assertEquals(120_000, resultCache.alignToPeriodBoundary(61_000, List.of(), true));
+  }
+
+  private ExploreResponse load() {
+    loads.incrementAndGet();
+    return ExploreResponse.newBuilder().build();
+  }
+
+  private ExploreRequest buildRequest(long startTimeMillis, long endTimeMillis) {
+    return ExploreRequest.newBuilder()
+        .setContext("API")
+        .setStartTimeMillis(startTimeMillis)
+        .setEndTimeMillis(endTimeMillis)
+        .build();
+  }
+}
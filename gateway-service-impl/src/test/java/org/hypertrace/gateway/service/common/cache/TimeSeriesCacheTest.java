@@ -0,0 +1,223 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.Filter;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimeSeriesCacheTest {
+  private static final long PERIOD_SECS = 60;
+  private static final long PERIOD_MILLIS = 60_000;
+  private static final long NOW = 1_600_000_020_000L - 1_600_000_020_000L % PERIOD_MILLIS;
+  private static final long HOUR_MILLIS = 3_600_000;
+  private static final Map<String, String> HEADERS =
+      Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user1");
+
+  private Clock clock;
+  private TimeSeriesCache timeSeriesCache;
+  private List<QueryRequest> executedRequests;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW);
+    timeSeriesCache =
+        new TimeSeriesCache(
+            "test",
+            new TimeSeriesCacheConfig(
+                true,
+                1024 * 1024,
+                Duration.ofMinutes(1),
+                Duration.ofHours(1),
+                Set.of("traceparent")),
+            clock);
+    executedRequests = new ArrayList<>();
+  }
+
+  @Test
+  public void testOnlyMissingBucketsAreQueried() {
+    List<ResultSetChunk> firstResult = execute("tenant1", NOW - HOUR_MILLIS, NOW, 0);
+    assertEquals(List.of(buildRequest(NOW - HOUR_MILLIS, NOW, 0)), executedRequests);
+    assertEquals(buckets(NOW - HOUR_MILLIS, NOW), bucketsOf(firstResult));
+
+    when(clock.millis()).thenReturn(NOW + PERIOD_MILLIS);
+    List<ResultSetChunk> secondResult =
+        execute("tenant1", NOW - HOUR_MILLIS + PERIOD_MILLIS, NOW + PERIOD_MILLIS, 0);
+    // the bucket still settling at the time of the first query is queried again
+    assertEquals(
+        buildRequest(NOW - PERIOD_MILLIS, NOW + PERIOD_MILLIS, 0), executedRequests.get(1));
+    assertEquals(
+        buckets(NOW - HOUR_MILLIS + PERIOD_MILLIS, NOW + PERIOD_MILLIS), bucketsOf(secondResult));
+  }
+
+  @Test
+  public void testFullyCachedWindowIsNotQueried() {
+    execute("tenant1", NOW - 2 * HOUR_MILLIS, NOW - HOUR_MILLIS, 0);
+    List<ResultSetChunk> result = execute("tenant1", NOW - 2 * HOUR_MILLIS, NOW - HOUR_MILLIS, 0);
+
+    assertEquals(1, executedRequests.size());
+    assertEquals(buckets(NOW - 2 * HOUR_MILLIS, NOW - HOUR_MILLIS), bucketsOf(result));
+  }
+
+  @Test
+  public void testSeriesAreCachedPerTenant() {
+    execute("tenant1", NOW - HOUR_MILLIS, NOW, 0);
+    execute("tenant2", NOW - HOUR_MILLIS, NOW, 0);
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(executedRequests.get(0), executedRequests.get(1));
+  }
+
+  @Test
+  public void testSeriesAreCachedPerForwardedHeaders() {
+    execute("tenant1", HEADERS, NOW - 2 * HOUR_MILLIS, NOW - HOUR_MILLIS, 0);
+    execute(
+        "tenant1",
+        Map.of("x-tenant-id", "tenant1", "authorization", "Bearer user2"),
+        NOW - 2 * HOUR_MILLIS,
+        NOW - HOUR_MILLIS,
+        0);
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(executedRequests.get(0), executedRequests.get(1));
+  }
+
+  @Test
+  public void testIgnoredHeadersAreNotPartOfTheSeriesKey() {
+    execute(
+        "tenant1",
+        Map.of("authorization", "Bearer user1", "traceparent", "1"),
+        NOW - 2 * HOUR_MILLIS,
+        NOW - HOUR_MILLIS,
+        0);
+    execute(
+        "tenant1",
+        Map.of("authorization", "Bearer user1", "TraceParent", "2"),
+        NOW - 2 * HOUR_MILLIS,
+        NOW - HOUR_MILLIS,
+        0);
+
+    assertEquals(1, executedRequests.size());
+  }
+
+  @Test
+  public void testTruncatedResultsAreNotCached() {
+    execute("tenant1", NOW - HOUR_MILLIS, NOW, 60);
+    execute("tenant1", NOW - HOUR_MILLIS, NOW, 60);
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(executedRequests.get(0), executedRequests.get(1));
+  }
+
+  @Test
+  public void testDisabledCacheQueriesTheWholeWindow() {
+    TimeSeriesCache disabledCache =
+        new TimeSeriesCache(
+            "test",
+            new TimeSeriesCacheConfig(
+                false, 1024 * 1024, Duration.ofMinutes(1), Duration.ofHours(1)),
+            clock);
+    Function<QueryRequest, CompletableFuture<List<ResultSetChunk>>> queryExecutor =
+        this::executeQuery;
+    disabledCache.executeQuery(
+        "tenant1",
+        HEADERS,
+        NOW - HOUR_MILLIS,
+        NOW,
+        PERIOD_SECS,
+        0,
+        (start, end) -> buildRequest(start, end, 0),
+        queryExecutor);
+    disabledCache.executeQuery(
+        "tenant1",
+        HEADERS,
+        NOW - HOUR_MILLIS,
+        NOW,
+        PERIOD_SECS,
+        0,
+        (start, end) -> buildRequest(start, end, 0),
+        queryExecutor);
+
+    assertEquals(2, executedRequests.size());
+  }
+
+  private List<ResultSetChunk> execute(String tenantId, long start, long end, int limit) {
+    return execute(tenantId, HEADERS, start, end, limit);
+  }
+
+  private List<ResultSetChunk> execute(
+      String tenantId, Map<String, String> headers, long start, long end, int limit) {
+    return timeSeriesCache
+        .executeQuery(
+            tenantId,
+            headers,
+            start,
+            end,
+            PERIOD_SECS,
+            0,
+            (startTime, endTime) -> buildRequest(startTime, endTime, limit),
+            this::executeQuery)
+        .join();
+  }
+
+  private QueryRequest buildRequest(long start, long end, int limit) {
+    return QueryRequest.newBuilder()
+        .setFilter(QueryRequestUtil.createBetweenTimesFilter("timestamp", start, end))
+        .setLimit(limit)
+        .build();
+  }
+
+  // Returns one row per bucket of the requested time range, holding the bucket start time.
+  private CompletableFuture<List<ResultSetChunk>> executeQuery(QueryRequest request) {
+    executedRequests.add(request);
+    Filter timeFilter = request.getFilter();
+    long start = timeFilter.getChildFilter(0).getRhs().getLiteral().getValue().getLong();
+    long end = timeFilter.getChildFilter(1).getRhs().getLiteral().getValue().getLong();
+    ResultSetChunk.Builder chunkBuilder =
+        ResultSetChunk.newBuilder()
+            .setResultSetMetadata(
+                ResultSetMetadata.newBuilder()
+                    .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("time")));
+    buckets(start, end)
+        .forEach(
+            bucket ->
+                chunkBuilder.addRow(
+                    Row.newBuilder()
+                        .addColumn(Value.newBuilder().setString(String.valueOf(bucket)))));
+    return CompletableFuture.completedFuture(List.of(chunkBuilder.build()));
+  }
+
+  private List<Long> buckets(long start, long end) {
+    return LongStream.range(0, (end - start) / PERIOD_MILLIS)
+        .mapToObj(i -> start + i * PERIOD_MILLIS)
+        .collect(Collectors.toList());
+  }
+
+  private List<Long> bucketsOf(List<ResultSetChunk> chunks) {
+    return chunks.stream()
+        .flatMap(chunk -> chunk.getRowList().stream())
+        .map(row -> Long.parseLong(row.getColumn(0).getString()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,181 @@
+package org.hypertrace.gateway.service.common.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import io.grpc.Context;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestCoalescerTest {
+  private static final ExploreRequest REQUEST =
+      ExploreRequest.newBuilder().setContext("API").build();
+
+  private List<CompletableFuture<String>> calls;
+
+  @BeforeEach
+  public void setup() {
+    calls = new ArrayList<>();
+  }
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneCall() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    CompletableFuture<String> first = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    CompletableFuture<String> second = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(1, calls.size());
+    assertFalse(second.isDone());
+
+    calls.get(0).complete("result");
+    assertEquals("result", first.join());
+    assertEquals("result", second.join());
+
+    // Nothing is kept once the call has completed
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void testRequestsAreCoalescedPerTenantAndRequest() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    coalescer.execute(REQUEST, headers("tenant2"), this::call);
+    coalescer.execute(
+        ExploreRequest.newBuilder().setContext("SERVICE").build(), headers("tenant1"), this::call);
+    assertEquals(3, calls.size());
+  }
+
+  @Test
+  public void testFailuresAreSharedButNotKept() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    CompletableFuture<String> first = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    CompletableFuture<String> second = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    calls.get(0).completeExceptionally(new RuntimeException("query failed"));
+
+    assertThrows(CompletionException.class, first::join);
+    assertThrows(CompletionException.class, second::join);
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void testCancellingOneCallerDoesNotAffectTheOthers() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    CompletableFuture<String> first = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    CompletableFuture<String> second = coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    first.cancel(true);
+    calls.get(0).complete("result");
+
+    assertTrue(first.isCancelled());
+    assertEquals("result", second.join());
+  }
+
+  @Test
+  public void testRequestsAreCoalescedPerForwardedHeaders() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    coalescer.execute(REQUEST, headers("tenant1", "authorization", "Bearer user1"), this::call);
+    coalescer.execute(REQUEST, headers("tenant1", "authorization", "Bearer user2"), this::call);
+    assertEquals(2, calls.size());
+
+    // the tracing headers differ between otherwise identical requests
+    coalescer.execute(
+        REQUEST,
+        headers("tenant1", "authorization", "Bearer user1", "traceparent", "00-abc-01"),
+        this::call);
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void testRequestsWithoutTenantAreNotCoalesced() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+
+    coalescer.execute(REQUEST, Map.of(), this::call);
+    coalescer.execute(REQUEST, Map.of(), this::call);
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void testCancellingTheFirstCallerContextDoesNotCancelTheSharedCall() throws Exception {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 10, 10);
+    List<Context> callContexts = new ArrayList<>();
+    Supplier<CompletableFuture<String>> call =
+        () -> {
+          callContexts.add(Context.current());
+          return call();
+        };
+
+    Context.CancellableContext firstCallerContext = Context.current().withCancellation();
+    CompletableFuture<String> first =
+        firstCallerContext.call(() -> coalescer.execute(REQUEST, headers("tenant1"), call));
+    CompletableFuture<String> second = coalescer.execute(REQUEST, headers("tenant1"), call);
+    firstCallerContext.cancel(null);
+
+    assertEquals(1, callContexts.size());
+    assertFalse(callContexts.get(0).isCancelled());
+    calls.get(0).complete("result");
+    assertEquals("result", first.join());
+    assertEquals("result", second.join());
+  }
+
+  @Test
+  public void testRequestsBeyondTheLimitsAreNotCoalesced() {
+    RequestCoalescer<String> coalescer = newCoalescer(true, 1, 1);
+
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(1, calls.size());
+    // more waiters than allowed
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(2, calls.size());
+    // more distinct requests in flight than allowed
+    coalescer.execute(REQUEST, headers("tenant2"), this::call);
+    coalescer.execute(REQUEST, headers("tenant2"), this::call);
+    assertEquals(4, calls.size());
+  }
+
+  @Test
+  public void testDisabledCoalescerAlwaysCalls() {
+    RequestCoalescer<String> coalescer =
+        new RequestCoalescer<>("test", RequestCoalescingConfig.from(ConfigFactory.empty()));
+
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    coalescer.execute(REQUEST, headers("tenant1"), this::call);
+    assertEquals(2, calls.size());
+  }
+
+  private RequestCoalescer<String> newCoalescer(boolean enabled, int maxInFlight, int maxWaiters) {
+    return new RequestCoalescer<>(
+        "test", new RequestCoalescingConfig(enabled, maxInFlight, maxWaiters));
+  }
+
+  private static Map<String, String> headers(String tenantId, String... otherHeaders) {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("x-tenant-id", tenantId);
+    for (int i = 0; i < otherHeaders.length; i += 2) {
+      headers.put(otherHeaders[i], otherHeaders[i + 1]);
+    }
+    return headers;
+  }
+
+  private CompletableFuture<String> call() {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    calls.add(future);
+    return future;
+  }
+}
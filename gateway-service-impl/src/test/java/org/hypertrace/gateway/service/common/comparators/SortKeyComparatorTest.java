@@ -0,0 +1,140 @@
+package org.hypertrace.gateway.service.common.comparators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.hypertrace.gateway.service.common.comparators.SortKeyComparator.SortKeyColumn;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.junit.jupiter.api.Test;
+
+class SortKeyComparatorTest {
+
+  @Test
+  void comparesLongKeysWithNullsAsValueComparator() {
+    assertSameOrder(longValue(5), null, longValue(-3), longValue(5), null, longValue(0));
+  }
+
+  @Test
+  void comparesDoubleKeysWithNullsAsValueComparator() {
+    assertSameOrder(
+        doubleValue(2.5), null, doubleValue(-0.0), doubleValue(0.0), doubleValue(Double.NaN));
+  }
+
+  @Test
+  void comparesStringKeysWithNullsAsValueComparator() {
+    assertSameOrder(stringValue("b"), stringValue(""), null, stringValue("ab"), stringValue("b"));
+  }
+
+  @Test
+  void comparesBoolKeysAsValueComparator() {
+    assertSameOrder(boolValue(true), boolValue(false), null, boolValue(true), boolValue(false));
+  }
+
+  @Test
+  void comparesTimestampKeysAsValueComparator() {
+    assertSameOrder(
+        timestampValue(1620000000000L),
+        timestampValue(0),
+        null,
+        timestampValue(Long.MAX_VALUE),
+        timestampValue(1620000000000L));
+  }
+
+  @Test
+  void comparesArrayKeysAsValueComparator() {
+    assertSameOrder(
+        stringArrayValue("b", "a"),
+        stringArrayValue("a"),
+        null,
+        stringArrayValue(),
+        stringArrayValue("a", "b"));
+  }
+
+  @Test
+  void comparesMixedTypeKeysAsValueComparator() {
+    Value[] values =
+        new Value[] {
+          longValue(5), null, stringValue("a"), longValue(3), timestampValue(4), stringValue("b")
+        };
+    SortKeyColumn column = SortKeyComparator.column(values);
+
+    for (int i = 0; i < values.length; i++) {
+      for (int j = 0; j < values.length; j++) {
+        if (values[i] != null
+            && values[j] != null
+            && values[i].getValueType() != values[j].getValueType()) {
+          int left = i;
+          int right = j;
+          assertThrows(
+              IllegalArgumentException.class,
+              () -> ValueComparator.compare(values[left], values[right]));
+          assertThrows(IllegalArgumentException.class, () -> column.compare(left, right));
+        } else {
+          assertEquals(
+              Integer.signum(ValueComparator.compare(values[i], values[j])),
+              Integer.signum(column.compare(i, j)));
+        }
+      }
+    }
+  }
+
+  @Test
+  void comparesByTheFollowingKeysOnEqualKeys() {
+    Value[] first = new Value[] {stringValue("a"), stringValue("a"), null, stringValue("b"), null};
+    Value[] second = new Value[] {longValue(2), longValue(1), longValue(4), longValue(1), null};
+    SortKeyComparator comparator =
+        new SortKeyComparator(
+            List.of(SortKeyComparator.column(first), SortKeyComparator.column(second)),
+            new boolean[] {false, true});
+
+    for (int i = 0; i < first.length; i++) {
+      for (int j = 0; j < first.length; j++) {
+        int expected = ValueComparator.compare(first[i], first[j]);
+        if (expected == 0) {
+          expected = -ValueComparator.compare(second[i], second[j]);
+        }
+        assertEquals(Integer.signum(expected), Integer.signum(comparator.compare(i, j)));
+      }
+    }
+  }
+
+  private static void assertSameOrder(Value... values) {
+    SortKeyColumn column = SortKeyComparator.column(values);
+    for (int i = 0; i < values.length; i++) {
+      for (int j = 0; j < values.length; j++) {
+        assertEquals(
+            Integer.signum(ValueComparator.compare(values[i], values[j])),
+            Integer.signum(column.compare(i, j)));
+      }
+    }
+  }
+
+  private static Value longValue(long value) {
+    return Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private static Value doubleValue(double value) {
+    return Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+
+  private static Value boolValue(boolean value) {
+    return Value.newBuilder().setValueType(ValueType.BOOL).setBoolean(value).build();
+  }
+
+  private static Value timestampValue(long value) {
+    return Value.newBuilder().setValueType(ValueType.TIMESTAMP).setTimestamp(value).build();
+  }
+
+  private static Value stringArrayValue(String... values) {
+    return Value.newBuilder()
+        .setValueType(ValueType.STRING_ARRAY)
+        .addAllStringArray(List.of(values))
+        .build();
+  }
+}
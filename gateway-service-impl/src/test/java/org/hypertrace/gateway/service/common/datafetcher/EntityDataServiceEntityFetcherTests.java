@@ -15,6 +15,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,7 @@ import org.hypertrace.entity.query.service.v1.TotalEntitiesResponse;
 import org.hypertrace.entity.query.service.v1.Value;
 import org.hypertrace.entity.query.service.v1.ValueType;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.EntityServiceAndGatewayServiceConverter;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
@@ -74,7 +76,11 @@ public class EntityDataServiceEntityFetcherTests {
 
     entityDataServiceEntityFetcher =
         new EntityDataServiceEntityFetcher(
-            entityQueryServiceClient, attributeMetadataProvider, entityIdColumnsConfigs);
+            EntityQueryServiceAsyncClient.fromBlockingClient(
+                entityQueryServiceClient, Runnable::run),
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            MoreExecutors.newDirectExecutorService());
   }
 
   @Test
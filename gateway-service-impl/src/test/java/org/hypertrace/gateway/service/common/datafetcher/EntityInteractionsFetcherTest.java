@@ -1,5 +1,6 @@
 package org.hypertrace.gateway.service.common.datafetcher;
 
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
 import static org.hypertrace.gateway.service.common.converters.QueryRequestUtil.createBetweenTimesFilter;
 import static org.hypertrace.gateway.service.common.converters.QueryRequestUtil.createFilter;
 import static org.hypertrace.gateway.service.common.converters.QueryRequestUtil.createStringArrayLiteralExpression;
@@ -9,12 +10,16 @@ import static org.hypertrace.gateway.service.common.util.QueryExpressionUtil.bui
 import static org.hypertrace.gateway.service.common.util.QueryExpressionUtil.getAggregateFunctionExpression;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -23,15 +28,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
 import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.util.QueryRequestUtil;
 import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
@@ -45,6 +56,7 @@ import org.hypertrace.gateway.service.v1.common.Operator;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
+import org.hypertrace.gateway.service.v1.entity.Entity;
 import org.hypertrace.gateway.service.v1.entity.InteractionsRequest;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -115,7 +127,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -224,7 +237,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -288,7 +302,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
             Optional.of(AttributeMetadata.newBuilder().setId("INTERACTION.startTime").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -407,7 +422,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
             Optional.of(AttributeMetadata.newBuilder().setId("INTERACTION.startTime").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
     LinkedHashSet<EntityKey> entityKeys = new LinkedHashSet<>();
     entityKeys.add(EntityKey.of("test_name1", "test_type1"));
     entityKeys.add(EntityKey.of("test_name2", "test_type2"));
@@ -490,6 +506,98 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .addSelection(buildAttributeExpression("Backend.name"));
   }
 
+  @Test
+  public void testInteractionsAreAddedInQueryOrderWhenParsedOutOfOrder() {
+    EntitiesRequest request =
+        EntitiesRequest.newBuilder()
+            .setEntityType(DomainEntityType.SERVICE.name())
+            .setStartTimeMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30))
+            .setEndTimeMillis(System.currentTimeMillis())
+            .setOutgoingInteractions(
+                InteractionsRequest.newBuilder()
+                    .setFilter(
+                        Filter.newBuilder()
+                            .setLhs(buildAttributeExpression("INTERACTION.toEntityType"))
+                            .setOperator(Operator.IN)
+                            .setRhs(
+                                Expression.newBuilder()
+                                    .setLiteral(
+                                        LiteralConstant.newBuilder()
+                                            .setValue(
+                                                Value.newBuilder()
+                                                    .setValueType(ValueType.STRING_ARRAY)
+                                                    .addStringArray("SERVICE")
+                                                    .addStringArray("BACKEND")))))
+                    .addSelection(
+                        getAggregateFunctionExpression(
+                            "INTERACTION.bytesReceived", FunctionType.SUM, "SUM_bytes_received")))
+            .build();
+
+    attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    Mockito.when(
+            attributeMetadataProvider.getAttributeMetadata(
+                any(), Mockito.eq(AttributeScope.INTERACTION.name()), Mockito.eq("startTime")))
+        .thenReturn(
+            Optional.of(AttributeMetadata.newBuilder().setId("INTERACTION.startTime").build()));
+    Mockito.when(
+            attributeMetadataProvider.getAttributesMetadata(
+                any(), Mockito.eq(AttributeScope.INTERACTION.name())))
+        .thenReturn(
+            Map.of(
+                "INTERACTION.bytesReceived",
+                AttributeMetadata.newBuilder()
+                    .setId("INTERACTION.bytesReceived")
+                    .setValueKind(AttributeKind.TYPE_INT64)
+                    .build()));
+
+    // the queries only complete when completed by the test
+    List<CompletableFuture<List<ResultSetChunk>>> queryResponses = new ArrayList<>();
+    QueryServiceAsyncClient queryServiceClient = mock(QueryServiceAsyncClient.class);
+    Mockito.when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<List<ResultSetChunk>> queryResponse = new CompletableFuture<>();
+              queryResponses.add(queryResponse);
+              return queryResponse;
+            });
+
+    EntityKey entityKey = EntityKey.of("service_id_1");
+    Entity.Builder entityBuilder = Entity.newBuilder();
+    EntityInteractionsFetcher aggregator =
+        new EntityInteractionsFetcher(
+            queryServiceClient,
+            500,
+            attributeMetadataProvider,
+            MoreExecutors.newDirectExecutorService(),
+            InListSharder.disabled());
+    CompletableFuture<Void> populated =
+        aggregator.populateEntityInteractionsAsync(
+            new RequestContext(TENANT_ID, new HashMap<>()),
+            request,
+            Map.of(entityKey, entityBuilder));
+    assertEquals(2, queryResponses.size());
+
+    // the result of the last query is parsed first
+    for (int i = queryResponses.size() - 1; i >= 0; i--) {
+      queryResponses
+          .get(i)
+          .complete(
+              List.of(
+                  getResultSetChunk(
+                      List.of("fromId", "toId", "SUM_bytes_received"),
+                      new String[][] {{"service_id_1", "other_id_" + i, String.valueOf(i)}})));
+    }
+
+    assertTrue(populated.isDone());
+    assertEquals(
+        List.of(0L, 1L),
+        entityBuilder.getOutgoingInteractionList().stream()
+            .map(
+                interaction ->
+                    interaction.getMetricsMap().get("SUM_bytes_received").getValue().getLong())
+            .collect(Collectors.toList()));
+  }
+
   @Test
   public void testCornerCases() {
     // No selections
@@ -507,7 +615,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -581,7 +690,8 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
                 Mockito.eq("startTime")))
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setFqn("dummy").build()));
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider, queryExecutor);
+        new EntityInteractionsFetcher(
+            null, 500, attributeMetadataProvider, queryExecutor, InListSharder.disabled());
 
     for (EntitiesRequest request : getInvalidRequests()) {
       try {
@@ -21,6 +21,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -37,6 +38,8 @@ import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
@@ -88,7 +91,12 @@ public class QueryServiceEntityFetcherTests {
 
     queryServiceEntityFetcher =
         new QueryServiceEntityFetcher(
-            queryServiceClient, 500, attributeMetadataProvider, entityIdColumnsConfigs);
+            QueryServiceAsyncClient.fromBlockingClient(queryServiceClient, Runnable::run),
+            500,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            TimeSeriesCache.disabled(),
+            MoreExecutors.newDirectExecutorService());
   }
 
   @Test
@@ -535,6 +543,74 @@ public class QueryServiceEntityFetcherTests {
         2, queryServiceEntityFetcher.getEntities(entitiesRequestContext, entitiesRequest).size());
   }
 
+  @Test
+  public void test_getEntitiesWithPaginationGroupedByMoreThanTheIdColumns() {
+    List<OrderByExpression> orderByExpressions = List.of(buildOrderByExpression(API_ID_ATTR));
+    long startTime = 1L;
+    long endTime = 10L;
+    int limit = 2;
+    int offset = 5;
+    String tenantId = "TENANT_ID";
+    Map<String, String> requestHeaders = Map.of("x-tenant-id", tenantId);
+    AttributeScope entityType = AttributeScope.API;
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType(entityType.name())
+            .setStartTimeMillis(startTime)
+            .setEndTimeMillis(endTime)
+            .addSelection(buildExpression(API_NAME_ATTR))
+            .setFilter(
+                Filter.newBuilder()
+                    .setOperator(AND)
+                    .addChildFilter(
+                        EntitiesRequestAndResponseUtils.getTimeRangeFilter(
+                            "API.startTime", startTime, endTime))
+                    .addChildFilter(generateEQFilter(API_DISCOVERY_STATE_ATTR, "DISCOVERED")))
+            .addAllOrderBy(orderByExpressions)
+            .setLimit(limit)
+            .setOffset(offset)
+            .build();
+    EntitiesRequestContext entitiesRequestContext =
+        new EntitiesRequestContext(
+            tenantId, startTime, endTime, entityType.name(), "API.startTime", requestHeaders);
+
+    // Grouped by the name too, an entity may span several rows, so the request limit is not
+    // pushed down
+    QueryRequest expectedQueryRequest =
+        QueryRequest.newBuilder()
+            .addSelection(createAttributeExpression(API_ID_ATTR))
+            .addSelection(createAttributeExpression(API_NAME_ATTR))
+            .addSelection(createQsAggregationExpression("COUNT", API_ID_ATTR))
+            .setFilter(
+                createQsRequestFilter(
+                    API_START_TIME_ATTR,
+                    API_ID_ATTR,
+                    startTime,
+                    endTime,
+                    createStringFilter(API_DISCOVERY_STATE_ATTR, Operator.EQ, "DISCOVERED")))
+            .addGroupBy(createAttributeExpression(API_ID_ATTR))
+            .addGroupBy(createAttributeExpression(API_NAME_ATTR))
+            .setOffset(offset)
+            .setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT)
+            .addAllOrderBy(
+                QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(orderByExpressions))
+            .build();
+
+    List<ResultSetChunk> resultSetChunks =
+        List.of(
+            getResultSetChunk(
+                List.of("API.id", "API.name"),
+                new String[][] {
+                  {"apiId1", "api 1"}, {"apiId1", "api 1 renamed"}, {"apiId2", "api 2"}
+                }));
+
+    when(queryServiceClient.executeQuery(eq(expectedQueryRequest), eq(requestHeaders), eq(500)))
+        .thenReturn(resultSetChunks.iterator());
+
+    assertEquals(
+        2, queryServiceEntityFetcher.getEntities(entitiesRequestContext, entitiesRequest).size());
+  }
+
   @Test
   public void test_getEntitiesWithoutPagination() {
     List<OrderByExpression> orderByExpressions = List.of(buildOrderByExpression(API_ID_ATTR));
@@ -0,0 +1,56 @@
+package org.hypertrace.gateway.service.common.pushdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.junit.jupiter.api.Test;
+
+public class GroupByPushdownConfigTest {
+  private static final int DEFAULT_LIMIT = QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT;
+
+  @Test
+  public void testCapabilitiesAreReadPerSource() {
+    GroupByPushdownConfig config =
+        GroupByPushdownConfig.from(
+            ConfigFactory.parseString(
+                "group.by.pushdown.config = {"
+                    + " QS = { order.by.limit = true },"
+                    + " OTHER = { order.by.limit = true, offset = true } }"));
+
+    assertTrue(config.getCapabilities("QS").canPushDownOrderByAndLimit());
+    assertFalse(config.getCapabilities("QS").canPushDownOffset());
+    assertTrue(config.getCapabilities("OTHER").canPushDownOffset());
+    assertFalse(config.getCapabilities("EDS").canPushDownOrderByAndLimit());
+    assertFalse(
+        GroupByPushdownConfig.from(ConfigFactory.empty())
+            .getCapabilities("QS")
+            .canPushDownOrderByAndLimit());
+  }
+
+  @Test
+  public void testDefaultLimitAppliesToUnorderedQueries() {
+    GroupByPushdownCapabilities capabilities = new GroupByPushdownCapabilities(true, true);
+
+    assertEquals(DEFAULT_LIMIT, capabilities.getLimit(false, 25, 50));
+    assertEquals(0, capabilities.getOffset(false, 50));
+    assertEquals(DEFAULT_LIMIT, GroupByPushdownCapabilities.none().getLimit(true, 25, 50));
+    assertEquals(0, GroupByPushdownCapabilities.none().getOffset(true, 50));
+  }
+
+  @Test
+  public void testOffsetIsAddedToLimitUnlessPushedDown() {
+    GroupByPushdownCapabilities limitOnly = new GroupByPushdownCapabilities(true, false);
+    assertEquals(75, limitOnly.getLimit(true, 25, 50));
+    assertEquals(0, limitOnly.getOffset(true, 50));
+
+    GroupByPushdownCapabilities limitAndOffset = new GroupByPushdownCapabilities(true, true);
+    assertEquals(25, limitAndOffset.getLimit(true, 25, 50));
+    assertEquals(50, limitAndOffset.getOffset(true, 50));
+
+    // the offset can't be skipped without sorting the groups
+    assertFalse(new GroupByPushdownCapabilities(false, true).canPushDownOffset());
+  }
+}
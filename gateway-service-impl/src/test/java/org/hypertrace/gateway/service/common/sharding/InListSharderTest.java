@@ -0,0 +1,56 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class InListSharderTest {
+
+  @Test
+  public void testValuesAreNotSplitWhenDisabled() {
+    List<Integer> values = range(20);
+
+    assertEquals(List.of(values), InListSharder.disabled().shard(values));
+    assertEquals(
+        List.of(values),
+        new InListSharder("test", new InListShardingConfig(false, 5, 8)).shard(values));
+  }
+
+  @Test
+  public void testValuesAreNotSplitUnderMaxValues() {
+    InListSharder sharder = new InListSharder("test", new InListShardingConfig(true, 5, 8));
+
+    assertEquals(List.of(range(5)), sharder.shard(range(5)));
+    assertEquals(List.of(List.of()), sharder.shard(List.of()));
+  }
+
+  @Test
+  public void testValuesAreSplitInShardsOfAtMostMaxValues() {
+    InListSharder sharder = new InListSharder("test", new InListShardingConfig(true, 5, 8));
+
+    List<List<Integer>> shards = sharder.shard(new LinkedHashSet<>(range(12)));
+
+    assertEquals(List.of(range(0, 4), range(4, 8), range(8, 12)), shards);
+  }
+
+  @Test
+  public void testShardsGrowPastMaxValuesBeyondMaxShards() {
+    InListSharder sharder = new InListSharder("test", new InListShardingConfig(true, 5, 2));
+
+    List<List<Integer>> shards = sharder.shard(range(25));
+
+    assertEquals(List.of(range(0, 13), range(13, 25)), shards);
+  }
+
+  private static List<Integer> range(int end) {
+    return range(0, end);
+  }
+
+  private static List<Integer> range(int start, int end) {
+    return IntStream.range(start, end).boxed().collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,245 @@
+package org.hypertrace.gateway.service.common.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.hypertrace.core.query.service.api.ColumnIdentifier;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.Expression;
+import org.hypertrace.core.query.service.api.Filter;
+import org.hypertrace.core.query.service.api.Function;
+import org.hypertrace.core.query.service.api.LiteralConstant;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.core.query.service.api.ValueType;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache.TimeRangeQueryBuilder;
+import org.junit.jupiter.api.Test;
+
+public class TimeRangeSharderTest {
+  private static final long HOUR = Duration.ofHours(1).toMillis();
+  private static final TimeRangeSharder SHARDER =
+      new TimeRangeSharder("test", new TimeRangeShardingConfig(true, Duration.ofHours(4), 3));
+
+  @Test
+  public void testShortWindowsAreNotSplit() {
+    assertEquals(List.of(List.of(0L, 3 * HOUR)), ranges(SHARDER.shard(0, 3 * HOUR, HOUR)));
+    assertEquals(
+        List.of(List.of(0L, 10 * HOUR)),
+        ranges(TimeRangeSharder.disabled().shard(0, 10 * HOUR, HOUR)));
+  }
+
+  @Test
+  public void testShardsAreAligned() {
+    assertEquals(
+        List.of(List.of(0L, 4 * HOUR), List.of(4 * HOUR, 8 * HOUR), List.of(8 * HOUR, 10 * HOUR)),
+        ranges(SHARDER.shard(0, 10 * HOUR, HOUR)));
+  }
+
+  @Test
+  public void testDecomposableAggregationsAreMerged() {
+    List<QueryRequest> requests = new ArrayList<>();
+    List<ResultSetChunk> result =
+        SHARDER
+            .executeAggregationQuery(
+                0,
+                12 * HOUR,
+                queryBuilder(function("SUM", "calls"), function("AVG", "duration")),
+                request -> {
+                  requests.add(request);
+                  // each shard has the same rows
+                  return result(
+                      List.of("name", "calls", "duration", "__shard_count_duration"),
+                      row("a", "2", "10.0", "2"),
+                      row("b", "1", "4.0", "1"));
+                })
+            .join();
+
+    assertEquals(3, requests.size());
+    assertEquals(
+        List.of("SUM", "SUM", "COUNT"),
+        requests.get(0).getSelectionList().stream()
+            .filter(Expression::hasFunction)
+            .map(selection -> selection.getFunction().getFunctionName())
+            .collect(Collectors.toList()));
+    assertEquals(
+        resultChunks(
+            List.of("name", "calls", "duration"), row("a", "6", "5.0"), row("b", "3", "4.0")),
+        result);
+  }
+
+  @Test
+  public void testNonDecomposableAggregationsAreNotSplit() {
+    List<QueryRequest> requests = new ArrayList<>();
+    SHARDER
+        .executeAggregationQuery(
+            0,
+            12 * HOUR,
+            queryBuilder(function("DISTINCTCOUNT", "calls")),
+            request -> {
+              requests.add(request);
+              return result(List.of("name", "calls"));
+            })
+        .join();
+
+    assertEquals(
+        List.of(queryBuilder(function("DISTINCTCOUNT", "calls")).build(0, 12 * HOUR)), requests);
+  }
+
+  @Test
+  public void testTruncatedShardsFallBackToSingleQuery() {
+    TimeRangeQueryBuilder queryBuilder = queryBuilder(function("COUNT", "calls"));
+    List<QueryRequest> requests = new ArrayList<>();
+    SHARDER
+        .executeAggregationQuery(
+            0,
+            12 * HOUR,
+            (startTimeMillis, endTimeMillis) ->
+                queryBuilder.build(startTimeMillis, endTimeMillis).toBuilder().setLimit(1).build(),
+            request -> {
+              requests.add(request);
+              return result(List.of("name", "calls"), row("a", "1"));
+            })
+        .join();
+
+    assertEquals(4, requests.size());
+    assertEquals(queryBuilder.build(0, 12 * HOUR).toBuilder().setLimit(1).build(), requests.get(3));
+  }
+
+  @Test
+  public void testTimeSeriesAreConcatenated() {
+    List<ResultSetChunk> result =
+        SHARDER
+            .executeTimeSeriesQuery(
+                0,
+                12 * HOUR,
+                Duration.ofHours(1).toSeconds(),
+                queryBuilder(function("MAX", "duration")),
+                request ->
+                    result(
+                        List.of("time", "duration"),
+                        row(
+                            Long.toString(getStartTimeMillis(request)),
+                            Long.toString(getStartTimeMillis(request) / HOUR))))
+            .join();
+
+    assertEquals(
+        resultChunks(
+            List.of("time", "duration"),
+            row("0", "0"),
+            row(Long.toString(4 * HOUR), "4"),
+            row(Long.toString(8 * HOUR), "8")),
+        result);
+  }
+
+  @Test
+  public void testTimeSeriesReachingTheLimitFallBackToSingleQuery() {
+    TimeRangeQueryBuilder queryBuilder = queryBuilder(function("MAX", "duration"));
+    List<QueryRequest> requests = new ArrayList<>();
+    List<ResultSetChunk> result =
+        SHARDER
+            .executeTimeSeriesQuery(
+                0,
+                12 * HOUR,
+                Duration.ofHours(1).toSeconds(),
+                (startTimeMillis, endTimeMillis) ->
+                    queryBuilder
+                        .build(startTimeMillis, endTimeMillis)
+                        .toBuilder()
+                        .setLimit(3)
+                        .build(),
+                request -> {
+                  requests.add(request);
+                  // a single row per shard, below the limit of each sub-query
+                  return result(
+                      List.of("time", "duration"),
+                      row(Long.toString(getStartTimeMillis(request)), "1"));
+                })
+            .join();
+
+    assertEquals(4, requests.size());
+    assertEquals(queryBuilder.build(0, 12 * HOUR).toBuilder().setLimit(3).build(), requests.get(3));
+    assertEquals(resultChunks(List.of("time", "duration"), row("0", "1")), result);
+  }
+
+  private static List<List<Long>> ranges(List<TimeRangeSharder.TimeRange> shards) {
+    return shards.stream()
+        .map(shard -> List.of(shard.getStartTimeMillis(), shard.getEndTimeMillis()))
+        .collect(Collectors.toList());
+  }
+
+  private static TimeRangeQueryBuilder queryBuilder(Expression... aggregations) {
+    return (startTimeMillis, endTimeMillis) ->
+        QueryRequest.newBuilder()
+            .setFilter(
+                Filter.newBuilder()
+                    .addChildFilter(Filter.newBuilder().setRhs(literal(startTimeMillis)))
+                    .addChildFilter(Filter.newBuilder().setRhs(literal(endTimeMillis))))
+            .addSelection(column("name"))
+            .addAllSelection(List.of(aggregations))
+            .addGroupBy(column("name"))
+            .setLimit(100)
+            .build();
+  }
+
+  private static long getStartTimeMillis(QueryRequest request) {
+    return request.getFilter().getChildFilter(0).getRhs().getLiteral().getValue().getLong();
+  }
+
+  private static Expression literal(long value) {
+    return Expression.newBuilder()
+        .setLiteral(
+            LiteralConstant.newBuilder()
+                .setValue(Value.newBuilder().setValueType(ValueType.LONG).setLong(value)))
+        .build();
+  }
+
+  private static Expression column(String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+
+  private static Expression function(String functionName, String columnName) {
+    return Expression.newBuilder()
+        .setFunction(
+            Function.newBuilder()
+                .setFunctionName(functionName)
+                .setAlias(columnName)
+                .addArguments(column(columnName)))
+        .build();
+  }
+
+  private static CompletableFuture<List<ResultSetChunk>> result(List<String> columns, Row... rows) {
+    return CompletableFuture.completedFuture(resultChunks(columns, rows));
+  }
+
+  private static List<ResultSetChunk> resultChunks(List<String> columns, Row... rows) {
+    ResultSetMetadata.Builder metadata =
+        ResultSetMetadata.newBuilder().setColumnCount(columns.size());
+    columns.forEach(
+        column ->
+            metadata.addColumnMetadata(
+                ColumnMetadata.newBuilder().setColumnName(column).setValueType(ValueType.STRING)));
+    return List.of(
+        ResultSetChunk.newBuilder()
+            .setIsLastChunk(true)
+            .setResultSetMetadata(metadata)
+            .addAllRow(List.of(rows))
+            .build());
+  }
+
+  private static Row row(String... values) {
+    Row.Builder row = Row.newBuilder();
+    for (String value : values) {
+      row.addColumn(Value.newBuilder().setValueType(ValueType.STRING).setString(value));
+    }
+    return row.build();
+  }
+}
@@ -1,8 +1,12 @@
 package org.hypertrace.gateway.service.common.util;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityKeyEntityBuilderEntryComparator;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
@@ -60,4 +64,50 @@ public class DataCollectionUtilTest {
     Assertions.assertEquals(pqrBuilder, sortedBuilders.get(0).getValue());
     Assertions.assertEquals(xyzBuilder, sortedBuilders.get(1).getValue());
   }
+
+  @Test
+  public void testTopPageMatchesFullSort() {
+    // Many equal elements, whose order in the input must be kept
+    Comparator<int[]> byValue = Comparator.comparingInt(element -> element[0]);
+    List<int[]> elements = buildElements(1000, 100);
+    List<int[]> sorted = elements.stream().sorted(byValue).collect(Collectors.toList());
+
+    List<int[]> page = DataCollectionUtil.limitAndSort(elements, 50, 120, 1, byValue);
+
+    Assertions.assertEquals(sorted.subList(120, 170), page);
+  }
+
+  @Test
+  public void testTopPageOfLargeInputMatchesFullSort() {
+    Comparator<int[]> byValue = Comparator.comparingInt(element -> element[0]);
+    List<int[]> elements = buildElements(150_000, 1000);
+    List<int[]> sorted = elements.stream().sorted(byValue).collect(Collectors.toList());
+
+    Assertions.assertEquals(
+        sorted.subList(100, 150), DataCollectionUtil.limitAndSort(elements, 50, 100, 1, byValue));
+    Assertions.assertEquals(
+        sorted.subList(100, sorted.size()),
+        DataCollectionUtil.limitAndSort(elements, 0, 100, 1, byValue));
+  }
+
+  @Test
+  public void testPaginateWithoutSorting() {
+    List<Integer> elements = List.of(5, 3, 4, 1, 2);
+    Comparator<Integer> naturalOrder = Comparator.naturalOrder();
+
+    Assertions.assertEquals(
+        List.of(3, 4), DataCollectionUtil.limitAndSort(elements, 2, 1, 0, naturalOrder));
+    Assertions.assertEquals(
+        List.of(4, 5), DataCollectionUtil.limitAndSort(elements, 10, 3, 1, naturalOrder));
+    Assertions.assertEquals(List.of(1, 2), DataCollectionUtil.paginateAndLimit(elements, 0, 3));
+    Assertions.assertEquals(List.of(), DataCollectionUtil.paginateAndLimit(elements, 2, 10));
+  }
+
+  // Elements holding a random value in [0, distinctValues) and their index in the input
+  private static List<int[]> buildElements(int count, int distinctValues) {
+    Random random = new Random(42);
+    return IntStream.range(0, count)
+        .mapToObj(index -> new int[] {random.nextInt(distinctValues), index})
+        .collect(Collectors.toList());
+  }
 }
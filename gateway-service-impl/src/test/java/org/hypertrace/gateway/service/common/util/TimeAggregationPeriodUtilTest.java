@@ -0,0 +1,53 @@
+package org.hypertrace.gateway.service.common.util;
+
+import java.time.Duration;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TimeAggregationPeriodUtilTest {
+  private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+  private static final long WINDOW = Duration.ofDays(30).toMillis();
+  private static final Period ONE_MINUTE = period(1);
+
+  @Test
+  public void testPeriodIsKeptWithinMaxPoints() {
+    Assertions.assertEquals(
+        ONE_MINUTE, TimeAggregationPeriodUtil.coarsenPeriod(ONE_MINUTE, 0, WINDOW, 0));
+    Assertions.assertEquals(
+        ONE_MINUTE, TimeAggregationPeriodUtil.coarsenPeriod(ONE_MINUTE, 0, 100 * MINUTE, 100));
+
+    TimeAggregation timeAggregation = TimeAggregation.newBuilder().setPeriod(ONE_MINUTE).build();
+    Assertions.assertSame(
+        timeAggregation, TimeAggregationPeriodUtil.coarsenPeriod(timeAggregation, 0, WINDOW));
+  }
+
+  @Test
+  public void testPeriodIsCoarsenedToMaxPoints() {
+    // 43200 minutes in 30 days
+    Assertions.assertEquals(
+        period(432), TimeAggregationPeriodUtil.coarsenPeriod(ONE_MINUTE, 0, WINDOW, 100));
+    Assertions.assertEquals(
+        period(432),
+        TimeAggregationPeriodUtil.coarsenPeriod(
+                TimeAggregation.newBuilder().setPeriod(ONE_MINUTE).setMaxPoints(100).build(),
+                MINUTE,
+                WINDOW + MINUTE)
+            .getPeriod());
+    Assertions.assertEquals(
+        period(2), TimeAggregationPeriodUtil.coarsenPeriod(ONE_MINUTE, 0, 101 * MINUTE, 100));
+  }
+
+  @Test
+  public void testCoarsenedPeriodKeepsItsUnit() {
+    Assertions.assertEquals(
+        Period.newBuilder().setUnit("HOURS").setValue(6).build(),
+        TimeAggregationPeriodUtil.coarsenPeriod(
+            Period.newBuilder().setUnit("HOURS").setValue(2).build(), 0, WINDOW, 120));
+  }
+
+  private static Period period(int minutes) {
+    return Period.newBuilder().setUnit("MINUTES").setValue(minutes).build();
+  }
+}
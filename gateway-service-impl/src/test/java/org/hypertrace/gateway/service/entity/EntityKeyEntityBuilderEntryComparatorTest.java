@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -193,4 +194,88 @@ public class EntityKeyEntityBuilderEntryComparatorTest {
     assertEquals(
         VALUES[1], builders.get(2).getValue().getAttributeMap().get(ID_ATTRIBUTE).getLong());
   }
+
+  @Test
+  public void testCompiledOrderMatchesComparator() {
+    List<Map.Entry<EntityKey, Entity.Builder>> entities = getEntities();
+    // Entities without the sorted attributes and metric, and with a boolean attribute
+    entities.add(Map.entry(EntityKey.of("id3"), Entity.newBuilder()));
+    entities.add(
+        Map.entry(
+            EntityKey.of("id4"),
+            Entity.newBuilder()
+                .putAttribute(
+                    CONSTANT_ATTRIBUTE_NAME,
+                    Value.newBuilder().setBoolean(true).setValueType(ValueType.BOOL).build())));
+
+    List<List<OrderByExpression>> orderBysList =
+        List.of(
+            List.of(
+                columnOrderBy(CONSTANT_ATTRIBUTE_NAME, SortOrder.DESC),
+                columnOrderBy(TIMESTAMP_ATTR_NAME, SortOrder.ASC)),
+            List.of(metricOrderBy(SortOrder.DESC), columnOrderBy(ID_ATTRIBUTE, SortOrder.ASC)),
+            List.of(
+                columnOrderBy(VARIABLE_ATTRIBUTE_NAME, SortOrder.ASC),
+                metricOrderBy(SortOrder.ASC)));
+
+    for (List<OrderByExpression> orderBys : orderBysList) {
+      EntityKeyEntityBuilderEntryComparator comparator =
+          new EntityKeyEntityBuilderEntryComparator(orderBys);
+      Comparator<Integer> compiledComparator = comparator.compile(entities);
+      for (int i = 0; i < entities.size(); i++) {
+        for (int j = 0; j < entities.size(); j++) {
+          if (isMixedType(entities.get(i), entities.get(j), orderBys)) {
+            continue;
+          }
+          assertEquals(
+              Integer.signum(comparator.compare(entities.get(i), entities.get(j))),
+              Integer.signum(compiledComparator.compare(i, j)));
+        }
+      }
+    }
+  }
+
+  /** The constant attribute is a string or a boolean, which both comparators reject comparing. */
+  private boolean isMixedType(
+      Map.Entry<EntityKey, Builder> left,
+      Map.Entry<EntityKey, Builder> right,
+      List<OrderByExpression> orderBys) {
+    Value leftValue = left.getValue().getAttributeMap().get(CONSTANT_ATTRIBUTE_NAME);
+    Value rightValue = right.getValue().getAttributeMap().get(CONSTANT_ATTRIBUTE_NAME);
+    return orderBys.get(0).getExpression().hasColumnIdentifier()
+        && orderBys
+            .get(0)
+            .getExpression()
+            .getColumnIdentifier()
+            .getColumnName()
+            .equals(CONSTANT_ATTRIBUTE_NAME)
+        && leftValue != null
+        && rightValue != null
+        && leftValue.getValueType() != rightValue.getValueType();
+  }
+
+  private OrderByExpression columnOrderBy(String columnName, SortOrder sortOrder) {
+    return OrderByExpression.newBuilder()
+        .setOrder(sortOrder)
+        .setExpression(
+            Expression.newBuilder()
+                .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName)))
+        .build();
+  }
+
+  private OrderByExpression metricOrderBy(SortOrder sortOrder) {
+    return OrderByExpression.newBuilder()
+        .setOrder(sortOrder)
+        .setExpression(
+            Expression.newBuilder()
+                .setFunction(
+                    FunctionExpression.newBuilder()
+                        .setAlias(METRIC_NAME)
+                        .setFunction(FunctionType.SUM)
+                        .addArguments(
+                            Expression.newBuilder()
+                                .setColumnIdentifier(
+                                    ColumnIdentifier.newBuilder().setColumnName(METRIC_NAME)))))
+        .build();
+  }
 }
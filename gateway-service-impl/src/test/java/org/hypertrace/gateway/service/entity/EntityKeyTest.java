@@ -0,0 +1,54 @@
+package org.hypertrace.gateway.service.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link EntityKey} and {@link EntityKeyInterner}. */
+public class EntityKeyTest {
+  @Test
+  public void testSingleAttributeKey() {
+    EntityKey entityKey = EntityKey.of("id1");
+
+    assertEquals(1, entityKey.size());
+    assertEquals("id1", entityKey.get(0));
+    assertEquals(List.of("id1"), entityKey.getAttributes());
+    assertEquals("id1", entityKey.toString());
+    assertEquals(EntityKey.of(new String[] {"id1"}), entityKey);
+    assertEquals(EntityKey.from("id1"), entityKey);
+    assertEquals(EntityKey.of(new String[] {"id1"}).hashCode(), entityKey.hashCode());
+    assertNotEquals(EntityKey.of("id2"), entityKey);
+  }
+
+  @Test
+  public void testCompositeKey() {
+    EntityKey entityKey = EntityKey.of("id1", "id2");
+
+    assertEquals(2, entityKey.size());
+    assertEquals(List.of("id1", "id2"), entityKey.getAttributes());
+    assertEquals("id1:::id2", entityKey.toString());
+    assertEquals(EntityKey.from("id1:::id2"), entityKey);
+    assertEquals(EntityKey.from("id1:::id2").hashCode(), entityKey.hashCode());
+    assertNotEquals(EntityKey.of("id2", "id1"), entityKey);
+    assertNotEquals(EntityKey.of("id1"), entityKey);
+  }
+
+  @Test
+  public void testInternedKeysAreShared() {
+    EntityKeyInterner entityKeyInterner = new EntityKeyInterner();
+    String[] singleRow = {"id1"};
+    String[] compositeRow = {"id1", "id2"};
+
+    EntityKey singleAttributeKey = entityKeyInterner.intern(1, i -> singleRow[i]);
+    EntityKey compositeKey = entityKeyInterner.intern(2, i -> compositeRow[i]);
+
+    assertEquals(EntityKey.of("id1"), singleAttributeKey);
+    assertEquals(EntityKey.of("id1", "id2"), compositeKey);
+    assertSame(singleAttributeKey, entityKeyInterner.intern("id1"));
+    assertSame(singleAttributeKey, entityKeyInterner.intern(1, i -> new String("id1")));
+    assertSame(compositeKey, entityKeyInterner.intern(2, i -> new String(compositeRow[i])));
+  }
+}
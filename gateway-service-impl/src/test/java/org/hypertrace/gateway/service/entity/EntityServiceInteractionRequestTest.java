@@ -40,8 +40,13 @@ import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
+import org.hypertrace.gateway.service.common.sharding.InListShardingConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
 import org.hypertrace.gateway.service.executor.QueryExecutorConfig;
@@ -619,14 +624,19 @@ public class EntityServiceInteractionRequestTest extends AbstractGatewayServiceT
 
     EntityService entityService =
         new EntityService(
-            queryServiceClient,
+            QueryServiceAsyncClient.fromBlockingClient(queryServiceClient, queryExecutor),
             500,
             entityQueryServiceClient,
+            EntityQueryServiceAsyncClient.fromBlockingClient(
+                entityQueryServiceClient, queryExecutor),
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
             logConfig,
-            queryExecutor);
+            queryExecutor,
+            ResultCacheConfig.from(ConfigFactory.empty()),
+            InListShardingConfig.from(ConfigFactory.empty()),
+            TimeRangeShardingConfig.from(ConfigFactory.empty()));
     EntitiesResponse response = entityService.getEntities(TENANT_ID, request, Map.of());
 
     // validate we have one incoming edge, and two outgoing edge
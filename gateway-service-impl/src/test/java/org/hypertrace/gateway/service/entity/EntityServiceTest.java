@@ -46,7 +46,12 @@ import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.client.EntityQueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.sharding.InListShardingConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
 import org.hypertrace.gateway.service.executor.QueryExecutorConfig;
@@ -285,14 +290,19 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
     ScopeFilterConfigs scopeFilterConfigs = new ScopeFilterConfigs(ConfigFactory.empty());
     EntityService entityService =
         new EntityService(
-            queryServiceClient,
+            QueryServiceAsyncClient.fromBlockingClient(queryServiceClient, queryExecutor),
             500,
             entityQueryServiceClient,
+            EntityQueryServiceAsyncClient.fromBlockingClient(
+                entityQueryServiceClient, queryExecutor),
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
             logConfig,
-            queryExecutor);
+            queryExecutor,
+            ResultCacheConfig.from(ConfigFactory.empty()),
+            InListShardingConfig.from(ConfigFactory.empty()),
+            TimeRangeShardingConfig.from(ConfigFactory.empty()));
     EntitiesResponse response = entityService.getEntities(TENANT_ID, entitiesRequest, Map.of());
     Assertions.assertNotNull(response);
     Assertions.assertEquals(2, response.getTotal());
@@ -320,14 +330,19 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
     ScopeFilterConfigs scopeFilterConfigs = new ScopeFilterConfigs(ConfigFactory.empty());
     EntityService entityService =
         new EntityService(
-            queryServiceClient,
+            QueryServiceAsyncClient.fromBlockingClient(queryServiceClient, queryExecutor),
             500,
             entityQueryServiceClient,
+            EntityQueryServiceAsyncClient.fromBlockingClient(
+                entityQueryServiceClient, queryExecutor),
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
             logConfig,
-            queryExecutor);
+            queryExecutor,
+            ResultCacheConfig.from(ConfigFactory.empty()),
+            InListShardingConfig.from(ConfigFactory.empty()),
+            TimeRangeShardingConfig.from(ConfigFactory.empty()));
     EntitiesRequest entitiesRequest =
         EntitiesRequest.newBuilder()
             .setEntityType("API")
@@ -669,12 +669,10 @@ public class ExecutionTreeBuilderTest {
     assertNotNull(executionTree);
     assertTrue(executionTree instanceof SelectionNode);
     assertTrue(((SelectionNode) executionTree).getTimeSeriesSelectionSources().contains("QS"));
+    // the selections of the page are merged in one node
+    assertTrue(((SelectionNode) executionTree).getAggMetricSelectionSources().contains("QS"));
 
-    QueryNode selectionNode = ((SelectionNode) executionTree).getChildNode();
-    assertTrue(selectionNode instanceof SelectionNode);
-    assertTrue(((SelectionNode) selectionNode).getAggMetricSelectionSources().contains("QS"));
-
-    QueryNode paginateOnlyNode = ((SelectionNode) selectionNode).getChildNode();
+    QueryNode paginateOnlyNode = ((SelectionNode) executionTree).getChildNode();
     assertTrue(paginateOnlyNode instanceof PaginateOnlyNode);
     assertEquals(0, ((PaginateOnlyNode) paginateOnlyNode).getOffset());
     assertEquals(10, ((PaginateOnlyNode) paginateOnlyNode).getLimit());
@@ -774,12 +772,10 @@ public class ExecutionTreeBuilderTest {
     assertNotNull(executionTree);
     assertTrue(executionTree instanceof SelectionNode);
     assertTrue(((SelectionNode) executionTree).getAggMetricSelectionSources().contains("QS"));
+    // the selections of the page are merged in one node
+    assertTrue(((SelectionNode) executionTree).getAttrSelectionSources().contains("EDS"));
 
-    QueryNode selectionNode = ((SelectionNode) executionTree).getChildNode();
-    assertTrue(selectionNode instanceof SelectionNode);
-    assertTrue(((SelectionNode) selectionNode).getAttrSelectionSources().contains("EDS"));
-
-    QueryNode paginateOnlyNode = ((SelectionNode) selectionNode).getChildNode();
+    QueryNode paginateOnlyNode = ((SelectionNode) executionTree).getChildNode();
     assertTrue(paginateOnlyNode instanceof PaginateOnlyNode);
     assertEquals(10, ((PaginateOnlyNode) paginateOnlyNode).getOffset());
     assertEquals(10, ((PaginateOnlyNode) paginateOnlyNode).getLimit());
@@ -961,14 +957,13 @@ public class ExecutionTreeBuilderTest {
         ((SelectionNode) executionTree)
             .getAggMetricSelectionSources()
             .contains(AttributeSource.QS.name()));
-    QueryNode firstChild = ((SelectionNode) executionTree).getChildNode();
-    assertTrue(firstChild instanceof SelectionNode);
+    // the selections of the page are merged in one node
     assertTrue(
-        ((SelectionNode) firstChild)
+        ((SelectionNode) executionTree)
             .getAttrSelectionSources()
             .contains(AttributeSource.EDS.name()));
 
-    QueryNode secondChild = ((SelectionNode) firstChild).getChildNode();
+    QueryNode secondChild = ((SelectionNode) executionTree).getChildNode();
     assertTrue(secondChild instanceof PaginateOnlyNode);
     assertEquals(0, ((PaginateOnlyNode) secondChild).getOffset());
     assertEquals(10, ((PaginateOnlyNode) secondChild).getLimit());
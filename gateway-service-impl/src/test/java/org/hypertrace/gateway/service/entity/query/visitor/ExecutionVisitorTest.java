@@ -20,6 +20,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.Iterables;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
@@ -36,6 +38,7 @@ import org.hypertrace.gateway.service.common.datafetcher.EntityDataServiceEntity
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
+import org.hypertrace.gateway.service.common.sharding.InListSharder;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityQueryHandlerRegistry;
@@ -129,11 +132,17 @@ public class ExecutionVisitorTest {
     entityQueryHandlerRegistry = mock(EntityQueryHandlerRegistry.class);
     queryServiceEntityFetcher = mock(QueryServiceEntityFetcher.class);
     entityDataServiceEntityFetcher = mock(EntityDataServiceEntityFetcher.class);
+    when(queryServiceEntityFetcher.getEntitiesAndTotalAsync(any(), any(), any()))
+        .thenCallRealMethod();
+    when(entityDataServiceEntityFetcher.getEntitiesAndTotalAsync(any(), any(), any()))
+        .thenCallRealMethod();
     when(entityQueryHandlerRegistry.getEntityFetcher(QS_SOURCE))
         .thenReturn(queryServiceEntityFetcher);
     when(entityQueryHandlerRegistry.getEntityFetcher(EDS_SOURCE))
         .thenReturn(entityDataServiceEntityFetcher);
-    executionVisitor = new ExecutionVisitor(executionContext, entityQueryHandlerRegistry);
+    executionVisitor =
+        new ExecutionVisitor(
+            executionContext, entityQueryHandlerRegistry, Runnable::run, InListSharder.disabled());
   }
 
   @Test
@@ -213,6 +222,36 @@ public class ExecutionVisitorTest {
     }
   }
 
+  @Test
+  public void testUnionKeepsTheOrderOfTheResponses() {
+    Map<EntityKey, Builder> entities1 = new LinkedHashMap<>();
+    entities1.put(
+        EntityKey.of("id3"), Entity.newBuilder().putAttribute("key13", getStringValue("value13")));
+    entities1.put(
+        EntityKey.of("id1"), Entity.newBuilder().putAttribute("key11", getStringValue("value11")));
+    Map<EntityKey, Builder> entities2 = new LinkedHashMap<>();
+    entities2.put(
+        EntityKey.of("id2"), Entity.newBuilder().putAttribute("key22", getStringValue("value22")));
+    entities2.put(
+        EntityKey.of("id3"), Entity.newBuilder().putAttribute("key23", getStringValue("value23")));
+
+    EntityResponse finalResult =
+        ExecutionVisitor.union(
+            List.of(
+                new EntityResponse(new EntityFetcherResponse(entities1), entities1.size()),
+                new EntityResponse(new EntityFetcherResponse(entities2), entities2.size())));
+
+    Map<EntityKey, Builder> finalEntities =
+        finalResult.getEntityFetcherResponse().getEntityKeyBuilderMap();
+    assertEquals(
+        List.of(EntityKey.of("id3"), EntityKey.of("id1"), EntityKey.of("id2")),
+        List.copyOf(finalEntities.keySet()));
+    assertEquals(3, finalResult.getTotal());
+    assertEquals(
+        Map.of("key13", getStringValue("value13"), "key23", getStringValue("value23")),
+        finalEntities.get(EntityKey.of("id3")).getAttributeMap());
+  }
+
   @Test
   public void testConstructFilterFromChildNodesResultEmptyResults() {
     // Empty results.
@@ -228,7 +267,8 @@ public class ExecutionVisitorTest {
                             .build())
                     .build()));
 
-    Filter filter = executionVisitor.constructFilterFromChildNodesResult(result);
+    Filter filter =
+        Iterables.getOnlyElement(executionVisitor.constructFiltersFromChildNodesResult(result));
 
     Assertions.assertEquals(Filter.getDefaultInstance(), filter);
   }
@@ -248,7 +288,8 @@ public class ExecutionVisitorTest {
             .build();
     when(executionContext.getEntityIdExpressions()).thenReturn(List.of(entityIdExpression));
 
-    Filter filter = executionVisitor.constructFilterFromChildNodesResult(result);
+    Filter filter =
+        Iterables.getOnlyElement(executionVisitor.constructFiltersFromChildNodesResult(result));
 
     Assertions.assertEquals(0, filter.getChildFilterCount());
     Assertions.assertEquals(entityIdExpression, filter.getLhs());
@@ -284,7 +325,8 @@ public class ExecutionVisitorTest {
     when(executionContext.getEntityIdExpressions())
         .thenReturn(List.of(entityIdExpression0, entityIdExpression1));
 
-    Filter filter = executionVisitor.constructFilterFromChildNodesResult(result);
+    Filter filter =
+        Iterables.getOnlyElement(executionVisitor.constructFiltersFromChildNodesResult(result));
 
     Assertions.assertEquals(3, filter.getChildFilterCount());
     Assertions.assertEquals(Operator.OR, filter.getOperator());
@@ -419,20 +461,64 @@ public class ExecutionVisitorTest {
     when(executionContext.getTenantId()).thenReturn(tenantId);
     when(executionContext.getRequestHeaders()).thenReturn(requestHeaders);
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
-    when(queryServiceEntityFetcher.getEntities(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(entityFetcherResponse);
-    when(queryServiceEntityFetcher.getTotal(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(100L);
-    when(queryServiceEntityFetcher.getTimeAggregatedMetrics(
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(new EntityFetcherResponse());
+        .thenReturn(CompletableFuture.completedFuture(entityFetcherResponse));
+    when(queryServiceEntityFetcher.getTotalAsync(eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(100L));
+    when(queryServiceEntityFetcher.getTimeAggregatedMetricsAsync(
+            eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(new EntityFetcherResponse()));
 
     DataFetcherNode dataFetcherNode =
         new DataFetcherNode(
             "QS", entitiesRequest.getFilter(), limit, offset, orderByExpressions, true);
 
     compareEntityResponses(
-        new EntityResponse(entityFetcherResponse, 100L), executionVisitor.visit(dataFetcherNode));
+        new EntityResponse(entityFetcherResponse, 100L),
+        executionVisitor.visit(dataFetcherNode).join());
+  }
+
+  @Test
+  public void test_visitDataFetcherNode_fetchesTotalConcurrently() {
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType(AttributeScope.API.name())
+            .setStartTimeMillis(0)
+            .setEndTimeMillis(10)
+            .addSelection(buildExpression(API_NAME_ATTR))
+            .setLimit(10)
+            .build();
+    EntityFetcherResponse entityFetcherResponse =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("entity-id-0"),
+                Entity.newBuilder().putAttribute("API.name", getStringValue("entity-0"))));
+    CompletableFuture<EntityFetcherResponse> entitiesFuture = new CompletableFuture<>();
+    CompletableFuture<Long> totalFuture = new CompletableFuture<>();
+
+    when(expressionContext.getSourceToSelectionExpressionMap())
+        .thenReturn(Map.of("QS", List.of(buildExpression(API_NAME_ATTR))));
+    when(executionContext.getEntitiesRequest()).thenReturn(entitiesRequest);
+    when(executionContext.getTenantId()).thenReturn("TENANT_ID");
+    when(executionContext.getRequestHeaders()).thenReturn(Map.of());
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(queryServiceEntityFetcher.getEntitiesAsync(any(), any())).thenReturn(entitiesFuture);
+    when(queryServiceEntityFetcher.getTotalAsync(any(), eq(entitiesRequest)))
+        .thenReturn(totalFuture);
+
+    DataFetcherNode dataFetcherNode =
+        new DataFetcherNode("QS", entitiesRequest.getFilter(), 10, 0, List.of(), true);
+    CompletableFuture<EntityResponse> response = executionVisitor.visit(dataFetcherNode);
+
+    // both queries are in flight before either of them has completed
+    verify(queryServiceEntityFetcher).getEntitiesAsync(any(), any());
+    verify(queryServiceEntityFetcher).getTotalAsync(any(), eq(entitiesRequest));
+    assertFalse(response.isDone());
+
+    totalFuture.complete(100L);
+    entitiesFuture.complete(entityFetcherResponse);
+    compareEntityResponses(new EntityResponse(entityFetcherResponse, 100L), response.join());
   }
 
   @Test
@@ -477,11 +563,12 @@ public class ExecutionVisitorTest {
     when(executionContext.getTenantId()).thenReturn(tenantId);
     when(executionContext.getRequestHeaders()).thenReturn(requestHeaders);
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
-    when(queryServiceEntityFetcher.getEntities(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(entityFetcherResponse);
-    when(queryServiceEntityFetcher.getTimeAggregatedMetrics(
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(new EntityFetcherResponse());
+        .thenReturn(CompletableFuture.completedFuture(entityFetcherResponse));
+    when(queryServiceEntityFetcher.getTimeAggregatedMetricsAsync(
+            eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(new EntityFetcherResponse()));
 
     DataFetcherNode dataFetcherNode =
         new DataFetcherNode(
@@ -490,7 +577,7 @@ public class ExecutionVisitorTest {
     compareEntityResponses(
         new EntityResponse(
             entityFetcherResponse, entityFetcherResponse.getEntityKeyBuilderMap().size()),
-        executionVisitor.visit(dataFetcherNode));
+        executionVisitor.visit(dataFetcherNode).join());
   }
 
   @Test
@@ -535,17 +622,19 @@ public class ExecutionVisitorTest {
     when(executionContext.getTenantId()).thenReturn(tenantId);
     when(executionContext.getRequestHeaders()).thenReturn(requestHeaders);
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
-    when(entityDataServiceEntityFetcher.getEntities(
+    when(entityDataServiceEntityFetcher.getEntitiesAsync(
+            eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(entityFetcherResponse));
+    when(entityDataServiceEntityFetcher.getTotalAsync(
             eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(entityFetcherResponse);
-    when(entityDataServiceEntityFetcher.getTotal(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(100L);
+        .thenReturn(CompletableFuture.completedFuture(100L));
     DataFetcherNode dataFetcherNode =
         new DataFetcherNode(
             "EDS", entitiesRequest.getFilter(), limit, offset, orderByExpressions, true);
 
     compareEntityResponses(
-        new EntityResponse(entityFetcherResponse, 100), executionVisitor.visit(dataFetcherNode));
+        new EntityResponse(entityFetcherResponse, 100),
+        executionVisitor.visit(dataFetcherNode).join());
   }
 
   @Test
@@ -584,11 +673,12 @@ public class ExecutionVisitorTest {
     when(executionContext.getTenantId()).thenReturn(tenantId);
     when(executionContext.getRequestHeaders()).thenReturn(requestHeaders);
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
-    when(queryServiceEntityFetcher.getEntities(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(entityFetcherResponse);
-    when(queryServiceEntityFetcher.getTimeAggregatedMetrics(
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(new EntityFetcherResponse());
+        .thenReturn(CompletableFuture.completedFuture(entityFetcherResponse));
+    when(queryServiceEntityFetcher.getTimeAggregatedMetricsAsync(
+            eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(new EntityFetcherResponse()));
 
     // no pagination in data fetcher node
     DataFetcherNode dataFetcherNode = new DataFetcherNode("QS", entitiesRequest.getFilter());
@@ -596,8 +686,8 @@ public class ExecutionVisitorTest {
     compareEntityResponses(
         new EntityResponse(
             entityFetcherResponse, entityFetcherResponse.getEntityKeyBuilderMap().size()),
-        executionVisitor.visit(dataFetcherNode));
-    verify(queryServiceEntityFetcher, times(1)).getEntities(any(), any());
+        executionVisitor.visit(dataFetcherNode).join());
+    verify(queryServiceEntityFetcher, times(1)).getEntitiesAsync(any(), any());
   }
 
   @Test
@@ -723,17 +813,21 @@ public class ExecutionVisitorTest {
             .clearFilter()
             .setFilter(generateInFilter(API_ID_ATTR, List.of("entity-id-3", "entity-id-2")))
             .build();
-    when(queryServiceEntityFetcher.getEntities(
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             entitiesRequestContext, entitiesRequestForAttributes))
-        .thenReturn(attributesResponse);
-    when(queryServiceEntityFetcher.getTotal(eq(entitiesRequestContext), eq(entitiesRequest)))
-        .thenReturn(100L);
-    when(queryServiceEntityFetcher.getEntities(
+        .thenReturn(CompletableFuture.completedFuture(attributesResponse));
+    when(queryServiceEntityFetcher.getTotalAsync(eq(entitiesRequestContext), eq(entitiesRequest)))
+        .thenReturn(CompletableFuture.completedFuture(100L));
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             entitiesRequestContext, entitiesRequestForMetricAggregation))
-        .thenReturn(new EntityFetcherResponse(entityKeyBuilderResponseMap2));
-    when(queryServiceEntityFetcher.getTimeAggregatedMetrics(
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new EntityFetcherResponse(entityKeyBuilderResponseMap2)));
+    when(queryServiceEntityFetcher.getTimeAggregatedMetricsAsync(
             entitiesRequestContext, entitiesRequestForTimeAggregation))
-        .thenReturn(new EntityFetcherResponse(entityKeyBuilderResponseMap3));
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new EntityFetcherResponse(entityKeyBuilderResponseMap3)));
 
     DataFetcherNode dataFetcherNode =
         new DataFetcherNode(
@@ -750,13 +844,18 @@ public class ExecutionVisitorTest {
 
     compareEntityResponses(
         new EntityResponse(new EntityFetcherResponse(expectedEntityKeyBuilderResponseMap), 100),
-        executionVisitor.visit(selectionNode));
+        executionVisitor.visit(selectionNode).join());
   }
 
   @Test
   public void test_visitSelectionNode_differentSource_callSeparatedCalls() {
     ExecutionVisitor executionVisitor =
-        spy(new ExecutionVisitor(executionContext, entityQueryHandlerRegistry));
+        spy(
+            new ExecutionVisitor(
+                executionContext,
+                entityQueryHandlerRegistry,
+                Runnable::run,
+                InListSharder.disabled()));
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
     SelectionNode selectionNode =
         new SelectionNode.Builder(new NoOpNode())
@@ -768,13 +867,17 @@ public class ExecutionVisitorTest {
         Set.of(QS_SOURCE),
         Map.of(EDS_SOURCE, Collections.emptyList()),
         Map.of(QS_SOURCE, Collections.emptyList()));
-    when(entityDataServiceEntityFetcher.getEntities(any(), any())).thenReturn(result4);
-    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result4);
+    when(entityDataServiceEntityFetcher.getEntitiesAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(result4));
+    when(queryServiceEntityFetcher.getEntitiesAsync(any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(result4));
     when(executionVisitor.visit(any(NoOpNode.class)))
-        .thenReturn(new EntityResponse(result4, result4.getEntityKeyBuilderMap().size()));
-    executionVisitor.visit(selectionNode);
-    verify(entityDataServiceEntityFetcher).getEntities(any(), any());
-    verify(queryServiceEntityFetcher).getEntities(any(), any());
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new EntityResponse(result4, result4.getEntityKeyBuilderMap().size())));
+    executionVisitor.visit(selectionNode).join();
+    verify(entityDataServiceEntityFetcher).getEntitiesAsync(any(), any());
+    verify(queryServiceEntityFetcher).getEntitiesAsync(any(), any());
   }
 
   @Test
@@ -881,12 +984,14 @@ public class ExecutionVisitorTest {
             .clearFilter()
             .setFilter(generateInFilter(API_ID_ATTR, List.of("entity-id-3", "entity-id-2")))
             .build();
-    when(queryServiceEntityFetcher.getEntities(
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             entitiesRequestContext, entitiesRequestForAttributes))
-        .thenReturn(attributesResponse);
-    when(queryServiceEntityFetcher.getEntities(
+        .thenReturn(CompletableFuture.completedFuture(attributesResponse));
+    when(queryServiceEntityFetcher.getEntitiesAsync(
             entitiesRequestContext, entitiesRequestForMetricAggregation))
-        .thenReturn(new EntityFetcherResponse(entityKeyBuilderResponseMap2));
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                new EntityFetcherResponse(entityKeyBuilderResponseMap2)));
 
     SelectionNode childSelectionNode =
         new SelectionNode.Builder(new NoOpNode()).setAttrSelectionSources(Set.of("QS")).build();
@@ -901,7 +1006,7 @@ public class ExecutionVisitorTest {
     {
       compareEntityResponses(
           new EntityResponse(new EntityFetcherResponse(entityKeyBuilderResponseMap1), 4),
-          executionVisitor.visit(childSelectionNode));
+          executionVisitor.visit(childSelectionNode).join());
     }
 
     // selection node has child nodes. it should not set total entity keys, and fallback to the
@@ -909,7 +1014,7 @@ public class ExecutionVisitorTest {
     {
       compareEntityResponses(
           new EntityResponse(new EntityFetcherResponse(expectedEntityKeyBuilderResponseMap), 4),
-          executionVisitor.visit(selectionNode));
+          executionVisitor.visit(selectionNode).join());
     }
   }
 
@@ -925,7 +1030,12 @@ public class ExecutionVisitorTest {
             .setFilter(generateEQFilter(API_DISCOVERY_STATE, "DISCOVERED"))
             .build();
     ExecutionVisitor executionVisitor =
-        spy(new ExecutionVisitor(executionContext, entityQueryHandlerRegistry));
+        spy(
+            new ExecutionVisitor(
+                executionContext,
+                entityQueryHandlerRegistry,
+                Runnable::run,
+                InListSharder.disabled()));
     when(executionContext.getEntitiesRequest()).thenReturn(entitiesRequest);
 
     // Selection node with NoOp child, to short-circuit the call to first service.
@@ -935,10 +1045,10 @@ public class ExecutionVisitorTest {
             .setAggMetricSelectionSources(Set.of(QS_SOURCE))
             .build();
 
-    EntityResponse response = executionVisitor.visit(selectionNode);
+    EntityResponse response = executionVisitor.visit(selectionNode).join();
     Assertions.assertTrue(response.getEntityFetcherResponse().isEmpty());
     Assertions.assertEquals(0, response.getTotal());
-    verify(queryServiceEntityFetcher, never()).getEntities(any(), any());
+    verify(queryServiceEntityFetcher, never()).getEntitiesAsync(any(), any());
   }
 
   private MetricSeries getMockMetricSeries(int period, String aggregation) {
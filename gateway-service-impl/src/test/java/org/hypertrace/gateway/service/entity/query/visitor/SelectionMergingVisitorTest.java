@@ -0,0 +1,94 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.v1.common.Filter;
+import org.junit.jupiter.api.Test;
+
+public class SelectionMergingVisitorTest {
+  @Test
+  public void testSelectionsAbovePaginationAreMerged() {
+    DataFetcherNode dataFetcherNode = new DataFetcherNode("QS", Filter.getDefaultInstance());
+    SortAndPaginateNode sortAndPaginateNode =
+        new SortAndPaginateNode(dataFetcherNode, 10, 0, Collections.emptyList());
+    QueryNode executionTree =
+        new SelectionNode.Builder(
+                new SelectionNode.Builder(
+                        new SelectionNode.Builder(sortAndPaginateNode)
+                            .setAttrSelectionSources(Set.of("EDS", "QS"))
+                            .build())
+                    .setAggMetricSelectionSources(Set.of("QS"))
+                    .build())
+            .setTimeSeriesSelectionSources(Set.of("QS"))
+            .build();
+
+    SelectionNode mergedNode =
+        (SelectionNode) executionTree.acceptVisitor(new SelectionMergingVisitor());
+
+    assertEquals(Set.of("EDS", "QS"), mergedNode.getAttrSelectionSources());
+    assertEquals(Set.of("QS"), mergedNode.getAggMetricSelectionSources());
+    assertEquals(Set.of("QS"), mergedNode.getTimeSeriesSelectionSources());
+    assertTrue(mergedNode.getChildNode() instanceof SortAndPaginateNode);
+    assertSame(dataFetcherNode, ((SortAndPaginateNode) mergedNode.getChildNode()).getChildNode());
+  }
+
+  @Test
+  public void testSelectionsAbovePaginationPushedDownAreMerged() {
+    DataFetcherNode dataFetcherNode =
+        new DataFetcherNode("EDS", Filter.getDefaultInstance(), 10, 0, List.of(), true);
+    QueryNode executionTree =
+        new SelectionNode.Builder(
+                new SelectionNode.Builder(dataFetcherNode)
+                    .setAttrSelectionSources(Set.of("QS"))
+                    .build())
+            .setAggMetricSelectionSources(Set.of("QS"))
+            .build();
+
+    SelectionNode mergedNode =
+        (SelectionNode) executionTree.acceptVisitor(new SelectionMergingVisitor());
+
+    assertEquals(Set.of("QS"), mergedNode.getAttrSelectionSources());
+    assertEquals(Set.of("QS"), mergedNode.getAggMetricSelectionSources());
+    assertSame(dataFetcherNode, mergedNode.getChildNode());
+  }
+
+  @Test
+  public void testSelectionsBelowPaginationAreNotMerged() {
+    DataFetcherNode dataFetcherNode = new DataFetcherNode("QS", Filter.getDefaultInstance());
+    QueryNode executionTree =
+        new SelectionNode.Builder(
+                new SortAndPaginateNode(
+                    new SelectionNode.Builder(
+                            new SelectionNode.Builder(dataFetcherNode)
+                                .setAttrSelectionSources(Set.of("EDS"))
+                                .build())
+                        .setAggMetricSelectionSources(Set.of("QS"))
+                        .build(),
+                    10,
+                    0,
+                    Collections.emptyList()))
+            .setTimeSeriesSelectionSources(Set.of("QS"))
+            .build();
+
+    SelectionNode timeSeriesNode =
+        (SelectionNode) executionTree.acceptVisitor(new SelectionMergingVisitor());
+
+    assertEquals(Set.of("QS"), timeSeriesNode.getTimeSeriesSelectionSources());
+    SortAndPaginateNode sortAndPaginateNode = (SortAndPaginateNode) timeSeriesNode.getChildNode();
+    SelectionNode aggMetricNode = (SelectionNode) sortAndPaginateNode.getChildNode();
+    assertEquals(Set.of("QS"), aggMetricNode.getAggMetricSelectionSources());
+    assertEquals(Set.of(), aggMetricNode.getAttrSelectionSources());
+    SelectionNode attrNode = (SelectionNode) aggMetricNode.getChildNode();
+    assertEquals(Set.of("EDS"), attrNode.getAttrSelectionSources());
+    assertSame(dataFetcherNode, attrNode.getChildNode());
+  }
+}
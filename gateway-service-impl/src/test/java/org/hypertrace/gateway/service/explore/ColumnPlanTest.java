@@ -0,0 +1,134 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.Value;
+import org.hypertrace.core.query.service.api.ValueType;
+import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
+import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.junit.jupiter.api.Test;
+
+public class ColumnPlanTest {
+  private static final String API_NAME = "API.apiName";
+  private static final String API_DURATION = "API.duration";
+  private static final String API_START_TIME = "API.startTime";
+
+  private static final Map<String, AttributeMetadata> ATTRIBUTE_METADATA =
+      Map.of(
+          API_NAME, attributeMetadata(API_NAME, AttributeKind.TYPE_STRING),
+          API_DURATION, attributeMetadata(API_DURATION, AttributeKind.TYPE_INT64),
+          API_START_TIME, attributeMetadata(API_START_TIME, AttributeKind.TYPE_TIMESTAMP));
+
+  private static final Map<String, FunctionExpression> FUNCTIONS =
+      Map.of(
+          "SUM_duration", function(FunctionType.SUM, "SUM_duration"),
+          "AVG_duration", function(FunctionType.AVG, "AVG_duration"),
+          "COUNT_duration", function(FunctionType.COUNT, "COUNT_duration"));
+
+  @Test
+  public void testColumnsAreConvertedAsPerCell() {
+    List<String> columnNames =
+        List.of(
+            API_NAME, API_START_TIME, "SUM_duration", "AVG_duration", "COUNT_duration", "unknown");
+    List<Value> values =
+        List.of(
+            stringValue("api-1"),
+            stringValue("1620000000000"),
+            stringValue("12"),
+            stringValue("2.5"),
+            stringValue("4"),
+            stringValue("other"));
+
+    ColumnPlan columnPlan =
+        ColumnPlan.compile(columnNames, ATTRIBUTE_METADATA, ATTRIBUTE_METADATA, FUNCTIONS::get);
+
+    for (int i = 0; i < columnNames.size(); i++) {
+      assertEquals(columnNames.get(i), columnPlan.getColumnName(i));
+      assertEquals(convertCell(columnNames.get(i), values.get(i)), convert(columnPlan, i, values));
+    }
+  }
+
+  @Test
+  public void testColumnsBeforeTheFirstAttributeColumnAreNotResolved() {
+    List<String> resolvedColumnNames = new ArrayList<>();
+
+    ColumnPlan columnPlan =
+        ColumnPlan.compile(
+            List.of("dateTimeConvert", API_NAME, "SUM_duration"),
+            1,
+            ATTRIBUTE_METADATA,
+            ATTRIBUTE_METADATA,
+            columnName -> {
+              resolvedColumnNames.add(columnName);
+              return FUNCTIONS.get(columnName);
+            });
+
+    assertEquals(List.of(API_NAME, "SUM_duration"), resolvedColumnNames);
+    assertEquals(3, columnPlan.getColumnCount());
+    assertEquals("dateTimeConvert", columnPlan.getColumnName(0));
+    assertNull(columnPlan.getAttributeMetadata(0));
+    assertEquals(ATTRIBUTE_METADATA.get(API_NAME), columnPlan.getAttributeMetadata(1));
+    assertEquals(AttributeKind.TYPE_INT64, columnPlan.getAttributeMetadata(2).getValueKind());
+  }
+
+  private static org.hypertrace.gateway.service.v1.common.Value convert(
+      ColumnPlan columnPlan, int columnIndex, List<Value> values) {
+    AttributeMetadata attributeMetadata = columnPlan.getAttributeMetadata(columnIndex);
+    return attributeMetadata == null
+        ? QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(values.get(columnIndex))
+        : QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+            values.get(columnIndex), attributeMetadata);
+  }
+
+  /** The conversion of a single cell, as done before the metadata was resolved per column. */
+  private static org.hypertrace.gateway.service.v1.common.Value convertCell(
+      String columnName, Value value) {
+    FunctionExpression function = FUNCTIONS.get(columnName);
+    if (function == null) {
+      return QueryAndGatewayDtoConverter.convertToGatewayValue(
+          columnName, value, ATTRIBUTE_METADATA);
+    }
+    return QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue(
+        MetricAggregationFunctionUtil.getValueTypeForFunctionType(function, ATTRIBUTE_METADATA),
+        ATTRIBUTE_METADATA,
+        ColumnMetadata.newBuilder()
+            .setColumnName(columnName)
+            .setValueType(ValueType.STRING)
+            .build(),
+        value);
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+
+  private static FunctionExpression function(FunctionType functionType, String alias) {
+    return FunctionExpression.newBuilder()
+        .setFunction(functionType)
+        .setAlias(alias)
+        .addArguments(
+            Expression.newBuilder()
+                .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(API_DURATION)))
+        .build();
+  }
+
+  private static AttributeMetadata attributeMetadata(String id, AttributeKind valueKind) {
+    return AttributeMetadata.newBuilder()
+        .setId(id)
+        .setValueKind(valueKind)
+        .setType(AttributeType.ATTRIBUTE)
+        .build();
+  }
+}
@@ -1,12 +1,18 @@
 package org.hypertrace.gateway.service.explore;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.GeneratedMessageV3;
+import com.typesafe.config.ConfigFactory;
 import java.util.HashMap;
 import java.util.stream.Stream;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AbstractServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.cache.ResultCacheConfig;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownConfig;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeShardingConfig;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
 
@@ -40,7 +46,17 @@ public class ExploreServiceTest extends AbstractServiceTest<ExploreRequest, Expl
       ScopeFilterConfigs scopeFilterConfigs) {
     ExploreService exploreService =
         new ExploreService(
-            queryServiceClient, 500, null, attributeMetadataProvider, scopeFilterConfigs, null);
+            QueryServiceAsyncClient.fromBlockingClient(queryServiceClient, Runnable::run),
+            500,
+            null,
+            attributeMetadataProvider,
+            scopeFilterConfigs,
+            null,
+            ResultCacheConfig.from(ConfigFactory.empty()),
+            GroupedTimeAggregationsConfig.from(ConfigFactory.empty()),
+            GroupByPushdownConfig.from(ConfigFactory.empty()),
+            TimeRangeShardingConfig.from(ConfigFactory.empty()),
+            MoreExecutors.newDirectExecutorService());
     return exploreService.explore(TENANT_ID, request, new HashMap<>());
   }
 }
@@ -1,10 +1,32 @@
 package org.hypertrace.gateway.service.explore;
 
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownCapabilities;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownConfig;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
@@ -12,15 +34,22 @@ import org.hypertrace.gateway.service.v1.common.FunctionType;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
 import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.Row;
 import org.hypertrace.gateway.service.v1.common.SortOrder;
 import org.hypertrace.gateway.service.v1.common.TimeAggregation;
 import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 public class RequestHandlerTest {
+  private static final String API_NAME = "API.apiName";
+  private static final String API_DURATION = "API.duration";
+  private static final String SUM_DURATION = "SUM_duration";
+  // the hidden column counting the rows the rest group is computed from
+  private static final String REST_GROUP_COUNT = "__restGroup_count_0";
 
   @Test
   public void orderByExpressionsWithFunction_shouldMatchCorrespondingSelections() {
@@ -75,7 +104,7 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class), 500, mock(AttributeMetadataProvider.class));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -152,7 +181,7 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class), 500, mock(AttributeMetadataProvider.class));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -229,7 +258,7 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class), 500, mock(AttributeMetadataProvider.class));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -301,7 +330,7 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class), 500, mock(AttributeMetadataProvider.class));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -333,4 +362,261 @@ public class RequestHandlerTest {
             .build(),
         orderByExpressions.get(1));
   }
+
+  @Test
+  public void theRestGroupIsComputedFromTheTotalOverAllTheGroups() {
+    List<String> executedQueries = new ArrayList<>();
+    RequestHandler requestHandler =
+        createTheRestGroupRequestHandler(
+            executedQueries, new String[][] {{"10.0", "5"}}, new String[][] {{"7.0"}});
+
+    ExploreRequest request = buildTheRestGroupRequest();
+    ExploreResponse response =
+        requestHandler
+            .handleRequest(new ExploreRequestContext("tenant1", request, Map.of()), request)
+            .build();
+
+    Assertions.assertEquals(List.of("TOTAL", "GROUPS"), executedQueries);
+    // without the hidden columns the rest group is computed from
+    Assertions.assertEquals(
+        Set.of(durationRow("a", 1.5), durationRow("b", 2.5), durationRow("__Other", 6.0)),
+        Set.copyOf(response.getRowList()));
+  }
+
+  @Test
+  public void theRestGroupIsQueriedWhenItsSumComputesNegative() {
+    List<String> executedQueries = new ArrayList<>();
+    RequestHandler requestHandler =
+        createTheRestGroupRequestHandler(
+            executedQueries, new String[][] {{"3.0", "5"}}, new String[][] {{"7.0"}});
+
+    ExploreRequest request = buildTheRestGroupRequest();
+    ExploreResponse response =
+        requestHandler
+            .handleRequest(new ExploreRequestContext("tenant1", request, Map.of()), request)
+            .build();
+
+    Assertions.assertEquals(List.of("TOTAL", "GROUPS", "THE_REST"), executedQueries);
+    Assertions.assertEquals(
+        Set.of(durationRow("a", 1.5), durationRow("b", 2.5), durationRow("__Other", 7.0)),
+        Set.copyOf(response.getRowList()));
+  }
+
+  @Test
+  public void theOrderByLimitAndOffsetArePushedDownWhenTheSourceAppliesThem() {
+    List<QueryRequest> executedQueries = new ArrayList<>();
+    RequestHandler requestHandler =
+        createPushdownRequestHandler(
+            executedQueries,
+            pushdownCapabilities(true, true),
+            new String[][] {{"b", "3.0"}, {"c", "2.0"}});
+
+    ExploreRequest request = buildPushdownRequest(orderBySumDuration());
+    ExploreResponse response =
+        requestHandler
+            .handleRequest(new ExploreRequestContext("tenant1", request, Map.of()), request)
+            .build();
+
+    Assertions.assertEquals(1, executedQueries.size());
+    QueryRequest queryRequest = executedQueries.get(0);
+    Assertions.assertEquals(
+        QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(List.of(orderBySumDuration())),
+        queryRequest.getOrderByList());
+    Assertions.assertEquals(2, queryRequest.getLimit());
+    Assertions.assertEquals(1, queryRequest.getOffset());
+    // the source already skipped the offset groups
+    Assertions.assertEquals(
+        List.of(durationRow("b", 3.0), durationRow("c", 2.0)), response.getRowList());
+  }
+
+  @Test
+  public void theOffsetIsAppliedLocallyWhenTheSourceOnlySortsAndLimits() {
+    List<QueryRequest> executedQueries = new ArrayList<>();
+    RequestHandler requestHandler =
+        createPushdownRequestHandler(
+            executedQueries,
+            pushdownCapabilities(true, false),
+            new String[][] {{"c", "2.0"}, {"a", "4.0"}, {"b", "3.0"}});
+
+    ExploreRequest request = buildPushdownRequest(orderBySumDuration());
+    ExploreResponse response =
+        requestHandler
+            .handleRequest(new ExploreRequestContext("tenant1", request, Map.of()), request)
+            .build();
+
+    QueryRequest queryRequest = executedQueries.get(0);
+    Assertions.assertEquals(
+        QueryAndGatewayDtoConverter.convertToQueryOrderByExpressions(List.of(orderBySumDuration())),
+        queryRequest.getOrderByList());
+    // the groups of the page and the ones before it
+    Assertions.assertEquals(3, queryRequest.getLimit());
+    Assertions.assertEquals(0, queryRequest.getOffset());
+    Assertions.assertEquals(
+        List.of(durationRow("b", 3.0), durationRow("c", 2.0)), response.getRowList());
+  }
+
+  @Test
+  public void theOrderByIsNotPushedDownWhenNotOnTheGroupedColumns() {
+    List<QueryRequest> executedQueries = new ArrayList<>();
+    RequestHandler requestHandler =
+        createPushdownRequestHandler(
+            executedQueries,
+            pushdownCapabilities(true, true),
+            new String[][] {{"c", "2.0"}, {"a", "4.0"}, {"b", "3.0"}});
+
+    OrderByExpression orderByDuration =
+        OrderByExpression.newBuilder()
+            .setOrder(SortOrder.DESC)
+            .setExpression(
+                Expression.newBuilder()
+                    .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(API_DURATION)))
+            .build();
+    ExploreRequest request = buildPushdownRequest(orderByDuration);
+    requestHandler
+        .handleRequest(new ExploreRequestContext("tenant1", request, Map.of()), request)
+        .build();
+
+    QueryRequest queryRequest = executedQueries.get(0);
+    Assertions.assertEquals(0, queryRequest.getOrderByCount());
+    Assertions.assertEquals(
+        QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT, queryRequest.getLimit());
+    Assertions.assertEquals(0, queryRequest.getOffset());
+  }
+
+  private RequestHandler createPushdownRequestHandler(
+      List<QueryRequest> executedQueries,
+      GroupByPushdownCapabilities groupByPushdownCapabilities,
+      String[][] groups) {
+    QueryServiceAsyncClient queryServiceClient = mock(QueryServiceAsyncClient.class);
+    when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              executedQueries.add(invocation.getArgument(0));
+              return CompletableFuture.completedFuture(
+                  List.of(getResultSetChunk(List.of(API_NAME, SUM_DURATION), groups)));
+            });
+    return new RequestHandler(
+        queryServiceClient, 500, createAttributeMetadataProvider(), groupByPushdownCapabilities);
+  }
+
+  private static GroupByPushdownCapabilities pushdownCapabilities(
+      boolean orderByAndLimit, boolean offset) {
+    return GroupByPushdownConfig.from(
+            ConfigFactory.parseMap(
+                Map.of(
+                    "group.by.pushdown.config.QS.order.by.limit",
+                    orderByAndLimit,
+                    "group.by.pushdown.config.QS.offset",
+                    offset)))
+        .getCapabilities("QS");
+  }
+
+  private static ExploreRequest buildPushdownRequest(OrderByExpression orderBy) {
+    return ExploreRequest.newBuilder(buildTheRestGroupRequest())
+        .setIncludeRestGroup(false)
+        .setOffset(1)
+        .addOrderBy(orderBy)
+        .build();
+  }
+
+  private static OrderByExpression orderBySumDuration() {
+    return OrderByExpression.newBuilder()
+        .setOrder(SortOrder.DESC)
+        .setExpression(
+            Expression.newBuilder()
+                .setFunction(
+                    FunctionExpression.newBuilder()
+                        .setFunction(FunctionType.SUM)
+                        .setAlias(SUM_DURATION)
+                        .addArguments(
+                            Expression.newBuilder()
+                                .setColumnIdentifier(
+                                    ColumnIdentifier.newBuilder().setColumnName(API_DURATION)))))
+        .build();
+  }
+
+  private RequestHandler createTheRestGroupRequestHandler(
+      List<String> executedQueries, String[][] total, String[][] theRest) {
+    QueryServiceAsyncClient queryServiceClient = mock(QueryServiceAsyncClient.class);
+    when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              QueryRequest queryRequest = invocation.getArgument(0);
+              ResultSetChunk chunk;
+              if (queryRequest.getGroupByCount() > 0) {
+                executedQueries.add("GROUPS");
+                chunk =
+                    getResultSetChunk(
+                        List.of(API_NAME, SUM_DURATION, REST_GROUP_COUNT),
+                        new String[][] {{"a", "1.5", "1"}, {"b", "2.5", "2"}});
+              } else if (queryRequest.getSelectionCount() > 1) {
+                executedQueries.add("TOTAL");
+                chunk = getResultSetChunk(List.of(SUM_DURATION, REST_GROUP_COUNT), total);
+              } else {
+                executedQueries.add("THE_REST");
+                chunk = getResultSetChunk(List.of(SUM_DURATION), theRest);
+              }
+              return CompletableFuture.completedFuture(List.of(chunk));
+            });
+
+    return new RequestHandler(queryServiceClient, 500, createAttributeMetadataProvider());
+  }
+
+  private static AttributeMetadataProvider createAttributeMetadataProvider() {
+    AttributeMetadataProvider attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributeMetadata(
+            any(RequestContext.class), anyString(), anyString()))
+        .thenAnswer(
+            invocation ->
+                Optional.of(
+                    attributeMetadata(
+                        invocation.getArgument(1) + "." + invocation.getArgument(2),
+                        AttributeKind.TYPE_STRING)));
+    when(attributeMetadataProvider.getAttributesMetadata(any(RequestContext.class), eq("API")))
+        .thenReturn(
+            Map.of(
+                API_NAME, attributeMetadata(API_NAME, AttributeKind.TYPE_STRING),
+                API_DURATION, attributeMetadata(API_DURATION, AttributeKind.TYPE_DOUBLE)));
+    return attributeMetadataProvider;
+  }
+
+  private static ExploreRequest buildTheRestGroupRequest() {
+    return ExploreRequest.newBuilder()
+        .setContext("API")
+        .setStartTimeMillis(0)
+        .setEndTimeMillis(60_000)
+        .addSelection(
+            Expression.newBuilder()
+                .setFunction(
+                    FunctionExpression.newBuilder()
+                        .setFunction(FunctionType.SUM)
+                        .setAlias(SUM_DURATION)
+                        .addArguments(
+                            Expression.newBuilder()
+                                .setColumnIdentifier(
+                                    ColumnIdentifier.newBuilder().setColumnName(API_DURATION)))))
+        .addGroupBy(
+            Expression.newBuilder()
+                .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(API_NAME)))
+        .setLimit(2)
+        .setIncludeRestGroup(true)
+        .build();
+  }
+
+  private static Row durationRow(String apiName, double sum) {
+    return Row.newBuilder()
+        .putColumns(
+            API_NAME, Value.newBuilder().setValueType(ValueType.STRING).setString(apiName).build())
+        .putColumns(
+            SUM_DURATION, Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(sum).build())
+        .build();
+  }
+
+  private static AttributeMetadata attributeMetadata(String id, AttributeKind valueKind) {
+    return AttributeMetadata.newBuilder()
+        .setId(id)
+        .setValueKind(valueKind)
+        .setType(AttributeType.ATTRIBUTE)
+        .build();
+  }
 }
@@ -1,6 +1,7 @@
 package org.hypertrace.gateway.service.explore;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.Expression;
@@ -109,6 +110,30 @@ public class RowComparatorTest {
     Assertions.assertEquals(builder3, rowBuilders.get(4));
   }
 
+  @Test
+  public void testCompiledOrderMatchesComparator() {
+    List<Row.Builder> rowBuilders = getUnsortedRowBuilders();
+    rowBuilders.add(
+        Row.newBuilder()
+            .putColumns(
+                "v1", Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(3.5).build()));
+
+    List<OrderByExpression> orderByExpressions = new ArrayList<>();
+    orderByExpressions.add(createOrderByExpresssion("v4", SortOrder.DESC, false));
+    orderByExpressions.add(createOrderByExpresssion("v2", SortOrder.ASC, true));
+    orderByExpressions.add(createOrderByExpresssion("v1", SortOrder.DESC, true));
+
+    RowComparator rowComparator = new RowComparator(orderByExpressions);
+    Comparator<Integer> compiledComparator = rowComparator.compile(rowBuilders);
+    for (int i = 0; i < rowBuilders.size(); i++) {
+      for (int j = 0; j < rowBuilders.size(); j++) {
+        Assertions.assertEquals(
+            Integer.signum(rowComparator.compare(rowBuilders.get(i), rowBuilders.get(j))),
+            Integer.signum(compiledComparator.compare(i, j)));
+      }
+    }
+  }
+
   private List<Row.Builder> getUnsortedRowBuilders() {
     List<Row.Builder> rowBuilders = new ArrayList<>();
 
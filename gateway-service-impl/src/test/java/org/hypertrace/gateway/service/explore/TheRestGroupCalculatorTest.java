@@ -0,0 +1,274 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.LiteralConstant;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.junit.jupiter.api.Test;
+
+public class TheRestGroupCalculatorTest {
+  private static final String COUNT_COLUMN = "__restGroup_count_0";
+  private static final String SUM_COLUMN = "__restGroup_sum_0";
+
+  @Test
+  public void testOnlyRequestsWithDecomposableAggregationsAreCalculated() {
+    assertTrue(
+        TheRestGroupCalculator.of(request(function(FunctionType.COUNT, "calls"))).isPresent());
+    assertTrue(
+        TheRestGroupCalculator.of(
+                request(
+                    function(FunctionType.AVG, "duration"), function(FunctionType.MAX, "duration")))
+            .isPresent());
+
+    assertFalse(
+        TheRestGroupCalculator.of(
+                request(
+                    function(FunctionType.COUNT, "calls"),
+                    function(FunctionType.DISTINCTCOUNT, "duration")))
+            .isPresent());
+    assertFalse(
+        TheRestGroupCalculator.of(
+                request(function(FunctionType.PERCENTILE, "duration", literal(99))))
+            .isPresent());
+    assertFalse(
+        TheRestGroupCalculator.of(
+                request(function(FunctionType.COUNT, "calls"))
+                    .toBuilder()
+                    .setIncludeRestGroup(false)
+                    .build())
+            .isPresent());
+  }
+
+  @Test
+  public void testHiddenColumnsAreSelected() {
+    ExploreRequest request =
+        request(function(FunctionType.COUNT, "calls"), function(FunctionType.AVG, "duration"));
+    TheRestGroupCalculator calculator = TheRestGroupCalculator.of(request).orElseThrow();
+
+    ExploreRequest totalRequest = calculator.createTotalRequest(request);
+
+    assertEquals(0, totalRequest.getGroupByCount());
+    assertFalse(totalRequest.getIncludeRestGroup());
+    assertEquals(
+        List.of("COUNT_calls", "AVG_duration", COUNT_COLUMN, "__restGroup_count_1", SUM_COLUMN),
+        totalRequest.getSelectionList().stream()
+            .map(selection -> selection.getFunction().getAlias())
+            .collect(Collectors.toList()));
+    assertEquals(
+        totalRequest.getSelectionList(),
+        calculator.addHiddenSelections(request).getSelectionList());
+  }
+
+  @Test
+  public void testRestGroupIsTotalMinusGroups() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(
+                request(
+                    function(FunctionType.COUNT, "duration"),
+                    function(FunctionType.SUM, "duration"),
+                    function(FunctionType.AVG, "duration"),
+                    function(FunctionType.MAX, "duration")))
+            .orElseThrow();
+    Row total =
+        row(
+            Map.of(
+                "COUNT_duration",
+                longValue(10),
+                "SUM_duration",
+                doubleValue(100),
+                "AVG_duration",
+                doubleValue(10),
+                "MAX_duration",
+                doubleValue(50),
+                COUNT_COLUMN,
+                longValue(10),
+                SUM_COLUMN,
+                doubleValue(100)));
+    List<Row.Builder> groups =
+        List.of(
+            row(Map.of(
+                    "COUNT_duration",
+                    longValue(4),
+                    "SUM_duration",
+                    doubleValue(20),
+                    "AVG_duration",
+                    doubleValue(5),
+                    "MAX_duration",
+                    doubleValue(10),
+                    COUNT_COLUMN,
+                    longValue(4),
+                    SUM_COLUMN,
+                    doubleValue(20)))
+                .toBuilder(),
+            row(Map.of(
+                    "COUNT_duration",
+                    longValue(2),
+                    "SUM_duration",
+                    doubleValue(40),
+                    "AVG_duration",
+                    doubleValue(20),
+                    "MAX_duration",
+                    doubleValue(30),
+                    COUNT_COLUMN,
+                    longValue(2),
+                    SUM_COLUMN,
+                    doubleValue(40)))
+                .toBuilder());
+
+    Row rest = calculator.calculate(total, groups).orElseThrow().build();
+
+    assertEquals(
+        Map.of(
+            "COUNT_duration", longValue(4),
+            "SUM_duration", doubleValue(40),
+            "AVG_duration", doubleValue(10),
+            "MAX_duration", doubleValue(50)),
+        rest.getColumnsMap());
+  }
+
+  @Test
+  public void testRestGroupIsNotCalculatedWhenExtremeValueIsInGroups() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(request(function(FunctionType.MIN, "duration"))).orElseThrow();
+    Row total = row(Map.of("MIN_duration", doubleValue(1), COUNT_COLUMN, longValue(10)));
+    List<Row.Builder> groups =
+        List.of(
+            row(Map.of("MIN_duration", doubleValue(1), COUNT_COLUMN, longValue(4))).toBuilder(),
+            row(Map.of("MIN_duration", doubleValue(3), COUNT_COLUMN, longValue(4))).toBuilder());
+
+    assertEquals(Optional.empty(), calculator.calculate(total, groups));
+  }
+
+  @Test
+  public void testAverageOfEmptyRestGroupIsNotCalculated() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(request(function(FunctionType.AVG, "duration"))).orElseThrow();
+    Row total =
+        row(
+            Map.of(
+                "AVG_duration",
+                doubleValue(5),
+                COUNT_COLUMN,
+                longValue(4),
+                SUM_COLUMN,
+                doubleValue(20)));
+    List<Row.Builder> groups =
+        List.of(
+            row(Map.of(
+                    "AVG_duration",
+                    doubleValue(5),
+                    COUNT_COLUMN,
+                    longValue(4),
+                    SUM_COLUMN,
+                    doubleValue(20)))
+                .toBuilder());
+
+    assertEquals(Optional.empty(), calculator.calculate(total, groups));
+  }
+
+  @Test
+  public void testSumOfEmptyRestGroupIsZero() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(request(function(FunctionType.SUM, "duration"))).orElseThrow();
+    // 0.3 - 0.1 - 0.2 leaves a negative residue
+    Row total = row(Map.of("SUM_duration", doubleValue(0.3), COUNT_COLUMN, longValue(3)));
+    List<Row.Builder> groups =
+        List.of(
+            row(Map.of("SUM_duration", doubleValue(0.1), COUNT_COLUMN, longValue(1))).toBuilder(),
+            row(Map.of("SUM_duration", doubleValue(0.2), COUNT_COLUMN, longValue(2))).toBuilder());
+
+    Row rest = calculator.calculate(total, groups).orElseThrow().build();
+
+    assertEquals(Map.of("SUM_duration", doubleValue(0)), rest.getColumnsMap());
+  }
+
+  @Test
+  public void testNegativeSumOfRestGroupIsNotCalculated() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(request(function(FunctionType.SUM, "duration"))).orElseThrow();
+    Row total = row(Map.of("SUM_duration", doubleValue(0.3), COUNT_COLUMN, longValue(4)));
+    List<Row.Builder> groups =
+        List.of(
+            row(Map.of("SUM_duration", doubleValue(0.1), COUNT_COLUMN, longValue(1))).toBuilder(),
+            row(Map.of("SUM_duration", doubleValue(0.2), COUNT_COLUMN, longValue(2))).toBuilder());
+
+    assertEquals(Optional.empty(), calculator.calculate(total, groups));
+  }
+
+  @Test
+  public void testHiddenColumnsAreRemoved() {
+    TheRestGroupCalculator calculator =
+        TheRestGroupCalculator.of(request(function(FunctionType.AVG, "duration"))).orElseThrow();
+    Row.Builder group =
+        row(Map.of(
+                "AVG_duration",
+                doubleValue(5),
+                COUNT_COLUMN,
+                longValue(4),
+                SUM_COLUMN,
+                doubleValue(20)))
+            .toBuilder();
+
+    calculator.removeHiddenColumns(List.of(group));
+
+    assertEquals(Map.of("AVG_duration", doubleValue(5)), group.getColumnsMap());
+  }
+
+  private static ExploreRequest request(Expression... selections) {
+    return ExploreRequest.newBuilder()
+        .addAllSelection(List.of(selections))
+        .addGroupBy(column("name"))
+        .setIncludeRestGroup(true)
+        .setLimit(2)
+        .build();
+  }
+
+  private static Expression function(
+      FunctionType functionType, String columnName, Expression... otherArguments) {
+    return Expression.newBuilder()
+        .setFunction(
+            FunctionExpression.newBuilder()
+                .setFunction(functionType)
+                .setAlias(functionType + "_" + columnName)
+                .addArguments(column(columnName))
+                .addAllArguments(List.of(otherArguments)))
+        .build();
+  }
+
+  private static Expression column(String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+
+  private static Expression literal(long value) {
+    return Expression.newBuilder()
+        .setLiteral(LiteralConstant.newBuilder().setValue(longValue(value)))
+        .build();
+  }
+
+  private static Row row(Map<String, Value> columns) {
+    return Row.newBuilder().putAllColumns(columns).build();
+  }
+
+  private static Value longValue(long value) {
+    return Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private static Value doubleValue(double value) {
+    return Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+  }
+}
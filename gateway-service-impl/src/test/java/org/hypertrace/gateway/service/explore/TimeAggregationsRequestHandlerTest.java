@@ -3,8 +3,9 @@ package org.hypertrace.gateway.service.explore;
 import static org.mockito.Mockito.mock;
 
 import java.util.List;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
@@ -64,7 +65,10 @@ public class TimeAggregationsRequestHandlerTest {
 
     TimeAggregationsRequestHandler requestHandler =
         new TimeAggregationsRequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            TimeSeriesCache.disabled());
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -119,7 +123,10 @@ public class TimeAggregationsRequestHandlerTest {
 
     TimeAggregationsRequestHandler requestHandler =
         new TimeAggregationsRequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceAsyncClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            TimeSeriesCache.disabled());
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -0,0 +1,234 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
+import org.hypertrace.gateway.service.common.pushdown.GroupByPushdownCapabilities;
+import org.hypertrace.gateway.service.common.sharding.TimeRangeSharder;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.SortOrder;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ColumnName;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimeAggregationsWithGroupByRequestHandlerTest {
+  private static final String TENANT_ID = "tenant1";
+  private static final String NAME = "API.apiName";
+  private static final String CALLS = "API.numCalls";
+  private static final String COUNT_CALLS = "COUNT_calls";
+  private static final String TIME_COLUMN = "dateTimeConvert";
+  private static final long PERIOD_MILLIS = 60_000;
+
+  // The time series of the groups, of which a and b are the top 2
+  private static final String[][] TIME_SERIES =
+      new String[][] {
+        {"0", "a", "5"}, {"0", "b", "3"}, {"0", "c", "1"},
+        {"60000", "a", "4"}, {"60000", "b", "3"}, {"60000", "c", "2"}
+      };
+
+  private QueryServiceAsyncClient queryServiceClient;
+  private AttributeMetadataProvider attributeMetadataProvider;
+  private List<String> executedQueries;
+  private String[][] allGroupsTimeSeries;
+
+  @BeforeEach
+  public void setup() {
+    executedQueries = new ArrayList<>();
+    allGroupsTimeSeries = TIME_SERIES;
+    queryServiceClient = mock(QueryServiceAsyncClient.class);
+    when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> CompletableFuture.completedFuture(answer(invocation.getArgument(0))));
+
+    attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributeMetadata(
+            any(RequestContext.class), anyString(), anyString()))
+        .thenAnswer(
+            invocation ->
+                Optional.of(
+                    attributeMetadata(
+                        invocation.getArgument(1) + "." + invocation.getArgument(2),
+                        AttributeKind.TYPE_STRING)));
+    when(attributeMetadataProvider.getAttributesMetadata(any(RequestContext.class), eq("API")))
+        .thenReturn(
+            Map.of(
+                NAME, attributeMetadata(NAME, AttributeKind.TYPE_STRING),
+                CALLS, attributeMetadata(CALLS, AttributeKind.TYPE_INT64)));
+  }
+
+  @Test
+  public void testTheRestGroupIsQueriedWithTheTimeSeriesOfTheTopGroups() {
+    ExploreResponse response = handleRequest(0);
+
+    assertEquals(List.of("GROUP_BY", "TIME_SERIES", "THE_REST"), executedQueries);
+    assertEquals(expectedRows(), Set.copyOf(response.getRowList()));
+  }
+
+  @Test
+  public void testTheRestGroupIsAggregatedFromTheTimeSeriesOfAllTheGroups() {
+    ExploreResponse response = handleRequest(10);
+
+    assertEquals(List.of("ALL_GROUPS"), executedQueries);
+    assertEquals(expectedRows(), Set.copyOf(response.getRowList()));
+  }
+
+  @Test
+  public void testRequestsSpanningMorePeriodsThanTheMaxAreQueriedPerGroup() {
+    ExploreResponse response = handleRequest(1);
+
+    assertEquals(List.of("GROUP_BY", "TIME_SERIES", "THE_REST"), executedQueries);
+    assertEquals(expectedRows(), Set.copyOf(response.getRowList()));
+  }
+
+  @Test
+  public void testTruncatedTimeSeriesOfAllTheGroupsFallBackToTheQueriesPerGroup() {
+    allGroupsTimeSeries = new String[QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT][];
+    for (int i = 0; i < allGroupsTimeSeries.length; i++) {
+      allGroupsTimeSeries[i] = new String[] {"0", "group-" + i, "1"};
+    }
+
+    ExploreResponse response = handleRequest(10);
+
+    assertEquals(List.of("ALL_GROUPS", "GROUP_BY", "TIME_SERIES", "THE_REST"), executedQueries);
+    assertEquals(expectedRows(), Set.copyOf(response.getRowList()));
+  }
+
+  private ExploreResponse handleRequest(int singleQueryMaxPeriods) {
+    TimeAggregationsWithGroupByRequestHandler requestHandler =
+        new TimeAggregationsWithGroupByRequestHandler(
+            queryServiceClient,
+            500,
+            attributeMetadataProvider,
+            TimeSeriesCache.disabled(),
+            new GroupedTimeAggregationsConfig(singleQueryMaxPeriods),
+            GroupByPushdownCapabilities.none(),
+            TimeRangeSharder.disabled(),
+            Runnable::run);
+    ExploreRequest request = buildRequest();
+    return requestHandler
+        .handleRequest(new ExploreRequestContext(TENANT_ID, request, Map.of()), request)
+        .build();
+  }
+
+  private List<ResultSetChunk> answer(QueryRequest queryRequest) {
+    boolean isTimeSeries =
+        queryRequest.getGroupByList().stream()
+            .anyMatch(org.hypertrace.core.query.service.api.Expression::hasFunction);
+    if (!isTimeSeries) {
+      executedQueries.add("GROUP_BY");
+      return List.of(
+          getResultSetChunk(
+              List.of(NAME, COUNT_CALLS), new String[][] {{"a", "9"}, {"b", "6"}, {"c", "3"}}));
+    }
+    if (queryRequest.getGroupByCount() == 1) {
+      executedQueries.add("THE_REST");
+      return List.of(
+          getResultSetChunk(
+              List.of(TIME_COLUMN, COUNT_CALLS), new String[][] {{"0", "1"}, {"60000", "2"}}));
+    }
+    if (queryRequest.getLimit() == QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT) {
+      executedQueries.add("ALL_GROUPS");
+      return List.of(
+          getResultSetChunk(List.of(TIME_COLUMN, NAME, COUNT_CALLS), allGroupsTimeSeries));
+    }
+    executedQueries.add("TIME_SERIES");
+    return List.of(
+        getResultSetChunk(
+            List.of(TIME_COLUMN, NAME, COUNT_CALLS),
+            new String[][] {TIME_SERIES[0], TIME_SERIES[1], TIME_SERIES[3], TIME_SERIES[4]}));
+  }
+
+  private static ExploreRequest buildRequest() {
+    Expression count =
+        Expression.newBuilder()
+            .setFunction(
+                FunctionExpression.newBuilder()
+                    .setFunction(FunctionType.COUNT)
+                    .setAlias(COUNT_CALLS)
+                    .addArguments(column(CALLS)))
+            .build();
+    return ExploreRequest.newBuilder()
+        .setContext("API")
+        .setStartTimeMillis(0)
+        .setEndTimeMillis(2 * PERIOD_MILLIS)
+        .addTimeAggregation(
+            TimeAggregation.newBuilder()
+                .setPeriod(Period.newBuilder().setUnit("SECONDS").setValue(60))
+                .setAggregation(count))
+        .addGroupBy(column(NAME))
+        .addOrderBy(OrderByExpression.newBuilder().setOrder(SortOrder.DESC).setExpression(count))
+        .setGroupLimit(2)
+        .setLimit(100)
+        .setIncludeRestGroup(true)
+        .build();
+  }
+
+  private static Set<Row> expectedRows() {
+    return Set.of(
+        row(0, "a", 5),
+        row(0, "b", 3),
+        row(0, "__Other", 1),
+        row(PERIOD_MILLIS, "a", 4),
+        row(PERIOD_MILLIS, "b", 3),
+        row(PERIOD_MILLIS, "__Other", 2));
+  }
+
+  private static Row row(long intervalStartTime, String name, long count) {
+    return Row.newBuilder()
+        .putColumns(ColumnName.INTERVAL_START_TIME.name(), longValue(intervalStartTime))
+        .putColumns(NAME, Value.newBuilder().setValueType(ValueType.STRING).setString(name).build())
+        .putColumns(COUNT_CALLS, longValue(count))
+        .build();
+  }
+
+  private static Value longValue(long value) {
+    return Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private static Expression column(String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+
+  private static AttributeMetadata attributeMetadata(String id, AttributeKind valueKind) {
+    return AttributeMetadata.newBuilder()
+        .setId(id)
+        .setValueKind(valueKind)
+        .setType(AttributeType.ATTRIBUTE)
+        .build();
+  }
+}
@@ -0,0 +1,186 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ColumnName;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.junit.jupiter.api.Test;
+
+public class TimeSeriesGroupAggregatorTest {
+  private static final String INTERVAL_COLUMN = ColumnName.INTERVAL_START_TIME.name();
+
+  @Test
+  public void testOnlyRequestsWithDecomposableAggregationsAreAggregated() {
+    assertTrue(
+        TimeSeriesGroupAggregator.of(request(function(FunctionType.SUM, "calls"))).isPresent());
+    assertTrue(
+        TimeSeriesGroupAggregator.of(
+                request(function(FunctionType.COUNT, "calls"))
+                    .toBuilder()
+                    .addSelection(function(FunctionType.COUNT, "calls"))
+                    .addOrderBy(
+                        OrderByExpression.newBuilder()
+                            .setExpression(function(FunctionType.COUNT, "calls")))
+                    .build())
+            .isPresent());
+
+    assertFalse(
+        TimeSeriesGroupAggregator.of(request(function(FunctionType.AVG, "duration"))).isPresent());
+    assertFalse(
+        TimeSeriesGroupAggregator.of(
+                request(function(FunctionType.MAX, "duration"))
+                    .toBuilder()
+                    .addSelection(function(FunctionType.MIN, "duration"))
+                    .build())
+            .isPresent());
+    assertFalse(
+        TimeSeriesGroupAggregator.of(
+                request(function(FunctionType.MAX, "duration"))
+                    .toBuilder()
+                    .addOrderBy(OrderByExpression.newBuilder().setExpression(column("other")))
+                    .build())
+            .isPresent());
+  }
+
+  @Test
+  public void testGroupsAreAggregatedOverTime() {
+    TimeSeriesGroupAggregator aggregator =
+        TimeSeriesGroupAggregator.of(
+                request(
+                    function(FunctionType.COUNT, "calls"), function(FunctionType.MAX, "duration")))
+            .orElseThrow();
+
+    List<Row> groupRows =
+        build(
+            aggregator.aggregateGroups(
+                List.of(
+                    row(1, "a", longValue(2), doubleValue(5)),
+                    row(1, "b", longValue(1), doubleValue(7)),
+                    row(2, "a", longValue(3), doubleValue(9)))));
+
+    assertEquals(
+        List.of(
+            Row.newBuilder()
+                .putColumns("name", stringValue("a"))
+                .putColumns("COUNT_calls", longValue(5))
+                .putColumns("MAX_duration", doubleValue(9))
+                .build(),
+            Row.newBuilder()
+                .putColumns("name", stringValue("b"))
+                .putColumns("COUNT_calls", longValue(1))
+                .putColumns("MAX_duration", doubleValue(7))
+                .build()),
+        groupRows);
+  }
+
+  @Test
+  public void testIntervalsAreAggregatedOverGroups() {
+    TimeSeriesGroupAggregator aggregator =
+        TimeSeriesGroupAggregator.of(
+                request(
+                    function(FunctionType.SUM, "calls"), function(FunctionType.MIN, "duration")))
+            .orElseThrow();
+    Row.Builder row = row(1, "a", doubleValue(2), doubleValue(5));
+
+    List<Row> intervalRows =
+        build(
+            aggregator.aggregateIntervals(
+                List.of(
+                    row,
+                    row(1, "b", doubleValue(1.5), doubleValue(3)),
+                    row(2, "c", doubleValue(4), doubleValue(6)))));
+
+    assertEquals(List.of(stringValue("a")), aggregator.getGroup(row));
+    assertEquals(
+        List.of(
+            Row.newBuilder()
+                .putColumns(INTERVAL_COLUMN, longValue(1))
+                .putColumns("SUM_calls", doubleValue(3.5))
+                .putColumns("MIN_duration", doubleValue(3))
+                .build(),
+            Row.newBuilder()
+                .putColumns(INTERVAL_COLUMN, longValue(2))
+                .putColumns("SUM_calls", doubleValue(4))
+                .putColumns("MIN_duration", doubleValue(6))
+                .build()),
+        intervalRows);
+  }
+
+  private static ExploreRequest request(Expression... aggregations) {
+    ExploreRequest.Builder requestBuilder =
+        ExploreRequest.newBuilder()
+            .addGroupBy(column("name"))
+            .setIncludeRestGroup(true)
+            .setGroupLimit(2)
+            .setLimit(100);
+    for (Expression aggregation : aggregations) {
+      requestBuilder.addTimeAggregation(
+          TimeAggregation.newBuilder()
+              .setPeriod(Period.newBuilder().setUnit("SECONDS").setValue(60))
+              .setAggregation(aggregation));
+    }
+    return requestBuilder.build();
+  }
+
+  private static Expression function(FunctionType functionType, String columnName) {
+    return Expression.newBuilder()
+        .setFunction(
+            FunctionExpression.newBuilder()
+                .setFunction(functionType)
+                .setAlias(functionType + "_" + columnName)
+                .addArguments(column(columnName)))
+        .build();
+  }
+
+  private static Expression column(String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+
+  private static Row.Builder row(long interval, String name, Value... values) {
+    Row.Builder row =
+        Row.newBuilder()
+            .putColumns(INTERVAL_COLUMN, longValue(interval))
+            .putColumns("name", stringValue(name));
+    // the columns of the aggregations of the tests, in order
+    List<String> columns =
+        values[0].getValueType() == ValueType.LONG
+            ? List.of("COUNT_calls", "MAX_duration")
+            : List.of("SUM_calls", "MIN_duration");
+    for (int i = 0; i < values.length; i++) {
+      row.putColumns(columns.get(i), values[i]);
+    }
+    return row;
+  }
+
+  private static List<Row> build(List<Row.Builder> rows) {
+    return rows.stream().map(Row.Builder::build).collect(Collectors.toList());
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+
+  private static Value longValue(long value) {
+    return Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private static Value doubleValue(double value) {
+    return Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+  }
+}
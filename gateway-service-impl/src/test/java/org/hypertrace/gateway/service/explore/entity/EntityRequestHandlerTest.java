@@ -14,12 +14,12 @@ import java.util.Optional;
 import java.util.Set;
 import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
-import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.entity.query.service.v1.ColumnMetadata;
 import org.hypertrace.entity.query.service.v1.ResultSetChunk;
 import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
 import org.hypertrace.entity.query.service.v1.Row;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.client.QueryServiceAsyncClient;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
@@ -58,7 +58,7 @@ public class EntityRequestHandlerTest {
     this.entityRequestHandler =
         new EntityRequestHandler(
             attributeMetadataProvider,
-            mock(QueryServiceClient.class),
+            mock(QueryServiceAsyncClient.class),
             10,
             queryServiceEntityFetcher,
             entityServiceEntityFetcher);
@@ -2,23 +2,40 @@ package org.hypertrace.gateway.service.logevent;
 
 import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.util.Durations;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
@@ -32,6 +49,7 @@ import org.hypertrace.gateway.service.v1.log.events.LogEventsRequest;
 import org.hypertrace.gateway.service.v1.log.events.LogEventsResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 public class LogEventsServiceTest extends AbstractGatewayServiceTest {
@@ -132,7 +150,11 @@ public class LogEventsServiceTest extends AbstractGatewayServiceTest {
             .build();
 
     LogEventsService logEventsService =
-        new LogEventsService(queryServiceClient, 60_000, attributeMetadataProvider);
+        new LogEventsService(
+            QueryServiceStreamingClient.fromClient(queryServiceClient),
+            60_000,
+            attributeMetadataProvider,
+            MoreExecutors.newDirectExecutorService());
 
     String logAttributeString =
         new ObjectMapper()
@@ -173,6 +195,127 @@ public class LogEventsServiceTest extends AbstractGatewayServiceTest {
             });
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  void testStreamLogEventsWaitsForTheCallToBeReady() {
+    AtomicInteger pulledChunks = new AtomicInteger();
+    mockQuery(
+        List.of(
+            spanIdChunk("span-1"),
+            getResultSetChunk(List.of("LOG_EVENT.spanId"), new String[0][]),
+            spanIdChunk("span-2")),
+        pulledChunks,
+        new ArrayList<>());
+    ServerCallStreamObserver<LogEventsResponse> responseObserver =
+        mock(ServerCallStreamObserver.class);
+    AtomicBoolean ready = new AtomicBoolean(true);
+    when(responseObserver.isReady()).thenAnswer(invocation -> ready.get());
+    doAnswer(
+            invocation -> {
+              ready.set(false);
+              return null;
+            })
+        .when(responseObserver)
+        .onNext(any());
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+
+    CompletableFuture<Void> completion =
+        buildLogEventsService()
+            .streamLogEventsByFilter(
+                new RequestContext(TENANT_ID, Map.of()),
+                buildStreamedLogEventsRequest(),
+                responseObserver);
+    verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+
+    // nothing is pulled from query service while the call isn't ready
+    assertEquals(1, pulledChunks.get());
+    verify(responseObserver).onNext(any());
+    assertFalse(completion.isDone());
+
+    for (int i = 0; i < 2; i++) {
+      ready.set(true);
+      onReadyHandler.getValue().run();
+    }
+
+    // the empty chunk is skipped and the stream goes on
+    assertEquals(3, pulledChunks.get());
+    ArgumentCaptor<LogEventsResponse> responses = ArgumentCaptor.forClass(LogEventsResponse.class);
+    verify(responseObserver, times(2)).onNext(responses.capture());
+    assertEquals("span-1", spanId(responses.getAllValues().get(0)));
+    assertEquals("span-2", spanId(responses.getAllValues().get(1)));
+    verify(responseObserver).onCompleted();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testStreamLogEventsCancelsTheQueryOnCancel() {
+    List<Context> queryContexts = new ArrayList<>();
+    mockQuery(List.of(spanIdChunk("span-1")), new AtomicInteger(), queryContexts);
+    ServerCallStreamObserver<LogEventsResponse> responseObserver =
+        mock(ServerCallStreamObserver.class);
+    when(responseObserver.isReady()).thenReturn(false);
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+
+    CompletableFuture<Void> completion =
+        buildLogEventsService()
+            .streamLogEventsByFilter(
+                new RequestContext(TENANT_ID, Map.of()),
+                buildStreamedLogEventsRequest(),
+                responseObserver);
+    verify(responseObserver).setOnCancelHandler(onCancelHandler.capture());
+
+    assertEquals(1, queryContexts.size());
+    assertFalse(queryContexts.get(0).isCancelled());
+
+    onCancelHandler.getValue().run();
+
+    assertTrue(queryContexts.get(0).isCancelled());
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    assertTrue(completion.isCompletedExceptionally());
+  }
+
+  private LogEventsService buildLogEventsService() {
+    return new LogEventsService(
+        QueryServiceStreamingClient.fromClient(queryServiceClient),
+        60_000,
+        attributeMetadataProvider,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  private void mockQuery(
+      List<ResultSetChunk> chunks, AtomicInteger pulledChunks, List<Context> queryContexts) {
+    when(queryServiceClient.executeQuery(any(), any(), Mockito.anyInt()))
+        .thenAnswer(
+            invocation -> {
+              queryContexts.add(Context.current());
+              return Iterators.transform(
+                  chunks.iterator(),
+                  chunk -> {
+                    pulledChunks.incrementAndGet();
+                    return chunk;
+                  });
+            });
+  }
+
+  private LogEventsRequest buildStreamedLogEventsRequest() {
+    return LogEventsRequest.newBuilder()
+        .setStartTimeMillis(1000)
+        .setEndTimeMillis(2000)
+        .addSelection(getColumnSelectionExpression("LOG_EVENT.spanId"))
+        .setLimit(10)
+        .build();
+  }
+
+  private static ResultSetChunk spanIdChunk(String spanId) {
+    return getResultSetChunk(List.of("LOG_EVENT.spanId"), new String[][] {{spanId}});
+  }
+
+  private static String spanId(LogEventsResponse response) {
+    return response.getLogEvents(0).getAttributesMap().get("LOG_EVENT.spanId").getString();
+  }
+
   private Expression getColumnSelectionExpression(String columnName) {
     return Expression.newBuilder()
         .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName).build())
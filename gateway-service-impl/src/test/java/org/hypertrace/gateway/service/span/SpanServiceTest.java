@@ -0,0 +1,226 @@
+package org.hypertrace.gateway.service.span;
+
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.span.SpansRequest;
+import org.hypertrace.gateway.service.v1.span.SpansResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class SpanServiceTest extends AbstractGatewayServiceTest {
+
+  private static final String SPAN_ID = "EVENT.id";
+
+  private QueryServiceStreamingClient queryServiceClient;
+  private ServerCallStreamObserver<SpansResponse> responseObserver;
+  private AtomicBoolean ready;
+  private SpanService spanService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    super.setup();
+    queryServiceClient = mock(QueryServiceStreamingClient.class);
+    AttributeMetadataProvider attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributeMetadata(
+            any(RequestContext.class), eq("EVENT"), anyString()))
+        .thenAnswer(
+            invocation ->
+                Optional.of(
+                    AttributeMetadata.newBuilder()
+                        .setScopeString("EVENT")
+                        .setKey(invocation.getArgument(2))
+                        .setId("EVENT." + invocation.getArgument(2))
+                        .setValueKind(AttributeKind.TYPE_STRING)
+                        .setType(AttributeType.ATTRIBUTE)
+                        .build()));
+    when(attributeMetadataProvider.getAttributesMetadata(any(RequestContext.class), eq("EVENT")))
+        .thenReturn(
+            Map.of(
+                SPAN_ID,
+                AttributeMetadata.newBuilder()
+                    .setScopeString("EVENT")
+                    .setKey("id")
+                    .setFqn(SPAN_ID)
+                    .setId(SPAN_ID)
+                    .setValueKind(AttributeKind.TYPE_STRING)
+                    .setType(AttributeType.ATTRIBUTE)
+                    .build()));
+
+    responseObserver = mock(ServerCallStreamObserver.class);
+    ready = new AtomicBoolean(true);
+    when(responseObserver.isReady()).thenAnswer(invocation -> ready.get());
+
+    spanService =
+        new SpanService(
+            queryServiceClient,
+            60_000,
+            attributeMetadataProvider,
+            MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  public void testStreamSpansWaitsForTheCallToBeReady() {
+    AtomicInteger pulledChunks = new AtomicInteger();
+    mockQueries(
+        List.of(spanChunk("span-1"), spanChunk("span-2"), spanChunk("span-3")),
+        pulledChunks,
+        new ArrayList<>());
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    doAnswer(
+            invocation -> {
+              ready.set(false);
+              return null;
+            })
+        .when(responseObserver)
+        .onNext(any());
+
+    CompletableFuture<Void> completion =
+        spanService.streamSpansByFilter(
+            new RequestContext(TENANT_ID, Map.of()), buildSpansRequest(), responseObserver);
+    verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+
+    // nothing is pulled from query service while the call isn't ready
+    assertEquals(1, pulledChunks.get());
+    verify(responseObserver).onNext(any());
+    assertFalse(completion.isDone());
+
+    for (int i = 0; i < 3; i++) {
+      ready.set(true);
+      onReadyHandler.getValue().run();
+    }
+
+    assertEquals(3, pulledChunks.get());
+    ArgumentCaptor<SpansResponse> responses = ArgumentCaptor.forClass(SpansResponse.class);
+    verify(responseObserver, times(4)).onNext(responses.capture());
+    List<SpansResponse> sent = responses.getAllValues();
+    assertEquals("span-1", spanId(sent.get(0)));
+    assertEquals("span-2", spanId(sent.get(1)));
+    assertEquals("span-3", spanId(sent.get(2)));
+    assertEquals(3, sent.get(3).getTotal());
+    verify(responseObserver).onCompleted();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  public void testStreamSpansEndsAtTheFirstEmptyChunk() {
+    AtomicInteger pulledChunks = new AtomicInteger();
+    mockQueries(
+        List.of(
+            spanChunk("span-1"),
+            getResultSetChunk(List.of(SPAN_ID), new String[0][]),
+            spanChunk("span-2")),
+        pulledChunks,
+        new ArrayList<>());
+
+    spanService.streamSpansByFilter(
+        new RequestContext(TENANT_ID, Map.of()), buildSpansRequest(), responseObserver);
+
+    ArgumentCaptor<SpansResponse> responses = ArgumentCaptor.forClass(SpansResponse.class);
+    verify(responseObserver, times(2)).onNext(responses.capture());
+    assertEquals("span-1", spanId(responses.getAllValues().get(0)));
+    assertEquals(0, responses.getAllValues().get(1).getSpansCount());
+    assertEquals(2, pulledChunks.get());
+    verify(responseObserver).onCompleted();
+  }
+
+  @Test
+  public void testStreamSpansCancelsTheQueriesOnCancel() {
+    List<Context> queryContexts = new ArrayList<>();
+    mockQueries(List.of(spanChunk("span-1")), new AtomicInteger(), queryContexts);
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+    ready.set(false);
+
+    CompletableFuture<Void> completion =
+        spanService.streamSpansByFilter(
+            new RequestContext(TENANT_ID, Map.of()), buildSpansRequest(), responseObserver);
+    verify(responseObserver).setOnCancelHandler(onCancelHandler.capture());
+
+    // the spans and the total queries
+    assertEquals(2, queryContexts.size());
+    queryContexts.forEach(queryContext -> assertFalse(queryContext.isCancelled()));
+
+    onCancelHandler.getValue().run();
+
+    queryContexts.forEach(queryContext -> assertTrue(queryContext.isCancelled()));
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    assertTrue(completion.isCompletedExceptionally());
+  }
+
+  private void mockQueries(
+      List<ResultSetChunk> spanChunks, AtomicInteger pulledChunks, List<Context> queryContexts) {
+    when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              queryContexts.add(Context.current());
+              QueryRequest request = invocation.getArgument(0);
+              // the total is queried with a limit of 1
+              if (request.getLimit() == 1) {
+                return List.of(getResultSetChunk(List.of("total"), new String[][] {{"3"}}))
+                    .iterator();
+              }
+              return Iterators.transform(
+                  spanChunks.iterator(),
+                  chunk -> {
+                    pulledChunks.incrementAndGet();
+                    return chunk;
+                  });
+            });
+  }
+
+  private SpansRequest buildSpansRequest() {
+    return SpansRequest.newBuilder()
+        .setStartTimeMillis(1000)
+        .setEndTimeMillis(2000)
+        .addSelection(
+            Expression.newBuilder()
+                .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(SPAN_ID)))
+        .setLimit(10)
+        .build();
+  }
+
+  private static ResultSetChunk spanChunk(String spanId) {
+    return getResultSetChunk(List.of(SPAN_ID), new String[][] {{spanId}});
+  }
+
+  private static String spanId(SpansResponse response) {
+    return response.getSpans(0).getAttributesMap().get(SPAN_ID).getString();
+  }
+}
@@ -0,0 +1,231 @@
+package org.hypertrace.gateway.service.trace;
+
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.client.QueryServiceStreamingClient;
+import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.trace.TracesRequest;
+import org.hypertrace.gateway.service.v1.trace.TracesResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TracesServiceTest extends AbstractGatewayServiceTest {
+
+  private static final String TRACE_ID = "API_TRACE.apiTraceId";
+
+  private QueryServiceStreamingClient queryServiceClient;
+  private ServerCallStreamObserver<TracesResponse> responseObserver;
+  private AtomicBoolean ready;
+  private TracesService tracesService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    super.setup();
+    queryServiceClient = mock(QueryServiceStreamingClient.class);
+    AttributeMetadataProvider attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributeMetadata(
+            any(RequestContext.class), eq("API_TRACE"), anyString()))
+        .thenAnswer(
+            invocation ->
+                Optional.of(
+                    AttributeMetadata.newBuilder()
+                        .setScopeString("API_TRACE")
+                        .setKey(invocation.getArgument(2))
+                        .setId("API_TRACE." + invocation.getArgument(2))
+                        .setValueKind(AttributeKind.TYPE_STRING)
+                        .setType(AttributeType.ATTRIBUTE)
+                        .build()));
+    when(attributeMetadataProvider.getAttributesMetadata(
+            any(RequestContext.class), eq("API_TRACE")))
+        .thenReturn(
+            Map.of(
+                TRACE_ID,
+                AttributeMetadata.newBuilder()
+                    .setScopeString("API_TRACE")
+                    .setKey("apiTraceId")
+                    .setFqn(TRACE_ID)
+                    .setId(TRACE_ID)
+                    .setValueKind(AttributeKind.TYPE_STRING)
+                    .setType(AttributeType.ATTRIBUTE)
+                    .build()));
+
+    responseObserver = mock(ServerCallStreamObserver.class);
+    ready = new AtomicBoolean(true);
+    when(responseObserver.isReady()).thenAnswer(invocation -> ready.get());
+
+    tracesService =
+        new TracesService(
+            queryServiceClient,
+            60_000,
+            attributeMetadataProvider,
+            new ScopeFilterConfigs(ConfigFactory.empty()),
+            MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  public void testStreamTracesWaitsForTheCallToBeReady() {
+    AtomicInteger pulledChunks = new AtomicInteger();
+    mockQueries(
+        List.of(traceChunk("trace-1"), traceChunk("trace-2"), traceChunk("trace-3")),
+        pulledChunks,
+        new ArrayList<>());
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    doAnswer(
+            invocation -> {
+              ready.set(false);
+              return null;
+            })
+        .when(responseObserver)
+        .onNext(any());
+
+    CompletableFuture<Void> completion =
+        tracesService.streamTracesByFilter(
+            new RequestContext(TENANT_ID, Map.of()), buildTracesRequest(), responseObserver);
+    verify(responseObserver).setOnReadyHandler(onReadyHandler.capture());
+
+    // nothing is pulled from query service while the call isn't ready
+    assertEquals(1, pulledChunks.get());
+    verify(responseObserver).onNext(any());
+    assertFalse(completion.isDone());
+
+    for (int i = 0; i < 3; i++) {
+      ready.set(true);
+      onReadyHandler.getValue().run();
+    }
+
+    assertEquals(3, pulledChunks.get());
+    ArgumentCaptor<TracesResponse> responses = ArgumentCaptor.forClass(TracesResponse.class);
+    verify(responseObserver, times(4)).onNext(responses.capture());
+    List<TracesResponse> sent = responses.getAllValues();
+    assertEquals("trace-1", traceId(sent.get(0)));
+    assertEquals("trace-2", traceId(sent.get(1)));
+    assertEquals("trace-3", traceId(sent.get(2)));
+    assertEquals(3, sent.get(3).getTotal());
+    verify(responseObserver).onCompleted();
+    assertTrue(completion.isDone());
+  }
+
+  @Test
+  public void testStreamTracesEndsAtTheFirstEmptyChunk() {
+    AtomicInteger pulledChunks = new AtomicInteger();
+    mockQueries(
+        List.of(
+            traceChunk("trace-1"),
+            getResultSetChunk(List.of(TRACE_ID), new String[0][]),
+            traceChunk("trace-2")),
+        pulledChunks,
+        new ArrayList<>());
+
+    tracesService.streamTracesByFilter(
+        new RequestContext(TENANT_ID, Map.of()), buildTracesRequest(), responseObserver);
+
+    ArgumentCaptor<TracesResponse> responses = ArgumentCaptor.forClass(TracesResponse.class);
+    verify(responseObserver, times(2)).onNext(responses.capture());
+    assertEquals("trace-1", traceId(responses.getAllValues().get(0)));
+    assertEquals(0, responses.getAllValues().get(1).getTracesCount());
+    assertEquals(2, pulledChunks.get());
+    verify(responseObserver).onCompleted();
+  }
+
+  @Test
+  public void testStreamTracesCancelsTheQueriesOnCancel() {
+    List<Context> queryContexts = new ArrayList<>();
+    mockQueries(List.of(traceChunk("trace-1")), new AtomicInteger(), queryContexts);
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+    ready.set(false);
+
+    CompletableFuture<Void> completion =
+        tracesService.streamTracesByFilter(
+            new RequestContext(TENANT_ID, Map.of()), buildTracesRequest(), responseObserver);
+    verify(responseObserver).setOnCancelHandler(onCancelHandler.capture());
+
+    // the traces and the total queries
+    assertEquals(2, queryContexts.size());
+    queryContexts.forEach(queryContext -> assertFalse(queryContext.isCancelled()));
+
+    onCancelHandler.getValue().run();
+
+    queryContexts.forEach(queryContext -> assertTrue(queryContext.isCancelled()));
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    assertTrue(completion.isCompletedExceptionally());
+  }
+
+  private void mockQueries(
+      List<ResultSetChunk> traceChunks, AtomicInteger pulledChunks, List<Context> queryContexts) {
+    when(queryServiceClient.executeQuery(any(QueryRequest.class), any(), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              queryContexts.add(Context.current());
+              QueryRequest request = invocation.getArgument(0);
+              // the total is queried with a limit of 1
+              if (request.getLimit() == 1) {
+                return List.of(getResultSetChunk(List.of("total"), new String[][] {{"3"}}))
+                    .iterator();
+              }
+              return Iterators.transform(
+                  traceChunks.iterator(),
+                  chunk -> {
+                    pulledChunks.incrementAndGet();
+                    return chunk;
+                  });
+            });
+  }
+
+  private TracesRequest buildTracesRequest() {
+    return TracesRequest.newBuilder()
+        .setScope("API_TRACE")
+        .setStartTimeMillis(1000)
+        .setEndTimeMillis(2000)
+        .addSelection(
+            Expression.newBuilder()
+                .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(TRACE_ID)))
+        .setLimit(10)
+        .build();
+  }
+
+  private static ResultSetChunk traceChunk(String traceId) {
+    return getResultSetChunk(List.of(TRACE_ID), new String[][] {{traceId}});
+  }
+
+  private static String traceId(TracesResponse response) {
+    return response.getTraces(0).getAttributesMap().get(TRACE_ID).getString();
+  }
+}
@@ -16,3 +16,4 @@ include(":gateway-service-api")
 include(":gateway-service-impl")
 include(":gateway-service")
 include(":gateway-service-baseline-lib")
+include(":gateway-service-benchmarks")